@@ -0,0 +1,152 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.server.backends.pluggable.EntryIDSet.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.EntryIDSet.EntryIDSetCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the codecs and the set operations of the entry ID sets read from the indexes. This
+ * class belongs to the backend package because entry ID sets are not part of the public API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryIDSetBenchmark
+{
+  /** The number of entry IDs in each set. */
+  @Param({ "100", "10000" })
+  public int size;
+
+  /** The average gap between consecutive entry IDs, the larger the sparser. */
+  @Param({ "1", "100" })
+  public int density;
+
+  /** The codec used for encoding the sets: V2 decodes into arrays and V4 into bitmaps. */
+  @Param({ "V2", "V4" })
+  public String codecVersion;
+
+  private EntryIDSetCodec codec;
+  private long[] ids1;
+  private long[] ids2;
+  private EntryIDSet set2;
+  private ByteString encodedSet;
+
+  /** Generates two overlapping sets of entry IDs. */
+  @Setup
+  public void setup()
+  {
+    codec = "V4".equals(codecVersion) ? CODEC_V4 : CODEC_V2;
+    final Random random = new Random(0);
+    ids1 = randomIDs(random);
+    ids2 = randomIDs(random);
+    set2 = codec.decode(ByteString.empty(), codec.encode(newDefinedSet(ids2)));
+    encodedSet = codec.encode(newDefinedSet(ids1));
+  }
+
+  private long[] randomIDs(Random random)
+  {
+    final long[] ids = new long[size];
+    long id = 0;
+    for (int i = 0; i < size; i++)
+    {
+      id += 1 + random.nextInt(2 * density);
+      ids[i] = id;
+    }
+    return ids;
+  }
+
+  /**
+   * Benchmarks the encoding of a set, as done when writing index records.
+   *
+   * @return The encoded set.
+   */
+  @Benchmark
+  public ByteString encode()
+  {
+    return codec.encode(newDefinedSet(ids1));
+  }
+
+  /**
+   * Benchmarks the decoding of a set, as done when reading index records.
+   *
+   * @return The decoded set.
+   */
+  @Benchmark
+  public EntryIDSet decode()
+  {
+    return codec.decode(ByteString.empty(), encodedSet);
+  }
+
+  /**
+   * Benchmarks the decoding of a set followed by its intersection with another set, as done when
+   * evaluating AND search filters.
+   *
+   * @return The intersection.
+   */
+  @Benchmark
+  public EntryIDSet decodeAndRetainAll()
+  {
+    final EntryIDSet set1 = codec.decode(ByteString.empty(), encodedSet);
+    set1.retainAll(set2);
+    return set1;
+  }
+
+  /**
+   * Benchmarks the decoding of a set followed by its union with another set, as done when
+   * evaluating OR search filters.
+   *
+   * @return The union.
+   */
+  @Benchmark
+  public EntryIDSet decodeAndAddAll()
+  {
+    final EntryIDSet set1 = codec.decode(ByteString.empty(), encodedSet);
+    set1.addAll(set2);
+    return set1;
+  }
+
+  /**
+   * Benchmarks the union of several sets, as done when evaluating substring search filters.
+   *
+   * @return The union.
+   */
+  @Benchmark
+  public EntryIDSet newSetFromUnion()
+  {
+    return EntryIDSet.newSetFromUnion(Arrays.asList(codec.decode(ByteString.empty(), encodedSet), set2));
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.api.CompressedSchema;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.benchmarks.BenchmarkServer;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the encoding and decoding of the entries stored in the id2entry tree. This class
+ * belongs to the backend package because the id2entry tree is not part of the public API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ID2EntryBenchmark
+{
+  /**
+   * The backend data configuration: "plain" for the default encoding, "compact" for compact
+   * encoding using the compressed schema, "compressed" for compact encoding and compression.
+   */
+  @Param({ "plain", "compact", "compressed" })
+  public String dataConfig;
+
+  private DataConfig config;
+  private ID2Entry id2entry;
+  private CompressedSchema compressedSchema;
+  private Entry entry;
+  private ByteString encodedEntry;
+
+  /**
+   * Starts the server, which provides the schema, and encodes the entry.
+   *
+   * @throws Exception
+   *           If the server could not be started.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception
+  {
+    BenchmarkServer.start();
+    compressedSchema = DirectoryServer.getDefaultCompressedSchema();
+    final DataConfig.Builder builder = new DataConfig.Builder();
+    if (!"plain".equals(dataConfig))
+    {
+      builder.encode(true).schema(compressedSchema).compress("compressed".equals(dataConfig));
+    }
+    config = builder.build();
+    id2entry = new ID2Entry(new TreeName(BenchmarkServer.BASE_DN, "id2entry"), config);
+    entry = BenchmarkServer.toEntry(BenchmarkServer.userLDIF(42));
+    encodedEntry = id2entry.entryToDatabase(entry, config);
+  }
+
+  /** Stops the server. */
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    BenchmarkServer.stop();
+  }
+
+  /**
+   * Benchmarks the encoding of an entry, as done when writing it to the backend.
+   *
+   * @return The encoded entry.
+   * @throws Exception
+   *           If the entry could not be encoded.
+   */
+  @Benchmark
+  public ByteString entryToDatabase() throws Exception
+  {
+    return id2entry.entryToDatabase(entry, config);
+  }
+
+  /**
+   * Benchmarks the decoding of an entry, as done when reading it from the backend.
+   *
+   * @return The decoded entry.
+   * @throws Exception
+   *           If the entry could not be decoded.
+   */
+  @Benchmark
+  public Entry entryFromDatabase() throws Exception
+  {
+    return id2entry.entryFromDatabase(encodedEntry, compressedSchema);
+  }
+}
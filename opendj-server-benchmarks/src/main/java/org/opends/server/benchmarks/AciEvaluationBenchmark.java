@@ -0,0 +1,113 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.benchmarks;
+
+import static org.opends.server.protocols.internal.Requests.newSearchRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchOperation;
+import org.opends.server.protocols.internal.SearchRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the access control evaluation performed by the ACI handler when returning entries
+ * from the in-process memory backend. The searches are performed by a regular user, since root
+ * users bypass access control.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AciEvaluationBenchmark
+{
+  /** The index of the user performing the searches, user 0 is a member of the administrators group. */
+  @Param({ "0", "1" })
+  public int bindUser;
+
+  private InternalClientConnection connection;
+  private SearchRequest[] baseSearchRequests;
+  private SearchRequest subtreeSearchRequest;
+
+  /**
+   * Starts the server and prepares the search requests.
+   *
+   * @throws Exception
+   *           If the server could not be started.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception
+  {
+    BenchmarkServer.start();
+    connection = new InternalClientConnection(BenchmarkServer.userDN(bindUser));
+    baseSearchRequests = new SearchRequest[BenchmarkServer.NUMBER_OF_USERS];
+    for (int i = 0; i < baseSearchRequests.length; i++)
+    {
+      baseSearchRequests[i] = newSearchRequest(BenchmarkServer.userDN(i), SearchScope.BASE_OBJECT);
+    }
+    subtreeSearchRequest = newSearchRequest(
+        DN.valueOf(BenchmarkServer.PEOPLE_DN), SearchScope.WHOLE_SUBTREE, "(employeeNumber<=99)");
+  }
+
+  /** Stops the server. */
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    BenchmarkServer.stop();
+  }
+
+  /**
+   * Benchmarks the evaluation of the ACIs for returning a single entry.
+   *
+   * @return The search operation.
+   */
+  @Benchmark
+  public InternalSearchOperation baseSearch()
+  {
+    final int user = ThreadLocalRandom.current().nextInt(baseSearchRequests.length);
+    return connection.processSearch(baseSearchRequests[user]);
+  }
+
+  /**
+   * Benchmarks the evaluation of the ACIs for the search filter, then for returning 100 entries.
+   *
+   * @return The search operation.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public InternalSearchOperation subtreeSearch()
+  {
+    return connection.processSearch(subtreeSearchRequest);
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.benchmarks;
+
+import static org.forgerock.opendj.server.embedded.ConfigParameters.configParams;
+import static org.forgerock.opendj.server.embedded.EmbeddedDirectoryServer.*;
+
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.server.embedded.EmbeddedDirectoryServer;
+import org.opends.server.backends.MemoryBackend;
+import org.opends.server.core.AddOperation;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.util.LDIFReader;
+
+/**
+ * In-process directory server shared by the benchmarks of a forked JVM. The server holds a memory
+ * backend populated with a flat list of users and a few typical ACIs.
+ */
+public final class BenchmarkServer
+{
+  /** The system property holding the root directory of the installed server to start. */
+  public static final String SERVER_ROOT_PROPERTY = "opendj.benchmark.serverRoot";
+  /** The base DN of the memory backend. */
+  public static final String BASE_DN = "dc=benchmark,dc=com";
+  /** The DN of the parent entry of the users. */
+  public static final String PEOPLE_DN = "ou=People," + BASE_DN;
+  /** The number of users in the memory backend. */
+  public static final int NUMBER_OF_USERS = 1000;
+
+  private static final String BACKEND_ID = "benchmark";
+
+  private static EmbeddedDirectoryServer server;
+
+  private BenchmarkServer()
+  {
+    // Not used.
+  }
+
+  /**
+   * Starts the server, unless it is already running, and populates the memory backend.
+   *
+   * @throws Exception
+   *           If the server could not be started.
+   */
+  public static synchronized void start() throws Exception
+  {
+    if (server != null)
+    {
+      return;
+    }
+    final String serverRoot = System.getProperty(SERVER_ROOT_PROPERTY);
+    if (serverRoot == null)
+    {
+      throw new IllegalStateException("The " + SERVER_ROOT_PROPERTY
+          + " system property must point to the root directory of an installed server");
+    }
+
+    server = manageEmbeddedDirectoryServerForRestrictedOps(
+        configParams()
+            .serverRootDirectory(serverRoot)
+            .configurationFile(Paths.get(serverRoot, "config", "config.ldif").toString())
+            .disableConnectionHandlers(true),
+        System.out, System.err);
+    server.start();
+
+    final ServerContext serverContext = DirectoryServer.getInstance().getServerContext();
+    final MemoryBackend backend = new MemoryBackend();
+    backend.setBackendID(BACKEND_ID);
+    backend.setBaseDNs(DN.valueOf(BASE_DN));
+    backend.configureBackend(null, serverContext);
+    backend.openBackend();
+    serverContext.getBackendConfigManager().registerLocalBackend(backend);
+    populate();
+  }
+
+  /** Stops the server, if it is running. */
+  public static synchronized void stop()
+  {
+    if (server != null)
+    {
+      server.stop(BenchmarkServer.class.getName(), LocalizableMessage.raw("Benchmark completed"));
+      server = null;
+    }
+  }
+
+  /**
+   * Returns the DN of the user with the provided index.
+   *
+   * @param index
+   *          The index of the user, between 0 and {@link #NUMBER_OF_USERS} excluded.
+   * @return The DN of the user with the provided index.
+   */
+  public static DN userDN(int index)
+  {
+    return DN.valueOf("uid=user." + index + "," + PEOPLE_DN);
+  }
+
+  /**
+   * Returns the LDIF lines of the user with the provided index.
+   *
+   * @param index
+   *          The index of the user.
+   * @return The LDIF lines of the user with the provided index.
+   */
+  public static String[] userLDIF(int index)
+  {
+    return new String[] {
+      "dn: " + userDN(index),
+      "objectClass: top",
+      "objectClass: person",
+      "objectClass: organizationalPerson",
+      "objectClass: inetOrgPerson",
+      "uid: user." + index,
+      "cn: User " + index,
+      "sn: " + index,
+      "givenName: User",
+      "mail: user." + index + "@benchmark.com",
+      "telephoneNumber: +1 408 555 " + String.format("%04d", index),
+      "employeeNumber: " + index,
+      "description: This is the description for user " + index,
+      "userPassword: password",
+    };
+  }
+
+  /**
+   * Parses the provided LDIF lines into an entry.
+   *
+   * @param lines
+   *          The LDIF lines of the entry.
+   * @return The parsed entry.
+   * @throws Exception
+   *           If the LDIF lines could not be parsed.
+   */
+  public static Entry toEntry(String... lines) throws Exception
+  {
+    final StringBuilder ldif = new StringBuilder();
+    for (String line : lines)
+    {
+      ldif.append(line).append('\n');
+    }
+    try (LDIFReader reader = new LDIFReader(new LDIFImportConfig(new StringReader(ldif.toString()))))
+    {
+      return reader.readEntry(false);
+    }
+  }
+
+  private static void populate() throws Exception
+  {
+    final List<Entry> entries = new ArrayList<>();
+    entries.add(toEntry(
+        "dn: " + BASE_DN,
+        "objectClass: top",
+        "objectClass: domain",
+        "dc: benchmark",
+        "aci: (targetattr!=\"userPassword\")(version 3.0; acl \"Authenticated read\"; "
+            + "allow (read,search,compare) userdn=\"ldap:///all\";)",
+        "aci: (targetattr=\"userPassword || telephoneNumber\")(version 3.0; acl \"Self write\"; "
+            + "allow (write) userdn=\"ldap:///self\";)",
+        "aci: (targetattr=\"*\")(version 3.0; acl \"Administrators\"; "
+            + "allow (all) groupdn=\"ldap:///cn=Administrators,ou=Groups," + BASE_DN + "\";)"));
+    entries.add(toEntry(
+        "dn: " + PEOPLE_DN,
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: People"));
+    entries.add(toEntry(
+        "dn: ou=Groups," + BASE_DN,
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: Groups"));
+    entries.add(toEntry(
+        "dn: cn=Administrators,ou=Groups," + BASE_DN,
+        "objectClass: top",
+        "objectClass: groupOfNames",
+        "cn: Administrators",
+        "member: " + userDN(0)));
+    for (int i = 0; i < NUMBER_OF_USERS; i++)
+    {
+      entries.add(toEntry(userLDIF(i)));
+    }
+
+    // Add the entries through the core server so that the ACIs and groups are registered
+    final InternalClientConnection conn = InternalClientConnection.getRootConnection();
+    for (Entry entry : entries)
+    {
+      final AddOperation addOperation = conn.processAdd(entry);
+      if (addOperation.getResultCode() != ResultCode.SUCCESS)
+      {
+        throw new IllegalStateException("Could not add " + entry.getName() + ": "
+            + addOperation.getErrorMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the decoding and normalization of DNs. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DNBenchmark
+{
+  /** The DN to decode, the last one requires case folding and escaping. */
+  @Param({
+    "dc=com",
+    "uid=user.0,ou=People,dc=example,dc=com",
+    "CN=Babs Jensen\\, Jr.,OU=Product Development,O=Example Corp,C=US" })
+  public String dnString;
+
+  private DN dn;
+
+  /** Decodes the DN once for the benchmarks working on a decoded DN. */
+  @Setup
+  public void setup()
+  {
+    dn = DN.valueOf(dnString);
+  }
+
+  /**
+   * Benchmarks the decoding of a DN.
+   *
+   * @return The decoded DN.
+   */
+  @Benchmark
+  public DN valueOf()
+  {
+    return DN.valueOf(dnString);
+  }
+
+  /**
+   * Benchmarks the decoding and normalization of a DN, as done for each entry key.
+   *
+   * @return The normalized DN.
+   */
+  @Benchmark
+  public ByteString valueOfAndNormalize()
+  {
+    return DN.valueOf(dnString).toNormalizedByteString();
+  }
+
+  /**
+   * Benchmarks the retrieval of the parent of a DN, as done when locking entries.
+   *
+   * @return The parent DN.
+   */
+  @Benchmark
+  public DN parent()
+  {
+    return dn.parent();
+  }
+
+  /**
+   * Benchmarks the comparison of a DN with a freshly decoded equal DN.
+   *
+   * @return The result of the comparison.
+   */
+  @Benchmark
+  public boolean equalsDecoded()
+  {
+    return dn.equals(DN.valueOf(dnString));
+  }
+}
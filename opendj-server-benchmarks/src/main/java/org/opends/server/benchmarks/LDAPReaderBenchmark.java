@@ -0,0 +1,117 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.io.ASN1;
+import org.forgerock.opendj.io.ASN1Writer;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DereferenceAliasesPolicy;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.protocols.ldap.AddRequestProtocolOp;
+import org.opends.server.protocols.ldap.LDAPMessage;
+import org.opends.server.protocols.ldap.LDAPReader;
+import org.opends.server.protocols.ldap.ProtocolOp;
+import org.opends.server.protocols.ldap.SearchRequestProtocolOp;
+import org.opends.server.types.LDAPException;
+import org.opends.server.types.RawAttribute;
+import org.opends.server.types.RawFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the ASN.1 decoding of the LDAP requests read from client connections. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LDAPReaderBenchmark
+{
+  /** The type of the LDAP request to decode. */
+  @Param({ "add", "search" })
+  public String requestType;
+
+  private ByteString encodedMessage;
+
+  /**
+   * Encodes the LDAP message to decode.
+   *
+   * @throws Exception
+   *           If the message could not be encoded.
+   */
+  @Setup
+  public void setup() throws Exception
+  {
+    final ProtocolOp protocolOp = "add".equals(requestType) ? newAddRequest() : newSearchRequest();
+    final ByteStringBuilder builder = new ByteStringBuilder();
+    final ASN1Writer writer = ASN1.getWriter(builder);
+    new LDAPMessage(1, protocolOp).write(writer);
+    writer.flush();
+    encodedMessage = builder.toByteString();
+  }
+
+  private ProtocolOp newAddRequest()
+  {
+    final List<RawAttribute> attributes = new ArrayList<>();
+    for (String line : BenchmarkServer.userLDIF(42))
+    {
+      final int colon = line.indexOf(':');
+      final String attributeType = line.substring(0, colon);
+      if (!"dn".equals(attributeType))
+      {
+        attributes.add(RawAttribute.create(attributeType, line.substring(colon + 2)));
+      }
+    }
+    return new AddRequestProtocolOp(ByteString.valueOfUtf8(BenchmarkServer.userDN(42).toString()), attributes);
+  }
+
+  private ProtocolOp newSearchRequest() throws LDAPException
+  {
+    return new SearchRequestProtocolOp(ByteString.valueOfUtf8(BenchmarkServer.PEOPLE_DN), SearchScope.WHOLE_SUBTREE,
+        DereferenceAliasesPolicy.NEVER, 0, 0, false,
+        RawFilter.create("(&(objectClass=inetOrgPerson)(uid=user.42))"),
+        new LinkedHashSet<>(Arrays.asList("cn", "mail", "telephoneNumber")));
+  }
+
+  /**
+   * Benchmarks the decoding of an LDAP message.
+   *
+   * @return The decoded LDAP message.
+   * @throws LDAPException
+   *           If the message could not be decoded.
+   */
+  @Benchmark
+  public LDAPMessage readMessage() throws LDAPException
+  {
+    return LDAPReader.readMessage(ASN1.getReader(encodedMessage));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.types.LockManager;
+import org.opends.server.types.LockManager.DNLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the acquisition of entry locks by concurrent threads updating sibling entries, which
+ * all take a subtree read lock on their common parent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class LockManagerBenchmark
+{
+  /** The number of sibling entries, the lower the more contention on the entry locks. */
+  @Param({ "16", "100000" })
+  public int numberOfEntries;
+
+  private final LockManager lockManager = new LockManager();
+  private DN[] dns;
+
+  /** Decodes the DNs of the entries to lock. */
+  @Setup
+  public void setup()
+  {
+    dns = new DN[numberOfEntries];
+    for (int i = 0; i < dns.length; i++)
+    {
+      dns[i] = BenchmarkServer.userDN(i);
+    }
+  }
+
+  /**
+   * Benchmarks the write locking of an entry, as done by modify operations.
+   *
+   * @return Whether the lock was acquired.
+   */
+  @Benchmark
+  public boolean writeLockEntry()
+  {
+    final DNLock lock = lockManager.tryWriteLockEntry(randomDN());
+    if (lock == null)
+    {
+      return false;
+    }
+    lock.unlock();
+    return true;
+  }
+
+  /**
+   * Benchmarks the read locking of an entry.
+   *
+   * @return Whether the lock was acquired.
+   */
+  @Benchmark
+  public boolean readLockEntry()
+  {
+    final DNLock lock = lockManager.tryReadLockEntry(randomDN());
+    if (lock == null)
+    {
+      return false;
+    }
+    lock.unlock();
+    return true;
+  }
+
+  private DN randomDN()
+  {
+    return dns[ThreadLocalRandom.current().nextInt(dns.length)];
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the decoding and the evaluation of search filters against an entry. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchFilterBenchmark
+{
+  /** The filter to evaluate, covering the most common filter types. */
+  @Param({
+    "(uid=user.42)",
+    "(objectClass=*)",
+    "(&(objectClass=inetOrgPerson)(mail=user.42@benchmark.com))",
+    "(|(cn=User 1*)(sn=42)(telephoneNumber=*5550042))",
+    "(!(employeeNumber<=10))" })
+  public String filterString;
+
+  private SearchFilter filter;
+  private Entry entry;
+
+  /**
+   * Starts the server, which provides the schema, and decodes the filter.
+   *
+   * @throws Exception
+   *           If the server could not be started.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception
+  {
+    BenchmarkServer.start();
+    filter = SearchFilter.createFilterFromString(filterString);
+    entry = BenchmarkServer.toEntry(BenchmarkServer.userLDIF(42));
+  }
+
+  /** Stops the server. */
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    BenchmarkServer.stop();
+  }
+
+  /**
+   * Benchmarks the decoding of a search filter.
+   *
+   * @return The decoded filter.
+   * @throws DirectoryException
+   *           If the filter could not be decoded.
+   */
+  @Benchmark
+  public SearchFilter createFilterFromString() throws DirectoryException
+  {
+    return SearchFilter.createFilterFromString(filterString);
+  }
+
+  /**
+   * Benchmarks the evaluation of a search filter against an entry.
+   *
+   * @return Whether the entry matches the filter.
+   * @throws DirectoryException
+   *           If the filter could not be evaluated.
+   */
+  @Benchmark
+  public boolean matchesEntry() throws DirectoryException
+  {
+    return filter.matchesEntry(entry);
+  }
+}
@@ -0,0 +1,23 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+/**
+ * JMH micro-benchmarks covering the hot paths of the server.
+ * <p>
+ * The benchmarks relying on an in-process server expect the {@value BenchmarkServer#SERVER_ROOT_PROPERTY}
+ * system property to point to the root directory of an installed server.
+ */
+package org.opends.server.benchmarks;
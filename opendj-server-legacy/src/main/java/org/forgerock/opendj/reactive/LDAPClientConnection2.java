@@ -102,6 +102,7 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.IntermediateResponse;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
 import org.opends.server.types.OperationType;
 import org.opends.server.types.SearchResultEntry;
 import org.opends.server.types.SearchResultReference;
@@ -388,6 +389,8 @@ public final class LDAPClientConnection2 extends ClientConnection implements TLS
         // race conditions in which the client immediately sends another
         // request with the same message ID as was used for this operation.
 
+        statTracker.updateOperationLatency(operation.getOperationType(),
+                operation.getProcessingDuration(TimeUnit.NANOSECONDS));
         if (keepStats) {
             long time;
             if (useNanoTime) {
@@ -410,6 +413,12 @@ public final class LDAPClientConnection2 extends ClientConnection implements TLS
             }
             out.onComplete();
         }
+
+        // The response is encoded and written asynchronously, so its phases are not timed here.
+        final OperationPhaseTimer phaseTimer = operation.getPhaseTimer();
+        if (phaseTimer != null) {
+            DirectoryServer.getOperationLatencyMonitor().recordPhases(phaseTimer);
+        }
     }
 
     /**
@@ -79,6 +79,7 @@ import org.opends.server.core.ServerContext;
 import org.opends.server.core.WorkQueueStrategy;
 import org.opends.server.extensions.NullKeyManagerProvider;
 import org.opends.server.monitors.ClientConnectionMonitorProvider;
+import org.opends.server.monitors.OperationLatencyHistograms;
 import org.opends.server.protocols.ldap.LDAPStatistics;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.DisconnectReason;
@@ -465,6 +466,11 @@ public final class LDAPConnectionHandler2 extends ConnectionHandler<LDAPConnecti
         return statTracker;
     }
 
+    @Override
+    public OperationLatencyHistograms getOperationLatencies() {
+        return statTracker != null ? statTracker.getOperationLatencies() : null;
+    }
+
     @Override
     public void initializeConnectionHandler(ServerContext serverContext, LDAPConnectionHandlerCfg config)
             throws ConfigException, InitializationException {
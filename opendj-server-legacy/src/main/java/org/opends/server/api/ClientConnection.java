@@ -38,6 +38,7 @@ import org.opends.server.core.AuthenticatedUsers;
 import org.opends.server.core.CoreConfigManager;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.PersistentSearch;
+import org.opends.server.core.PersistentSearchNotificationQueue;
 import org.opends.server.core.PluginConfigManager;
 import org.opends.server.core.SearchOperation;
 import org.opends.server.types.Attribute;
@@ -130,6 +131,10 @@ public abstract class ClientConnection
   /** A set of persistent searches registered for this client. */
   private final CopyOnWriteArrayList<PersistentSearch> persistentSearches = new CopyOnWriteArrayList<>();
 
+  /** The queue of the persistent search notifications waiting to be sent to this client. */
+  private final PersistentSearchNotificationQueue persistentSearchNotifications =
+      new PersistentSearchNotificationQueue();
+
   /** Performs the appropriate initialization generic to all client connections. */
   protected ClientConnection()
   {
@@ -659,6 +664,18 @@ public abstract class ClientConnection
 
 
 
+  /**
+   * Retrieves the queue of the persistent search notifications waiting to be sent to this client.
+   *
+   * @return  The queue of the persistent search notifications waiting to be sent to this client.
+   */
+  public final PersistentSearchNotificationQueue getPersistentSearchNotificationQueue()
+  {
+    return persistentSearchNotifications;
+  }
+
+
+
   /**
    * Registers the provided persistent search for this client.
    * Note that this should only be called by
@@ -1347,14 +1364,8 @@ public abstract class ClientConnection
   public boolean isMemberOf(Group<?> group, Operation operation)
          throws DirectoryException
   {
-    if (operation == null)
-    {
-      return group.isMember(authenticationInfo.getAuthorizationDN());
-    }
-    else
-    {
-      return group.isMember(operation.getAuthorizationDN());
-    }
+    DN authzDN = operation == null ? authenticationInfo.getAuthorizationDN() : operation.getAuthorizationDN();
+    return DirectoryServer.getGroupManager().isMember(group, authzDN, null);
   }
 
 
@@ -1384,7 +1395,6 @@ public abstract class ClientConnection
   public Set<Group<?>> getGroups(Operation operation)
          throws DirectoryException
   {
-    // FIXME -- This probably isn't the most efficient implementation.
     DN authzDN;
     if (operation == null)
     {
@@ -1413,15 +1423,7 @@ public abstract class ClientConnection
       return Collections.<Group<?>>emptySet();
     }
 
-    HashSet<Group<?>> groupSet = new HashSet<>();
-    for (Group<?> g : DirectoryServer.getGroupManager().getGroupInstances())
-    {
-      if (g.isMember(userEntry))
-      {
-        groupSet.add(g);
-      }
-    }
-    return groupSet;
+    return DirectoryServer.getGroupManager().getGroupsOf(userEntry);
   }
 
 
@@ -29,6 +29,7 @@ import org.forgerock.opendj.server.config.server.ConnectionHandlerCfg;
 import org.opends.server.core.ServerContext;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.opends.server.monitors.ConnectionHandlerMonitor;
+import org.opends.server.monitors.OperationLatencyHistograms;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.HostPort;
 import org.opends.server.types.InitializationException;
@@ -104,6 +105,21 @@ public abstract class ConnectionHandler
 
 
 
+  /**
+   * Retrieves the latency histograms of the operations requested
+   * through this connection handler, if it maintains them.
+   *
+   * @return  The latency histograms of the operations requested through
+   *          this connection handler, or {@code null} if it does not
+   *          maintain them.
+   */
+  public OperationLatencyHistograms getOperationLatencies()
+  {
+    return null;
+  }
+
+
+
   /**
    * Retrieves an unmodifiable set of enabled SSL cipher suites configured for
    * this connection handler, if applicable. Implementations must return an
@@ -24,6 +24,7 @@ import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.DN;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.schema.AttributeType;
 import org.forgerock.opendj.server.config.server.GroupImplementationCfg;
 import org.opends.server.core.ServerContext;
 import org.opends.server.types.DirectoryException;
@@ -415,6 +416,21 @@ public abstract class Group<T extends GroupImplementationCfg>
    */
   public abstract boolean mayAlterMemberList();
 
+  /**
+   * Retrieves the attribute type which explicitly lists the direct
+   * members of this group in the group entry, if any.  Groups whose
+   * membership is computed (e.g., from a set of member URLs or from
+   * another group) return {@code null}.
+   *
+   * @return  The attribute type which lists the direct members of
+   *          this group, or {@code null} if the membership of this
+   *          group is not listed in the group entry.
+   */
+  public AttributeType getMemberAttributeType()
+  {
+    return null;
+  }
+
   /**
    * Attempt to make multiple changes to the group's member list.
    *
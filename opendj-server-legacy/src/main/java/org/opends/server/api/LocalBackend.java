@@ -40,6 +40,7 @@ import org.opends.server.core.ModifyDNOperation;
 import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.PersistentSearch;
 import org.opends.server.core.PersistentSearch.CancellationCallback;
+import org.opends.server.core.PersistentSearchDispatcher;
 import org.opends.server.core.SearchOperation;
 import org.opends.server.core.ServerContext;
 import org.opends.server.monitors.LocalBackendMonitor;
@@ -79,6 +80,8 @@ public abstract class LocalBackend<C extends Configuration> extends Backend<C>
 
   /** The set of persistent searches registered with this backend. */
   private final ConcurrentLinkedQueue<PersistentSearch> persistentSearches = new ConcurrentLinkedQueue<>();
+  /** Dispatches the changes of this backend to the persistent searches which may return the changed entries. */
+  private final PersistentSearchDispatcher persistentSearchDispatcher = new PersistentSearchDispatcher();
 
   /** The backend monitor associated with this backend. */
   private LocalBackendMonitor backendMonitor;
@@ -105,6 +108,7 @@ public abstract class LocalBackend<C extends Configuration> extends Backend<C>
       psearch.cancel();
     }
     persistentSearches.clear();
+    persistentSearchDispatcher.clear();
     closeBackend();
   }
 
@@ -668,6 +672,7 @@ public abstract class LocalBackend<C extends Configuration> extends Backend<C>
   public void registerPersistentSearch(PersistentSearch persistentSearch) throws DirectoryException
   {
     persistentSearches.add(persistentSearch);
+    persistentSearchDispatcher.register(persistentSearch);
 
     persistentSearch.registerCancellationCallback(new CancellationCallback()
     {
@@ -675,6 +680,7 @@ public abstract class LocalBackend<C extends Configuration> extends Backend<C>
       public void persistentSearchCancelled(PersistentSearch psearch)
       {
         persistentSearches.remove(psearch);
+        persistentSearchDispatcher.deregister(psearch);
       }
     });
   }
@@ -691,6 +697,18 @@ public abstract class LocalBackend<C extends Configuration> extends Backend<C>
     return persistentSearches;
   }
 
+  /**
+   * Returns the dispatcher notifying the persistent searches active against
+   * this local backend of the changes made to its entries.
+   *
+   * @return the dispatcher notifying the persistent searches active against
+   *         this local backend
+   */
+  public PersistentSearchDispatcher getPersistentSearchDispatcher()
+  {
+    return persistentSearchDispatcher;
+  }
+
   /**
    * Retrieves the total number of entries contained in this backend,
    * if that information is available.
@@ -344,13 +344,43 @@ public class Aci implements Comparable<Aci>
         //If an ACI has extOp or targetControl targets skip it because the
         //matchCtx right does not contain either ACI_EXT_OP or ACI_CONTROL at
         //this point.
+        return isApplicableToEntry(aci, matchCtx)
+            && isApplicableToCurrentAttribute(aci, matchCtx);
+      }
+    }
+
+    /**
+     * Test an ACI against the parts of the target match context which do not
+     * change while the attributes of the resource entry are evaluated: the
+     * rights, the resource entry DN and the resource entry itself. It must
+     * not be used when a control or an extended operation is evaluated.
+     *
+     * @param aci The ACI to test.
+     * @param matchCtx The target matching context containing all the info
+     * needed to match ACI targets.
+     * @return True if the ACI may be applicable to some attribute of the
+     * resource entry.
+     */
+    static boolean isApplicableToEntry(Aci aci, AciTargetMatchContext matchCtx) {
         return hasNoExtOpOrTargetControl(aci.getTargets())
             && haveSimilarRights(aci, matchCtx)
             && AciTargets.isTargetApplicable(aci, matchCtx)
-            && AciTargets.isTargetFilterApplicable(aci, matchCtx)
-            && AciTargets.isTargAttrFiltersApplicable(aci, matchCtx)
+            && AciTargets.isTargetFilterApplicable(aci, matchCtx);
+    }
+
+    /**
+     * Test an ACI already known to be applicable to the resource entry against
+     * the attribute type and value currently evaluated in the target match
+     * context.
+     *
+     * @param aci The ACI to test.
+     * @param matchCtx The target matching context containing all the info
+     * needed to match ACI targets.
+     * @return True if the ACI is applicable to the current attribute.
+     */
+    static boolean isApplicableToCurrentAttribute(Aci aci, AciTargetMatchContext matchCtx) {
+        return AciTargets.isTargAttrFiltersApplicable(aci, matchCtx)
             && AciTargets.isTargetAttrApplicable(aci, matchCtx);
-      }
     }
 
     private static boolean hasNoExtOpOrTargetControl(AciTargets aciTargets)
@@ -253,7 +253,7 @@ public class AciBody {
             if(!p.hasRights(getEvalRights(evalCtx))) {
                 continue;
             }
-            res=p.getBindRule().evaluate(evalCtx);
+            res=evalCtx.evaluateBindRule(p.getBindRule());
             // The evaluation result could be FAIL. Stop processing and return
             //FAIL. Maybe an internal search failed.
             if(res != TRUE && res != FALSE) {
@@ -19,12 +19,16 @@ package org.opends.server.authorization.dseecompat;
 import static org.opends.server.authorization.dseecompat.Aci.*;
 import static org.opends.server.authorization.dseecompat.AciHandler.*;
 import static org.opends.server.util.ServerConstants.OID_GET_EFFECTIVE_RIGHTS;
+import static org.opends.server.util.ServerConstants.OID_PERSISTENT_SEARCH;
 
 import java.net.InetAddress;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.DN;
@@ -34,9 +38,12 @@ import org.opends.server.api.ClientConnection;
 import org.opends.server.api.Group;
 import org.opends.server.controls.GetEffectiveRightsRequestControl;
 import org.opends.server.core.AddOperation;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.GroupManager;
 import org.opends.server.core.SearchOperation;
 import org.opends.server.types.AuthenticationInfo;
 import org.opends.server.types.AuthenticationType;
+import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Operation;
@@ -165,6 +172,27 @@ abstract class AciContainer implements AciTargetMatchContext, AciEvalContext {
   /** AuthenticationInfo class to use. */
   private final AuthenticationInfo authInfo;
 
+    /**
+     * Name of the operation attachment holding, for each client DN, the
+     * results of the bind rules evaluated during the operation.
+     */
+    private static final String BIND_RULE_RESULTS = "aciBindRuleResults";
+
+    /**
+     * True if the bind rule results may be reused for the whole operation.
+     * This is not the case for the generic access control check, which uses
+     * its own authentication information, nor for persistent searches, which
+     * are long lived and evaluated by the threads performing the changes.
+     */
+    private final boolean memoizeBindRules;
+
+    /** The DN of the resource entry for which the candidate ACIs were gathered. */
+    private DN candidateAcisDN;
+    /** The candidate ACIs gathered for the resource entry. */
+    private List<Aci> candidateAcis;
+    /** The candidate ACIs applicable to the resource entry, by rights. */
+    private final Map<Integer, List<Aci>> entryApplicableAcis = new HashMap<>();
+
   /**
      * This constructor is used by all currently supported LDAP operations
      * except the generic access control check that can be used by
@@ -240,6 +268,7 @@ abstract class AciContainer implements AciTargetMatchContext, AciEvalContext {
       //Reference the current authorization entry, so it can be put back
       //if an access proxy check was performed.
         this.rightsMask = rights;
+        this.memoizeBindRules = !isPersistentSearch(operation);
     }
 
     /**
@@ -263,6 +292,16 @@ abstract class AciContainer implements AciTargetMatchContext, AciEvalContext {
         hasGetEffectiveRightsControl = false;
         authzid = null;
         specificAttrs = null;
+        memoizeBindRules = false;
+    }
+
+    private static boolean isPersistentSearch(Operation operation) {
+      for (Control control : operation.getRequestControls()) {
+        if (OID_PERSISTENT_SEARCH.equals(control.getOID())) {
+          return true;
+        }
+      }
+      return false;
     }
 
   /**
@@ -650,14 +689,15 @@ abstract class AciContainer implements AciTargetMatchContext, AciEvalContext {
     @Override
     public boolean isMemberOf(Group<?> group) {
         try {
+            GroupManager groupManager = DirectoryServer.getGroupManager();
             if(useAuthzid) {
-                return group.isMember(this.authzid);
+                return groupManager.isMember(group, this.authzid, null);
             }
             Entry e = getClientEntry();
             if (e != null) {
-                return group.isMember(e);
+                return groupManager.isMember(group, e.getName(), e);
             }
-            return group.isMember(getClientDN());
+            return groupManager.isMember(group, getClientDN(), null);
         } catch (DirectoryException ex) {
             return false;
         }
@@ -796,6 +836,80 @@ abstract class AciContainer implements AciTargetMatchContext, AciEvalContext {
       return clientConnection.getSSF();
   }
 
+  @Override
+  public EnumEvalResult evaluateBindRule(BindRule bindRule) {
+      if (!memoizeBindRules || isGetEffectiveRightsEval
+          || bindRule.dependsOnResource()) {
+          return bindRule.evaluate(this);
+      }
+      Map<BindRule, EnumEvalResult> results = getBindRuleResults();
+      EnumEvalResult result = results.get(bindRule);
+      if (result == null) {
+          result = bindRule.evaluate(this);
+          // Do not remember failures, such as internal search errors
+          if (result == EnumEvalResult.TRUE || result == EnumEvalResult.FALSE) {
+              results.put(bindRule, result);
+          }
+      }
+      return result;
+  }
+
+  private Map<BindRule, EnumEvalResult> getBindRuleResults() {
+      Map<DN, Map<BindRule, EnumEvalResult>> resultsByClient =
+          operation.getAttachment(BIND_RULE_RESULTS);
+      if (resultsByClient == null) {
+          resultsByClient = new HashMap<>();
+          operation.setAttachment(BIND_RULE_RESULTS, resultsByClient);
+      }
+      DN clientDN = getClientDN();
+      Map<BindRule, EnumEvalResult> results = resultsByClient.get(clientDN);
+      if (results == null) {
+          results = new IdentityHashMap<>();
+          resultsByClient.put(clientDN, results);
+      }
+      return results;
+  }
+
+  /**
+   * Returns the operation being evaluated.
+   *
+   * @return The operation being evaluated.
+   */
+  Operation getOperation() {
+      return operation;
+  }
+
+  /**
+   * Returns the candidate ACIs which are applicable to the resource entry for
+   * the current rights, whatever the attribute being evaluated. The candidate
+   * ACIs are gathered once for the resource entry, and their target, target
+   * scope and target filter keywords are only evaluated once per rights.
+   * This method must not be used when a control or an extended operation is
+   * evaluated.
+   *
+   * @param aciList The ACI list to gather the candidate ACIs from.
+   * @return The candidate ACIs applicable to the resource entry.
+   */
+  List<Aci> getEntryApplicableAcis(AciList aciList) {
+      DN resourceDN = getResourceDN();
+      if (candidateAcis == null || !resourceDN.equals(candidateAcisDN)) {
+          candidateAcis = aciList.getCandidateAcis(resourceDN);
+          candidateAcisDN = resourceDN;
+          entryApplicableAcis.clear();
+      }
+      List<Aci> acis = entryApplicableAcis.get(rightsMask);
+      if (acis == null) {
+          acis = new ArrayList<>();
+          for (Aci aci : candidateAcis) {
+              if (Aci.isApplicableToEntry(aci, this)) {
+                  acis.add(aci);
+              }
+          }
+          entryApplicableAcis.put(rightsMask, acis);
+      }
+      return acis;
+  }
+
   @Override
   public String toString()
   {
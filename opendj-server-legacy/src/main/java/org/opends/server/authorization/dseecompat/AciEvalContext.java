@@ -296,4 +296,14 @@ public interface AciEvalContext
      * @return The current SSF of the connection.
      */
     int getCurrentSSF();
+
+    /**
+     * Evaluates the provided bind rule against this evaluation context. The
+     * result may be reused from a previous evaluation of the same bind rule
+     * for the same client during the same operation.
+     *
+     * @param bindRule The bind rule to evaluate.
+     * @return An enumeration evaluation result.
+     */
+    EnumEvalResult evaluateBindRule(BindRule bindRule);
 }
@@ -17,6 +17,7 @@
  */
 package org.opends.server.authorization.dseecompat;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.SortedSet;
@@ -54,6 +55,8 @@ import org.opends.server.types.Entry;
 import org.opends.server.types.InitializationException;
 import org.opends.server.types.Modification;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.Privilege;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SearchResultEntry;
@@ -477,6 +480,19 @@ public final class AciHandler extends
    * @return True if access is allowed.
    */
   boolean accessAllowed(AciContainer container)
+  {
+    final long aciToken = OperationPhaseTimer.start(container.getOperation());
+    try
+    {
+      return accessAllowed0(container);
+    }
+    finally
+    {
+      OperationPhaseTimer.stop(container.getOperation(), Phase.ACCESS_CONTROL, aciToken);
+    }
+  }
+
+  private boolean accessAllowed0(AciContainer container)
   {
     DN dn = container.getResourceDN();
     // For ACI_WRITE_ADD and ACI_WRITE_DELETE set the ACI_WRITE
@@ -512,13 +528,20 @@ public final class AciHandler extends
       }
     }
 
-    // First get all allowed candidate ACIs.
-    List<Aci> candidates = aciList.getCandidateAcis(dn);
     /*
      * Create an applicable list of ACIs by target matching each
      * candidate ACI against the container's target match view.
      */
-    createApplicableList(candidates, container);
+    if (container.hasRights(ACI_EXT_OP) || container.hasRights(ACI_CONTROL))
+    {
+      createApplicableList(aciList.getCandidateAcis(dn), container);
+    }
+    else
+    {
+      // The candidate ACIs applicable to the entry are remembered by the container
+      // while the attributes of the entry are evaluated.
+      createAttributeApplicableList(container.getEntryApplicableAcis(aciList), container);
+    }
     // Evaluate the applicable list.
     final boolean ret = testApplicableLists(container);
     // Build summary string if doing geteffectiverights eval.
@@ -896,6 +919,44 @@ public final class AciHandler extends
     targetMatchCtx.setDenyList(denys);
   }
 
+  /**
+   * Creates the allow and deny ACI lists for the current attribute of the
+   * provided target match context, from the ACIs already known to be
+   * applicable to its resource entry. These lists are stored in the
+   * evaluation context.
+   *
+   * @param entryAcis
+   *          The ACIs applicable to the resource entry.
+   * @param targetMatchCtx
+   *          Target matching context to use for testing each ACI.
+   */
+  private void createAttributeApplicableList(List<Aci> entryAcis,
+      AciTargetMatchContext targetMatchCtx)
+  {
+    List<Aci> denys = new ArrayList<>();
+    List<Aci> allows = new ArrayList<>();
+    for (Aci aci : entryAcis)
+    {
+      if (Aci.isApplicableToCurrentAttribute(aci, targetMatchCtx))
+      {
+        if (aci.hasAccessType(EnumAccessType.DENY))
+        {
+          denys.add(aci);
+        }
+        if (aci.hasAccessType(EnumAccessType.ALLOW))
+        {
+          allows.add(aci);
+        }
+      }
+      if (targetMatchCtx.getTargAttrFiltersMatch())
+      {
+        targetMatchCtx.setTargAttrFiltersMatch(false);
+      }
+    }
+    targetMatchCtx.setAllowList(allows);
+    targetMatchCtx.setDenyList(denys);
+  }
+
   /**
    * Gathers all of the attribute types in an entry along with the
    * "objectclass" attribute type in a List. The "objectclass" attribute
@@ -42,6 +42,8 @@ public class BindRule {
     private final EnumBooleanTypes booleanType;
     /** The keyword of a simple bind rule. */
     private final EnumBindRuleKeyword keyword;
+    /** True if the evaluation result depends on the resource entry. */
+    private final boolean dependsOnResource;
 
     /** Regular expression group position of a bind rule keyword. */
     private static final int keywordPos = 1;
@@ -90,6 +92,8 @@ public class BindRule {
         this.booleanType = null;
         this.left = null;
         this.right = null;
+        this.dependsOnResource = keyword == EnumBindRuleKeyword.USERATTR
+            || (rule instanceof UserDN && ((UserDN) rule).dependsOnResource());
     }
 
     /*
@@ -130,6 +134,7 @@ public class BindRule {
         this.booleanType = booleanType;
         this.left = left;
         this.right = right;
+        this.dependsOnResource = left.dependsOnResource || right.dependsOnResource;
     }
 
     /*
@@ -471,6 +476,17 @@ public class BindRule {
         return EnumEvalResult.negateIfNeeded(ret, negate);
     }
 
+    /**
+     * Indicates whether the result of the evaluation of this bind rule
+     * depends on the resource entry (userattr keyword, or userdn keyword with
+     * the "self" or "parent" types), rather than only on the client and its
+     * connection.
+     * @return True if the evaluation result depends on the resource entry.
+     */
+    boolean dependsOnResource() {
+        return dependsOnResource;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
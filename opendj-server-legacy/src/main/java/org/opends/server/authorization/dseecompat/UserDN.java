@@ -149,6 +149,21 @@ public class UserDN implements KeywordBindRule {
         }
     }
 
+    /**
+     * Indicates whether the evaluation of this userdn bind rule depends on the
+     * resource entry, which is the case of the "self" and "parent" types.
+     * @return True if the evaluation depends on the resource entry.
+     */
+    boolean dependsOnResource() {
+        for (UserDNTypeURL dnTypeURL : urlList) {
+            EnumUserDNType userDNType = dnTypeURL.getUserDNType();
+            if (userDNType == EnumUserDNType.SELF || userDNType == EnumUserDNType.PARENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Performs the evaluation of a userdn bind rule based on the
      * evaluation context passed to it. The evaluation stops when there
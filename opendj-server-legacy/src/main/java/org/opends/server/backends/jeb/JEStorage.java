@@ -454,6 +454,15 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
       }
     }
 
+    @Override
+    public List<ByteString> multiRead(final TreeName treeName, final List<? extends ByteSequence> keys)
+    {
+      try (final Cursor<ByteString, ByteString> cursor = openCursor(treeName))
+      {
+        return StorageUtils.multiRead(cursor, keys);
+      }
+    }
+
     @Override
     public boolean update(final TreeName treeName, final ByteSequence key, final UpdateFunction f)
     {
@@ -537,6 +546,12 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
       return delegate.read(treeName, key);
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      return delegate.multiRead(treeName, keys);
+    }
+
     @Override
     public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
     {
@@ -626,6 +641,12 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
       return null;
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      return new ArrayList<>(Collections.<ByteString> nCopies(keys.size(), null));
+    }
+
     @Override
     public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
     {
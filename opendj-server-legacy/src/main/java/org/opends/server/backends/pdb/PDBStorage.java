@@ -520,6 +520,15 @@ public final class PDBStorage implements Storage, Backupable, ConfigurationChang
       }
     }
 
+    @Override
+    public List<ByteString> multiRead(final TreeName treeName, final List<? extends ByteSequence> keys)
+    {
+      try (final Cursor<ByteString, ByteString> cursor = openCursor(treeName))
+      {
+        return StorageUtils.multiRead(cursor, keys);
+      }
+    }
+
     @Override
     public boolean update(final TreeName treeName, final ByteSequence key, final UpdateFunction f)
     {
@@ -676,6 +685,12 @@ public final class PDBStorage implements Storage, Backupable, ConfigurationChang
       return delegate.read(treeName, key);
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      return delegate.multiRead(treeName, keys);
+    }
+
     @Override
     public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
     {
@@ -805,6 +820,12 @@ public final class PDBStorage implements Storage, Backupable, ConfigurationChang
       return null;
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      return new ArrayList<>(Collections.<ByteString> nCopies(keys.size(), null));
+    }
+
     @Override
     public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
     {
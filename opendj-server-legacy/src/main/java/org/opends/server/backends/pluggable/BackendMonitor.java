@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
@@ -80,6 +81,13 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
   private final HashMap<SearchFilter, FilterStats> filterToStats = new HashMap<>();
   private final AtomicInteger indexedSearchCount = new AtomicInteger();
   private final AtomicInteger unindexedSearchCount = new AtomicInteger();
+  private final AtomicLong parallelSearchCount = new AtomicLong();
+  private final AtomicLong parallelSearchBatchCount = new AtomicLong();
+  private final AtomicLong parallelSearchCandidateCount = new AtomicLong();
+  private final AtomicLong parallelSearchThreadCount = new AtomicLong();
+  private final AtomicLong writeCoalescingBatchCount = new AtomicLong();
+  private final AtomicLong writeCoalescingWriteCount = new AtomicLong();
+  private final AtomicLong writeCoalescingRollbackCount = new AtomicLong();
 
   /**
    * Creates a new backend monitor.
@@ -118,6 +126,25 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
       monitorAttrs.add("filter-use-unindexed", unindexedSearchCount);
     }
 
+    final long batchCount = parallelSearchBatchCount.get();
+    if (batchCount > 0)
+    {
+      monitorAttrs.add("parallel-search-count", parallelSearchCount.get());
+      monitorAttrs.add("parallel-search-batch-count", batchCount);
+      monitorAttrs.add("parallel-search-average-batch-size", (double) parallelSearchCandidateCount.get() / batchCount);
+      monitorAttrs.add("parallel-search-average-parallelism", (double) parallelSearchThreadCount.get() / batchCount);
+    }
+
+    final long writeBatchCount = writeCoalescingBatchCount.get();
+    final long rollbackCount = writeCoalescingRollbackCount.get();
+    if (writeBatchCount > 0 || rollbackCount > 0)
+    {
+      monitorAttrs.add("write-coalescing-batch-count", writeBatchCount);
+      monitorAttrs.add("write-coalescing-average-batch-size",
+          writeBatchCount > 0 ? (double) writeCoalescingWriteCount.get() / writeBatchCount : 0.0);
+      monitorAttrs.add("write-coalescing-rollback-count", rollbackCount);
+    }
+
     return monitorAttrs;
   }
 
@@ -283,6 +310,42 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
     }
   }
 
+  /** Increments the statistics counter to include an indexed search whose candidates are fetched in parallel. */
+  void incrementParallelSearchCount()
+  {
+    parallelSearchCount.getAndIncrement();
+  }
+
+  /**
+   * Updates the parallel search statistics with a batch of candidate entries fetched in parallel.
+   *
+   * @param batchSize The number of candidate entries in the batch.
+   * @param threadCount The number of threads which took part in fetching the batch.
+   */
+  void updateParallelSearchBatchStats(int batchSize, int threadCount)
+  {
+    parallelSearchBatchCount.getAndIncrement();
+    parallelSearchCandidateCount.getAndAdd(batchSize);
+    parallelSearchThreadCount.getAndAdd(threadCount);
+  }
+
+  /**
+   * Updates the write coalescing statistics with a batch of write operations committed together.
+   *
+   * @param batchSize The number of write operations in the batch.
+   */
+  void updateWriteCoalescingStats(int batchSize)
+  {
+    writeCoalescingBatchCount.getAndIncrement();
+    writeCoalescingWriteCount.getAndAdd(batchSize);
+  }
+
+  /** Increments the number of batches of write operations rolled back and retried one operation at a time. */
+  void incrementWriteCoalescingRollbackCount()
+  {
+    writeCoalescingRollbackCount.getAndIncrement();
+  }
+
   private void removeLowestHit()
   {
     while (!filterToStats.isEmpty() && filterToStats.size() > maxEntries)
@@ -96,7 +96,7 @@ class DefaultIndex extends AbstractTree implements Index
   final void afterOpen(WriteableTransaction txn, boolean createOnDemand)
   {
     final EnumSet<IndexFlag> flags = state.getIndexFlags(txn, getName());
-    codec = flags.contains(COMPACTED) ? CODEC_V2 : CODEC_V1;
+    codec = getCodec(flags);
     if (cryptoSuite.isEncrypted())
     {
       codec = new EntryIDSet.EntryIDSetCodecV3(codec, cryptoSuite);
@@ -110,6 +110,15 @@ class DefaultIndex extends AbstractTree implements Index
     }
   }
 
+  private static EntryIDSetCodec getCodec(EnumSet<IndexFlag> flags)
+  {
+    if (flags.contains(BITMAP))
+    {
+      return CODEC_V4;
+    }
+    return flags.contains(COMPACTED) ? CODEC_V2 : CODEC_V1;
+  }
+
   @Override
   public String valueToString(ByteString value)
   {
@@ -27,16 +27,23 @@ import static org.opends.server.protocols.ldap.LDAPResultCode.*;
 import static org.opends.server.types.AdditionalLogItem.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -52,6 +59,7 @@ import org.forgerock.opendj.ldap.ByteSequence;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.DecodeException;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.forgerock.opendj.ldap.SortKey;
@@ -98,6 +106,7 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Modification;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
 import org.opends.server.types.Privilege;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.VirtualAttributeRule;
@@ -114,6 +123,19 @@ public class EntryContainer
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
+  /** Minimum number of candidates for fetching them in parallel, also used as the size of the first batch. */
+  private static final int MIN_PARALLEL_SEARCH_CANDIDATES = 64;
+  /** Maximum number of candidates fetched in parallel at once. */
+  private static final int MAX_PARALLEL_SEARCH_BATCH_SIZE = 1024;
+  /** Number of candidates fetched in a single read transaction by a thread of the search pool. */
+  private static final int PARALLEL_SEARCH_SLICE_SIZE = 16;
+  /** Number of candidates read at once from the entry tree by the thread processing the search. */
+  private static final int SEARCH_READ_BATCH_SIZE = 16;
+  /** Number of candidates read at once from the entry tree when sorting the search results. */
+  private static final int SORT_READ_BATCH_SIZE = 256;
+  /** Directory, relative to the instance root, where the keys of large server side sorts are spilled. */
+  private static final String SORT_TMP_DIR = "sort-tmp";
+
   /** The name of the entry tree. */
   private static final String ID2ENTRY_TREE_NAME = ID2ENTRY_INDEX_NAME;
   /** The name of the DN tree. */
@@ -760,6 +782,8 @@ public class EntryContainer
           // requires us to use an entryIDSet where the entryIDs are ordered
           // so further paging can restart where it previously stopped
           long[] reorderedCandidateEntryIDs;
+          // Set when the sorted candidates have been truncated to the size limit
+          List<SortKey> truncatedSortKeys = null;
           if (candidateEntryIDs == null)
           {
             if (processSearchWithVirtualAttributeRule(searchOperation, true))
@@ -798,7 +822,13 @@ public class EntryContainer
               try
               {
                 List<SortKey> sortKeys = sortRequest.getSortKeys();
-                reorderedCandidateEntryIDs = sort(txn, candidateEntryIDs, searchOperation, sortKeys, vlvRequest);
+                int maxSortedResults = getMaxSortedResults(searchOperation, pageRequest, vlvRequest, candidateEntryIDs);
+                reorderedCandidateEntryIDs =
+                    sort(txn, candidateEntryIDs, searchOperation, sortKeys, vlvRequest, maxSortedResults);
+                if (reorderedCandidateEntryIDs != null && reorderedCandidateEntryIDs.length == maxSortedResults)
+                {
+                  truncatedSortKeys = sortKeys;
+                }
               }
               catch (DirectoryException de)
               {
@@ -853,7 +883,22 @@ public class EntryContainer
           if (reorderedCandidateEntryIDs != null)
           {
             rootContainer.getMonitorProvider().incrementIndexedSearchCount();
-            searchIndexed(txn, reorderedCandidateEntryIDs, candidatesAreInScope, searchOperation, pageRequest);
+            final boolean allCandidatesReturned =
+                searchIndexed(txn, reorderedCandidateEntryIDs, candidatesAreInScope, searchOperation, pageRequest);
+            if (truncatedSortKeys != null
+                && allCandidatesReturned
+                && searchOperation.getEntriesSent() < searchOperation.getSizeLimit())
+            {
+              // Some of the first sorted candidates were not returned, e.g. because they are hidden by access
+              // controls, so the candidates which follow them in the sort order must be returned as well.
+              // This is not the case if the search was stopped, e.g. by its time limit or by a lost connection.
+              final long[] sortedCandidateEntryIDs =
+                  sort(txn, candidateEntryIDs, searchOperation, truncatedSortKeys, null, 0);
+              final CandidateMatcher matcher = new CandidateMatcher(candidatesAreInScope, searchScope, aBaseDN,
+                  isManageDsaITOperation(searchOperation), searchOperation.getFilter());
+              returnCandidates(txn, sortedCandidateEntryIDs, reorderedCandidateEntryIDs.length, matcher,
+                  searchOperation, null);
+            }
           }
           else
           {
@@ -889,6 +934,27 @@ public class EntryContainer
           return null;
         }
 
+        /**
+         * Returns the maximum number of sorted candidates needed to process a search without VLV nor paged results
+         * control, or {@code 0} if all of them are needed. Only the candidates up to the first exceeding the size limit
+         * are needed, unless the lookthrough limit is exceeded, which is checked against all the candidates.
+         */
+        private int getMaxSortedResults(final SearchOperation searchOperation, final PagedResultsControl pageRequest,
+            final VLVRequestControl vlvRequest, final EntryIDSet candidateEntryIDs)
+        {
+          final int sizeLimit = searchOperation.getSizeLimit();
+          if (vlvRequest != null || pageRequest != null || sizeLimit <= 0 || sizeLimit == Integer.MAX_VALUE)
+          {
+            return 0;
+          }
+          final int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
+          if (lookthroughLimit > 0 && (!candidateEntryIDs.isDefined() || candidateEntryIDs.size() > lookthroughLimit))
+          {
+            return 0;
+          }
+          return sizeLimit + 1;
+        }
+
         private int getEntryIDSetLimit(final SearchOperation searchOperation)
         {
           final int lookThroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
@@ -1238,8 +1304,10 @@ public class EntryContainer
     final Entry cacheEntry = entryCache.getEntry(backendID, entryID.longValue());
     if (cacheEntry != null)
     {
+      OperationPhaseTimer.recordEntryCacheLookups(1, 0);
       return cacheEntry;
     }
+    OperationPhaseTimer.recordEntryCacheLookups(0, 1);
 
     final Entry entry = id2entry.get(txn, entryID);
     if (entry != null)
@@ -1251,6 +1319,54 @@ public class EntryContainer
     return entry;
   }
 
+  /**
+   * Returns the entries corresponding to the provided entry IDs. The entries missing from the entry cache are read
+   * in a single pass over the entry tree, which is cheaper than reading them one at a time when the IDs are in
+   * ascending order.
+   *
+   * @param txn a non null transaction
+   * @param entryIDs
+   *          the ids of the entries to retrieve, preferably in ascending order
+   * @return the entries corresponding to the provided entryIDs, holding {@code null} for the missing entries
+   * @throws DirectoryException
+   *           If an error occurs retrieving the entries
+   */
+  private Entry[] getEntries(ReadableTransaction txn, EntryID[] entryIDs) throws DirectoryException
+  {
+    final EntryCache<?> entryCache = getEntryCache();
+    final Entry[] entries = new Entry[entryIDs.length];
+    final int[] missingIndexes = new int[entryIDs.length];
+    final List<EntryID> missingIDs = new ArrayList<>(entryIDs.length);
+    for (int i = 0; i < entryIDs.length; i++)
+    {
+      entries[i] = entryCache.getEntry(backendID, entryIDs[i].longValue());
+      if (entries[i] == null)
+      {
+        missingIndexes[missingIDs.size()] = i;
+        missingIDs.add(entryIDs[i]);
+      }
+    }
+    OperationPhaseTimer.recordEntryCacheLookups(entryIDs.length - missingIDs.size(), missingIDs.size());
+    if (missingIDs.isEmpty())
+    {
+      return entries;
+    }
+
+    final Entry[] readEntries = id2entry.get(txn, missingIDs);
+    for (int i = 0; i < readEntries.length; i++)
+    {
+      final Entry entry = readEntries[i];
+      if (entry != null)
+      {
+        // Put the entry in the cache making sure not to overwrite a newer copy
+        // that may have been inserted since the time we read the cache.
+        entryCache.putEntryIfAbsent(entry, backendID, missingIDs.get(i).longValue());
+        entries[missingIndexes[i]] = entry;
+      }
+    }
+    return entries;
+  }
+
   /**
    * We were able to obtain a set of candidate entry IDs for the search from the indexes.
    * <p>
@@ -1271,10 +1387,12 @@ public class EntryContainer
    *          The search operation.
    * @param pageRequest
    *          A Paged Results control, or null if none.
+   * @return {@code true} if all the candidates have been processed, {@code false} if the search
+   *         stopped before, e.g. because the page is full or a limit was exceeded
    * @throws DirectoryException
    *           If an error prevented the search from being processed.
    */
-  private void searchIndexed(ReadableTransaction txn, long[] entryIDReorderedSet, boolean candidatesAreInScope,
+  private boolean searchIndexed(ReadableTransaction txn, long[] entryIDReorderedSet, boolean candidatesAreInScope,
       SearchOperation searchOperation, PagedResultsControl pageRequest) throws DirectoryException,
       CanceledOperationException
   {
@@ -1316,45 +1434,28 @@ public class EntryContainer
     }
 
     // Iterate through the index candidates.
+    boolean allCandidatesReturned = false;
     if (continueSearch)
     {
-      final SearchFilter filter = searchOperation.getFilter();
-      for (int i = findStartIndex(beginEntryID, entryIDReorderedSet); i < entryIDReorderedSet.length; i++)
+      final CandidateMatcher matcher =
+          new CandidateMatcher(candidatesAreInScope, searchScope, aBaseDN, manageDsaIT, searchOperation.getFilter());
+      final int startIndex = findStartIndex(beginEntryID, entryIDReorderedSet);
+      final CandidatesOutcome outcome;
+      if (rootContainer.getSearchPool() != null
+          && entryIDReorderedSet.length - startIndex >= MIN_PARALLEL_SEARCH_CANDIDATES)
       {
-        EntryID entryID = new EntryID(entryIDReorderedSet[i]);
-        Entry entry;
-        try
-        {
-          entry = getEntry(txn, entryID);
-        }
-        catch (Exception e)
-        {
-          logger.traceException(e);
-          continue;
-        }
-
-        // Process the candidate entry.
-        if (entry != null
-              && isInScope(candidatesAreInScope, searchScope, aBaseDN, entry)
-              && (manageDsaIT || entry.getReferralURLs() == null)
-              && filter.matchesEntry(entry))
-          {
-            if (isPageFull(searchOperation, pageRequest))
-            {
-              // Set the cookie to remember where we were.
-              addPagedResultsControl(searchOperation, pageRequest, entryID.toByteString());
-              return;
-            }
-
-            if (!searchOperation.returnEntry(entry, null))
-            {
-              // We have been told to discontinue processing of the search.
-              // This could be due to size limit exceeded or operation cancelled
-              break;
-            }
-          }
+        outcome = returnCandidatesInParallel(entryIDReorderedSet, startIndex, matcher, searchOperation, pageRequest);
+      }
+      else
+      {
+        outcome = returnCandidates(txn, entryIDReorderedSet, startIndex, matcher, searchOperation, pageRequest);
+      }
+      if (outcome == CandidatesOutcome.PAGE_FULL)
+      {
+        return false;
       }
       searchOperation.checkIfCanceled(false);
+      allCandidatesReturned = outcome == CandidatesOutcome.ALL_RETURNED;
     }
 
     // Before we return success from the search we must ensure the base entry
@@ -1372,6 +1473,333 @@ public class EntryContainer
 
     // Indicate no more pages.
     addPagedResultsControl(searchOperation, pageRequest, null);
+    return allCandidatesReturned;
+  }
+
+  /** How returning the candidates of an indexed search ended. */
+  private enum CandidatesOutcome
+  {
+    /** All the candidates have been processed. */
+    ALL_RETURNED,
+    /** The page is full, and the paged results control has been set. */
+    PAGE_FULL,
+    /** The search operation asked to stop, e.g. because of its size or time limit. */
+    STOPPED
+  }
+
+  /**
+   * Returns the matching candidates in small batches read by the calling thread.
+   *
+   * @return how returning the candidates ended
+   */
+  private CandidatesOutcome returnCandidates(ReadableTransaction txn, long[] entryIDs, int startIndex,
+      CandidateMatcher matcher, SearchOperation searchOperation, PagedResultsControl pageRequest)
+  {
+    for (int from = startIndex; from < entryIDs.length; from += SEARCH_READ_BATCH_SIZE)
+    {
+      final Entry[] entries =
+          matcher.getMatchingEntries(txn, entryIDs, from, Math.min(entryIDs.length, from + SEARCH_READ_BATCH_SIZE));
+      for (int i = 0; i < entries.length; i++)
+      {
+        if (entries[i] == null)
+        {
+          continue;
+        }
+        if (isPageFull(searchOperation, pageRequest))
+        {
+          // Set the cookie to remember where we were.
+          addPagedResultsControl(searchOperation, pageRequest, new EntryID(entryIDs[from + i]).toByteString());
+          return CandidatesOutcome.PAGE_FULL;
+        }
+
+        if (!searchOperation.returnEntry(entries[i], null))
+        {
+          // We have been told to discontinue processing of the search.
+          // This could be due to size limit exceeded or operation cancelled
+          return CandidatesOutcome.STOPPED;
+        }
+      }
+    }
+    return CandidatesOutcome.ALL_RETURNED;
+  }
+
+  /**
+   * Returns the matching candidates after having them fetched and filtered in batches by the search pool. The next
+   * batch is fetched while the current one is being returned. Batches start small so that searches with a low size
+   * limit do not fetch many unneeded entries, then double up to {@link #MAX_PARALLEL_SEARCH_BATCH_SIZE}.
+   *
+   * @return how returning the candidates ended
+   */
+  private CandidatesOutcome returnCandidatesInParallel(long[] entryIDs, int startIndex, CandidateMatcher matcher,
+      SearchOperation searchOperation, PagedResultsControl pageRequest) throws CanceledOperationException
+  {
+    final BackendMonitor monitor = rootContainer.getMonitorProvider();
+    monitor.incrementParallelSearchCount();
+
+    int batchSize = MIN_PARALLEL_SEARCH_CANDIDATES;
+    CandidatesBatch batch = fetchCandidates(entryIDs, startIndex, batchSize, matcher);
+    try
+    {
+      while (batch != null)
+      {
+        final Entry[] entries = batch.join();
+        monitor.updateParallelSearchBatchStats(entries.length, batch.getThreadCount());
+
+        final CandidatesBatch currentBatch = batch;
+        batchSize = Math.min(batchSize * 2, MAX_PARALLEL_SEARCH_BATCH_SIZE);
+        batch = currentBatch.to < entryIDs.length
+            ? fetchCandidates(entryIDs, currentBatch.to, batchSize, matcher) : null;
+
+        for (int i = 0; i < entries.length; i++)
+        {
+          if (entries[i] == null)
+          {
+            continue;
+          }
+          if (isPageFull(searchOperation, pageRequest))
+          {
+            // Set the cookie to remember where we were.
+            final EntryID entryID = new EntryID(entryIDs[currentBatch.from + i]);
+            addPagedResultsControl(searchOperation, pageRequest, entryID.toByteString());
+            return CandidatesOutcome.PAGE_FULL;
+          }
+
+          if (!searchOperation.returnEntry(entries[i], null))
+          {
+            // We have been told to discontinue processing of the search.
+            // This could be due to size limit exceeded or operation cancelled
+            return CandidatesOutcome.STOPPED;
+          }
+        }
+        searchOperation.checkIfCanceled(false);
+      }
+      return CandidatesOutcome.ALL_RETURNED;
+    }
+    finally
+    {
+      if (batch != null)
+      {
+        batch.cancel();
+      }
+    }
+  }
+
+  private CandidatesBatch fetchCandidates(long[] entryIDs, int from, int batchSize, CandidateMatcher matcher)
+  {
+    final CandidatesBatch batch = new CandidatesBatch(entryIDs, from, Math.min(entryIDs.length, from + batchSize));
+    final FetchCandidatesTask task = new FetchCandidatesTask(batch, batch.from, batch.to, matcher);
+    // The pool may have been replaced or removed by a configuration change since the search started
+    final ForkJoinPool searchPool = rootContainer.getSearchPool();
+    if (searchPool != null)
+    {
+      try
+      {
+        batch.task = searchPool.submit(task);
+        return batch;
+      }
+      catch (RejectedExecutionException e)
+      {
+        logger.traceException(e);
+      }
+    }
+    task.fetch();
+    return batch;
+  }
+
+  /** Decides whether a candidate entry must be returned by an indexed search. Instances are thread safe. */
+  private final class CandidateMatcher
+  {
+    private final boolean candidatesAreInScope;
+    private final SearchScope searchScope;
+    private final DN baseDN;
+    private final boolean manageDsaIT;
+    private final SearchFilter filter;
+
+    CandidateMatcher(boolean candidatesAreInScope, SearchScope searchScope, DN baseDN, boolean manageDsaIT,
+        SearchFilter filter)
+    {
+      this.candidatesAreInScope = candidatesAreInScope;
+      this.searchScope = searchScope;
+      this.baseDN = baseDN;
+      this.manageDsaIT = manageDsaIT;
+      this.filter = filter;
+    }
+
+    /**
+     * Returns the candidate entry if it must be returned by the search.
+     *
+     * @return the candidate entry, or {@code null} if it does not exist or it must not be returned
+     */
+    Entry getMatchingEntry(ReadableTransaction txn, EntryID entryID)
+    {
+      try
+      {
+        final Entry entry = getEntry(txn, entryID);
+        if (entry != null && matches(entry))
+        {
+          return entry;
+        }
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+      }
+      return null;
+    }
+
+    /**
+     * Returns the candidate entries which must be returned by the search, reading them together from the entry tree.
+     *
+     * @return the candidate entries indexed from {@code from}, holding {@code null} for the candidates which do not
+     *         exist or must not be returned
+     */
+    Entry[] getMatchingEntries(ReadableTransaction txn, long[] entryIDs, int from, int to)
+    {
+      final EntryID[] candidateIDs = new EntryID[to - from];
+      for (int i = 0; i < candidateIDs.length; i++)
+      {
+        candidateIDs[i] = new EntryID(entryIDs[from + i]);
+      }
+
+      final Entry[] entries;
+      try
+      {
+        entries = getEntries(txn, candidateIDs);
+      }
+      catch (Exception e)
+      {
+        // Read the candidates one at a time so that a faulty entry does not discard the others
+        logger.traceException(e);
+        final Entry[] matchingEntries = new Entry[candidateIDs.length];
+        for (int i = 0; i < candidateIDs.length; i++)
+        {
+          matchingEntries[i] = getMatchingEntry(txn, candidateIDs[i]);
+        }
+        return matchingEntries;
+      }
+
+      for (int i = 0; i < entries.length; i++)
+      {
+        if (entries[i] != null && !matches(entries[i]))
+        {
+          entries[i] = null;
+        }
+      }
+      return entries;
+    }
+
+    private boolean matches(Entry entry)
+    {
+      try
+      {
+        return isInScope(candidatesAreInScope, searchScope, baseDN, entry)
+            && (manageDsaIT || entry.getReferralURLs() == null)
+            && filter.matchesEntry(entry);
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        return false;
+      }
+    }
+  }
+
+  /** A range of candidate entry IDs, along with the matching entries once fetched. */
+  private static final class CandidatesBatch
+  {
+    private final long[] entryIDs;
+    private final int from;
+    private final int to;
+    /** The matching entries, indexed from {@link #from}. Non matching candidates are {@code null}. */
+    private final Entry[] entries;
+    private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    /** The task fetching this batch, or null if it was fetched by the calling thread. */
+    private ForkJoinTask<?> task;
+
+    CandidatesBatch(long[] entryIDs, int from, int to)
+    {
+      this.entryIDs = entryIDs;
+      this.from = from;
+      this.to = to;
+      this.entries = new Entry[to - from];
+    }
+
+    Entry[] join()
+    {
+      if (task != null)
+      {
+        task.join();
+      }
+      return entries;
+    }
+
+    int getThreadCount()
+    {
+      return threads.size();
+    }
+
+    void cancel()
+    {
+      if (task != null)
+      {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /** Recursively splits a batch of candidates so that each thread of the search pool fetches a slice of it. */
+  private final class FetchCandidatesTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final CandidatesBatch batch;
+    private final int from;
+    private final int to;
+    private final CandidateMatcher matcher;
+
+    FetchCandidatesTask(CandidatesBatch batch, int from, int to, CandidateMatcher matcher)
+    {
+      this.batch = batch;
+      this.from = from;
+      this.to = to;
+      this.matcher = matcher;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from <= PARALLEL_SEARCH_SLICE_SIZE)
+      {
+        fetch();
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(new FetchCandidatesTask(batch, from, middle, matcher),
+                new FetchCandidatesTask(batch, middle, to, matcher));
+    }
+
+    void fetch()
+    {
+      batch.threads.add(Thread.currentThread());
+      try
+      {
+        // Each slice reads in its own transaction because transactions cannot be shared amongst threads
+        storage.read(new ReadOperation<Void>()
+        {
+          @Override
+          public Void run(ReadableTransaction txn) throws Exception
+          {
+            final Entry[] entries = matcher.getMatchingEntries(txn, batch.entryIDs, from, to);
+            System.arraycopy(entries, 0, batch.entries, from - batch.from, entries.length);
+            return null;
+          }
+        });
+      }
+      catch (Exception e)
+      {
+        throw new StorageRuntimeException(e);
+      }
+    }
   }
 
   private int findStartIndex(Long beginEntryID, long[] entryIDReorderedSet)
@@ -1453,7 +1881,7 @@ public class EntryContainer
 
     try
     {
-      storage.write(new WriteOperation()
+      rootContainer.getWriteCoalescer().write(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -1579,7 +2007,7 @@ public class EntryContainer
     final IndexBuffer indexBuffer = new IndexBuffer();
     try
     {
-      storage.write(new WriteOperation()
+      rootContainer.getWriteCoalescer().write(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -1820,8 +2248,10 @@ public class EntryContainer
       final Entry entry = entryCache.getEntry(entryDN);
       if (entry != null)
       {
+        OperationPhaseTimer.recordEntryCacheLookups(1, 0);
         return entry;
       }
+      OperationPhaseTimer.recordEntryCacheLookups(0, 1);
     }
 
     final EntryID entryID = dn2id.get(txn, entryDN);
@@ -1862,7 +2292,7 @@ public class EntryContainer
     final ByteString encodedNewEntry = id2entry.encode(newEntry);
     try
     {
-      storage.write(new WriteOperation()
+      rootContainer.getWriteCoalescer().write(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -2536,128 +2966,181 @@ public class EntryContainer
     return baseEntry;
   }
 
+  /**
+   * Sorts the candidates matching the search.
+   *
+   * @param maxResults
+   *          the maximum number of sorted candidates needed when there is no VLV request, or {@code 0} if all of them
+   *          are needed
+   */
   private long[] sort(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
-      List<SortKey> sortKeys, VLVRequestControl vlvRequest) throws DirectoryException
+      List<SortKey> sortKeys, VLVRequestControl vlvRequest, int maxResults) throws DirectoryException
   {
     if (!entryIDSet.isDefined())
     {
       return null;
     }
 
+    // See if there is a VLV request to further pare down the set of results, and if there is where it should be
+    // processed by offset or assertion value.
+    if (vlvRequest == null)
+    {
+      try (final SearchResultSorter sorter = maxResults > 0
+          ? SearchResultSorter.lowestKeys(maxResults)
+          : SearchResultSorter.allKeys(getSortTempDir(), getTreePrefix(), SearchResultSorter.DEFAULT_MEMORY_BUDGET))
+      {
+        addMatchingEntries(txn, entryIDSet, searchOperation, sortKeys, null, null, sorter);
+        return sorter.toLongArray();
+      }
+    }
+
+    if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
+    {
+      return sortByOffset(txn, entryIDSet, searchOperation, sortKeys, vlvRequest);
+    }
+    return sortByGreaterThanOrEqualAssertion(txn, entryIDSet, searchOperation, sortKeys, vlvRequest);
+  }
+
+  private File getSortTempDir()
+  {
+    return new File(getFileForPath(SORT_TMP_DIR), config.getBackendId());
+  }
+
+  /**
+   * Adds the VLV keys of the candidates matching the search to the provided sorters. When a target assertion is
+   * provided, the keys lower than the target are added to {@code belowTarget}, the others to {@code sorter}.
+   */
+  private void addMatchingEntries(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
+      List<SortKey> sortKeys, ByteSequence encodedTargetAssertion, SearchResultSorter belowTarget,
+      SearchResultSorter sorter) throws DirectoryException
+  {
     final DN baseDN = searchOperation.getBaseDN();
     final SearchScope scope = searchOperation.getScope();
     final SearchFilter filter = searchOperation.getFilter();
 
-    final TreeMap<ByteString, EntryID> sortMap = new TreeMap<>();
-    for (EntryID id : entryIDSet)
+    final Iterator<EntryID> it = entryIDSet.iterator();
+    final EntryID[] ids = new EntryID[SORT_READ_BATCH_SIZE];
+    while (it.hasNext())
     {
+      int nbIDs = 0;
+      while (nbIDs < ids.length && it.hasNext())
+      {
+        ids[nbIDs++] = it.next();
+      }
+      Entry[] entries = null;
       try
       {
-        Entry e = getEntry(txn, id);
-        if (e.matchesBaseAndScope(baseDN, scope) && filter.matchesEntry(e))
-        {
-          sortMap.put(encodeVLVKey(sortKeys, e, id.longValue()), id);
-        }
+        entries = getEntries(txn, Arrays.copyOf(ids, nbIDs));
       }
       catch (Exception e)
       {
-        LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(id, getExceptionMessage(e));
-        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message, e);
+        // Read the entries one at a time below in order to report the faulty one
+        logger.traceException(e);
       }
-    }
 
-    // See if there is a VLV request to further pare down the set of results, and if there is where it should be
-    // processed by offset or assertion value.
-    if (vlvRequest == null)
-    {
-      return toArray(sortMap.values());
+      for (int i = 0; i < nbIDs; i++)
+      {
+        final EntryID id = ids[i];
+        try
+        {
+          Entry e = entries != null ? entries[i] : getEntry(txn, id);
+          if (e.matchesBaseAndScope(baseDN, scope) && filter.matchesEntry(e))
+          {
+            final ByteString vlvKey = encodeVLVKey(sortKeys, e, id.longValue());
+            if (encodedTargetAssertion == null || vlvKey.compareTo(encodedTargetAssertion) >= 0)
+            {
+              sorter.add(vlvKey);
+            }
+            else
+            {
+              belowTarget.add(vlvKey);
+            }
+          }
+        }
+        catch (Exception e)
+        {
+          LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(id, getExceptionMessage(e));
+          throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message, e);
+        }
+      }
     }
+  }
 
-    if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
+  private int countMatchingEntries(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
+      List<SortKey> sortKeys) throws DirectoryException
+  {
+    try (final SearchResultSorter counter = SearchResultSorter.lowestKeys(0))
     {
-      return sortByOffset(searchOperation, vlvRequest, sortMap);
+      addMatchingEntries(txn, entryIDSet, searchOperation, sortKeys, null, null, counter);
+      return toContentCount(counter.getNbKeysAdded());
     }
-    return sortByGreaterThanOrEqualAssertion(searchOperation, vlvRequest, sortKeys, sortMap);
   }
 
-  private static final long[] toArray(Collection<EntryID> entryIDs)
+  private static int toContentCount(long nbEntries)
   {
-    final long[] array = new long[entryIDs.size()];
-    int i = 0;
-    for (EntryID entryID : entryIDs)
-    {
-      array[i++] = entryID.longValue();
-    }
-    return array;
+    return (int) Math.min(nbEntries, Integer.MAX_VALUE);
   }
 
-  private static final long[] sortByGreaterThanOrEqualAssertion(SearchOperation searchOperation,
-      VLVRequestControl vlvRequest, List<SortKey> sortKeys, final TreeMap<ByteString, EntryID> sortMap)
+  private long[] sortByGreaterThanOrEqualAssertion(ReadableTransaction txn, EntryIDSet entryIDSet,
+      SearchOperation searchOperation, List<SortKey> sortKeys, VLVRequestControl vlvRequest)
       throws DirectoryException
   {
     ByteString assertionValue = vlvRequest.getGreaterThanOrEqualAssertion();
-    ByteSequence encodedTargetAssertion =
-        encodeTargetAssertion(sortKeys, assertionValue, searchOperation, sortMap.size());
-
-    boolean targetFound = false;
-    int index = 0;
-    int targetIndex = 0;
-    int startIndex = 0;
-    int includedAfterCount = 0;
-    long[] idSet = new long[sortMap.size()];
-    for (Map.Entry<ByteString, EntryID> entry : sortMap.entrySet())
+    ByteSequence encodedTargetAssertion;
+    try
+    {
+      encodedTargetAssertion = encodeTargetAssertion(sortKeys, assertionValue);
+    }
+    catch (DecodeException e)
     {
-      ByteString vlvKey = entry.getKey();
-      EntryID id = entry.getValue();
-      idSet[index++] = id.longValue();
+      logger.traceException(e);
+      throw newBadTargetAssertionException(sortKeys, searchOperation,
+          countMatchingEntries(txn, entryIDSet, searchOperation, sortKeys));
+    }
 
-      if (targetFound)
+    // Only the beforeCount entries lower than the target, the target itself and the afterCount entries greater than
+    // the target are needed. Note that at least one entry following the target is always returned.
+    final int beforeCount = Math.max(0, vlvRequest.getBeforeCount());
+    final int afterCount = Math.max(1, vlvRequest.getAfterCount());
+    final int contentCount;
+    final int targetIndex;
+    final long[] result;
+    try (final SearchResultSorter belowTarget = SearchResultSorter.highestKeys(beforeCount);
+        final SearchResultSorter fromTarget = SearchResultSorter.lowestKeys(toContentCount(afterCount + 1L)))
+    {
+      addMatchingEntries(txn, entryIDSet, searchOperation, sortKeys, encodedTargetAssertion, belowTarget, fromTarget);
+      contentCount = toContentCount(belowTarget.getNbKeysAdded() + fromTarget.getNbKeysAdded());
+      if (fromTarget.getNbKeysAdded() > 0)
       {
-        includedAfterCount++;
-        if (includedAfterCount >= vlvRequest.getAfterCount())
-        {
-          break;
-        }
+        targetIndex = toContentCount(belowTarget.getNbKeysAdded() + 1);
+        final long[] before = belowTarget.toLongArray();
+        final long[] after = fromTarget.toLongArray();
+        result = Arrays.copyOf(before, before.length + after.length);
+        System.arraycopy(after, 0, result, before.length, after.length);
       }
       else
       {
-        targetFound = vlvKey.compareTo(encodedTargetAssertion) >= 0;
-        if (targetFound)
-        {
-          startIndex = Math.max(0, targetIndex - vlvRequest.getBeforeCount());
-        }
-        targetIndex++;
+        /*
+         * No entry was found to be greater than or equal to the sort key, so the target offset will
+         * be one greater than the content count.
+         */
+        targetIndex = contentCount + 1;
+        result = new long[0];
       }
     }
-
-    final long[] result;
-    if (targetFound)
-    {
-      final long[] array = new long[index - startIndex];
-      System.arraycopy(idSet, startIndex, array, 0, array.length);
-      result = array;
-    }
-    else
-    {
-      /*
-       * No entry was found to be greater than or equal to the sort key, so the target offset will
-       * be one greater than the content count.
-       */
-      targetIndex = sortMap.size() + 1;
-      result = new long[0];
-    }
-    addVLVResponseControl(searchOperation, targetIndex, sortMap.size(), SUCCESS);
+    addVLVResponseControl(searchOperation, targetIndex, contentCount, SUCCESS);
     return result;
   }
 
-  private static final long[] sortByOffset(SearchOperation searchOperation, VLVRequestControl vlvRequest,
-      TreeMap<ByteString, EntryID> sortMap) throws DirectoryException
+  private long[] sortByOffset(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
+      List<SortKey> sortKeys, VLVRequestControl vlvRequest) throws DirectoryException
   {
     int targetOffset = vlvRequest.getOffset();
     if (targetOffset < 0)
     {
       // The client specified a negative target offset. This should never be allowed.
-      addVLVResponseControl(searchOperation, targetOffset, sortMap.size(), OFFSET_RANGE_ERROR);
+      addVLVResponseControl(searchOperation, targetOffset,
+          countMatchingEntries(txn, entryIDSet, searchOperation, sortKeys), OFFSET_RANGE_ERROR);
 
       LocalizableMessage message = ERR_ENTRYIDSORTER_NEGATIVE_START_POS.get();
       throw new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, message);
@@ -2667,8 +3150,18 @@ public class EntryContainer
     // to use 1.
     targetOffset = (targetOffset == 0) ? 1 : targetOffset;
 
+    // Only the entries up to the end of the requested window are needed.
+    final long windowEnd = (long) targetOffset + Math.max(0, vlvRequest.getAfterCount());
+    final int contentCount;
+    final long[] sortedIDs;
+    try (final SearchResultSorter sorter = SearchResultSorter.lowestKeys(toContentCount(windowEnd)))
+    {
+      addMatchingEntries(txn, entryIDSet, searchOperation, sortKeys, null, null, sorter);
+      contentCount = toContentCount(sorter.getNbKeysAdded());
+      sortedIDs = sorter.toLongArray();
+    }
+
     int beforeCount = vlvRequest.getBeforeCount();
-    int afterCount = vlvRequest.getAfterCount();
     int listOffset = targetOffset - 1; // VLV offsets start at 1, not 0.
     int startPos = listOffset - beforeCount;
     if (startPos < 0)
@@ -2676,44 +3169,18 @@ public class EntryContainer
       // This can happen if beforeCount >= offset, and in this case we'll just adjust the start position to ignore
       // the range of beforeCount that doesn't exist.
       startPos = 0;
-      beforeCount = listOffset;
     }
-    else if (startPos >= sortMap.size())
+    else if (startPos >= contentCount)
     {
       // The start position is beyond the end of the list. In this case, we'll assume that the start position was
       // one greater than the size of the list and will only return the beforeCount entries.
-      targetOffset = sortMap.size() + 1;
-      listOffset = sortMap.size();
-      startPos = listOffset - beforeCount;
-      afterCount = 0;
-    }
-
-    int count = 1 + beforeCount + afterCount;
-    long[] sortedIDs = new long[count];
-    int treePos = 0;
-    int arrayPos = 0;
-    for (EntryID id : sortMap.values())
-    {
-      if (treePos++ < startPos)
-      {
-        continue;
-      }
-
-      sortedIDs[arrayPos++] = id.longValue();
-      if (arrayPos >= count)
-      {
-        break;
-      }
-    }
-
-    if (arrayPos < count)
-    {
-      // We don't have enough entries in the set to meet the requested page size, so we'll need to shorten the array.
-      sortedIDs = Arrays.copyOf(sortedIDs, arrayPos);
+      targetOffset = contentCount + 1;
+      startPos = Math.max(0, contentCount - beforeCount);
     }
 
-    addVLVResponseControl(searchOperation, targetOffset, sortMap.size(), SUCCESS);
-    return sortedIDs;
+    // The sorter only retained the entries up to the end of the window
+    addVLVResponseControl(searchOperation, targetOffset, contentCount, SUCCESS);
+    return Arrays.copyOfRange(sortedIDs, Math.min(startPos, sortedIDs.length), sortedIDs.length);
   }
 
   private static void addVLVResponseControl(SearchOperation searchOp, int targetPosition, int contentCount,
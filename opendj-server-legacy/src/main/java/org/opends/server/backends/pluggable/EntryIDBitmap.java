@@ -0,0 +1,1094 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Reject.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * Compressed bitmap of entry IDs.
+ * <p>
+ * The 64 bits space of entry IDs is split in chunks of 2^16 values. Each non-empty chunk is represented by a container
+ * keyed by the high bits of the IDs it holds. Sparse chunks are stored as a sorted array of the 16 low bits of their
+ * IDs while dense chunks are stored as a fixed size bitmap, so that the memory used by a set never exceeds roughly two
+ * bytes per ID. Set operations are performed container by container and never require to materialize the IDs.
+ * <p>
+ * This class is not thread safe.
+ */
+final class EntryIDBitmap implements Iterable<EntryID>
+{
+  /** Maximum number of values held by an {@link ArrayContainer} before switching to a {@link BitmapContainer}. */
+  private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+  private static final int CONTAINER_MAX_SIZE = 1 << 16;
+  private static final int BITMAP_WORDS = CONTAINER_MAX_SIZE / Long.SIZE;
+
+  private static final byte ARRAY_CONTAINER = 0x00;
+  private static final byte BITMAP_CONTAINER = 0x01;
+  private static final byte FULL_CONTAINER = 0x02;
+
+  private static final long[] EMPTY_KEYS = new long[0];
+  private static final Container[] EMPTY_CONTAINERS = new Container[0];
+
+  /** High bits of the IDs held by each container, in ascending order. */
+  private long[] keys;
+  private Container[] containers;
+  /** Number of containers in use. */
+  private int size;
+
+  /** Creates a new empty bitmap. */
+  EntryIDBitmap()
+  {
+    this(EMPTY_KEYS, EMPTY_CONTAINERS, 0);
+  }
+
+  private EntryIDBitmap(long[] keys, Container[] containers, int size)
+  {
+    this.keys = keys;
+    this.containers = containers;
+    this.size = size;
+  }
+
+  /**
+   * Creates a new bitmap containing the provided entry IDs.
+   *
+   * @param entryIDs
+   *          the entry IDs, sorted in ascending order
+   * @return a new bitmap containing the provided entry IDs
+   */
+  static EntryIDBitmap valueOf(long... entryIDs)
+  {
+    checkNotNull(entryIDs, "entryIDs must not be null");
+    final EntryIDBitmap bitmap = new EntryIDBitmap();
+    int start = 0;
+    while (start < entryIDs.length)
+    {
+      final long key = highBits(entryIDs[start]);
+      int end = start + 1;
+      while (end < entryIDs.length && highBits(entryIDs[end]) == key)
+      {
+        end++;
+      }
+      final int count = end - start;
+      final Container container;
+      if (count <= ARRAY_CONTAINER_MAX_SIZE)
+      {
+        final char[] values = new char[count];
+        for (int i = 0; i < count; i++)
+        {
+          values[i] = lowBits(entryIDs[start + i]);
+        }
+        container = new ArrayContainer(values, count);
+      }
+      else
+      {
+        final BitmapContainer bitmapContainer = new BitmapContainer();
+        for (int i = start; i < end; i++)
+        {
+          bitmapContainer.set(lowBits(entryIDs[i]));
+        }
+        container = bitmapContainer;
+      }
+      bitmap.append(key, container);
+      start = end;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns a deep copy of this bitmap.
+   *
+   * @return a deep copy of this bitmap
+   */
+  EntryIDBitmap copy()
+  {
+    final Container[] newContainers = new Container[size];
+    for (int i = 0; i < size; i++)
+    {
+      newContainers[i] = containers[i].copy();
+    }
+    return new EntryIDBitmap(Arrays.copyOf(keys, size), newContainers, size);
+  }
+
+  /**
+   * Returns the number of entry IDs contained in this bitmap.
+   *
+   * @return the number of entry IDs contained in this bitmap
+   */
+  long cardinality()
+  {
+    long cardinality = 0;
+    for (int i = 0; i < size; i++)
+    {
+      cardinality += containers[i].cardinality();
+    }
+    return cardinality;
+  }
+
+  boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Returns the lowest entry ID of this bitmap.
+   *
+   * @return the lowest entry ID of this bitmap
+   * @throws NoSuchElementException
+   *           if this bitmap is empty
+   */
+  long first()
+  {
+    if (size == 0)
+    {
+      throw new NoSuchElementException();
+    }
+    return toEntryID(keys[0], containers[0].first());
+  }
+
+  /**
+   * Returns the highest entry ID of this bitmap.
+   *
+   * @return the highest entry ID of this bitmap
+   * @throws NoSuchElementException
+   *           if this bitmap is empty
+   */
+  long last()
+  {
+    if (size == 0)
+    {
+      throw new NoSuchElementException();
+    }
+    return toEntryID(keys[size - 1], containers[size - 1].last());
+  }
+
+  boolean contains(long entryID)
+  {
+    final int pos = indexOf(highBits(entryID));
+    return pos >= 0 && containers[pos].contains(lowBits(entryID));
+  }
+
+  /**
+   * Adds an entry ID to this bitmap.
+   *
+   * @param entryID
+   *          the entry ID to add
+   * @return {@code true} if this bitmap has been modified
+   */
+  boolean add(long entryID)
+  {
+    final long key = highBits(entryID);
+    final int pos = indexOf(key);
+    if (pos >= 0)
+    {
+      final Container container = containers[pos];
+      final int before = container.cardinality();
+      containers[pos] = container.add(lowBits(entryID));
+      return containers[pos].cardinality() != before;
+    }
+    insertAt(-(pos + 1), key, new ArrayContainer(new char[] { lowBits(entryID) }, 1));
+    return true;
+  }
+
+  /**
+   * Removes an entry ID from this bitmap.
+   *
+   * @param entryID
+   *          the entry ID to remove
+   * @return {@code true} if this bitmap has been modified
+   */
+  boolean remove(long entryID)
+  {
+    final int pos = indexOf(highBits(entryID));
+    if (pos < 0)
+    {
+      return false;
+    }
+    final Container container = containers[pos];
+    final int before = container.cardinality();
+    final Container updated = container.remove(lowBits(entryID));
+    if (updated.cardinality() == 0)
+    {
+      removeAt(pos);
+    }
+    else
+    {
+      containers[pos] = updated;
+    }
+    return updated.cardinality() != before;
+  }
+
+  /**
+   * Retains in this bitmap only the entry IDs which are also contained in the provided bitmap.
+   *
+   * @param that
+   *          the bitmap to intersect with
+   */
+  void and(EntryIDBitmap that)
+  {
+    int newSize = 0;
+    for (int i = 0, j = 0; i < size && j < that.size;)
+    {
+      if (keys[i] < that.keys[j])
+      {
+        i++;
+      }
+      else if (keys[i] > that.keys[j])
+      {
+        j++;
+      }
+      else
+      {
+        final Container result = containers[i].and(that.containers[j]);
+        if (result.cardinality() > 0)
+        {
+          keys[newSize] = keys[i];
+          containers[newSize++] = result;
+        }
+        i++;
+        j++;
+      }
+    }
+    Arrays.fill(containers, newSize, size, null);
+    size = newSize;
+  }
+
+  /**
+   * Adds to this bitmap all the entry IDs contained in the provided bitmap.
+   *
+   * @param that
+   *          the bitmap to merge with
+   */
+  void or(EntryIDBitmap that)
+  {
+    if (that.size == 0)
+    {
+      return;
+    }
+    final long[] newKeys = new long[size + that.size];
+    final Container[] newContainers = new Container[size + that.size];
+    int newSize = 0;
+    int i = 0, j = 0;
+    while (i < size && j < that.size)
+    {
+      if (keys[i] < that.keys[j])
+      {
+        newKeys[newSize] = keys[i];
+        newContainers[newSize++] = containers[i++];
+      }
+      else if (keys[i] > that.keys[j])
+      {
+        newKeys[newSize] = that.keys[j];
+        newContainers[newSize++] = that.containers[j++].copy();
+      }
+      else
+      {
+        newKeys[newSize] = keys[i];
+        newContainers[newSize++] = containers[i++].or(that.containers[j++]);
+      }
+    }
+    for (; i < size; i++)
+    {
+      newKeys[newSize] = keys[i];
+      newContainers[newSize++] = containers[i];
+    }
+    for (; j < that.size; j++)
+    {
+      newKeys[newSize] = that.keys[j];
+      newContainers[newSize++] = that.containers[j].copy();
+    }
+    keys = newKeys;
+    containers = newContainers;
+    size = newSize;
+  }
+
+  /**
+   * Removes from this bitmap all the entry IDs contained in the provided bitmap.
+   *
+   * @param that
+   *          the bitmap containing the entry IDs to remove
+   */
+  void andNot(EntryIDBitmap that)
+  {
+    int newSize = 0;
+    int j = 0;
+    for (int i = 0; i < size; i++)
+    {
+      while (j < that.size && that.keys[j] < keys[i])
+      {
+        j++;
+      }
+      final Container result =
+          j < that.size && that.keys[j] == keys[i] ? containers[i].andNot(that.containers[j]) : containers[i];
+      if (result.cardinality() > 0)
+      {
+        keys[newSize] = keys[i];
+        containers[newSize++] = result;
+      }
+    }
+    Arrays.fill(containers, newSize, size, null);
+    size = newSize;
+  }
+
+  /**
+   * Returns the entry IDs contained in this bitmap as a sorted array.
+   *
+   * @return the entry IDs contained in this bitmap as a sorted array
+   */
+  long[] toLongArray()
+  {
+    final long cardinality = cardinality();
+    ifTrue(cardinality > Integer.MAX_VALUE, "Too many entry IDs to be held in an array");
+    final long[] entryIDs = new long[(int) cardinality];
+    int offset = 0;
+    for (int i = 0; i < size; i++)
+    {
+      offset = containers[i].copyTo(entryIDs, offset, keys[i] << 16);
+    }
+    return entryIDs;
+  }
+
+  @Override
+  public Iterator<EntryID> iterator()
+  {
+    return new BitmapIterator();
+  }
+
+  /**
+   * Appends the serialized form of this bitmap to the provided builder.
+   *
+   * @param builder
+   *          the builder where to serialize this bitmap
+   * @return the provided builder
+   */
+  ByteStringBuilder encode(ByteStringBuilder builder)
+  {
+    builder.appendCompactUnsigned(size);
+    long previousKey = 0;
+    for (int i = 0; i < size; i++)
+    {
+      builder.appendCompactUnsigned(keys[i] - previousKey);
+      previousKey = keys[i];
+      containers[i].encode(builder);
+    }
+    return builder;
+  }
+
+  /**
+   * Reads a bitmap previously serialized with {@link #encode(ByteStringBuilder)}.
+   *
+   * @param reader
+   *          the reader positioned at the beginning of a serialized bitmap
+   * @return the decoded bitmap
+   */
+  static EntryIDBitmap decode(ByteSequenceReader reader)
+  {
+    final int size = reader.readCompactUnsignedInt();
+    final long[] keys = new long[size];
+    final Container[] containers = new Container[size];
+    long previousKey = 0;
+    for (int i = 0; i < size; i++)
+    {
+      previousKey += reader.readCompactUnsignedLong();
+      keys[i] = previousKey;
+      containers[i] = decodeContainer(reader);
+    }
+    return new EntryIDBitmap(keys, containers, size);
+  }
+
+  /**
+   * Returns an estimation of the size of the serialized form of this bitmap.
+   *
+   * @return an estimation of the size of the serialized form of this bitmap
+   */
+  int getEstimatedEncodedSize()
+  {
+    int estimatedSize = ByteStringBuilder.MAX_COMPACT_SIZE;
+    for (int i = 0; i < size; i++)
+    {
+      estimatedSize += 2 * ByteStringBuilder.MAX_COMPACT_SIZE + containers[i].getEstimatedEncodedSize();
+    }
+    return estimatedSize;
+  }
+
+  private static Container decodeContainer(ByteSequenceReader reader)
+  {
+    final byte type = reader.readByte();
+    switch (type)
+    {
+    case ARRAY_CONTAINER:
+      final int cardinality = reader.readCompactUnsignedInt() + 1;
+      final char[] values = new char[cardinality];
+      int previous = 0;
+      for (int i = 0; i < cardinality; i++)
+      {
+        previous += reader.readCompactUnsignedInt();
+        values[i] = (char) previous;
+      }
+      return new ArrayContainer(values, cardinality);
+    case BITMAP_CONTAINER:
+      final long[] words = new long[BITMAP_WORDS];
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        words[i] = reader.readLong();
+      }
+      return new BitmapContainer(words);
+    case FULL_CONTAINER:
+      final long[] allSet = new long[BITMAP_WORDS];
+      Arrays.fill(allSet, -1L);
+      return new BitmapContainer(allSet, CONTAINER_MAX_SIZE);
+    default:
+      throw new IllegalArgumentException("Unknown container type " + type);
+    }
+  }
+
+  private int indexOf(long key)
+  {
+    // Fast path for the common case of appending IDs to the last container
+    if (size > 0 && keys[size - 1] == key)
+    {
+      return size - 1;
+    }
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  private void append(long key, Container container)
+  {
+    insertAt(size, key, container);
+  }
+
+  private void insertAt(int pos, long key, Container container)
+  {
+    if (size == keys.length)
+    {
+      final int newCapacity = Math.max(4, size + (size >> 1));
+      keys = Arrays.copyOf(keys, newCapacity);
+      containers = Arrays.copyOf(containers, newCapacity);
+    }
+    System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+    System.arraycopy(containers, pos, containers, pos + 1, size - pos);
+    keys[pos] = key;
+    containers[pos] = container;
+    size++;
+  }
+
+  private void removeAt(int pos)
+  {
+    System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+    System.arraycopy(containers, pos + 1, containers, pos, size - pos - 1);
+    containers[--size] = null;
+  }
+
+  private static long highBits(long entryID)
+  {
+    return entryID >>> 16;
+  }
+
+  private static char lowBits(long entryID)
+  {
+    return (char) entryID;
+  }
+
+  private static long toEntryID(long key, int lowBits)
+  {
+    return key << 16 | lowBits;
+  }
+
+  /** Iterates over the entry IDs of this bitmap, in ascending order. */
+  private final class BitmapIterator implements Iterator<EntryID>
+  {
+    private int containerIndex;
+    private int valueIndex = -1;
+
+    BitmapIterator()
+    {
+      advance();
+    }
+
+    private void advance()
+    {
+      while (containerIndex < size)
+      {
+        valueIndex = containers[containerIndex].nextValue(valueIndex + 1);
+        if (valueIndex >= 0)
+        {
+          return;
+        }
+        containerIndex++;
+        valueIndex = -1;
+      }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return containerIndex < size;
+    }
+
+    @Override
+    public EntryID next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      final EntryID next =
+          new EntryID(toEntryID(keys[containerIndex], containers[containerIndex].valueAt(valueIndex)));
+      advance();
+      return next;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Holds the 16 low bits of the entry IDs sharing the same high bits. Operations modify containers in place when
+   * possible and return the container to use thereafter, which may be of a different type.
+   */
+  private static abstract class Container
+  {
+    abstract int cardinality();
+
+    abstract boolean contains(char value);
+
+    abstract int first();
+
+    abstract int last();
+
+    abstract Container add(char value);
+
+    abstract Container remove(char value);
+
+    abstract Container and(Container that);
+
+    abstract Container or(Container that);
+
+    abstract Container andNot(Container that);
+
+    abstract Container copy();
+
+    abstract int copyTo(long[] dest, int offset, long highBits);
+
+    /**
+     * Returns the position of the next value at or after the provided position, or -1 if there is none. Positions are
+     * opaque to the caller and must only be used with {@link #valueAt(int)}.
+     */
+    abstract int nextValue(int fromPosition);
+
+    abstract int valueAt(int position);
+
+    abstract void encode(ByteStringBuilder builder);
+
+    abstract int getEstimatedEncodedSize();
+  }
+
+  /** Container for sparse chunks, holding the values in a sorted array. */
+  private static final class ArrayContainer extends Container
+  {
+    private char[] values;
+    private int cardinality;
+
+    ArrayContainer(char[] values, int cardinality)
+    {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality()
+    {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(char value)
+    {
+      return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    @Override
+    int first()
+    {
+      return values[0];
+    }
+
+    @Override
+    int last()
+    {
+      return values[cardinality - 1];
+    }
+
+    @Override
+    Container add(char value)
+    {
+      int pos;
+      if (cardinality == 0 || value > values[cardinality - 1])
+      {
+        pos = cardinality;
+      }
+      else
+      {
+        pos = Arrays.binarySearch(values, 0, cardinality, value);
+        if (pos >= 0)
+        {
+          return this;
+        }
+        pos = -(pos + 1);
+      }
+      if (cardinality == ARRAY_CONTAINER_MAX_SIZE)
+      {
+        return toBitmapContainer().add(value);
+      }
+      if (cardinality == values.length)
+      {
+        values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX_SIZE, Math.max(4, cardinality * 2)));
+      }
+      System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+      values[pos] = value;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(char value)
+    {
+      final int pos = Arrays.binarySearch(values, 0, cardinality, value);
+      if (pos >= 0)
+      {
+        System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+        cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    Container and(Container that)
+    {
+      int newCardinality = 0;
+      if (that instanceof ArrayContainer)
+      {
+        final ArrayContainer other = (ArrayContainer) that;
+        for (int i = 0, j = 0; i < cardinality && j < other.cardinality;)
+        {
+          if (values[i] < other.values[j])
+          {
+            i++;
+          }
+          else if (values[i] > other.values[j])
+          {
+            j++;
+          }
+          else
+          {
+            values[newCardinality++] = values[i];
+            i++;
+            j++;
+          }
+        }
+      }
+      else
+      {
+        for (int i = 0; i < cardinality; i++)
+        {
+          if (that.contains(values[i]))
+          {
+            values[newCardinality++] = values[i];
+          }
+        }
+      }
+      cardinality = newCardinality;
+      return this;
+    }
+
+    @Override
+    Container or(Container that)
+    {
+      if (that instanceof BitmapContainer)
+      {
+        final BitmapContainer result = ((BitmapContainer) that).copy();
+        for (int i = 0; i < cardinality; i++)
+        {
+          result.set(values[i]);
+        }
+        return result;
+      }
+      final ArrayContainer other = (ArrayContainer) that;
+      final char[] merged = new char[cardinality + other.cardinality];
+      int newCardinality = 0;
+      int i = 0, j = 0;
+      while (i < cardinality && j < other.cardinality)
+      {
+        if (values[i] < other.values[j])
+        {
+          merged[newCardinality++] = values[i++];
+        }
+        else if (values[i] > other.values[j])
+        {
+          merged[newCardinality++] = other.values[j++];
+        }
+        else
+        {
+          merged[newCardinality++] = values[i++];
+          j++;
+        }
+      }
+      while (i < cardinality)
+      {
+        merged[newCardinality++] = values[i++];
+      }
+      while (j < other.cardinality)
+      {
+        merged[newCardinality++] = other.values[j++];
+      }
+      final ArrayContainer result = new ArrayContainer(merged, newCardinality);
+      return newCardinality > ARRAY_CONTAINER_MAX_SIZE ? result.toBitmapContainer() : result;
+    }
+
+    @Override
+    Container andNot(Container that)
+    {
+      int newCardinality = 0;
+      for (int i = 0; i < cardinality; i++)
+      {
+        if (!that.contains(values[i]))
+        {
+          values[newCardinality++] = values[i];
+        }
+      }
+      cardinality = newCardinality;
+      return this;
+    }
+
+    @Override
+    ArrayContainer copy()
+    {
+      return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+    }
+
+    @Override
+    int copyTo(long[] dest, int offset, long highBits)
+    {
+      for (int i = 0; i < cardinality; i++)
+      {
+        dest[offset++] = highBits | values[i];
+      }
+      return offset;
+    }
+
+    @Override
+    int nextValue(int fromPosition)
+    {
+      return fromPosition < cardinality ? fromPosition : -1;
+    }
+
+    @Override
+    int valueAt(int position)
+    {
+      return values[position];
+    }
+
+    @Override
+    void encode(ByteStringBuilder builder)
+    {
+      builder.appendByte(ARRAY_CONTAINER);
+      builder.appendCompactUnsigned(cardinality - 1);
+      int previous = 0;
+      for (int i = 0; i < cardinality; i++)
+      {
+        builder.appendCompactUnsigned(values[i] - previous);
+        previous = values[i];
+      }
+    }
+
+    @Override
+    int getEstimatedEncodedSize()
+    {
+      return 1 + (cardinality + 1) * ByteStringBuilder.MAX_COMPACT_SIZE;
+    }
+
+    private BitmapContainer toBitmapContainer()
+    {
+      final BitmapContainer bitmap = new BitmapContainer();
+      for (int i = 0; i < cardinality; i++)
+      {
+        bitmap.set(values[i]);
+      }
+      return bitmap;
+    }
+  }
+
+  /** Container for dense chunks, holding the values in a fixed size bitmap. */
+  private static final class BitmapContainer extends Container
+  {
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer()
+    {
+      this(new long[BITMAP_WORDS], 0);
+    }
+
+    BitmapContainer(long[] words)
+    {
+      this(words, countBits(words));
+    }
+
+    BitmapContainer(long[] words, int cardinality)
+    {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    private static int countBits(long[] words)
+    {
+      int count = 0;
+      for (long word : words)
+      {
+        count += Long.bitCount(word);
+      }
+      return count;
+    }
+
+    void set(char value)
+    {
+      final long before = words[value >>> 6];
+      final long after = before | (1L << value);
+      words[value >>> 6] = after;
+      if (before != after)
+      {
+        cardinality++;
+      }
+    }
+
+    @Override
+    int cardinality()
+    {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(char value)
+    {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int first()
+    {
+      return nextValue(0);
+    }
+
+    @Override
+    int last()
+    {
+      for (int i = BITMAP_WORDS - 1; i >= 0; i--)
+      {
+        if (words[i] != 0)
+        {
+          return i * Long.SIZE + Long.SIZE - 1 - Long.numberOfLeadingZeros(words[i]);
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Container add(char value)
+    {
+      set(value);
+      return this;
+    }
+
+    @Override
+    Container remove(char value)
+    {
+      final long before = words[value >>> 6];
+      final long after = before & ~(1L << value);
+      if (before != after)
+      {
+        words[value >>> 6] = after;
+        cardinality--;
+      }
+      return cardinality <= ARRAY_CONTAINER_MAX_SIZE ? toArrayContainer() : this;
+    }
+
+    @Override
+    Container and(Container that)
+    {
+      if (that instanceof ArrayContainer)
+      {
+        // Result cannot be larger than the array container
+        return that.copy().and(this);
+      }
+      final long[] otherWords = ((BitmapContainer) that).words;
+      int newCardinality = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        words[i] &= otherWords[i];
+        newCardinality += Long.bitCount(words[i]);
+      }
+      cardinality = newCardinality;
+      return cardinality <= ARRAY_CONTAINER_MAX_SIZE ? toArrayContainer() : this;
+    }
+
+    @Override
+    Container or(Container that)
+    {
+      if (that instanceof ArrayContainer)
+      {
+        final ArrayContainer other = (ArrayContainer) that;
+        for (int i = 0; i < other.cardinality; i++)
+        {
+          set(other.values[i]);
+        }
+        return this;
+      }
+      final long[] otherWords = ((BitmapContainer) that).words;
+      int newCardinality = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        words[i] |= otherWords[i];
+        newCardinality += Long.bitCount(words[i]);
+      }
+      cardinality = newCardinality;
+      return this;
+    }
+
+    @Override
+    Container andNot(Container that)
+    {
+      if (that instanceof ArrayContainer)
+      {
+        final ArrayContainer other = (ArrayContainer) that;
+        for (int i = 0; i < other.cardinality; i++)
+        {
+          final char value = other.values[i];
+          final long before = words[value >>> 6];
+          final long after = before & ~(1L << value);
+          if (before != after)
+          {
+            words[value >>> 6] = after;
+            cardinality--;
+          }
+        }
+      }
+      else
+      {
+        final long[] otherWords = ((BitmapContainer) that).words;
+        int newCardinality = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++)
+        {
+          words[i] &= ~otherWords[i];
+          newCardinality += Long.bitCount(words[i]);
+        }
+        cardinality = newCardinality;
+      }
+      return cardinality <= ARRAY_CONTAINER_MAX_SIZE ? toArrayContainer() : this;
+    }
+
+    @Override
+    BitmapContainer copy()
+    {
+      return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+    }
+
+    @Override
+    int copyTo(long[] dest, int offset, long highBits)
+    {
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        long word = words[i];
+        while (word != 0)
+        {
+          dest[offset++] = highBits | (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return offset;
+    }
+
+    @Override
+    int nextValue(int fromPosition)
+    {
+      int wordIndex = fromPosition >>> 6;
+      if (wordIndex >= BITMAP_WORDS)
+      {
+        return -1;
+      }
+      long word = words[wordIndex] & (-1L << fromPosition);
+      while (word == 0)
+      {
+        if (++wordIndex == BITMAP_WORDS)
+        {
+          return -1;
+        }
+        word = words[wordIndex];
+      }
+      return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    int valueAt(int position)
+    {
+      return position;
+    }
+
+    @Override
+    void encode(ByteStringBuilder builder)
+    {
+      if (cardinality == CONTAINER_MAX_SIZE)
+      {
+        builder.appendByte(FULL_CONTAINER);
+        return;
+      }
+      builder.appendByte(BITMAP_CONTAINER);
+      for (long word : words)
+      {
+        builder.appendLong(word);
+      }
+    }
+
+    @Override
+    int getEstimatedEncodedSize()
+    {
+      return 1 + BITMAP_WORDS * 8;
+    }
+
+    private ArrayContainer toArrayContainer()
+    {
+      final char[] values = new char[cardinality];
+      int pos = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        long word = words[i];
+        while (word != 0)
+        {
+          values[pos++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values, cardinality);
+    }
+  }
+}
@@ -43,6 +43,7 @@ final class EntryIDSet implements Iterable<EntryID>
 {
   public static final EntryIDSetCodec CODEC_V1 = new EntryIDSetCodecV1();
   public static final EntryIDSetCodec CODEC_V2 = new EntryIDSetCodecV2();
+  public static final EntryIDSetCodec CODEC_V4 = new EntryIDSetCodecV4();
 
   private static final ByteSequence NO_KEY = ByteString.valueOfUtf8("<none>");
   private static final long[] EMPTY_LONG_ARRAY = new long[0];
@@ -272,6 +273,106 @@ final class EntryIDSet implements Iterable<EntryID>
     }
   }
 
+  /**
+   * Concrete implementation representing a set of EntryIDs as a compressed bitmap. Set operations between two
+   * bitmap based sets are performed directly on their compressed form.
+   */
+  private static final class BitmapImpl implements EntryIDSetImplementor
+  {
+    private final EntryIDBitmap bitmap;
+    /** Lazily computed array representation of the IDs, reset on each modification. */
+    private long[] entryIDs;
+
+    BitmapImpl(EntryIDBitmap bitmap)
+    {
+      this.bitmap = checkNotNull(bitmap, "bitmap must not be null");
+    }
+
+    @Override
+    public long size()
+    {
+      return bitmap.cardinality();
+    }
+
+    @Override
+    public void toString(StringBuilder buffer)
+    {
+      buffer.append("[COUNT:").append(size()).append("]");
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return true;
+    }
+
+    @Override
+    public long[] getRange()
+    {
+      if (bitmap.isEmpty())
+      {
+        return NO_ENTRY_IDS_RANGE;
+      }
+      return new long[] { bitmap.first(), bitmap.last() };
+    }
+
+    @Override
+    public long[] getIDs()
+    {
+      if (entryIDs == null)
+      {
+        entryIDs = bitmap.toLongArray();
+      }
+      return entryIDs;
+    }
+
+    @Override
+    public boolean add(EntryID entryID)
+    {
+      entryIDs = null;
+      return bitmap.add(entryID.longValue());
+    }
+
+    @Override
+    public boolean remove(EntryID entryID)
+    {
+      entryIDs = null;
+      return bitmap.remove(entryID.longValue());
+    }
+
+    @Override
+    public boolean contains(EntryID entryID)
+    {
+      return bitmap.contains(entryID.longValue());
+    }
+
+    @Override
+    public void addAll(EntryIDSet that)
+    {
+      entryIDs = null;
+      bitmap.or(toBitmap(that));
+    }
+
+    @Override
+    public void removeAll(EntryIDSet that)
+    {
+      entryIDs = null;
+      bitmap.andNot(toBitmap(that));
+    }
+
+    void retainAll(EntryIDSet that)
+    {
+      entryIDs = null;
+      bitmap.and(toBitmap(that));
+    }
+
+    @Override
+    public Iterator<EntryID> iterator()
+    {
+      return bitmap.iterator();
+    }
+  }
+
   /**
    * Concrete implementation where the EntryIDs are not defined, for example when the index entry
    * limit has been exceeded.
@@ -539,7 +640,49 @@ final class EntryIDSet implements Iterable<EntryID>
   }
 
   /**
-   * Decorate a V1 or V2 codec with encryption. When writing EntryIDSets to disk,
+   * Compressed bitmap EntryIDSet codec implementation. The IDs are stored as an {@link EntryIDBitmap} which is decoded
+   * into a bitmap based {@link EntryIDSet}, so that subsequent set operations do not have to materialize the IDs.
+   * The first byte is never zero so that values can be told apart from the ones written by
+   * {@link EntryIDSetCodecV3}.
+   */
+  private static final class EntryIDSetCodecV4 implements EntryIDSetCodec
+  {
+    private static final byte DEFINED_SET = 0x04;
+    private static final byte UNDEFINED_SET = (byte) 0xFF;
+
+    @Override
+    public ByteString encode(EntryIDSet idSet)
+    {
+      checkNotNull(idSet, "idSet must not be null");
+      if (!idSet.isDefined())
+      {
+        return ByteString.valueOfBytes(new byte[] { UNDEFINED_SET });
+      }
+      final EntryIDBitmap bitmap = toBitmap(idSet);
+      final ByteStringBuilder builder = new ByteStringBuilder(1 + bitmap.getEstimatedEncodedSize());
+      builder.appendByte(DEFINED_SET);
+      bitmap.encode(builder);
+      return ByteString.wrap(builder.getBackingArray(), 0, builder.length());
+    }
+
+    @Override
+    public EntryIDSet decode(ByteSequence key, ByteString value)
+    {
+      checkNotNull(key, "key must not be null");
+      checkNotNull(value, "value must not be null");
+      final ByteSequenceReader reader = value.asReader();
+      final byte type = reader.readByte();
+      if (type == UNDEFINED_SET)
+      {
+        return newUndefinedSetWithKey(key);
+      }
+      Reject.ifFalse(type == DEFINED_SET, "value is not a bitmap encoded EntryIDSet");
+      return new EntryIDSet(new BitmapImpl(EntryIDBitmap.decode(reader)));
+    }
+  }
+
+  /**
+   * Decorate a V1, V2 or V4 codec with encryption. When writing EntryIDSets to disk,
    * prepend two bytes, {0, 1} to mark them as encrypted.
    * The first is tag zero (unused in other encodings), followed by a byte
    * indicating version 1 of encryption.
@@ -628,6 +771,34 @@ final class EntryIDSet implements Iterable<EntryID>
     return new EntryIDSet(new DefinedImpl(entryIDs));
   }
 
+  /**
+   * Creates a new defined entry ID set with the specified sorted entryIDs, backed by a compressed bitmap.
+   *
+   * @param entryIDs
+   *          Sorted Entry IDs contained in the set.
+   * @return A new defined {@link EntryIDSet} containing the provided entryIDs
+   * @throws NullPointerException
+   *           if entryIDs is null
+   */
+  static EntryIDSet newBitmapSet(long... entryIDs)
+  {
+    checkNotNull(entryIDs, "ids must not be null");
+    return new EntryIDSet(new BitmapImpl(EntryIDBitmap.valueOf(entryIDs)));
+  }
+
+  /**
+   * Returns the content of the provided defined set as a bitmap. The bitmap of a bitmap based set is returned
+   * directly and so must not be modified.
+   */
+  private static EntryIDBitmap toBitmap(EntryIDSet idSet)
+  {
+    if (idSet.concreteImpl instanceof BitmapImpl)
+    {
+      return ((BitmapImpl) idSet.concreteImpl).bitmap;
+    }
+    return EntryIDBitmap.valueOf(idSet.getIDs());
+  }
+
   private static long[] intersection(long[] set1, long[] set2)
   {
     long[] target = new long[Math.min(set1.length, set2.length)];
@@ -689,6 +860,16 @@ final class EntryIDSet implements Iterable<EntryID>
       return newUndefinedSet();
     }
 
+    if (areAllBitmaps(sets))
+    {
+      final EntryIDBitmap union = new EntryIDBitmap();
+      for (EntryIDSet l : sets)
+      {
+        union.or(toBitmap(l));
+      }
+      return new EntryIDSet(new BitmapImpl(union));
+    }
+
     boolean needSort = false;
     long[] n = new long[count];
     int pos = 0;
@@ -723,6 +904,22 @@ final class EntryIDSet implements Iterable<EntryID>
     return newDefinedSet(Arrays.copyOf(n1, j));
   }
 
+  private static boolean areAllBitmaps(List<EntryIDSet> sets)
+  {
+    if (sets.isEmpty())
+    {
+      return false;
+    }
+    for (EntryIDSet set : sets)
+    {
+      if (!(set.concreteImpl instanceof BitmapImpl))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private EntryIDSetImplementor concreteImpl;
 
   private EntryIDSet(EntryIDSetImplementor concreteImpl)
@@ -889,7 +1086,10 @@ final class EntryIDSet implements Iterable<EntryID>
     checkNotNull(that, "that must not be null");
     if (!concreteImpl.isDefined())
     {
-      if ( that.isDefined() ) {
+      if (that.concreteImpl instanceof BitmapImpl) {
+        // Bitmaps are modified in place, so they cannot be shared.
+        concreteImpl = new BitmapImpl(toBitmap(that).copy());
+      } else if ( that.isDefined() ) {
         // NOTE: It's ok to share the same array instance here thanks to the copy-on-write
         // performed by the implementation.
         concreteImpl = new DefinedImpl(that.getIDs());
@@ -903,6 +1103,12 @@ final class EntryIDSet implements Iterable<EntryID>
       return;
     }
 
+    if (concreteImpl instanceof BitmapImpl)
+    {
+      ((BitmapImpl) concreteImpl).retainAll(that);
+      return;
+    }
+
     final boolean thatSetOverlap = compareForOverlap(getRange(), that.getRange()) == 0;
     if (thatSetOverlap)
     {
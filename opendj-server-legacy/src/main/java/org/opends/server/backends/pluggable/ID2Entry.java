@@ -26,6 +26,8 @@ import static org.opends.server.core.DirectoryServer.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.DataFormatException;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
@@ -469,6 +471,41 @@ class ID2Entry extends AbstractTree
     }
   }
 
+  /**
+   * Fetch several records from the entry tree in a single pass over the tree.
+   *
+   * @param txn a non null transaction
+   * @param entryIDs The desired entry IDs, preferably in ascending order.
+   * @return The requested entries, in the same order as the provided entry IDs,
+   *         holding null for the entry IDs without record.
+   * @throws DirectoryException If a problem occurs while decoding an entry.
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  Entry[] get(ReadableTransaction txn, List<EntryID> entryIDs)
+      throws DirectoryException, StorageRuntimeException
+  {
+    final List<ByteString> keys = new ArrayList<>(entryIDs.size());
+    for (EntryID entryID : entryIDs)
+    {
+      keys.add(entryID.toByteString());
+    }
+    final List<ByteString> values = txn.multiRead(getName(), keys);
+    final Entry[] entries = new Entry[values.size()];
+    for (int i = 0; i < entries.length; i++)
+    {
+      try
+      {
+        entries[i] = get0(values.get(i));
+      }
+      catch (Exception e)
+      {
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_ENTRY_DATABASE_CORRUPT.get(entryIDs.get(i)));
+      }
+    }
+    return entries;
+  }
+
   Cursor<EntryID, Entry> openCursor(ReadableTransaction txn)
   {
     return transformKeysAndValues(txn.openCursor(getName()), TO_ENTRY_ID, TO_ENTRY);
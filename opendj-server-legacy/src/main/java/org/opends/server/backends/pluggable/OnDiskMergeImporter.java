@@ -1361,6 +1361,12 @@ final class OnDiskMergeImporter
       throw new UnsupportedOperationException();
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
     {
@@ -3884,6 +3890,17 @@ final class OnDiskMergeImporter
       return importer.read(treeName, key);
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      final List<ByteString> values = new ArrayList<>(keys.size());
+      for (ByteSequence key : keys)
+      {
+        values.add(importer.read(treeName, key));
+      }
+      return values;
+    }
+
     @Override
     public void put(TreeName treeName, ByteSequence key, ByteSequence value)
     {
@@ -26,6 +26,10 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -70,6 +74,10 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
   private volatile PluggableBackendCfg config;
   /** The monitor for this backend. */
   private BackendMonitor monitor;
+  /** The pool fetching candidate entries of indexed searches, or null if they are processed sequentially. */
+  private volatile ForkJoinPool searchPool;
+  /** Commits the updates of concurrent LDAP operations together. */
+  private final WriteCoalescer writeCoalescer;
 
   /** The base DNs contained in this root container. */
   private final ConcurrentMap<DN, EntryContainer> entryContainers = new ConcurrentHashMap<>();
@@ -102,6 +110,9 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
 
     getMonitorProvider().enableFilterUseStats(config.isIndexFilterAnalyzerEnabled());
     getMonitorProvider().setMaxEntries(config.getIndexFilterAnalyzerMaxFilters());
+    updateSearchPool(config.getIndexedSearchParallelism());
+    writeCoalescer = new WriteCoalescer(storage, getMonitorProvider());
+    updateWriteCoalescer(config);
 
     config.addPluggableChangeListener(this);
   }
@@ -269,6 +280,63 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
     return monitor;
   }
 
+  /**
+   * Returns the pool to use for fetching the candidate entries of indexed searches.
+   *
+   * @return the pool to use for fetching the candidate entries of indexed searches, or {@code null} if candidate
+   *         entries must be processed sequentially.
+   */
+  ForkJoinPool getSearchPool()
+  {
+    return searchPool;
+  }
+
+  /**
+   * Returns the write coalescer committing the updates of LDAP operations.
+   *
+   * @return the write coalescer committing the updates of LDAP operations
+   */
+  WriteCoalescer getWriteCoalescer()
+  {
+    return writeCoalescer;
+  }
+
+  private void updateWriteCoalescer(PluggableBackendCfg cfg)
+  {
+    writeCoalescer.setBatchLimits(
+        cfg.getWriteCoalescingMaxBatchSize(), cfg.getWriteCoalescingMaxLatency(), TimeUnit.MILLISECONDS);
+  }
+
+  private void updateSearchPool(int parallelism)
+  {
+    final ForkJoinPool oldPool = searchPool;
+    if (oldPool != null && oldPool.getParallelism() == parallelism)
+    {
+      return;
+    }
+    searchPool = parallelism > 1 ? newSearchPool(parallelism) : null;
+    if (oldPool != null)
+    {
+      // Searches still using the old pool will complete their in-flight batch before switching.
+      oldPool.shutdown();
+    }
+  }
+
+  private ForkJoinPool newSearchPool(int parallelism)
+  {
+    final String threadNamePrefix = "Indexed search fetcher for backend " + backendId + " ";
+    return new ForkJoinPool(parallelism, new ForkJoinWorkerThreadFactory()
+    {
+      @Override
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+      {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName(threadNamePrefix + thread.getPoolIndex());
+        return thread;
+      }
+    }, null, false);
+  }
+
   /**
    * Preload the tree cache. There is no preload if the configured preload
    * time limit is zero.
@@ -333,6 +401,7 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
       }
     }
     config.removePluggableChangeListener(this);
+    updateSearchPool(1);
     if (storage != null)
     {
       storage.close();
@@ -452,6 +521,8 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
     config = configuration;
     getMonitorProvider().enableFilterUseStats(config.isIndexFilterAnalyzerEnabled());
     getMonitorProvider().setMaxEntries(config.getIndexFilterAnalyzerMaxFilters());
+    updateSearchPool(config.getIndexedSearchParallelism());
+    updateWriteCoalescer(config);
 
     return new ConfigChangeResult();
   }
@@ -0,0 +1,307 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Reject.*;
+import static org.forgerock.util.Utils.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.BufferPool;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.ExternalSortChunk;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.MeteredCursor;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+
+/**
+ * Sorts the entry IDs of a search result according to their VLV keys, as produced by
+ * {@link VLVIndex#encodeVLVKey(java.util.List, org.opends.server.types.Entry, long)}. VLV keys end with the entry ID
+ * which makes them unique, so the sorted entry IDs can be decoded back from the keys.
+ * <p>
+ * A sorter either retains only the lowest (or highest) keys in a bounded heap, which is enough for searches limited
+ * by a size limit or a VLV window, or retains all the keys. In the latter case keys are kept on the heap until they
+ * exceed a memory budget, after which they are spilled to sorted runs on disk using the {@link ExternalSortChunk}
+ * machinery of the importer, then merged back when the result is read.
+ * <p>
+ * Instances are not thread-safe and must be closed so that spilled runs are removed.
+ */
+final class SearchResultSorter implements Closeable
+{
+  /** Maximum amount of memory used to hold the keys of an unbounded sort before spilling them to disk. */
+  static final int DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+  /** Estimation of the heap used by a key in addition to its bytes. */
+  private static final int KEY_OVERHEAD = 64;
+  /** Size of the entry ID appended at the end of each VLV key. */
+  private static final int ENTRY_ID_SIZE = 8;
+  /** Runs the sort of the spilled runs in the thread adding the keys so that a single buffer is needed. */
+  private static final Executor CALLER_RUNS = new Executor()
+  {
+    @Override
+    public void execute(Runnable command)
+    {
+      command.run();
+    }
+  };
+
+  private static final Comparator<ByteString> ASCENDING = new Comparator<ByteString>()
+  {
+    @Override
+    public int compare(ByteString key1, ByteString key2)
+    {
+      return key1.compareTo(key2);
+    }
+  };
+  private static final Comparator<ByteString> DESCENDING = Collections.reverseOrder(ASCENDING);
+
+  /** Order of the retained keys, lowest keys being retained first. */
+  private final Comparator<ByteString> order;
+  /** Maximum number of keys retained by a bounded sorter. */
+  private final int maxKeys;
+  /** Heap of the retained keys whose head is the key which will be evicted first, {@code null} if unbounded. */
+  private final PriorityQueue<ByteString> heap;
+
+  /** Keys retained in memory by an unbounded sorter, until they are spilled. */
+  private final List<ByteString> keys;
+  private final File tempDir;
+  private final String name;
+  private final int memoryBudget;
+  private long memoryUsed;
+  private File spillDir;
+  private BufferPool spillBufferPool;
+  private ExternalSortChunk spilledKeys;
+  private boolean spilledKeysFlipped;
+
+  /** Number of keys added to this sorter, some of them may have been evicted. */
+  private long nbKeysAdded;
+
+  /** Creates a bounded sorter. */
+  private SearchResultSorter(Comparator<ByteString> order, int maxKeys)
+  {
+    this.order = order;
+    this.maxKeys = maxKeys;
+    this.heap = new PriorityQueue<>(Math.max(1, Math.min(maxKeys, 1024)), Collections.reverseOrder(order));
+    this.keys = null;
+    this.tempDir = null;
+    this.name = null;
+    this.memoryBudget = 0;
+  }
+
+  /** Creates an unbounded sorter. */
+  private SearchResultSorter(File tempDir, String name, int memoryBudget)
+  {
+    this.order = ASCENDING;
+    this.maxKeys = 0;
+    this.heap = null;
+    this.keys = new ArrayList<>();
+    this.tempDir = tempDir;
+    this.name = name;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Returns a sorter retaining the lowest keys.
+   *
+   * @param maxKeys
+   *          the maximum number of keys retained, may be {@code 0} to count the keys without retaining any
+   * @return a new sorter
+   */
+  static SearchResultSorter lowestKeys(int maxKeys)
+  {
+    ifFalse(maxKeys >= 0, "maxKeys must be positive");
+    return new SearchResultSorter(ASCENDING, maxKeys);
+  }
+
+  /**
+   * Returns a sorter retaining the highest keys, which are still returned in ascending order.
+   *
+   * @param maxKeys
+   *          the maximum number of keys retained, may be {@code 0} to count the keys without retaining any
+   * @return a new sorter
+   */
+  static SearchResultSorter highestKeys(int maxKeys)
+  {
+    ifFalse(maxKeys >= 0, "maxKeys must be positive");
+    return new SearchResultSorter(DESCENDING, maxKeys);
+  }
+
+  /**
+   * Returns a sorter retaining all the keys and spilling them to disk once they exceed the provided memory budget.
+   *
+   * @param tempDir
+   *          the directory where the keys are spilled
+   * @param name
+   *          the name used for the files holding the spilled keys
+   * @param memoryBudget
+   *          the maximum number of bytes used to hold the keys in memory
+   * @return a new sorter
+   */
+  static SearchResultSorter allKeys(File tempDir, String name, int memoryBudget)
+  {
+    checkNotNull(tempDir, "tempDir must not be null");
+    ifFalse(memoryBudget > 0, "memoryBudget must be greater than 0");
+    return new SearchResultSorter(tempDir, name, memoryBudget);
+  }
+
+  /**
+   * Adds the VLV key of a matching entry.
+   *
+   * @param key
+   *          the VLV key, ending with the entry ID
+   */
+  void add(ByteString key)
+  {
+    nbKeysAdded++;
+    if (heap != null)
+    {
+      if (heap.size() < maxKeys)
+      {
+        heap.add(key);
+        return;
+      }
+      if (maxKeys > 0 && order.compare(key, heap.peek()) < 0)
+      {
+        heap.poll();
+        heap.add(key);
+      }
+    }
+    else if (spilledKeys == null)
+    {
+      keys.add(key);
+      memoryUsed += key.length() + KEY_OVERHEAD;
+      if (memoryUsed > memoryBudget)
+      {
+        spill();
+      }
+    }
+    else
+    {
+      spilledKeys.put(key, ByteString.empty());
+    }
+  }
+
+  private void spill()
+  {
+    try
+    {
+      tempDir.mkdirs();
+      spillDir = Files.createTempDirectory(tempDir.toPath(), "sort").toFile();
+      spillBufferPool = new BufferPool(1, memoryBudget, false);
+      spilledKeys = new ExternalSortChunk(spillDir, name, spillBufferPool, null, null, CALLER_RUNS);
+    }
+    catch (IOException e)
+    {
+      throw new StorageRuntimeException(e);
+    }
+    for (ByteString key : keys)
+    {
+      spilledKeys.put(key, ByteString.empty());
+    }
+    keys.clear();
+    memoryUsed = 0;
+  }
+
+  /**
+   * Returns the number of keys added to this sorter, including the ones which have not been retained.
+   *
+   * @return the number of keys added to this sorter
+   */
+  long getNbKeysAdded()
+  {
+    return nbKeysAdded;
+  }
+
+  /**
+   * Returns the entry IDs of the retained keys in ascending key order. This method must be called only once.
+   *
+   * @return the entry IDs of the retained keys in ascending key order
+   */
+  long[] toLongArray()
+  {
+    if (heap != null)
+    {
+      // Evict the keys in reverse retention order.
+      final long[] entryIDs = new long[heap.size()];
+      final boolean ascending = order == ASCENDING;
+      for (int i = entryIDs.length - 1; i >= 0; i--)
+      {
+        entryIDs[ascending ? i : entryIDs.length - 1 - i] = decodeEntryID(heap.poll());
+      }
+      return entryIDs;
+    }
+    if (spilledKeys == null)
+    {
+      Collections.sort(keys);
+      final long[] entryIDs = new long[keys.size()];
+      for (int i = 0; i < entryIDs.length; i++)
+      {
+        entryIDs[i] = decodeEntryID(keys.get(i));
+      }
+      keys.clear();
+      return entryIDs;
+    }
+
+    final long[] entryIDs = new long[(int) Math.min(nbKeysAdded, Integer.MAX_VALUE)];
+    int i = 0;
+    spilledKeysFlipped = true;
+    try (final MeteredCursor<ByteString, ByteString> cursor = spilledKeys.flip())
+    {
+      while (i < entryIDs.length && cursor.next())
+      {
+        entryIDs[i++] = decodeEntryID(cursor.getKey());
+      }
+    }
+    return i < entryIDs.length ? Arrays.copyOf(entryIDs, i) : entryIDs;
+  }
+
+  static long decodeEntryID(ByteSequence key)
+  {
+    long entryID = 0;
+    for (int i = key.length() - ENTRY_ID_SIZE; i < key.length(); i++)
+    {
+      entryID = (entryID << 8) | (key.byteAt(i) & 0xFF);
+    }
+    return entryID;
+  }
+
+  @Override
+  public void close()
+  {
+    if (spilledKeys != null && !spilledKeysFlipped)
+    {
+      // Release the file holding the spilled keys
+      spilledKeysFlipped = true;
+      closeSilently(spilledKeys.flip());
+    }
+    closeSilently(spillBufferPool);
+    if (spillDir != null)
+    {
+      recursiveDelete(spillDir);
+      spillDir = null;
+    }
+  }
+}
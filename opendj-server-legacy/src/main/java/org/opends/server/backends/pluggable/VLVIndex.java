@@ -616,28 +616,41 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
   static ByteSequence encodeTargetAssertion(final List<SortKey> sortKeys, final ByteString assertion,
       final SearchOperation searchOperation, final int resultSetSize) throws DirectoryException
   {
-    final SortKey primarySortKey = sortKeys.get(0);
     try
     {
-      /*
-       * Over-allocate the buffer for the primary key since it will be larger than the unnormalized
-       * value. For example it will definitely include a trailing separator byte, but may also
-       * include some escaped bytes as well. 10 extra bytes should accommodate most inputs.
-       */
-      final ByteStringBuilder encodedPrimaryKey = new ByteStringBuilder(assertion.length() + 10);
-      final MatchingRule matchingRule = getEffectiveOrderingRule(primarySortKey);
-      final ByteString normalizedAttributeValue = matchingRule.normalizeAttributeValue(assertion);
-      encodeVLVKeyValue(normalizedAttributeValue, encodedPrimaryKey, primarySortKey.isReverseOrder());
-      return encodedPrimaryKey;
+      return encodeTargetAssertion(sortKeys, assertion);
     }
     catch (final DecodeException e)
     {
-      addVLVResponseControl(searchOperation, 0, resultSetSize, LDAPResultCode.OFFSET_RANGE_ERROR);
-      final String attrDesc = primarySortKey.getAttributeDescription();
-      throw new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, ERR_VLV_BAD_ASSERTION.get(attrDesc));
+      throw newBadTargetAssertionException(sortKeys, searchOperation, resultSetSize);
     }
   }
 
+  static ByteSequence encodeTargetAssertion(final List<SortKey> sortKeys, final ByteString assertion)
+      throws DecodeException
+  {
+    final SortKey primarySortKey = sortKeys.get(0);
+    /*
+     * Over-allocate the buffer for the primary key since it will be larger than the unnormalized
+     * value. For example it will definitely include a trailing separator byte, but may also
+     * include some escaped bytes as well. 10 extra bytes should accommodate most inputs.
+     */
+    final ByteStringBuilder encodedPrimaryKey = new ByteStringBuilder(assertion.length() + 10);
+    final MatchingRule matchingRule = getEffectiveOrderingRule(primarySortKey);
+    final ByteString normalizedAttributeValue = matchingRule.normalizeAttributeValue(assertion);
+    encodeVLVKeyValue(normalizedAttributeValue, encodedPrimaryKey, primarySortKey.isReverseOrder());
+    return encodedPrimaryKey;
+  }
+
+  /** Adds the VLV response control reporting the invalid target assertion and returns the exception to throw. */
+  static DirectoryException newBadTargetAssertionException(final List<SortKey> sortKeys,
+      final SearchOperation searchOperation, final int resultSetSize)
+  {
+    addVLVResponseControl(searchOperation, 0, resultSetSize, LDAPResultCode.OFFSET_RANGE_ERROR);
+    final String attrDesc = sortKeys.get(0).getAttributeDescription();
+    return new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, ERR_VLV_BAD_ASSERTION.get(attrDesc));
+  }
+
   private EntryIDSet evaluateVLVRequestByOffset(final ReadableTransaction txn, final SearchOperation searchOperation,
       final VLVRequestControl vlvRequest, final StringBuilder debugBuilder) throws DirectoryException
   {
@@ -0,0 +1,335 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+
+/**
+ * Commits the write operations submitted concurrently by different threads together, in a single
+ * storage transaction, so that the cost of each commit is shared by all the operations of the
+ * batch.
+ * <p>
+ * There is no dedicated thread: the first thread finding no batch in progress becomes the leader
+ * and commits the pending operations, in submission order, while the other threads wait for their
+ * operation to be committed. The leader steps down as soon as its own operation is committed,
+ * leaving the remaining operations to one of the waiting threads.
+ * <p>
+ * Each operation must be safe to run again in a new transaction, as required by
+ * {@link Storage#write(WriteOperation)}: when an operation of a batch fails, the whole transaction
+ * is rolled back, and each operation of the batch is run again in its own transaction so that it
+ * gets its own outcome. Operations must not conflict with each other: this is guaranteed for LDAP
+ * operations by the entry locks their callers hold while the operation is committed.
+ */
+final class WriteCoalescer
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** A write operation waiting to be committed. */
+  private static final class PendingWrite
+  {
+    private final WriteOperation operation;
+    /** Whether the operation has been committed or has failed. */
+    @GuardedBy("lock")
+    private boolean isDone;
+    /** The reason why the operation failed, or null if it has been committed. */
+    private Throwable failure;
+
+    private PendingWrite(WriteOperation operation)
+    {
+      this.operation = operation;
+    }
+  }
+
+  private final Storage storage;
+  /** The monitor updated with batch statistics, may be null. */
+  private final BackendMonitor monitor;
+  private final Object lock = new Object();
+
+  /** The operations waiting to be committed, in submission order. */
+  @GuardedBy("lock")
+  private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+  /** Whether a thread is committing the pending operations. */
+  @GuardedBy("lock")
+  private boolean hasLeader;
+
+  private volatile int maxBatchSize = 1;
+  private volatile long maxLatencyInNanos;
+
+  /**
+   * Creates a new write coalescer.
+   *
+   * @param storage
+   *          the storage where to commit the write operations
+   * @param monitor
+   *          the monitor to update with batch statistics, may be null
+   */
+  WriteCoalescer(Storage storage, BackendMonitor monitor)
+  {
+    this.storage = storage;
+    this.monitor = monitor;
+  }
+
+  /**
+   * Sets the limits of each batch of write operations.
+   *
+   * @param maxBatchSize
+   *          the maximum number of operations committed together, a value of one disables
+   *          coalescing
+   * @param maxLatency
+   *          how long to wait for a batch to fill up before committing it
+   * @param unit
+   *          the unit of {@code maxLatency}
+   */
+  void setBatchLimits(int maxBatchSize, long maxLatency, TimeUnit unit)
+  {
+    this.maxLatencyInNanos = unit.toNanos(maxLatency);
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Runs the provided write operation and commits it, possibly along with write operations submitted
+   * concurrently by other threads.
+   *
+   * @param writeOperation
+   *          the write operation to run
+   * @throws Exception
+   *           if the write operation failed, as thrown by {@link Storage#write(WriteOperation)}
+   */
+  void write(WriteOperation writeOperation) throws Exception
+  {
+    if (maxBatchSize <= 1)
+    {
+      storage.write(writeOperation);
+      return;
+    }
+
+    final PendingWrite write = new PendingWrite(writeOperation);
+    final boolean isLeader;
+    boolean interrupted = false;
+    synchronized (lock)
+    {
+      pendingWrites.add(write);
+      // Wake up a leader waiting for its batch to fill up
+      lock.notifyAll();
+      while (!write.isDone && hasLeader)
+      {
+        try
+        {
+          lock.wait();
+        }
+        catch (InterruptedException e)
+        {
+          // The operation may already be part of a transaction: still wait for its outcome
+          interrupted = true;
+        }
+      }
+      isLeader = !write.isDone;
+      hasLeader |= isLeader;
+    }
+
+    if (isLeader)
+    {
+      try
+      {
+        do
+        {
+          interrupted |= commit(nextBatch());
+        }
+        while (!isDone(write));
+      }
+      finally
+      {
+        synchronized (lock)
+        {
+          hasLeader = false;
+          lock.notifyAll();
+        }
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    if (write.failure instanceof Exception)
+    {
+      throw (Exception) write.failure;
+    }
+    else if (write.failure instanceof Error)
+    {
+      throw (Error) write.failure;
+    }
+  }
+
+  private boolean isDone(PendingWrite write)
+  {
+    synchronized (lock)
+    {
+      return write.isDone;
+    }
+  }
+
+  /**
+   * Removes the next batch of operations from the pending operations, waiting up to the configured
+   * latency for the batch to fill up.
+   *
+   * @return the next batch of operations, never empty while called by the leader
+   */
+  private List<PendingWrite> nextBatch()
+  {
+    final int batchSize = Math.max(1, maxBatchSize);
+    synchronized (lock)
+    {
+      final long latencyInNanos = maxLatencyInNanos;
+      if (latencyInNanos > 0 && pendingWrites.size() < batchSize)
+      {
+        final long deadline = System.nanoTime() + latencyInNanos;
+        long remaining = latencyInNanos;
+        while (pendingWrites.size() < batchSize && remaining > 0)
+        {
+          try
+          {
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+          }
+          catch (InterruptedException e)
+          {
+            // Commit what is available now, the interrupt is restored by the caller
+            Thread.currentThread().interrupt();
+            break;
+          }
+          remaining = deadline - System.nanoTime();
+        }
+      }
+
+      final List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, pendingWrites.size()));
+      while (batch.size() < batchSize && !pendingWrites.isEmpty())
+      {
+        batch.add(pendingWrites.poll());
+      }
+      return batch;
+    }
+  }
+
+  /**
+   * Commits the provided batch of operations, then notifies the threads waiting for them.
+   *
+   * @return whether the current thread was interrupted while waiting for the batch to fill up
+   */
+  private boolean commit(final List<PendingWrite> batch)
+  {
+    // Clear the interrupt set by nextBatch() so that it does not fail the storage transaction
+    final boolean interrupted = Thread.interrupted();
+    Throwable error = null;
+    try
+    {
+      if (batch.size() == 1 || !commitTogether(batch))
+      {
+        for (PendingWrite write : batch)
+        {
+          commitAlone(write);
+        }
+      }
+    }
+    catch (Error e)
+    {
+      error = e;
+      throw e;
+    }
+    finally
+    {
+      synchronized (lock)
+      {
+        for (PendingWrite write : batch)
+        {
+          if (!write.isDone && error != null)
+          {
+            write.failure = error;
+          }
+          write.isDone = true;
+        }
+        lock.notifyAll();
+      }
+    }
+    return interrupted;
+  }
+
+  private boolean commitTogether(final List<PendingWrite> batch)
+  {
+    try
+    {
+      storage.write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (PendingWrite write : batch)
+          {
+            write.operation.run(txn);
+          }
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      // At least one operation failed: each operation will be retried in its own transaction
+      logger.traceException(e);
+      if (monitor != null)
+      {
+        monitor.incrementWriteCoalescingRollbackCount();
+      }
+      return false;
+    }
+    synchronized (lock)
+    {
+      for (PendingWrite write : batch)
+      {
+        write.isDone = true;
+      }
+    }
+    if (monitor != null)
+    {
+      monitor.updateWriteCoalescingStats(batch.size());
+    }
+    return true;
+  }
+
+  private void commitAlone(PendingWrite write)
+  {
+    try
+    {
+      storage.write(write.operation);
+    }
+    catch (Exception e)
+    {
+      write.failure = e;
+    }
+    synchronized (lock)
+    {
+      write.isDone = true;
+    }
+  }
+}
@@ -11,10 +11,12 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.opends.server.backends.pluggable.spi;
 
+import java.util.List;
+
 import org.forgerock.opendj.ldap.ByteSequence;
 import org.forgerock.opendj.ldap.ByteString;
 
@@ -34,6 +36,24 @@ public interface ReadableTransaction
    */
   ByteString read(TreeName treeName, ByteSequence key);
 
+  /**
+   * Reads the records' values associated to the provided keys, in the tree whose name is provided.
+   * <p>
+   * The keys are read in a single pass over the tree: implementations are expected to reuse the same
+   * cursor for all the keys so that the keys stored in the same leaf page are read without descending
+   * the tree again. Keys should therefore be provided in ascending order, although any order is
+   * supported.
+   *
+   * @param treeName
+   *          the tree name
+   * @param keys
+   *          the records' keys, preferably in ascending order
+   * @return the records' values, in the same order as the provided keys, holding {@code null} for the
+   *         keys which do not exist
+   * @see StorageUtils#multiRead(Cursor, List)
+   */
+  List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys);
+
   /**
    * Opens a cursor on the tree whose name is provided.
    *
@@ -20,10 +20,14 @@ import static org.opends.messages.ConfigMessages.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
 import org.opends.server.core.DirectoryServer;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.FilePermission;
@@ -31,6 +35,13 @@ import org.opends.server.types.FilePermission;
 /** Utility class for implementations of {@link Storage}. */
 public final class StorageUtils
 {
+  /**
+   * Maximum number of records skipped by moving the cursor forward before a multi-read positions the
+   * cursor on the next key instead. Skipping a few records is cheaper than descending the tree again
+   * when the keys are dense, e.g. consecutive entry IDs.
+   */
+  private static final int MAX_RECORDS_SKIPPED_BEFORE_POSITIONING = 8;
+
   private StorageUtils()
   {
     // do not instantiate utility classes
@@ -211,6 +222,57 @@ public final class StorageUtils
     }
   }
 
+  /**
+   * Reads the records' values associated to the provided keys with the provided cursor, in a single pass
+   * when the keys are in ascending order. Used by the implementations of
+   * {@link ReadableTransaction#multiRead(TreeName, List)}.
+   *
+   * @param cursor
+   *          the cursor to use for reading all the keys
+   * @param keys
+   *          the records' keys, preferably in ascending order
+   * @return the records' values, in the same order as the provided keys, holding {@code null} for the
+   *         keys which do not exist
+   */
+  public static List<ByteString> multiRead(Cursor<ByteString, ByteString> cursor, List<? extends ByteSequence> keys)
+  {
+    final List<ByteString> values = new ArrayList<>(keys.size());
+    for (ByteSequence key : keys)
+    {
+      values.add(moveToKey(cursor, key) ? cursor.getValue() : null);
+    }
+    return values;
+  }
+
+  private static boolean moveToKey(Cursor<ByteString, ByteString> cursor, ByteSequence key)
+  {
+    if (cursor.isDefined())
+    {
+      int cmp = cursor.getKey().compareTo(key);
+      if (cmp == 0)
+      {
+        return true;
+      }
+      if (cmp < 0)
+      {
+        // The key is ahead: it is likely in the current leaf page when the keys are dense
+        for (int i = 0; i < MAX_RECORDS_SKIPPED_BEFORE_POSITIONING; i++)
+        {
+          if (!cursor.next())
+          {
+            return false;
+          }
+          cmp = cursor.getKey().compareTo(key);
+          if (cmp >= 0)
+          {
+            return cmp == 0;
+          }
+        }
+      }
+    }
+    return cursor.positionToKey(key);
+  }
+
   /**
    * Creates a new unusable {@link StorageStatus} for the disk full threshold.
    *
@@ -132,10 +132,18 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     private boolean saveConfigOnSuccessfulStartup;
     /** Whether to use collect operation processing times in nanosecond resolution. */
     private boolean useNanoTime;
+    /** Whether to measure the time spent by client operations in each processing phase. */
+    private boolean operationPhaseTiming;
     /** The maximum number of connections that will be allowed at any given time. */
     private long maxAllowedConnections;
     /** The maximum number of concurrent persistent searches. */
     private int maxPSearches;
+    /** The maximum number of persistent search notifications waiting to be sent to a client, 0 if not queued. */
+    private int psearchNotificationQueueSize;
+    /** Whether to disconnect the clients whose persistent search notification queue is full. */
+    private boolean disconnectOnPSearchNotificationQueueOverflow = true;
+    /** The maximum number of threads sending the queued persistent search notifications, 0 to let the server decide. */
+    private int psearchNotificationThreads;
     /** The maximum size that internal buffers will be allowed to grow to until they are trimmed. */
     private int maxInternalBufferSize = DEFAULT_MAX_INTERNAL_BUFFER_SIZE;
   }
@@ -179,6 +187,8 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     applyGlobalConfiguration(globalConfig, coreAttrs);
     applySubordinateDNsChange(globalConfig, coreAttrs);
     coreAttributes = coreAttrs;
+    OperationPhaseTimer.setEnabled(coreAttrs.operationPhaseTiming);
+    PersistentSearchNotificationQueue.setNotifierThreads(coreAttrs.psearchNotificationThreads);
     DirectoryServer.resetDefaultPasswordPolicy();
   }
 
@@ -215,9 +225,15 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     core.saveConfigOnSuccessfulStartup = globalConfig.isSaveConfigOnSuccessfulStartup();
 
     core.useNanoTime= globalConfig.getEtimeResolution() == GlobalCfgDefn.EtimeResolution.NANOSECONDS;
+    core.operationPhaseTiming = globalConfig.isOperationPhaseTiming();
     long maxAllowedConnections = globalConfig.getMaxAllowedClientConnections();
     core.maxAllowedConnections = (maxAllowedConnections > 0) ? maxAllowedConnections : -1;
     core.maxPSearches = globalConfig.getMaxPsearches();
+    core.psearchNotificationQueueSize = globalConfig.getPsearchNotificationQueueSize();
+    core.disconnectOnPSearchNotificationQueueOverflow = globalConfig.getPsearchNotificationQueueOverflowPolicy()
+        == GlobalCfgDefn.PsearchNotificationQueueOverflowPolicy.DISCONNECT;
+    final Integer psearchNotificationThreads = globalConfig.getPsearchNotificationThreads();
+    core.psearchNotificationThreads = psearchNotificationThreads != null ? psearchNotificationThreads : 0;
     core.maxInternalBufferSize = (int) globalConfig.getMaxInternalBufferSize();
 
     // For tools, common audit may not be available
@@ -517,6 +533,8 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     if (changeResult.getResultCode() == ResultCode.SUCCESS)
     {
       coreAttributes = coreAttrs;
+      OperationPhaseTimer.setEnabled(coreAttrs.operationPhaseTiming);
+      PersistentSearchNotificationQueue.setNotifierThreads(coreAttrs.psearchNotificationThreads);
       DirectoryServer.resetDefaultPasswordPolicy();
     }
     return changeResult;
@@ -624,6 +642,30 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     return coreAttributes.maxPSearches;
   }
 
+  /**
+   * Retrieves the maximum number of persistent search notifications which may be waiting to be sent
+   * to a client connection.
+   *
+   * @return the maximum number of notifications waiting to be sent to a client connection, or 0 if
+   *         notifications are sent by the worker thread which processed the change
+   */
+  public int getPSearchNotificationQueueSize()
+  {
+    return coreAttributes.psearchNotificationQueueSize;
+  }
+
+  /**
+   * Indicates whether the client connections whose persistent search notification queue is full
+   * must be terminated, rather than missing notifications.
+   *
+   * @return {@code true} if the client connections must be terminated, {@code false} if the
+   *         notifications must be dropped
+   */
+  public boolean isDisconnectOnPSearchNotificationQueueOverflow()
+  {
+    return coreAttributes.disconnectOnPSearchNotificationQueueOverflow;
+  }
+
   /**
    * Retrieves the DN of the configuration entry for the identity mapper that
    * should be used in conjunction with proxied authorization V2 controls.
@@ -850,6 +892,18 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     return coreAttributes.useNanoTime;
   }
 
+  /**
+   * Indicates whether the time spent by client operations in each processing
+   * phase should be measured.
+   *
+   * @return  {@code true} if the operation phases should be timed, or
+   *          {@code false} if not.
+   */
+  public boolean isOperationPhaseTiming()
+  {
+    return coreAttributes.operationPhaseTiming;
+  }
+
   /**
    * Indicates whether configuration should be saved on successful startup of the server.
    *
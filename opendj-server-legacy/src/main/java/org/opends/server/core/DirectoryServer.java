@@ -130,6 +130,8 @@ import org.opends.server.loggers.RotationPolicy;
 import org.opends.server.loggers.TextErrorLogPublisher;
 import org.opends.server.loggers.TextWriter;
 import org.opends.server.monitors.ConnectionHandlerMonitor;
+import org.opends.server.monitors.LockManagerMonitor;
+import org.opends.server.monitors.OperationLatencyMonitor;
 import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.protocols.internal.InternalConnectionHandler;
 import org.opends.server.schema.SchemaHandler;
@@ -534,6 +536,9 @@ public final class DirectoryServer
   /** The lock manager which will be used for coordinating access to LDAP entries. */
   private final LockManager lockManager = new LockManager();
 
+  /** The monitor recording the latency of the operations requested by clients. */
+  private final OperationLatencyMonitor operationLatencyMonitor = new OperationLatencyMonitor();
+
   /** The default timeout used to start the server in detach mode. */
   public static final int DEFAULT_TIMEOUT = 200;
 
@@ -1485,6 +1490,8 @@ public final class DirectoryServer
 
       monitorConfigManager = new MonitorConfigManager(serverContext);
       monitorConfigManager.initializeMonitorProviders();
+      registerMonitorProvider(new LockManagerMonitor(lockManager));
+      registerMonitorProvider(operationLatencyMonitor);
 
       pluginConfigManager.initializeUserPlugins(null);
 
@@ -5277,4 +5284,14 @@ public final class DirectoryServer
   {
     return directoryServer.lockManager;
   }
+
+  /**
+   * Returns the monitor recording the latency of the operations requested by clients.
+   *
+   * @return the monitor recording the latency of the operations requested by clients.
+   */
+  public static OperationLatencyMonitor getOperationLatencyMonitor()
+  {
+    return directoryServer.operationLatencyMonitor;
+  }
 }
@@ -31,12 +31,15 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.api.AccessControlHandler;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.ExtendedOperationHandler;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.types.AbstractOperation;
 import org.opends.server.types.CancelResult;
 import org.opends.server.types.CanceledOperationException;
 import org.opends.server.types.Control;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.DirectoryException;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.OperationType;
 import org.opends.server.types.operation.PostOperationExtendedOperation;
 import org.opends.server.types.operation.PostResponseExtendedOperation;
@@ -318,7 +321,17 @@ public class ExtendedOperationBasis
       try
       {
         // Invoke the pre-operation extended plugins.
-        if (!processOperationResult(getPluginConfigManager().invokePreOperationExtendedPlugins(this)))
+        final PluginResult.PreOperation preOpResult;
+        final long preOpToken = OperationPhaseTimer.start(this);
+        try
+        {
+          preOpResult = getPluginConfigManager().invokePreOperationExtendedPlugins(this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+        }
+        if (!processOperationResult(preOpResult))
         {
           return;
         }
@@ -23,10 +23,14 @@ import static org.opends.server.protocols.internal.Requests.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,11 +40,14 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.LocalizedIllegalArgumentException;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.schema.AttributeType;
 import org.forgerock.util.Utils;
 import org.forgerock.opendj.config.ClassPropertyDefinition;
 import org.forgerock.opendj.config.server.ConfigurationAddListener;
@@ -61,6 +68,7 @@ import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.protocols.internal.InternalSearchOperation;
 import org.opends.server.protocols.internal.SearchRequest;
 import org.opends.server.protocols.ldap.LDAPControl;
+import org.opends.server.types.Attribute;
 import org.opends.server.types.Control;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.DirectoryException;
@@ -108,6 +116,9 @@ public class GroupManager extends InternalDirectoryServerPlugin
   /** A mapping between the DNs of all group entries and the corresponding group instances. */
   private DITCacheMap<Group<?>> groupInstances;
 
+  /** Reverse index of the group memberships, readable without holding the lock. */
+  private final GroupMembershipIndex membershipIndex = new GroupMembershipIndex();
+
   /** Lock to protect internal data structures. */
   private final ReadWriteLock lock;
 
@@ -263,6 +274,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
       lock.writeLock().lock();
       try
       {
+        Set<Group<?>> removedGroups = new HashSet<>();
         Iterator<Group<?>> iterator = groupInstances.values().iterator();
         while (iterator.hasNext())
         {
@@ -270,8 +282,10 @@ public class GroupManager extends InternalDirectoryServerPlugin
           if (g.getClass().getName().equals(group.getClass().getName()))
           {
             iterator.remove();
+            removedGroups.add(g);
           }
         }
+        membershipIndex.removeGroups(removedGroups);
       }
       finally
       {
@@ -324,6 +338,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
           lock.writeLock().lock();
           try
           {
+            Set<Group<?>> removedGroups = new HashSet<>();
             Iterator<Group<?>> iterator = groupInstances.values().iterator();
             while (iterator.hasNext())
             {
@@ -331,8 +346,10 @@ public class GroupManager extends InternalDirectoryServerPlugin
               if (g.getClass().getName().equals(group.getClass().getName()))
               {
                 iterator.remove();
+                removedGroups.add(g);
               }
             }
+            membershipIndex.removeGroups(removedGroups);
           }
           finally
           {
@@ -510,6 +527,107 @@ public class GroupManager extends InternalDirectoryServerPlugin
     }
   }
 
+  /**
+   * Retrieves the set of groups in which the provided user is a member,
+   * either directly or through nested groups.
+   * <BR><BR>
+   * The groups listing their members are looked up in the membership index,
+   * so only the groups whose membership is computed (e.g., dynamic groups)
+   * need to be evaluated against the provided entry.
+   *
+   * @param  userEntry  The entry for the user.
+   *
+   * @return  The set of groups in which the user is a member.
+   */
+  public Set<Group<?>> getGroupsOf(Entry userEntry)
+  {
+    Deque<Group<?>> toVisit = new ArrayDeque<>(membershipIndex.getGroupsListing(userEntry.getName()));
+    for (Group<?> group : membershipIndex.getComputedGroups())
+    {
+      try
+      {
+        if (group.isMember(userEntry))
+        {
+          toVisit.add(group);
+        }
+      }
+      catch (DirectoryException e)
+      {
+        logger.traceException(e);
+      }
+    }
+
+    // Walk up the nested groups
+    Set<Group<?>> groups = new LinkedHashSet<>();
+    while (!toVisit.isEmpty())
+    {
+      Group<?> group = toVisit.poll();
+      if (isRegistered(group) && groups.add(group))
+      {
+        toVisit.addAll(membershipIndex.getGroupsListing(group.getGroupDN()));
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * Indicates whether the provided user is a member of the provided group,
+   * either directly or through nested groups.
+   * <BR><BR>
+   * For registered groups listing their members, the determination is made by
+   * walking the membership index up from the user, which does not require
+   * expanding the nested groups.
+   *
+   * @param  group      The group.
+   * @param  userDN     The DN of the user.
+   * @param  userEntry  The entry for the user, or {@code null} if it has not
+   *                    been retrieved yet.
+   *
+   * @return  {@code true} if the user is a member of the group, or
+   *          {@code false} if not.
+   *
+   * @throws  DirectoryException  If a problem occurs while attempting to make
+   *                              the determination.
+   */
+  public boolean isMember(Group<?> group, DN userDN, Entry userEntry) throws DirectoryException
+  {
+    if (GroupMembershipIndex.isComputed(group) || !isRegistered(group))
+    {
+      return userEntry != null ? group.isMember(userEntry) : group.isMember(userDN);
+    }
+
+    Deque<Group<?>> toVisit = new ArrayDeque<>(membershipIndex.getGroupsListing(userDN));
+    for (Group<?> computedGroup : membershipIndex.getComputedGroups())
+    {
+      // Only nested computed groups can make the user a member of a listing group
+      if (membershipIndex.isListed(computedGroup.getGroupDN())
+          && (userEntry != null ? computedGroup.isMember(userEntry) : computedGroup.isMember(userDN)))
+      {
+        toVisit.add(computedGroup);
+      }
+    }
+
+    Set<Group<?>> visited = new HashSet<>();
+    while (!toVisit.isEmpty())
+    {
+      Group<?> g = toVisit.poll();
+      if (g == group)
+      {
+        return true;
+      }
+      if (isRegistered(g) && visited.add(g))
+      {
+        toVisit.addAll(membershipIndex.getGroupsListing(g.getGroupDN()));
+      }
+    }
+    return false;
+  }
+
+  private boolean isRegistered(Group<?> group)
+  {
+    return membershipIndex.getGroup(group.getGroupDN()) == group;
+  }
+
   /**
    * {@inheritDoc}  In this case, the server will search the backend to find
    * all group instances that it may contain and register them with this group
@@ -580,8 +698,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
             try
             {
               Group<?> groupInstance = groupImplementation.newInstance(serverContext, entry);
-              groupInstances.put(entry.getName(), groupInstance);
-              refreshToken++;
+              register(groupInstance, entry);
             }
             catch (DirectoryException e)
             {
@@ -608,6 +725,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
     lock.writeLock().lock();
     try
     {
+      Set<Group<?>> removedGroups = new HashSet<>();
       Iterator<Map.Entry<DN, Group<?>>> iterator = groupInstances.entrySet().iterator();
       while (iterator.hasNext())
       {
@@ -616,8 +734,10 @@ public class GroupManager extends InternalDirectoryServerPlugin
         if (backend.handlesEntry(groupEntryDN))
         {
           iterator.remove();
+          removedGroups.add(mapEntry.getValue());
         }
       }
+      membershipIndex.removeGroups(removedGroups);
     }
     finally
     {
@@ -680,10 +800,23 @@ public class GroupManager extends InternalDirectoryServerPlugin
     lock.writeLock().lock();
     try
     {
-      if (groupInstances.removeSubtree(entry.getName(), null))
+      Set<Group<?>> removedGroups = new HashSet<>();
+      if (groupInstances.removeSubtree(entry.getName(), removedGroups))
       {
         refreshToken++;
       }
+      Iterator<Group<?>> iterator = removedGroups.iterator();
+      while (iterator.hasNext())
+      {
+        Group<?> group = iterator.next();
+        if (group.getGroupDN().equals(entry.getName()))
+        {
+          // The deleted entry lists the members of its own group
+          membershipIndex.removeGroup(group, getListedMembers(group, entry));
+          iterator.remove();
+        }
+      }
+      membershipIndex.removeGroups(removedGroups);
     }
     finally
     {
@@ -723,6 +856,13 @@ public class GroupManager extends InternalDirectoryServerPlugin
   {
     if (hasGroupMembershipUpdateControl(modifyOperation))
     {
+      // The group updated its own members, only keep the index in sync.
+      // Do not take the lock here: the group holds its own lock while updating its entry.
+      Group<?> group = membershipIndex.getGroup(oldEntry.getName());
+      if (group != null)
+      {
+        updateIndex(group, oldEntry, newEntry, modifications);
+      }
       return;
     }
 
@@ -752,12 +892,14 @@ public class GroupManager extends InternalDirectoryServerPlugin
             || updatesObjectClass(modifications))
         {
           groupInstances.remove(oldEntry.getName());
+          membershipIndex.removeGroup(group, getListedMembers(group, oldEntry));
           // This updates the refreshToken
           createAndRegisterGroup(newEntry);
         }
         else
         {
           group.updateMembers(modifications);
+          updateIndex(group, oldEntry, newEntry, modifications);
         }
       }
     }
@@ -799,6 +941,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
         final DN renamedGroupDN = groupDN.rename(oldDN, newDN);
         group.setGroupDN(renamedGroupDN);
         groupInstances.put(renamedGroupDN, group);
+        membershipIndex.renameGroup(groupDN, group);
       }
       if (!groupSet.isEmpty())
       {
@@ -942,8 +1085,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
           lock.writeLock().lock();
           try
           {
-            groupInstances.put(entry.getName(), groupInstance);
-            refreshToken++;
+            register(groupInstance, entry);
           }
           finally
           {
@@ -958,6 +1100,118 @@ public class GroupManager extends InternalDirectoryServerPlugin
     }
   }
 
+  /**
+   * Registers the provided group instance and indexes its members, replacing any group instance
+   * registered with the same DN. The caller must hold the write lock.
+   *
+   * @param  groupInstance  The group instance to register.
+   * @param  entry          The entry containing the group definition.
+   */
+  private void register(Group<?> groupInstance, Entry entry)
+  {
+    Group<?> previousInstance = groupInstances.put(entry.getName(), groupInstance);
+    if (previousInstance != null)
+    {
+      membershipIndex.removeGroups(Collections.<Group<?>> singleton(previousInstance));
+    }
+    membershipIndex.addGroup(groupInstance, getListedMembers(groupInstance, entry));
+    refreshToken++;
+  }
+
+  /**
+   * Applies the provided modifications of a group entry to the membership index.
+   *
+   * @param  group          The group whose entry has been modified.
+   * @param  oldEntry       The group entry before the modifications.
+   * @param  newEntry       The group entry after the modifications.
+   * @param  modifications  The modifications applied to the group entry.
+   */
+  private void updateIndex(Group<?> group, Entry oldEntry, Entry newEntry, List<Modification> modifications)
+  {
+    AttributeType memberAttributeType = group.getMemberAttributeType();
+    if (memberAttributeType == null)
+    {
+      return;
+    }
+
+    for (Modification mod : modifications)
+    {
+      Attribute attribute = mod.getAttribute();
+      if (!attribute.getAttributeDescription().getAttributeType().equals(memberAttributeType))
+      {
+        continue;
+      }
+
+      switch (mod.getModificationType().asEnum())
+      {
+      case ADD:
+        membershipIndex.addMembers(group, toDNs(attribute));
+        break;
+      case DELETE:
+        if (!attribute.isEmpty())
+        {
+          membershipIndex.removeMembers(group, toDNs(attribute));
+          break;
+        }
+        // Deleting all the values
+        reindex(group, oldEntry, newEntry);
+        return;
+      default:
+        reindex(group, oldEntry, newEntry);
+        return;
+      }
+    }
+  }
+
+  private void reindex(Group<?> group, Entry oldEntry, Entry newEntry)
+  {
+    membershipIndex.removeMembers(group, getListedMembers(group, oldEntry));
+    membershipIndex.addMembers(group, getListedMembers(group, newEntry));
+  }
+
+  /**
+   * Returns the DNs of the members explicitly listed in the provided group entry.
+   *
+   * @param  group  The group defined by the entry.
+   * @param  entry  The group entry.
+   *
+   * @return  The DNs of the members listed in the group entry, empty if the membership of the group
+   *          is computed.
+   */
+  private static List<DN> getListedMembers(Group<?> group, Entry entry)
+  {
+    AttributeType memberAttributeType = group.getMemberAttributeType();
+    if (memberAttributeType == null)
+    {
+      return Collections.emptyList();
+    }
+
+    List<DN> members = new ArrayList<>();
+    for (Attribute attribute : entry.getAllAttributes(memberAttributeType))
+    {
+      members.addAll(toDNs(attribute));
+    }
+    return members;
+  }
+
+  private static List<DN> toDNs(Attribute attribute)
+  {
+    List<DN> dns = new ArrayList<>(attribute.size());
+    for (ByteString value : attribute)
+    {
+      try
+      {
+        dns.add(DN.valueOf(value));
+      }
+      catch (LocalizedIllegalArgumentException e)
+      {
+        // The group never matches such a member
+        logger.traceException(e);
+      }
+    }
+    return dns;
+  }
+
   /**
    * Removes all group instances that might happen to be registered with the
    * group manager.  This method is only intended for testing purposes and
@@ -969,6 +1223,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
     try
     {
       groupInstances.clear();
+      membershipIndex.clear();
     }
     finally
     {
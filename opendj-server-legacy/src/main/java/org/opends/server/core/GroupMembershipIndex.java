@@ -0,0 +1,269 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.api.Group;
+
+/**
+ * Reverse index of the group memberships, mapping the DN of each entry listed as a member of a
+ * group to the groups listing it.
+ * <p>
+ * Only the groups explicitly listing their members in the group entry are indexed. The groups
+ * whose membership is computed (e.g. dynamic groups and virtual static groups) are kept aside and
+ * must be evaluated against the user entry.
+ * <p>
+ * Reads never block. Updates are serialized, and do not call any code outside of this class so
+ * they can safely be performed while holding any other lock.
+ */
+final class GroupMembershipIndex
+{
+  /** The registered groups, by DN. */
+  private final ConcurrentMap<DN, Group<?>> groups = new ConcurrentHashMap<>();
+
+  /**
+   * The groups listing each member, keyed by the normalized member DN. The sets are never
+   * modified once published, they are replaced instead.
+   */
+  private final ConcurrentMap<ByteString, Set<Group<?>>> groupsByMember = new ConcurrentHashMap<>();
+
+  /** The registered groups whose membership is computed. */
+  private final Set<Group<?>> computedGroups =
+      Collections.newSetFromMap(new ConcurrentHashMap<Group<?>, Boolean>());
+
+  /**
+   * Registers the provided group along with the members listed in its entry.
+   *
+   * @param group
+   *          The group to register.
+   * @param members
+   *          The DNs of the members listed in the group entry, ignored if the membership of the
+   *          group is computed.
+   */
+  synchronized void addGroup(Group<?> group, Collection<DN> members)
+  {
+    groups.put(group.getGroupDN(), group);
+    if (isComputed(group))
+    {
+      computedGroups.add(group);
+    }
+    else
+    {
+      addMembers(group, members);
+    }
+  }
+
+  /**
+   * Deregisters the provided group and removes the provided members listings.
+   *
+   * @param group
+   *          The group to deregister.
+   * @param members
+   *          The DNs of the members listed in the group entry.
+   */
+  synchronized void removeGroup(Group<?> group, Collection<DN> members)
+  {
+    groups.remove(group.getGroupDN(), group);
+    computedGroups.remove(group);
+    removeMembers(group, members);
+  }
+
+  /**
+   * Deregisters the provided groups, scanning the whole index for their members listings. This is
+   * meant for the cases where the group entries are no longer available.
+   *
+   * @param groupsToRemove
+   *          The groups to deregister.
+   */
+  synchronized void removeGroups(Set<Group<?>> groupsToRemove)
+  {
+    if (groupsToRemove.isEmpty())
+    {
+      return;
+    }
+    for (Group<?> group : groupsToRemove)
+    {
+      groups.remove(group.getGroupDN(), group);
+      computedGroups.remove(group);
+    }
+    for (ByteString member : groupsByMember.keySet())
+    {
+      final Set<Group<?>> listing = groupsByMember.get(member);
+      if (listing != null && !Collections.disjoint(listing, groupsToRemove))
+      {
+        final Set<Group<?>> newListing = new HashSet<>(listing);
+        newListing.removeAll(groupsToRemove);
+        publish(member, newListing);
+      }
+    }
+  }
+
+  /**
+   * Records that the provided group has been renamed.
+   *
+   * @param oldDN
+   *          The former DN of the group.
+   * @param group
+   *          The group, already holding its new DN.
+   */
+  synchronized void renameGroup(DN oldDN, Group<?> group)
+  {
+    groups.remove(oldDN, group);
+    groups.put(group.getGroupDN(), group);
+  }
+
+  /**
+   * Adds the provided members listings to the provided group.
+   *
+   * @param group
+   *          The group listing the members.
+   * @param members
+   *          The DNs of the members to add.
+   */
+  synchronized void addMembers(Group<?> group, Collection<DN> members)
+  {
+    for (DN member : members)
+    {
+      final ByteString key = member.toNormalizedByteString();
+      final Set<Group<?>> listing = groupsByMember.get(key);
+      if (listing == null)
+      {
+        groupsByMember.put(key, Collections.<Group<?>> singleton(group));
+      }
+      else if (!listing.contains(group))
+      {
+        final Set<Group<?>> newListing = new HashSet<>(listing);
+        newListing.add(group);
+        groupsByMember.put(key, Collections.unmodifiableSet(newListing));
+      }
+    }
+  }
+
+  /**
+   * Removes the provided members listings from the provided group.
+   *
+   * @param group
+   *          The group listing the members.
+   * @param members
+   *          The DNs of the members to remove.
+   */
+  synchronized void removeMembers(Group<?> group, Collection<DN> members)
+  {
+    for (DN member : members)
+    {
+      final ByteString key = member.toNormalizedByteString();
+      final Set<Group<?>> listing = groupsByMember.get(key);
+      if (listing != null && listing.contains(group))
+      {
+        final Set<Group<?>> newListing = new HashSet<>(listing);
+        newListing.remove(group);
+        publish(key, newListing);
+      }
+    }
+  }
+
+  private void publish(ByteString key, Set<Group<?>> listing)
+  {
+    switch (listing.size())
+    {
+    case 0:
+      groupsByMember.remove(key);
+      break;
+    case 1:
+      groupsByMember.put(key, Collections.<Group<?>> singleton(listing.iterator().next()));
+      break;
+    default:
+      groupsByMember.put(key, Collections.unmodifiableSet(listing));
+      break;
+    }
+  }
+
+  /** Removes all the groups from this index. */
+  synchronized void clear()
+  {
+    groups.clear();
+    groupsByMember.clear();
+    computedGroups.clear();
+  }
+
+  /**
+   * Returns the group registered with the provided DN.
+   *
+   * @param groupDN
+   *          The DN of the group.
+   * @return The group registered with the provided DN, or {@code null} if there is none
+   */
+  Group<?> getGroup(DN groupDN)
+  {
+    return groups.get(groupDN);
+  }
+
+  /**
+   * Returns the groups explicitly listing the provided DN as a member.
+   *
+   * @param memberDN
+   *          The DN of the member.
+   * @return The groups explicitly listing the provided DN as a member, never {@code null}.
+   */
+  Set<Group<?>> getGroupsListing(DN memberDN)
+  {
+    final Set<Group<?>> listing = groupsByMember.get(memberDN.toNormalizedByteString());
+    return listing != null ? listing : Collections.<Group<?>> emptySet();
+  }
+
+  /**
+   * Indicates whether the provided DN is explicitly listed as a member of any group.
+   *
+   * @param memberDN
+   *          The DN of the member.
+   * @return {@code true} if the provided DN is listed as a member of at least one group.
+   */
+  boolean isListed(DN memberDN)
+  {
+    return groupsByMember.containsKey(memberDN.toNormalizedByteString());
+  }
+
+  /**
+   * Returns the registered groups whose membership is computed.
+   *
+   * @return The registered groups whose membership is computed.
+   */
+  Collection<Group<?>> getComputedGroups()
+  {
+    return computedGroups;
+  }
+
+  /**
+   * Indicates whether the membership of the provided group is computed, rather than listed in the
+   * group entry.
+   *
+   * @param group
+   *          The group.
+   * @return {@code true} if the membership of the provided group is computed.
+   */
+  static boolean isComputed(Group<?> group)
+  {
+    return group.getMemberAttributeType() == null;
+  }
+}
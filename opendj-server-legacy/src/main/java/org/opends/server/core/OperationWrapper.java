@@ -18,6 +18,7 @@ package org.opends.server.core;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizableMessageBuilder;
@@ -34,6 +35,7 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
 import org.opends.server.types.OperationType;
 
 /**
@@ -247,6 +249,18 @@ public class OperationWrapper<W extends Operation> implements Operation
     return operation.getProcessingNanoTime();
   }
 
+  @Override
+  public long getProcessingDuration(TimeUnit unit)
+  {
+    return operation.getProcessingDuration(unit);
+  }
+
+  @Override
+  public OperationPhaseTimer getPhaseTimer()
+  {
+    return operation.getPhaseTimer();
+  }
+
   @Override
   public List<String> getReferralURLs()
   {
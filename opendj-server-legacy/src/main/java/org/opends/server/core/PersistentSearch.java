@@ -23,14 +23,17 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.api.ClientConnection;
 import org.opends.server.controls.EntryChangeNotificationControl;
 import org.opends.server.controls.PersistentSearchChangeType;
 import org.opends.server.types.CancelResult;
 import org.opends.server.types.Control;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.DirectoryException;
+import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.Entry;
 
+import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.controls.PersistentSearchChangeType.*;
 
 /**
@@ -119,7 +122,7 @@ public final class PersistentSearch
   private final Set<PersistentSearchChangeType> changeTypes;
 
   /** Indicates whether this persistent search has already been aborted. */
-  private boolean isCancelled;
+  private volatile boolean isCancelled;
 
   /** Indicates whether entries returned should include the entry change notification control. */
   private final boolean returnECs;
@@ -384,7 +387,45 @@ public final class PersistentSearch
     return Collections.emptyList();
   }
 
-  private void sendEntry(Entry entry, List<Control> entryControls)
+  private void sendEntry(final Entry entry, final List<Control> entryControls)
+  {
+    final CoreConfigManager coreConfig = DirectoryServer.getCoreConfigManager();
+    final int queueSize = coreConfig.getPSearchNotificationQueueSize();
+    if (queueSize <= 0)
+    {
+      returnEntry(entry, entryControls);
+      return;
+    }
+
+    final Runnable notification = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (!isCancelled)
+        {
+          returnEntry(entry, entryControls);
+        }
+      }
+    };
+    final ClientConnection clientConnection = searchOperation.getClientConnection();
+    if (!clientConnection.getPersistentSearchNotificationQueue().offer(notification, queueSize))
+    {
+      if (coreConfig.isDisconnectOnPSearchNotificationQueueOverflow())
+      {
+        // Do not try to notify a client which is already not keeping up
+        cancel();
+        clientConnection.disconnect(DisconnectReason.ADMIN_LIMIT_EXCEEDED, false,
+            ERR_PSEARCH_NOTIFICATION_QUEUE_FULL.get(clientConnection.getConnectionID(), queueSize));
+      }
+      else if (logger.isTraceEnabled())
+      {
+        logger.trace("Dropped notification for entry %s of %s: the notification queue is full", entry.getName(), this);
+      }
+    }
+  }
+
+  private void returnEntry(Entry entry, List<Control> entryControls)
   {
     try
     {
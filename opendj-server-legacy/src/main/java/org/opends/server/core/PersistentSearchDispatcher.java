@@ -0,0 +1,404 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.schema.AttributeType;
+import org.forgerock.opendj.ldap.schema.MatchingRule;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Entry;
+import org.opends.server.types.FilterType;
+import org.opends.server.types.SearchFilter;
+
+/**
+ * Dispatches the changes made to the entries of a backend to the persistent searches registered
+ * with this backend, only evaluating the persistent searches which may return the changed entries.
+ * <p>
+ * Persistent searches are indexed by their base DN, so that only the persistent searches whose
+ * base DN is the changed entry or one of its superiors are considered. They are also indexed by
+ * the attribute value, or else by the attribute type, which any entry they return must contain,
+ * when their filter requires one. Candidate persistent searches still check the scope and filter
+ * of their search against the changed entry, as they would without the index.
+ * <p>
+ * Reads never block. Updates are serialized, and replace the index nodes rather than modifying
+ * them.
+ */
+public final class PersistentSearchDispatcher
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The persistent searches registered with each base DN. */
+  private final ConcurrentMap<DN, Node> nodes = new ConcurrentHashMap<>();
+
+  /**
+   * The persistent searches registered with a base DN. Nodes are never modified once published,
+   * they are replaced instead.
+   */
+  private static final class Node
+  {
+    private static final Node EMPTY = new Node(Collections.<Registration> emptyList());
+
+    private final List<Registration> registrations;
+    /** The persistent searches requiring an attribute value, by attribute type and normalized value. */
+    private final Map<AttributeType, Map<ByteString, List<PersistentSearch>>> byValue = new HashMap<>();
+    /** The persistent searches requiring an attribute, by attribute type. */
+    private final Map<AttributeType, List<PersistentSearch>> byAttribute = new HashMap<>();
+    /** The persistent searches which may return any entry. */
+    private final List<PersistentSearch> unindexed = new ArrayList<>();
+
+    private Node(List<Registration> registrations)
+    {
+      this.registrations = registrations;
+      for (Registration registration : registrations)
+      {
+        if (registration.attributeType == null)
+        {
+          unindexed.add(registration.psearch);
+        }
+        else if (registration.normalizedValue == null)
+        {
+          getList(byAttribute, registration.attributeType).add(registration.psearch);
+        }
+        else
+        {
+          Map<ByteString, List<PersistentSearch>> values = byValue.get(registration.attributeType);
+          if (values == null)
+          {
+            values = new HashMap<>();
+            byValue.put(registration.attributeType, values);
+          }
+          getList(values, registration.normalizedValue).add(registration.psearch);
+        }
+      }
+    }
+
+    private static <K> List<PersistentSearch> getList(Map<K, List<PersistentSearch>> map, K key)
+    {
+      List<PersistentSearch> list = map.get(key);
+      if (list == null)
+      {
+        list = new ArrayList<>(1);
+        map.put(key, list);
+      }
+      return list;
+    }
+
+    private Node add(Registration registration)
+    {
+      final List<Registration> newRegistrations = new ArrayList<>(registrations.size() + 1);
+      newRegistrations.addAll(registrations);
+      newRegistrations.add(registration);
+      return new Node(newRegistrations);
+    }
+
+    private Node remove(PersistentSearch psearch)
+    {
+      final List<Registration> newRegistrations = new ArrayList<>(registrations.size());
+      for (Registration registration : registrations)
+      {
+        if (registration.psearch != psearch)
+        {
+          newRegistrations.add(registration);
+        }
+      }
+      return newRegistrations.size() != registrations.size() ? new Node(newRegistrations) : this;
+    }
+
+    private boolean isEmpty()
+    {
+      return registrations.isEmpty();
+    }
+
+    private void addCandidates(Entry entry, Collection<PersistentSearch> candidates)
+    {
+      candidates.addAll(unindexed);
+      for (Map.Entry<AttributeType, List<PersistentSearch>> mapEntry : byAttribute.entrySet())
+      {
+        if (!entry.getAllAttributes(mapEntry.getKey()).isEmpty())
+        {
+          candidates.addAll(mapEntry.getValue());
+        }
+      }
+      for (Map.Entry<AttributeType, Map<ByteString, List<PersistentSearch>>> mapEntry : byValue.entrySet())
+      {
+        final AttributeType attributeType = mapEntry.getKey();
+        final Map<ByteString, List<PersistentSearch>> values = mapEntry.getValue();
+        for (Attribute attribute : entry.getAllAttributes(attributeType))
+        {
+          if (!attribute.getAttributeDescription().getAttributeType().equals(attributeType))
+          {
+            // Values of subtypes are matched with the matching rule of the subtype: keep all candidates
+            for (List<PersistentSearch> psearches : values.values())
+            {
+              candidates.addAll(psearches);
+            }
+            continue;
+          }
+          for (ByteString value : attribute)
+          {
+            final List<PersistentSearch> psearches = values.get(normalize(attributeType, value));
+            if (psearches != null)
+            {
+              candidates.addAll(psearches);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** A registered persistent search, along with its index key. */
+  private static final class Registration
+  {
+    private final PersistentSearch psearch;
+    /** The attribute type any returned entry must contain, or null if there is none. */
+    private final AttributeType attributeType;
+    /** The normalized value any returned entry must contain, or null if there is none. */
+    private final ByteString normalizedValue;
+
+    private Registration(PersistentSearch psearch)
+    {
+      this.psearch = psearch;
+      final SearchFilter filter = getIndexedComponent(psearch.getSearchOperation().getFilter());
+      this.attributeType = filter != null ? filter.getAttributeType() : null;
+      this.normalizedValue = filter != null && filter.getFilterType() == FilterType.EQUALITY
+          ? normalize(attributeType, filter.getAssertionValue())
+          : null;
+    }
+  }
+
+  /**
+   * Registers the provided persistent search with this dispatcher.
+   *
+   * @param psearch
+   *          The persistent search to register.
+   */
+  public synchronized void register(PersistentSearch psearch)
+  {
+    final DN baseDN = psearch.getSearchOperation().getBaseDN();
+    final Node node = nodes.get(baseDN);
+    nodes.put(baseDN, (node != null ? node : Node.EMPTY).add(new Registration(psearch)));
+  }
+
+  /**
+   * Deregisters the provided persistent search from this dispatcher.
+   *
+   * @param psearch
+   *          The persistent search to deregister.
+   */
+  public synchronized void deregister(PersistentSearch psearch)
+  {
+    final DN baseDN = psearch.getSearchOperation().getBaseDN();
+    final Node node = nodes.get(baseDN);
+    if (node != null)
+    {
+      final Node newNode = node.remove(psearch);
+      if (newNode.isEmpty())
+      {
+        nodes.remove(baseDN);
+      }
+      else
+      {
+        nodes.put(baseDN, newNode);
+      }
+    }
+  }
+
+  /** Deregisters all the persistent searches from this dispatcher. */
+  public synchronized void clear()
+  {
+    nodes.clear();
+  }
+
+  /**
+   * Notifies the persistent searches that an entry has been added.
+   *
+   * @param entry
+   *          The entry that was added.
+   */
+  public void processAdd(Entry entry)
+  {
+    for (PersistentSearch psearch : getCandidates(entry.getName(), null, entry, null))
+    {
+      psearch.processAdd(entry);
+    }
+  }
+
+  /**
+   * Notifies the persistent searches that an entry has been deleted.
+   *
+   * @param entry
+   *          The entry that was deleted.
+   */
+  public void processDelete(Entry entry)
+  {
+    for (PersistentSearch psearch : getCandidates(entry.getName(), null, entry, null))
+    {
+      psearch.processDelete(entry);
+    }
+  }
+
+  /**
+   * Notifies the persistent searches that an entry has been modified.
+   *
+   * @param entry
+   *          The entry after it was modified.
+   * @param oldEntry
+   *          The entry before it was modified.
+   */
+  public void processModify(Entry entry, Entry oldEntry)
+  {
+    for (PersistentSearch psearch : getCandidates(oldEntry.getName(), null, entry, oldEntry))
+    {
+      psearch.processModify(entry, oldEntry);
+    }
+  }
+
+  /**
+   * Notifies the persistent searches that an entry has been renamed.
+   *
+   * @param entry
+   *          The entry after it was renamed.
+   * @param oldDN
+   *          The DN of the entry before it was renamed.
+   */
+  public void processModifyDN(Entry entry, DN oldDN)
+  {
+    for (PersistentSearch psearch : getCandidates(entry.getName(), oldDN, entry, null))
+    {
+      psearch.processModifyDN(entry, oldDN);
+    }
+  }
+
+  /**
+   * Returns the persistent searches whose base DN is one of the provided DNs or one of their
+   * superiors, and whose filter may match one of the provided entries.
+   */
+  private Collection<PersistentSearch> getCandidates(DN dn, DN otherDN, Entry entry, Entry otherEntry)
+  {
+    if (nodes.isEmpty())
+    {
+      return Collections.emptySet();
+    }
+    final Set<PersistentSearch> candidates = new LinkedHashSet<>();
+    addCandidates(dn, entry, otherEntry, candidates);
+    if (otherDN != null)
+    {
+      addCandidates(otherDN, entry, otherEntry, candidates);
+    }
+    return candidates;
+  }
+
+  private void addCandidates(DN dn, Entry entry, Entry otherEntry, Set<PersistentSearch> candidates)
+  {
+    for (DN baseDN = dn; baseDN != null; baseDN = baseDN.parent())
+    {
+      final Node node = nodes.get(baseDN);
+      if (node != null)
+      {
+        node.addCandidates(entry, candidates);
+        if (otherEntry != null)
+        {
+          node.addCandidates(otherEntry, candidates);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the component of the provided filter which is the most selective one to index among the
+   * components which require the returned entries to contain an attribute.
+   *
+   * @return the component of the filter to index, or {@code null} if the filter may match entries
+   *         without requiring them to contain any particular attribute
+   */
+  private static SearchFilter getIndexedComponent(SearchFilter filter)
+  {
+    switch (filter.getFilterType())
+    {
+    case EQUALITY:
+    case PRESENT:
+    case SUBSTRING:
+    case GREATER_OR_EQUAL:
+    case LESS_OR_EQUAL:
+    case APPROXIMATE_MATCH:
+      // All these components are false when the entry does not contain the attribute
+      return filter.getAttributeType() != null ? filter : null;
+    case AND:
+      SearchFilter best = null;
+      for (SearchFilter component : filter.getFilterComponents())
+      {
+        final SearchFilter indexed = getIndexedComponent(component);
+        if (indexed != null && (best == null || getSelectivity(indexed) > getSelectivity(best)))
+        {
+          best = indexed;
+        }
+      }
+      return best;
+    default:
+      return null;
+    }
+  }
+
+  private static int getSelectivity(SearchFilter filter)
+  {
+    // Nearly all the entries contain an object class
+    int selectivity = filter.getAttributeType().isObjectClass() ? 0 : 1;
+    if (filter.getFilterType() == FilterType.EQUALITY)
+    {
+      selectivity += 2;
+    }
+    return selectivity;
+  }
+
+  /**
+   * Normalizes the provided value with the equality matching rule of the provided attribute type.
+   *
+   * @return the normalized value, or {@code null} if it cannot be used as an index key
+   */
+  private static ByteString normalize(AttributeType attributeType, ByteString value)
+  {
+    final MatchingRule rule = attributeType.getEqualityMatchingRule();
+    // Assertion values can only be compared with normalized attribute values when they have the same syntax
+    if (rule == null || value == null || !rule.getSyntax().getOID().equals(attributeType.getSyntax().getOID()))
+    {
+      return null;
+    }
+    try
+    {
+      return rule.normalizeAttributeValue(value);
+    }
+    catch (DecodeException e)
+    {
+      logger.traceException(e);
+      return null;
+    }
+  }
+}
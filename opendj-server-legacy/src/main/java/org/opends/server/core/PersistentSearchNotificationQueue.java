@@ -0,0 +1,165 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+
+/**
+ * Bounded queue of the persistent search notifications waiting to be sent to a client connection.
+ * <p>
+ * Notifications are sent in the order they were queued, by at most one thread at a time per
+ * client connection, taken from a bounded pool shared by all client connections. Threads queuing
+ * notifications never block: a client which does not read its notifications fast enough only
+ * delays its own notifications, until its queue is full, and holds at most one thread of the pool.
+ * The pool itself only queues one task per client connection waiting for a free thread.
+ */
+public final class PersistentSearchNotificationQueue implements Runnable
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The default number of threads sending the notifications. */
+  private static final int DEFAULT_NOTIFIER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  /** The threads sending the notifications, idle threads are released after a while. */
+  private static final ThreadPoolExecutor NOTIFIER_POOL = newNotifierPool();
+
+  private static ThreadPoolExecutor newNotifierPool()
+  {
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_NOTIFIER_THREADS, DEFAULT_NOTIFIER_THREADS,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new DirectoryThread.Factory("Persistent Search Notifier"));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Sets the maximum number of threads sending the notifications of all the client connections.
+   *
+   * @param nbThreads
+   *          the maximum number of threads, or a value lower than 1 to let the server decide
+   */
+  public static synchronized void setNotifierThreads(int nbThreads)
+  {
+    final int newSize = nbThreads > 0 ? nbThreads : DEFAULT_NOTIFIER_THREADS;
+    if (newSize > NOTIFIER_POOL.getMaximumPoolSize())
+    {
+      NOTIFIER_POOL.setMaximumPoolSize(newSize);
+      NOTIFIER_POOL.setCorePoolSize(newSize);
+    }
+    else
+    {
+      NOTIFIER_POOL.setCorePoolSize(newSize);
+      NOTIFIER_POOL.setMaximumPoolSize(newSize);
+    }
+  }
+
+  /**
+   * Returns the maximum number of threads sending the notifications of all the client connections.
+   *
+   * @return the maximum number of threads sending the notifications
+   */
+  static int getNotifierThreads()
+  {
+    return NOTIFIER_POOL.getMaximumPoolSize();
+  }
+
+  private final Queue<Runnable> notifications = new ConcurrentLinkedQueue<>();
+  /** The number of queued notifications, maintained separately since the size of the queue is not constant time. */
+  private final AtomicInteger size = new AtomicInteger();
+  /** Whether a thread of the pool is sending, or about to send, the queued notifications. */
+  private final AtomicBoolean isScheduled = new AtomicBoolean();
+
+  /**
+   * Queues a notification to be sent to the client connection.
+   *
+   * @param notification
+   *          the task sending the notification
+   * @param capacity
+   *          the maximum number of notifications which may be waiting to be sent
+   * @return {@code true} if the notification has been queued, {@code false} if the queue is full
+   */
+  public boolean offer(Runnable notification, int capacity)
+  {
+    if (size.incrementAndGet() > capacity)
+    {
+      size.decrementAndGet();
+      return false;
+    }
+    notifications.add(notification);
+    schedule();
+    return true;
+  }
+
+  /**
+   * Returns the number of notifications waiting to be sent.
+   *
+   * @return the number of notifications waiting to be sent
+   */
+  public int size()
+  {
+    return size.get();
+  }
+
+  private void schedule()
+  {
+    if (isScheduled.compareAndSet(false, true))
+    {
+      try
+      {
+        NOTIFIER_POOL.execute(this);
+      }
+      catch (RejectedExecutionException e)
+      {
+        logger.traceException(e);
+        isScheduled.set(false);
+      }
+    }
+  }
+
+  @Override
+  public void run()
+  {
+    do
+    {
+      Runnable notification;
+      while ((notification = notifications.poll()) != null)
+      {
+        size.decrementAndGet();
+        try
+        {
+          notification.run();
+        }
+        catch (RuntimeException e)
+        {
+          logger.traceException(e);
+        }
+      }
+      isScheduled.set(false);
+      // Notifications may have been queued after the last poll, while this thread was still scheduled
+    }
+    while (!notifications.isEmpty() && isScheduled.compareAndSet(false, true));
+  }
+}
@@ -0,0 +1,931 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.ConcurrentEntryCacheCfg;
+import org.forgerock.opendj.server.config.server.EntryCacheCfg;
+import org.forgerock.util.Utils;
+import org.opends.server.api.EntryCache;
+import org.opends.server.api.MonitorData;
+import org.opends.server.core.ServerContext;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.EntryEncodeConfig;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.util.ServerConstants;
+
+/**
+ * This class defines a Directory Server entry cache split in segments, called shards, which can be read without
+ * locking.
+ * <p>
+ * Each shard maps the DNs of its entries in a concurrent map, and entries can also be looked up by backend and entry
+ * ID through concurrent maps shared by all the shards. Lookups never block: they only flag the entry as recently
+ * accessed and record the access in a frequency sketch. Updates of a shard, including the evictions they trigger,
+ * are guarded by the shard's own lock, so puts for different shards do not contend.
+ * <p>
+ * The admission and eviction policy is W-TinyLFU: new entries go into a small FIFO window, and once evicted from the
+ * window they are only admitted in the main region of the shard if the frequency sketch estimates they have been
+ * accessed more often than the entry which would be evicted from the main region to make room for them. The main
+ * region picks its victims with the CLOCK algorithm, giving a second chance to the entries accessed since the hand
+ * last went past them.
+ * <p>
+ * Cache sizing is based on the encoded size of the entries, and may also be capped by a maximum number of entries.
+ */
+public class ConcurrentEntryCache
+       extends EntryCache<ConcurrentEntryCacheCfg>
+       implements ConfigurationChangeListener<ConcurrentEntryCacheCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** Maximum number of shards, the actual number also depends on the number of CPUs and on the cache size. */
+  private static final int MAX_SHARDS = 64;
+  /** Minimum number of entries a shard must be able to hold, so that eviction is not too coarse. */
+  private static final int MIN_ENTRIES_PER_SHARD = 64;
+  /** Minimum number of bytes a shard must be able to hold, so that eviction is not too coarse. */
+  private static final long MIN_BYTES_PER_SHARD = 256 * 1024;
+  /** Percentage of the cache used for the admission window. */
+  private static final int WINDOW_PERCENT = 1;
+  /** Average encoded entry size assumed to size the frequency sketch when only the memory size is limited. */
+  private static final int ESTIMATED_ENTRY_SIZE = 512;
+
+  /** The shards, their number is a power of two. */
+  private Shard[] shards;
+
+  /** The mapping between backend IDs, entry IDs and entries. */
+  private final ConcurrentMap<String, ConcurrentMap<Long, Node>> idMap = new ConcurrentHashMap<>();
+
+  /** Estimates how frequently the cached and rejected entries have been accessed recently. */
+  private volatile FrequencySketch sketch;
+
+  /** The maximum total encoded size of the entries held in the cache. */
+  private long maxMemorySize;
+
+  /** The maximum number of entries that may be held in the cache. */
+  private long maxEntries;
+
+  /** Number of entries evicted to make room for other entries. */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /** Number of entries not admitted in the cache because they were accessed less frequently than the cached ones. */
+  private final AtomicLong admissionRejections = new AtomicLong();
+
+  /** Currently registered configuration object. */
+  private ConcurrentEntryCacheCfg registeredConfiguration;
+
+  /** Creates a new instance of this concurrent entry cache. */
+  public ConcurrentEntryCache()
+  {
+    super();
+    // All initialization should be performed in the initializeEntryCache.
+  }
+
+  @Override
+  public void initializeEntryCache(ServerContext serverContext, ConcurrentEntryCacheCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    registeredConfiguration = configuration;
+    configuration.addConcurrentChangeListener(this);
+
+    // Read configuration and apply changes.
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_INIT, null, errorMessages);
+    if (!processEntryCacheConfig(configuration, true, errorHandler))
+    {
+      String buffer = Utils.joinAsString(".  ", errorMessages);
+      throw new ConfigException(ERR_CONCURRENTCACHE_CANNOT_INITIALIZE.get(buffer));
+    }
+  }
+
+  @Override
+  public void finalizeEntryCache()
+  {
+    registeredConfiguration.removeConcurrentChangeListener(this);
+    clear();
+  }
+
+  @Override
+  public boolean containsEntry(DN entryDN)
+  {
+    return entryDN != null && shardOf(entryDN).dnMap.containsKey(entryDN);
+  }
+
+  @Override
+  public Entry getEntry(DN entryDN)
+  {
+    final Node node = shardOf(entryDN).dnMap.get(entryDN);
+    recordAccess(entryDN, node);
+    if (node == null)
+    {
+      cacheMisses.getAndIncrement();
+      return null;
+    }
+    cacheHits.getAndIncrement();
+    return node.entry;
+  }
+
+  @Override
+  public Entry getEntry(String backendID, long entryID)
+  {
+    final Node node = getNode(backendID, entryID);
+    if (node == null)
+    {
+      cacheMisses.getAndIncrement();
+      return null;
+    }
+    recordAccess(node.dn, node);
+    cacheHits.getAndIncrement();
+    return node.entry;
+  }
+
+  @Override
+  public long getEntryID(DN entryDN)
+  {
+    final Node node = shardOf(entryDN).dnMap.get(entryDN);
+    return node != null ? node.entryID : -1;
+  }
+
+  @Override
+  public DN getEntryDN(String backendID, long entryID)
+  {
+    final Node node = getNode(backendID, entryID);
+    return node != null ? node.dn : null;
+  }
+
+  private Node getNode(String backendID, long entryID)
+  {
+    final Map<Long, Node> backendMap = idMap.get(backendID);
+    return backendMap != null ? backendMap.get(entryID) : null;
+  }
+
+  private void recordAccess(DN entryDN, Node node)
+  {
+    if (node != null)
+    {
+      node.referenced = true;
+    }
+    sketch.increment(entryDN.hashCode());
+  }
+
+  @Override
+  public void putEntry(Entry entry, String backendID, long entryID)
+  {
+    final Node node = newNode(entry, backendID, entryID);
+    if (node != null)
+    {
+      shardOf(node.dn).put(node, true);
+    }
+  }
+
+  @Override
+  public boolean putEntryIfAbsent(Entry entry, String backendID, long entryID)
+  {
+    final Node node = newNode(entry, backendID, entryID);
+    if (node == null)
+    {
+      // We can't rule out the possibility of a conflict, so return false.
+      return false;
+    }
+    return shardOf(node.dn).put(node, false);
+  }
+
+  private Node newNode(Entry entry, String backendID, long entryID)
+  {
+    try
+    {
+      final ByteStringBuilder buffer = new ByteStringBuilder();
+      entry.encode(buffer, EntryEncodeConfig.DEFAULT_CONFIG);
+      return new Node(entry, backendID, entryID, buffer.length());
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      return null;
+    }
+  }
+
+  @Override
+  public void removeEntry(DN entryDN)
+  {
+    shardOf(entryDN).remove(entryDN);
+  }
+
+  @Override
+  public void clear()
+  {
+    for (Shard shard : shards)
+    {
+      shard.clear();
+    }
+  }
+
+  @Override
+  public void clearBackend(String backendID)
+  {
+    final Map<Long, Node> backendMap = idMap.remove(backendID);
+    if (backendMap != null)
+    {
+      for (Node node : backendMap.values())
+      {
+        shardOf(node.dn).remove(node);
+      }
+    }
+  }
+
+  @Override
+  public void handleLowMemory()
+  {
+    // If there are less than 1000 entries, then we'll dump all of them. Otherwise, we'll dump 10% of the entries.
+    final boolean dropAll = getCacheCount() < 1000;
+    for (Shard shard : shards)
+    {
+      shard.shrink(dropAll);
+    }
+  }
+
+  private Shard shardOf(DN entryDN)
+  {
+    final Shard[] currentShards = shards;
+    return currentShards[spread(entryDN.hashCode()) & (currentShards.length - 1)];
+  }
+
+  /** Spreads the bits of DN hash codes, since only the lowest bits are used to select a shard. */
+  private static int spread(int hashCode)
+  {
+    final int h = hashCode * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  @Override
+  public boolean isConfigurationAcceptable(EntryCacheCfg configuration, List<LocalizableMessage> unacceptableReasons)
+  {
+    ConcurrentEntryCacheCfg config = (ConcurrentEntryCacheCfg) configuration;
+    return isConfigurationChangeAcceptable(config, unacceptableReasons);
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(ConcurrentEntryCacheCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_ACCEPTABLE, unacceptableReasons, null);
+    processEntryCacheConfig(configuration, false, errorHandler);
+    return errorHandler.getIsAcceptable();
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(ConcurrentEntryCacheCfg configuration)
+  {
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_APPLY, null, errorMessages);
+
+    // Do not apply changes unless this cache is enabled.
+    if (configuration.isEnabled())
+    {
+      processEntryCacheConfig(configuration, true, errorHandler);
+    }
+
+    final ConfigChangeResult changeResult = new ConfigChangeResult();
+    changeResult.setResultCode(errorHandler.getResultCode());
+    changeResult.setAdminActionRequired(errorHandler.getIsAdminActionRequired());
+    changeResult.getMessages().addAll(errorHandler.getErrorMessages());
+    return changeResult;
+  }
+
+  /**
+   * Parses the provided configuration and configure the entry cache.
+   *
+   * @param configuration  The new configuration containing the changes.
+   * @param applyChanges   If true then take into account the new configuration.
+   * @param errorHandler   An handler used to report errors.
+   *
+   * @return  <CODE>true</CODE> if configuration is acceptable,
+   *          or <CODE>false</CODE> otherwise.
+   */
+  private boolean processEntryCacheConfig(ConcurrentEntryCacheCfg configuration, boolean applyChanges,
+      EntryCacheCommon.ConfigErrorHandler errorHandler)
+  {
+    final DN newConfigEntryDN = configuration.dn();
+    final Set<SearchFilter> newIncludeFilters = EntryCacheCommon.getFilters(
+        configuration.getIncludeFilter(), ERR_CACHE_INVALID_INCLUDE_FILTER, errorHandler, newConfigEntryDN);
+    final Set<SearchFilter> newExcludeFilters = EntryCacheCommon.getFilters(
+        configuration.getExcludeFilter(), ERR_CACHE_INVALID_EXCLUDE_FILTER, errorHandler, newConfigEntryDN);
+
+    if (applyChanges && errorHandler.getIsAcceptable())
+    {
+      maxMemorySize = configuration.getMaxMemorySize();
+      maxEntries = configuration.getMaxEntries();
+      sketch = new FrequencySketch(estimateCapacity(maxMemorySize, maxEntries));
+      if (shards == null)
+      {
+        shards = newShards(maxMemorySize, maxEntries);
+      }
+      for (Shard shard : shards)
+      {
+        shard.setLimits(maxMemorySize / shards.length, Math.max(1, maxEntries / shards.length));
+      }
+      setIncludeFilters(newIncludeFilters);
+      setExcludeFilters(newExcludeFilters);
+      registeredConfiguration = configuration;
+    }
+
+    return errorHandler.getIsAcceptable();
+  }
+
+  /**
+   * Returns the shards of the cache. Their number is chosen once for all from the number of CPUs, and reduced for
+   * small caches. Later configuration changes only update the limits of each shard.
+   */
+  private Shard[] newShards(long maxMemorySize, long maxEntries)
+  {
+    int nbShards = Integer.highestOneBit(Math.min(4 * Runtime.getRuntime().availableProcessors(), MAX_SHARDS));
+    while (nbShards > 1
+        && (maxEntries / nbShards < MIN_ENTRIES_PER_SHARD || maxMemorySize / nbShards < MIN_BYTES_PER_SHARD))
+    {
+      nbShards >>= 1;
+    }
+    final Shard[] newShards = new Shard[nbShards];
+    for (int i = 0; i < nbShards; i++)
+    {
+      newShards[i] = new Shard();
+    }
+    return newShards;
+  }
+
+  private static int estimateCapacity(long maxMemorySize, long maxEntries)
+  {
+    return (int) Math.min(maxEntries, maxMemorySize / ESTIMATED_ENTRY_SIZE);
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    try
+    {
+      long memorySize = 0;
+      for (Shard shard : shards)
+      {
+        memorySize += shard.getMemorySize();
+      }
+      final MonitorData monitorData = EntryCacheCommon.getGenericMonitorData(
+          cacheHits.longValue(),
+          cacheMisses.longValue(),
+          memorySize,
+          maxMemorySize,
+          getCacheCount(),
+          (maxEntries != Integer.MAX_VALUE && maxEntries != Long.MAX_VALUE) ? maxEntries : 0);
+      monitorData.add("entryCacheEvictions", evictions.get());
+      monitorData.add("entryCacheAdmissionRejections", admissionRejections.get());
+      return monitorData;
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      return new MonitorData(0);
+    }
+  }
+
+  @Override
+  public Long getCacheCount()
+  {
+    long count = 0;
+    for (Shard shard : shards)
+    {
+      count += shard.dnMap.size();
+    }
+    return count;
+  }
+
+  @Override
+  public String toVerboseString()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (Shard shard : shards)
+    {
+      for (Node node : shard.dnMap.values())
+      {
+        sb.append(node.dn);
+        sb.append(":");
+        sb.append(node.entryID);
+        sb.append(":");
+        sb.append(node.backendID);
+        sb.append(ServerConstants.EOL);
+      }
+    }
+    String verboseString = sb.toString();
+    return verboseString.length() > 0 ? verboseString : null;
+  }
+
+  /** A cached entry, linked in the window or in the main region of its shard. */
+  private static final class Node
+  {
+    private final DN dn;
+    private final Entry entry;
+    private final String backendID;
+    private final long entryID;
+    /** The encoded size of the entry. */
+    private final int size;
+    /** Whether the entry has been accessed since the CLOCK hand last went past it. */
+    private volatile boolean referenced;
+
+    /** The following fields are guarded by the lock of the shard. */
+    private boolean inWindow;
+    private Node prev;
+    private Node next;
+
+    private Node(Entry entry, String backendID, long entryID, int size)
+    {
+      this.dn = entry.getName();
+      this.entry = entry;
+      this.backendID = backendID;
+      this.entryID = entryID;
+      this.size = size;
+    }
+  }
+
+  /** A doubly linked list of nodes which keeps track of their number and total size. */
+  private static final class NodeList
+  {
+    private Node head;
+    private Node tail;
+    private int count;
+    private long size;
+
+    private void add(Node node)
+    {
+      node.prev = tail;
+      node.next = null;
+      if (tail != null)
+      {
+        tail.next = node;
+      }
+      else
+      {
+        head = node;
+      }
+      tail = node;
+      count++;
+      size += node.size;
+    }
+
+    private void remove(Node node)
+    {
+      if (node.prev != null)
+      {
+        node.prev.next = node.next;
+      }
+      else
+      {
+        head = node.next;
+      }
+      if (node.next != null)
+      {
+        node.next.prev = node.prev;
+      }
+      else
+      {
+        tail = node.prev;
+      }
+      node.prev = node.next = null;
+      count--;
+      size -= node.size;
+    }
+
+    private void clear()
+    {
+      head = tail = null;
+      count = 0;
+      size = 0;
+    }
+  }
+
+  /** A segment of the cache holding the entries whose DN hashes to it. */
+  private final class Shard
+  {
+    /** Lock guarding all the updates of this shard. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The mapping between DNs and entries, which can be read without holding the lock. */
+    private final ConcurrentMap<DN, Node> dnMap = new ConcurrentHashMap<>();
+    /** The admission window, in FIFO order. */
+    private final NodeList window = new NodeList();
+    /** The main region, scanned by the CLOCK hand. */
+    private final NodeList main = new NodeList();
+    /** The next node of the main region considered for eviction. */
+    private Node hand;
+
+    private long maxWindowSize;
+    private int maxWindowCount;
+    private long maxMainSize;
+    private long maxMainCount;
+
+    private void setLimits(long maxSize, long maxCount)
+    {
+      lock.lock();
+      try
+      {
+        maxWindowSize = Math.max(1, maxSize * WINDOW_PERCENT / 100);
+        maxWindowCount = (int) Math.max(1, Math.min(maxCount * WINDOW_PERCENT / 100, Integer.MAX_VALUE));
+        maxMainSize = Math.max(0, maxSize - maxWindowSize);
+        maxMainCount = Math.max(0, maxCount - maxWindowCount);
+        evictFromWindow();
+        while (main.size > maxMainSize || main.count > maxMainCount)
+        {
+          evict(selectVictim());
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private long getMemorySize()
+    {
+      lock.lock();
+      try
+      {
+        return window.size + main.size;
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Puts the provided node in the admission window of this shard.
+     *
+     * @return {@code false} if the node was not put because an entry with the same DN is already cached and
+     *         {@code replace} is {@code false}
+     */
+    private boolean put(Node node, boolean replace)
+    {
+      sketch.increment(node.dn.hashCode());
+      lock.lock();
+      try
+      {
+        final Node oldNode = dnMap.get(node.dn);
+        if (oldNode != null)
+        {
+          if (!replace)
+          {
+            return false;
+          }
+          unlink(oldNode);
+        }
+        dnMap.put(node.dn, node);
+        getBackendMap(node.backendID).put(node.entryID, node);
+        node.inWindow = true;
+        window.add(node);
+        evictFromWindow();
+        return true;
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private ConcurrentMap<Long, Node> getBackendMap(String backendID)
+    {
+      ConcurrentMap<Long, Node> backendMap = idMap.get(backendID);
+      if (backendMap == null)
+      {
+        backendMap = new ConcurrentHashMap<>();
+        final ConcurrentMap<Long, Node> existingMap = idMap.putIfAbsent(backendID, backendMap);
+        if (existingMap != null)
+        {
+          backendMap = existingMap;
+        }
+      }
+      return backendMap;
+    }
+
+    /** Moves the oldest nodes of the window to the main region if they are admitted, removes them otherwise. */
+    private void evictFromWindow()
+    {
+      while (window.head != null && (window.size > maxWindowSize || window.count > maxWindowCount))
+      {
+        final Node candidate = window.head;
+        window.remove(candidate);
+        candidate.inWindow = false;
+        if (admit(candidate))
+        {
+          main.add(candidate);
+        }
+        else
+        {
+          admissionRejections.getAndIncrement();
+          removeFromMaps(candidate);
+        }
+      }
+    }
+
+    /** Makes room in the main region for the candidate if it is accessed more frequently than the victim. */
+    private boolean admit(Node candidate)
+    {
+      if (candidate.size > maxMainSize || maxMainCount == 0)
+      {
+        return false;
+      }
+      if (!hasRoomFor(candidate))
+      {
+        final Node victim = selectVictim();
+        if (sketch.frequency(candidate.dn.hashCode()) <= sketch.frequency(victim.dn.hashCode()))
+        {
+          return false;
+        }
+        evict(victim);
+        while (!hasRoomFor(candidate))
+        {
+          evict(selectVictim());
+        }
+      }
+      return true;
+    }
+
+    private boolean hasRoomFor(Node candidate)
+    {
+      return main.size + candidate.size <= maxMainSize && main.count < maxMainCount;
+    }
+
+    /** Returns the first node of the main region found by the CLOCK hand which has not been accessed recently. */
+    private Node selectVictim()
+    {
+      // After a full turn all the reference bits have been cleared
+      for (int i = 0; i <= main.count; i++)
+      {
+        final Node node = hand != null ? hand : main.head;
+        if (!node.referenced)
+        {
+          return node;
+        }
+        node.referenced = false;
+        hand = node.next;
+      }
+      return hand != null ? hand : main.head;
+    }
+
+    private void evict(Node node)
+    {
+      evictions.getAndIncrement();
+      unlink(node);
+    }
+
+    private void remove(DN dn)
+    {
+      lock.lock();
+      try
+      {
+        final Node node = dnMap.get(dn);
+        if (node != null)
+        {
+          unlink(node);
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private void remove(Node node)
+    {
+      lock.lock();
+      try
+      {
+        if (dnMap.get(node.dn) == node)
+        {
+          unlink(node);
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /** Removes a cached node from this shard and from the ID map. */
+    private void unlink(Node node)
+    {
+      if (node.inWindow)
+      {
+        window.remove(node);
+      }
+      else
+      {
+        if (hand == node)
+        {
+          hand = node.next;
+        }
+        main.remove(node);
+      }
+      removeFromMaps(node);
+    }
+
+    private void removeFromMaps(Node node)
+    {
+      dnMap.remove(node.dn, node);
+      final Map<Long, Node> backendMap = idMap.get(node.backendID);
+      if (backendMap != null)
+      {
+        backendMap.remove(node.entryID, node);
+      }
+    }
+
+    private void shrink(boolean dropAll)
+    {
+      lock.lock();
+      try
+      {
+        if (dropAll)
+        {
+          clear0();
+          return;
+        }
+        for (int nbToDrop = (window.count + main.count) / 10; nbToDrop > 0; nbToDrop--)
+        {
+          unlink(main.head != null ? selectVictim() : window.head);
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private void clear()
+    {
+      lock.lock();
+      try
+      {
+        clear0();
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private void clear0()
+    {
+      for (Node node : dnMap.values())
+      {
+        removeFromMaps(node);
+      }
+      window.clear();
+      main.clear();
+      hand = null;
+    }
+  }
+
+  /**
+   * A count-min sketch estimating how frequently entries have been accessed, with 4-bit counters which are all
+   * halved once the number of recorded accesses reaches ten times the capacity of the cache, so that the sketch
+   * favours recent accesses. Counters are updated with CAS so that lookups never block.
+   */
+  static final class FrequencySketch
+  {
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_TABLE_SIZE = 1 << 20;
+
+    /** Each long holds sixteen 4-bit counters. */
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger nbIncrements = new AtomicInteger();
+
+    FrequencySketch(int capacity)
+    {
+      final int maxElements = Math.min(Math.max(capacity, 64), MAX_TABLE_SIZE);
+      final int tableSize = Integer.highestOneBit(maxElements - 1) << 1;
+      this.table = new AtomicLongArray(tableSize);
+      this.tableMask = tableSize - 1;
+      this.sampleSize = 10 * maxElements;
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of an element.
+     *
+     * @param hashCode
+     *          the hash code of the element
+     * @return the estimated number of recent accesses, between 0 and 15
+     */
+    int frequency(int hashCode)
+    {
+      final int hash = rehash(hashCode);
+      final int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++)
+      {
+        final int index = indexOf(hash, i);
+        final int offset = (start + i) << 2;
+        frequency = Math.min(frequency, (int) ((table.get(index) >>> offset) & 0xfL));
+      }
+      return frequency;
+    }
+
+    /**
+     * Records an access of an element.
+     *
+     * @param hashCode
+     *          the hash code of the element
+     */
+    void increment(int hashCode)
+    {
+      final int hash = rehash(hashCode);
+      final int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++)
+      {
+        added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+      }
+      if (added && nbIncrements.incrementAndGet() == sampleSize)
+      {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(int index, int offset)
+    {
+      final long mask = 0xfL << offset;
+      long value;
+      do
+      {
+        value = table.get(index);
+        if ((value & mask) == mask)
+        {
+          return false;
+        }
+      }
+      while (!table.compareAndSet(index, value, value + (1L << offset)));
+      return true;
+    }
+
+    /** Halves all the counters, so that old accesses weight less than recent ones. */
+    private void reset()
+    {
+      for (int i = 0; i < table.length(); i++)
+      {
+        long value;
+        do
+        {
+          value = table.get(i);
+        }
+        while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+      }
+      nbIncrements.addAndGet(-sampleSize / 2);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return ((int) h) & tableMask;
+    }
+
+    private static int rehash(int hashCode)
+    {
+      int h = hashCode * 0x31848bab;
+      h ^= h >>> 14;
+      return h;
+    }
+  }
+}
@@ -0,0 +1,751 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.EntryCacheCfg;
+import org.forgerock.opendj.server.config.server.OffHeapEntryCacheCfg;
+import org.forgerock.util.Utils;
+import org.opends.server.api.CompressedSchema;
+import org.opends.server.api.EntryCache;
+import org.opends.server.api.MonitorData;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.EntryEncodeConfig;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.util.ServerConstants;
+
+/**
+ * This class defines a Directory Server entry cache which keeps the entries outside of the JVM heap.
+ * <p>
+ * Entries are encoded the same way as the pluggable backends store them, using the compressed schema to tokenize
+ * object classes and attribute descriptions, and the encoded bytes are written to direct memory buffers. Only a small
+ * index mapping DNs and entry IDs to the location of the encoded entries stays on the heap, so the size of the cache
+ * has little impact on garbage collection. Entries are decoded each time they are read from the cache, so each hit
+ * returns a new copy of the entry.
+ * <p>
+ * The memory is split in fixed size segments which are filled sequentially by a single writer at a time. When the
+ * cache is full, the oldest segment is reclaimed: the entries of this segment which have been accessed since they
+ * were written are compacted at the start of the segment and kept, the other entries are evicted. Lookups only
+ * share the lock of the segment they read from, and only for the time needed to copy the encoded entry: reclaiming a
+ * segment takes this lock exclusively, so that a reader either copies the entry before it is overwritten or finds out
+ * the segment has been reclaimed.
+ */
+public class OffHeapEntryCache
+       extends EntryCache<OffHeapEntryCacheCfg>
+       implements ConfigurationChangeListener<OffHeapEntryCacheCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** Maximum size of a segment. */
+  private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+  /** Minimum number of segments, so that reclaiming a segment only evicts a small part of the cache. */
+  private static final int MIN_SEGMENTS = 8;
+
+  /** The mapping between entry DNs and their location in the segments. */
+  private final ConcurrentMap<DN, Record> dnMap = new ConcurrentHashMap<>();
+
+  /** The mapping between backend IDs, entry IDs and the location of entries in the segments. */
+  private final ConcurrentMap<String, ConcurrentMap<Long, Record>> idMap = new ConcurrentHashMap<>();
+
+  /** Lock guarding all the updates of the cache. */
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  /** The segments, allocated on demand. Guarded by the write lock. */
+  private Segment[] segments;
+  /** Number of segments which could be allocated. Guarded by the write lock. */
+  private int nbSegments;
+  /** Index of the segment being filled. Guarded by the write lock. */
+  private int currentSegment;
+  /** The size of each segment. */
+  private int segmentSize;
+
+  /** The configured amount of memory allocated to hold the encoded entries. */
+  private long maxMemorySize;
+
+  /** The total size of the encoded entries held in the cache. */
+  private final AtomicLong memorySize = new AtomicLong();
+
+  /** Number of entries evicted to make room for other entries. */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /** How entries are encoded and decoded. */
+  private EntryEncodeConfig encodeConfig;
+  private CompressedSchema compressedSchema;
+
+  /** Currently registered configuration object. */
+  private OffHeapEntryCacheCfg registeredConfiguration;
+
+  /** Creates a new instance of this off heap entry cache. */
+  public OffHeapEntryCache()
+  {
+    super();
+    // All initialization should be performed in the initializeEntryCache.
+  }
+
+  @Override
+  public void initializeEntryCache(ServerContext serverContext, OffHeapEntryCacheCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    registeredConfiguration = configuration;
+    configuration.addOffHeapChangeListener(this);
+
+    compressedSchema = DirectoryServer.getDefaultCompressedSchema();
+    encodeConfig = new EntryEncodeConfig(false, true, true, compressedSchema);
+
+    // Read configuration and apply changes.
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_INIT, null, errorMessages);
+    if (!processEntryCacheConfig(configuration, true, errorHandler))
+    {
+      String buffer = Utils.joinAsString(".  ", errorMessages);
+      throw new ConfigException(ERR_OFFHEAPCACHE_CANNOT_INITIALIZE.get(buffer));
+    }
+  }
+
+  @Override
+  public void finalizeEntryCache()
+  {
+    registeredConfiguration.removeOffHeapChangeListener(this);
+    writeLock.lock();
+    try
+    {
+      clear0();
+      // Concurrent readers may still be copying from the segments, so leave it to the GC to free the direct memory.
+      segments = new Segment[0];
+      nbSegments = 0;
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsEntry(DN entryDN)
+  {
+    return entryDN != null && dnMap.containsKey(entryDN);
+  }
+
+  @Override
+  public Entry getEntry(DN entryDN)
+  {
+    return getEntry(dnMap.get(entryDN));
+  }
+
+  @Override
+  public Entry getEntry(String backendID, long entryID)
+  {
+    return getEntry(getRecord(backendID, entryID));
+  }
+
+  private Entry getEntry(Record record)
+  {
+    final Entry entry = record != null ? decode(record) : null;
+    if (entry == null)
+    {
+      cacheMisses.getAndIncrement();
+      return null;
+    }
+    record.referenced = true;
+    cacheHits.getAndIncrement();
+    return entry;
+  }
+
+  @Override
+  public long getEntryID(DN entryDN)
+  {
+    final Record record = dnMap.get(entryDN);
+    return record != null ? record.entryID : -1;
+  }
+
+  @Override
+  public DN getEntryDN(String backendID, long entryID)
+  {
+    final Record record = getRecord(backendID, entryID);
+    return record != null ? record.dn : null;
+  }
+
+  private Record getRecord(String backendID, long entryID)
+  {
+    final Map<Long, Record> backendMap = idMap.get(backendID);
+    return backendMap != null ? backendMap.get(entryID) : null;
+  }
+
+  /**
+   * Decodes the entry at the provided location.
+   *
+   * @return the decoded entry, or {@code null} if its segment has been reclaimed
+   */
+  private Entry decode(Record record)
+  {
+    final byte[] encodedEntry = record.segment.read(record);
+    if (encodedEntry == null)
+    {
+      return null;
+    }
+    try
+    {
+      final Entry entry = Entry.decode(ByteString.wrap(encodedEntry).asReader(), compressedSchema);
+      return entry.getName().equals(record.dn) ? entry : null;
+    }
+    catch (DirectoryException | RuntimeException e)
+    {
+      // A corrupted entry must never reach the caller, consider it as a miss
+      logger.traceException(e);
+      return null;
+    }
+  }
+
+  @Override
+  public void putEntry(Entry entry, String backendID, long entryID)
+  {
+    put(entry, backendID, entryID, true);
+  }
+
+  @Override
+  public boolean putEntryIfAbsent(Entry entry, String backendID, long entryID)
+  {
+    return put(entry, backendID, entryID, false);
+  }
+
+  private boolean put(Entry entry, String backendID, long entryID, boolean replace)
+  {
+    final ByteStringBuilder encodedEntry = new ByteStringBuilder();
+    try
+    {
+      entry.encode(encodedEntry, encodeConfig);
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      // We can't rule out the possibility of a conflict, so return false.
+      return false;
+    }
+
+    final DN dn = entry.getName();
+    writeLock.lock();
+    try
+    {
+      if (!replace && dnMap.containsKey(dn))
+      {
+        return false;
+      }
+      final Segment segment = getSegmentWithRoomFor(encodedEntry.length());
+      if (segment == null)
+      {
+        return false;
+      }
+      final Record record =
+          segment.write(dn, backendID, entryID, encodedEntry.getBackingArray(), encodedEntry.length());
+      memorySize.addAndGet(record.length);
+      discard(dnMap.put(dn, record));
+      getBackendMap(backendID).put(entryID, record);
+      return true;
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  private ConcurrentMap<Long, Record> getBackendMap(String backendID)
+  {
+    ConcurrentMap<Long, Record> backendMap = idMap.get(backendID);
+    if (backendMap == null)
+    {
+      backendMap = new ConcurrentHashMap<>();
+      idMap.put(backendID, backendMap);
+    }
+    return backendMap;
+  }
+
+  /**
+   * Returns the segment where the encoded entry can be written, reclaiming the oldest segment if the current one is
+   * full.
+   *
+   * @return the segment where to write, or {@code null} if the entry is too big to be cached
+   */
+  private Segment getSegmentWithRoomFor(int length)
+  {
+    // Reclaiming a segment keeps at most half of it, make sure the entry fits in the other half
+    if (nbSegments == 0 || length > segmentSize / 2)
+    {
+      return null;
+    }
+    Segment segment = segments[currentSegment];
+    if (segment.hasRoomFor(length))
+    {
+      return segment;
+    }
+
+    currentSegment = (currentSegment + 1) % nbSegments;
+    if (segments[currentSegment] == null)
+    {
+      final Segment newSegment = allocateSegment();
+      if (newSegment != null)
+      {
+        segments[currentSegment] = newSegment;
+        return newSegment;
+      }
+      currentSegment = 0;
+    }
+    segment = segments[currentSegment];
+    reclaim(segment);
+    return segment;
+  }
+
+  private Segment allocateSegment()
+  {
+    try
+    {
+      return new Segment(ByteBuffer.allocateDirect(segmentSize));
+    }
+    catch (OutOfMemoryError e)
+    {
+      logger.warn(WARN_OFFHEAPCACHE_CANNOT_ALLOCATE_MEMORY.get(
+          (long) currentSegment * segmentSize, maxMemorySize, stackTraceToSingleLineString(e)));
+      // Stop allocating, the segments already allocated are reclaimed instead.
+      nbSegments = currentSegment;
+      return null;
+    }
+  }
+
+  /**
+   * Reclaims the provided segment: its entries accessed since they were written are compacted at the start of the
+   * segment, within the limit of half of the segment, the other entries are evicted.
+   */
+  private void reclaim(Segment segment)
+  {
+    final List<Record> records = new ArrayList<>(segment.records);
+    // Invalidate the entries of the segment before overwriting them, so that concurrent readers detect it
+    segment.reset();
+
+    long keptLength = 0;
+    for (Record record : records)
+    {
+      if (dnMap.get(record.dn) != record)
+      {
+        // Already removed or replaced
+        continue;
+      }
+      if (record.referenced && keptLength + record.length <= segmentSize / 2)
+      {
+        keptLength += record.length;
+        // Records are sorted by offset, so this never overwrites a record which has not been moved yet
+        final byte[] encodedEntry = segment.copy(record);
+        final Record movedRecord =
+            segment.write(record.dn, record.backendID, record.entryID, encodedEntry, encodedEntry.length);
+        dnMap.replace(record.dn, record, movedRecord);
+        getBackendMap(record.backendID).replace(record.entryID, record, movedRecord);
+      }
+      else
+      {
+        evictions.getAndIncrement();
+        remove(record);
+      }
+    }
+  }
+
+  @Override
+  public void removeEntry(DN entryDN)
+  {
+    writeLock.lock();
+    try
+    {
+      discard(dnMap.remove(entryDN));
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  private void remove(Record record)
+  {
+    if (dnMap.remove(record.dn, record))
+    {
+      discard(record);
+    }
+  }
+
+  /** Removes a record which is no longer mapped by its DN from the ID map. */
+  private void discard(Record record)
+  {
+    if (record != null)
+    {
+      memorySize.addAndGet(-record.length);
+      final Map<Long, Record> backendMap = idMap.get(record.backendID);
+      if (backendMap != null)
+      {
+        backendMap.remove(record.entryID, record);
+      }
+    }
+  }
+
+  @Override
+  public void clear()
+  {
+    writeLock.lock();
+    try
+    {
+      clear0();
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  private void clear0()
+  {
+    for (Record record : dnMap.values())
+    {
+      remove(record);
+    }
+    for (int i = 0; i < nbSegments; i++)
+    {
+      if (segments[i] != null)
+      {
+        segments[i].reset();
+      }
+    }
+    currentSegment = 0;
+  }
+
+  @Override
+  public void clearBackend(String backendID)
+  {
+    writeLock.lock();
+    try
+    {
+      final Map<Long, Record> backendMap = idMap.remove(backendID);
+      if (backendMap != null)
+      {
+        for (Record record : backendMap.values())
+        {
+          remove(record);
+        }
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void handleLowMemory()
+  {
+    // Only the index of the cache is on the heap. If there are less than 1000 entries, then we'll dump all of them.
+    // Otherwise, we'll release the index entries of the oldest tenth of the segments.
+    writeLock.lock();
+    try
+    {
+      if (dnMap.size() < 1000)
+      {
+        clear0();
+        return;
+      }
+      for (int i = 1; i <= Math.max(1, nbSegments / 10); i++)
+      {
+        final Segment segment = segments[(currentSegment + i) % nbSegments];
+        if (segment != null)
+        {
+          for (Record record : segment.records)
+          {
+            remove(record);
+          }
+          segment.reset();
+        }
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isConfigurationAcceptable(EntryCacheCfg configuration, List<LocalizableMessage> unacceptableReasons)
+  {
+    OffHeapEntryCacheCfg config = (OffHeapEntryCacheCfg) configuration;
+    return isConfigurationChangeAcceptable(config, unacceptableReasons);
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(OffHeapEntryCacheCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_ACCEPTABLE, unacceptableReasons, null);
+    processEntryCacheConfig(configuration, false, errorHandler);
+    return errorHandler.getIsAcceptable();
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(OffHeapEntryCacheCfg configuration)
+  {
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_APPLY, null, errorMessages);
+
+    // Do not apply changes unless this cache is enabled.
+    if (configuration.isEnabled())
+    {
+      processEntryCacheConfig(configuration, true, errorHandler);
+    }
+
+    final ConfigChangeResult changeResult = new ConfigChangeResult();
+    changeResult.setResultCode(errorHandler.getResultCode());
+    changeResult.setAdminActionRequired(errorHandler.getIsAdminActionRequired());
+    changeResult.getMessages().addAll(errorHandler.getErrorMessages());
+    return changeResult;
+  }
+
+  /**
+   * Parses the provided configuration and configure the entry cache.
+   *
+   * @param configuration  The new configuration containing the changes.
+   * @param applyChanges   If true then take into account the new configuration.
+   * @param errorHandler   An handler used to report errors.
+   *
+   * @return  <CODE>true</CODE> if configuration is acceptable,
+   *          or <CODE>false</CODE> otherwise.
+   */
+  private boolean processEntryCacheConfig(OffHeapEntryCacheCfg configuration, boolean applyChanges,
+      EntryCacheCommon.ConfigErrorHandler errorHandler)
+  {
+    final DN newConfigEntryDN = configuration.dn();
+    final Set<SearchFilter> newIncludeFilters = EntryCacheCommon.getFilters(
+        configuration.getIncludeFilter(), ERR_CACHE_INVALID_INCLUDE_FILTER, errorHandler, newConfigEntryDN);
+    final Set<SearchFilter> newExcludeFilters = EntryCacheCommon.getFilters(
+        configuration.getExcludeFilter(), ERR_CACHE_INVALID_EXCLUDE_FILTER, errorHandler, newConfigEntryDN);
+
+    if (applyChanges && errorHandler.getIsAcceptable())
+    {
+      final long newMaxMemorySize = configuration.getMaxMemorySize();
+      if (newMaxMemorySize != maxMemorySize)
+      {
+        allocateSegments(newMaxMemorySize);
+      }
+      setIncludeFilters(newIncludeFilters);
+      setExcludeFilters(newExcludeFilters);
+      registeredConfiguration = configuration;
+    }
+
+    return errorHandler.getIsAcceptable();
+  }
+
+  /** Replaces the segments according to the new memory size, which clears the cache. */
+  private void allocateSegments(long newMaxMemorySize)
+  {
+    writeLock.lock();
+    try
+    {
+      clear0();
+      final int newNbSegments = (int) Math.max(MIN_SEGMENTS, (newMaxMemorySize - 1) / MAX_SEGMENT_SIZE + 1);
+      maxMemorySize = newMaxMemorySize;
+      segmentSize = (int) (newMaxMemorySize / newNbSegments);
+      segments = new Segment[newNbSegments];
+      nbSegments = newNbSegments;
+      currentSegment = 0;
+      segments[0] = allocateSegment();
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    try
+    {
+      final MonitorData monitorData = EntryCacheCommon.getGenericMonitorData(
+          cacheHits.longValue(),
+          cacheMisses.longValue(),
+          memorySize.longValue(),
+          maxMemorySize,
+          getCacheCount(),
+          null);
+      monitorData.add("entryCacheEvictions", evictions.get());
+      return monitorData;
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      return new MonitorData(0);
+    }
+  }
+
+  @Override
+  public Long getCacheCount()
+  {
+    return Long.valueOf(dnMap.size());
+  }
+
+  @Override
+  public String toVerboseString()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (Record record : dnMap.values())
+    {
+      sb.append(record.dn);
+      sb.append(":");
+      sb.append(record.entryID);
+      sb.append(":");
+      sb.append(record.backendID);
+      sb.append(ServerConstants.EOL);
+    }
+    String verboseString = sb.toString();
+    return verboseString.length() > 0 ? verboseString : null;
+  }
+
+  /** The location of an encoded entry in a segment. */
+  private static final class Record
+  {
+    private final DN dn;
+    private final String backendID;
+    private final long entryID;
+    private final Segment segment;
+    /** The generation of the segment when the entry was written, the entry is invalid once it changes. */
+    private final int generation;
+    private final int offset;
+    private final int length;
+    /** Whether the entry has been accessed since it was written. */
+    private volatile boolean referenced;
+
+    private Record(DN dn, String backendID, long entryID, Segment segment, int generation, int offset, int length)
+    {
+      this.dn = dn;
+      this.backendID = backendID;
+      this.entryID = entryID;
+      this.segment = segment;
+      this.generation = generation;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /** A direct memory buffer where encoded entries are appended. */
+  private static final class Segment
+  {
+    private final ByteBuffer buffer;
+    /**
+     * Shared by the readers copying entries out of the segment, taken exclusively when the segment is reclaimed.
+     * Appending entries does not need it since they never overwrite the entries which can be read.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Incremented each time the segment is reclaimed. Written with both the cache and segment write locks held. */
+    private int generation;
+    /** The following fields are guarded by the write lock of the cache. */
+    private int writeOffset;
+    private final List<Record> records = new ArrayList<>();
+
+    private Segment(ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    private boolean hasRoomFor(int length)
+    {
+      return writeOffset + length <= buffer.capacity();
+    }
+
+    private Record write(DN dn, String backendID, long entryID, byte[] encodedEntry, int length)
+    {
+      final ByteBuffer view = buffer.duplicate();
+      view.position(writeOffset);
+      view.put(encodedEntry, 0, length);
+      final Record record = new Record(dn, backendID, entryID, this, generation, writeOffset, length);
+      records.add(record);
+      writeOffset += length;
+      return record;
+    }
+
+    /**
+     * Returns a copy of the provided encoded entry.
+     *
+     * @return the encoded entry, or {@code null} if the segment has been reclaimed since the entry was written
+     */
+    private byte[] read(Record record)
+    {
+      final Lock readLock = lock.readLock();
+      readLock.lock();
+      try
+      {
+        return generation == record.generation ? copy(record) : null;
+      }
+      finally
+      {
+        readLock.unlock();
+      }
+    }
+
+    private byte[] copy(Record record)
+    {
+      final byte[] encodedEntry = new byte[record.length];
+      final ByteBuffer view = buffer.duplicate();
+      view.position(record.offset);
+      view.get(encodedEntry);
+      return encodedEntry;
+    }
+
+    private void reset()
+    {
+      final Lock writeLock = lock.writeLock();
+      writeLock.lock();
+      try
+      {
+        generation++;
+      }
+      finally
+      {
+        writeLock.unlock();
+      }
+      writeOffset = 0;
+      records.clear();
+    }
+  }
+}
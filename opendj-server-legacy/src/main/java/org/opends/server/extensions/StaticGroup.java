@@ -19,16 +19,18 @@ package org.opends.server.extensions;
 import static com.forgerock.opendj.util.StaticUtils.getBytes;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizedIllegalArgumentException;
@@ -94,17 +96,22 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   /** The DN of the entry that holds the definition for this group. */
   private DN groupEntryDN;
 
-  /** The set of the DNs of the members for this group. */
-  private HashSet<CompactDn> memberDNs;
+  /**
+   * The set of the DNs of the members for this group.
+   * <p>
+   * Membership updates are applied in place, while readers access it without locking: large groups are neither
+   * copied nor blocked on each update. The set is only replaced when the whole member list is replaced.
+   */
+  private volatile NavigableSet<CompactDn> memberDNs;
 
-  /** The list of nested group DNs for this group. */
-  private LinkedList<DN> nestedGroups = new LinkedList<>();
+  /** The list of nested group DNs for this group, which is expected to be small. */
+  private volatile List<DN> nestedGroups = new CopyOnWriteArrayList<>();
 
   /** Passed to the group manager to see if the nested group list needs to be refreshed. */
   private long nestedGroupRefreshToken = DirectoryServer.getGroupManager().refreshToken();
 
-  /** Read/write lock protecting memberDNs and nestedGroups. */
-  private ReadWriteLock lock = new ReentrantReadWriteLock();
+  /** Lock serializing the updates of memberDNs and nestedGroups. */
+  private final Lock lock = new ReentrantLock();
 
   private ServerContext serverContext;
 
@@ -128,7 +135,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
    *                              group.
    */
   private StaticGroup(ServerContext serverContext, DN groupEntryDN, AttributeType memberAttributeType,
-      LinkedHashSet<CompactDn> memberDNs)
+      NavigableSet<CompactDn> memberDNs)
   {
     super();
     Reject.ifNull(groupEntryDN, memberAttributeType, memberDNs);
@@ -197,12 +204,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     }
 
     List<Attribute> memberAttrList = groupEntry.getAllAttributes(someMemberAttributeType);
-    int membersCount = 0;
-    for (Attribute a : memberAttrList)
-    {
-      membersCount += a.size();
-    }
-    LinkedHashSet<CompactDn> someMemberDNs = new LinkedHashSet<>(membersCount);
+    NavigableSet<CompactDn> someMemberDNs = new ConcurrentSkipListSet<>();
     for (Attribute a : memberAttrList)
     {
       for (ByteString v : a)
@@ -302,15 +304,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     {
       return Collections.<DN>emptyList();
     }
-    lock.readLock().lock();
-    try
-    {
-      return nestedGroups;
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
+    return nestedGroups;
   }
 
   @Override
@@ -319,7 +313,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   {
     Reject.ifNull(nestedGroupDN);
 
-    lock.writeLock().lock();
+    lock.lock();
     try
     {
       if (nestedGroups.contains(nestedGroupDN))
@@ -337,17 +331,13 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
         throw new DirectoryException(modifyOperation.getResultCode(), msg);
       }
 
-      LinkedList<DN> newNestedGroups = new LinkedList<>(nestedGroups);
-      newNestedGroups.add(nestedGroupDN);
-      nestedGroups = newNestedGroups;
+      nestedGroups.add(nestedGroupDN);
       //Add it to the member DN list.
-      HashSet<CompactDn> newMemberDNs = new HashSet<>(memberDNs);
-      newMemberDNs.add(new CompactDn(nestedGroupDN));
-      memberDNs = newMemberDNs;
+      memberDNs.add(new CompactDn(nestedGroupDN));
     }
     finally
     {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
@@ -357,7 +347,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   {
     Reject.ifNull(nestedGroupDN);
 
-    lock.writeLock().lock();
+    lock.lock();
     try
     {
       if (! nestedGroups.contains(nestedGroupDN))
@@ -375,17 +365,13 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
         throw new DirectoryException(modifyOperation.getResultCode(), message);
       }
 
-      LinkedList<DN> newNestedGroups = new LinkedList<>(nestedGroups);
-      newNestedGroups.remove(nestedGroupDN);
-      nestedGroups = newNestedGroups;
+      nestedGroups.remove(nestedGroupDN);
       //Remove it from the member DN list.
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
-      newMemberDNs.remove(new CompactDn(nestedGroupDN));
-      memberDNs = newMemberDNs;
+      memberDNs.remove(new CompactDn(nestedGroupDN));
     }
     finally
     {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
@@ -393,36 +379,28 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   public boolean isMember(DN userDN, AtomicReference<Set<DN>> examinedGroups) throws DirectoryException
   {
     reloadIfNeeded();
-    CompactDn compactUserDN = new CompactDn(userDN);
-    lock.readLock().lock();
-    try
+    if (memberDNs.contains(new CompactDn(userDN)))
     {
-      if (memberDNs.contains(compactUserDN))
-      {
-        return true;
-      }
-      if (nestedGroups.isEmpty()) {
-        return false;
-      }
+      return true;
+    }
+    List<DN> someNestedGroups = nestedGroups;
+    if (someNestedGroups.isEmpty()) {
+      return false;
+    }
 
-      // there are nested groups
-      Set<DN> groups = getExaminedGroups(examinedGroups);
-      if (!groups.add(getGroupDN()))
-      {
-        return false;
-      }
-      for (DN nestedGroupDN : nestedGroups)
-      {
-        Group<? extends GroupImplementationCfg> group = getGroupManager().getGroupInstance(nestedGroupDN);
-        if (group != null && group.isMember(userDN, examinedGroups))
-        {
-          return true;
-        }
-      }
+    // there are nested groups
+    Set<DN> groups = getExaminedGroups(examinedGroups);
+    if (!groups.add(getGroupDN()))
+    {
+      return false;
     }
-    finally
+    for (DN nestedGroupDN : someNestedGroups)
     {
-      lock.readLock().unlock();
+      Group<? extends GroupImplementationCfg> group = getGroupManager().getGroupInstance(nestedGroupDN);
+      if (group != null && group.isMember(userDN, examinedGroups))
+      {
+        return true;
+      }
     }
     return false;
   }
@@ -455,7 +433,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     //the current token.
     if (DirectoryServer.getGroupManager().hasInstancesChanged(nestedGroupRefreshToken))
     {
-      lock.writeLock().lock();
+      lock.lock();
       try
       {
         Group<?> thisGroup = DirectoryServer.getGroupManager().getGroupInstance(groupEntryDN);
@@ -467,7 +445,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
         }
         else if (thisGroup != this)
         {
-          LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>();
+          NavigableSet<CompactDn> newMemberDNs = new ConcurrentSkipListSet<>();
           MemberList memberList = thisGroup.getMembers();
           while (memberList.hasMoreMembers())
           {
@@ -482,21 +460,22 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
           }
           memberDNs = newMemberDNs;
         }
-        nestedGroups.clear();
+        List<DN> newNestedGroups = new ArrayList<>();
         for (CompactDn compactDn : memberDNs)
         {
           DN dn = compactDn.toDn(serverContext);
           Group<?> group = DirectoryServer.getGroupManager().getGroupInstance(dn);
           if (group != null)
           {
-            nestedGroups.add(group.getGroupDN());
+            newNestedGroups.add(group.getGroupDN());
           }
         }
+        nestedGroups = new CopyOnWriteArrayList<>(newNestedGroups);
         nestedGroupRefreshToken = DirectoryServer.getGroupManager().refreshToken();
       }
       finally
       {
-        lock.writeLock().unlock();
+        lock.unlock();
       }
     }
   }
@@ -505,34 +484,18 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   public MemberList getMembers() throws DirectoryException
   {
     reloadIfNeeded();
-    lock.readLock().lock();
-    try
-    {
-      return new SimpleStaticGroupMemberList(serverContext, groupEntryDN, memberDNs);
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
+    return new SimpleStaticGroupMemberList(serverContext, groupEntryDN, memberDNs);
   }
 
   @Override
   public MemberList getMembers(DN baseDN, SearchScope scope, SearchFilter filter) throws DirectoryException
   {
     reloadIfNeeded();
-    lock.readLock().lock();
-    try
+    if (baseDN == null && filter == null)
     {
-      if (baseDN == null && filter == null)
-      {
-        return new SimpleStaticGroupMemberList(serverContext, groupEntryDN, memberDNs);
-      }
-      return new FilteredStaticGroupMemberList(serverContext, groupEntryDN, memberDNs, baseDN, scope, filter);
-    }
-    finally
-    {
-      lock.readLock().unlock();
+      return new SimpleStaticGroupMemberList(serverContext, groupEntryDN, memberDNs);
     }
+    return new FilteredStaticGroupMemberList(serverContext, groupEntryDN, memberDNs, baseDN, scope, filter);
   }
 
   @Override
@@ -541,6 +504,12 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     return true;
   }
 
+  @Override
+  public AttributeType getMemberAttributeType()
+  {
+    return memberAttributeType;
+  }
+
   @Override
   public void updateMembers(List<Modification> modifications)
          throws UnsupportedOperationException, DirectoryException
@@ -549,7 +518,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     Reject.ifNull(nestedGroups);
 
     reloadIfNeeded();
-    lock.writeLock().lock();
+    lock.lock();
     try
     {
       for (Modification mod : modifications)
@@ -573,8 +542,8 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
             case DELETE:
               if (attribute.isEmpty())
               {
-                memberDNs.clear();
-                nestedGroups.clear();
+                memberDNs = new ConcurrentSkipListSet<>();
+                nestedGroups = new CopyOnWriteArrayList<>();
               }
               else
               {
@@ -587,24 +556,27 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
               }
               break;
             case REPLACE:
-              memberDNs.clear();
-              nestedGroups.clear();
+              // Build the new member list aside so that readers never see a partial list
+              NavigableSet<CompactDn> newMemberDNs = new ConcurrentSkipListSet<>();
+              List<DN> newNestedGroups = new ArrayList<>();
               for (ByteString v : attribute)
               {
                 DN member = DN.valueOf(v);
-                memberDNs.add(new CompactDn(member));
+                newMemberDNs.add(new CompactDn(member));
                 if (DirectoryServer.getGroupManager().getGroupInstance(member) != null)
                 {
-                  nestedGroups.add(member);
+                  newNestedGroups.add(member);
                 }
               }
+              memberDNs = newMemberDNs;
+              nestedGroups = new CopyOnWriteArrayList<>(newNestedGroups);
               break;
           }
         }
       }
     }
     finally {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
@@ -613,7 +585,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   {
     Reject.ifNull(userEntry);
 
-    lock.writeLock().lock();
+    lock.lock();
     try
     {
       DN userDN = userEntry.getName();
@@ -633,13 +605,11 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
             ERR_STATICGROUP_ADD_MEMBER_UPDATE_FAILED.get(userDN, groupEntryDN, modifyOperation.getErrorMessage()));
       }
 
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<CompactDn>(memberDNs);
-      newMemberDNs.add(compactUserDN);
-      memberDNs = newMemberDNs;
+      memberDNs.add(compactUserDN);
     }
     finally
     {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
@@ -649,7 +619,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     Reject.ifNull(userDN);
 
     CompactDn compactUserDN = new CompactDn(userDN);
-    lock.writeLock().lock();
+    lock.lock();
     try
     {
       if (! memberDNs.contains(compactUserDN))
@@ -666,20 +636,13 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
             ERR_STATICGROUP_REMOVE_MEMBER_UPDATE_FAILED.get(userDN, groupEntryDN, modifyOperation.getErrorMessage()));
       }
 
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
-      newMemberDNs.remove(compactUserDN);
-      memberDNs = newMemberDNs;
+      memberDNs.remove(compactUserDN);
       //If it is in the nested group list remove it.
-      if (nestedGroups.contains(userDN))
-      {
-        LinkedList<DN> newNestedGroups = new LinkedList<>(nestedGroups);
-        newNestedGroups.remove(userDN);
-        nestedGroups = newNestedGroups;
-      }
+      nestedGroups.remove(userDN);
     }
     finally
     {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
@@ -705,38 +668,43 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
    * A compact representation of a DN, suitable for equality and comparisons, and providing a natural hierarchical
    * ordering.
    * <p>
-   * The memory consumption compared to a regular DN object is minimal.
+   * The memory consumption compared to a regular DN object is minimal: the normalized and original values are held
+   * in a single byte array.
    */
   static final class CompactDn implements Comparable<CompactDn>
   {
-    /** Original string corresponding to the DN. */
-    private final byte[] originalValue;
-
     /**
-     * Normalized byte string, suitable for equality and comparisons, and providing a natural
-     * hierarchical ordering, but not usable as a valid DN.
+     * Normalized byte string, suitable for equality and comparisons, and providing a natural hierarchical ordering,
+     * but not usable as a valid DN, followed by the original string corresponding to the DN.
      */
-    private final byte[] normalizedValue;
+    private final byte[] value;
+
+    /** Length of the normalized byte string at the start of the value. */
+    private final int normalizedLength;
 
     @VisibleForTesting
     CompactDn(DN dn)
     {
-      this.originalValue = getBytes(dn.toString());
-      this.normalizedValue = dn.toNormalizedByteString().toByteArray();
+      final byte[] originalValue = getBytes(dn.toString());
+      final ByteString normalizedValue = dn.toNormalizedByteString();
+      this.normalizedLength = normalizedValue.length();
+      this.value = new byte[normalizedLength + originalValue.length];
+      normalizedValue.copyTo(value);
+      System.arraycopy(originalValue, 0, value, normalizedLength, originalValue.length);
     }
 
     @Override
     public int compareTo(final CompactDn other)
     {
-      final int length1 = normalizedValue.length;
-      final int length2 = other.normalizedValue.length;
+      final int length1 = normalizedLength;
+      final int length2 = other.normalizedLength;
       int count = Math.min(length1, length2);
       int i = 0;
       int j = 0;
       while (count-- != 0)
       {
-        final int firstByte = 0xFF & normalizedValue[i++];
-        final int secondByte = 0xFF & other.normalizedValue[j++];
+        final int firstByte = 0xFF & value[i++];
+        final int secondByte = 0xFF & other.value[j++];
         if (firstByte != secondByte)
         {
           return firstByte - secondByte;
@@ -761,7 +729,12 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     @Override
     public int hashCode()
     {
-      return Arrays.hashCode(normalizedValue);
+      int hashCode = 1;
+      for (int i = 0; i < normalizedLength; i++)
+      {
+        hashCode = 31 * hashCode + value[i];
+      }
+      return hashCode;
     }
 
     @Override
@@ -773,8 +746,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       }
       else if (obj instanceof CompactDn)
       {
-        final CompactDn other = (CompactDn) obj;
-        return Arrays.equals(normalizedValue, other.normalizedValue);
+        return compareTo((CompactDn) obj) == 0;
       }
       else
       {
@@ -785,16 +757,16 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     @Override
     public String toString()
     {
-      final int length = originalValue.length;
+      final int length = value.length - normalizedLength;
       if (length == 0) {
           return "";
       }
       try {
-          return new String(originalValue, 0, length, "UTF-8");
+          return new String(value, normalizedLength, length, "UTF-8");
       } catch (final UnsupportedEncodingException e) {
           // TODO: I18N
           throw new RuntimeException("Unable to decode bytes as UTF-8 string", e);
       }
     }
   }
-}
\ No newline at end of file
+}
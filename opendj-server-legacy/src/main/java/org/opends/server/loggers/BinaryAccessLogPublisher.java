@@ -0,0 +1,520 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import static org.opends.messages.ConfigMessages.*;
+import static org.opends.server.loggers.BinaryAccessLogRecord.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.LocalizableMessageBuilder;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.server.config.server.BinaryFileAccessLogPublisherCfg;
+import org.forgerock.util.Utils;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.api.ExtendedOperationHandler;
+import org.opends.server.core.AbandonOperation;
+import org.opends.server.core.AddOperation;
+import org.opends.server.core.BindOperation;
+import org.opends.server.core.CompareOperation;
+import org.opends.server.core.DeleteOperation;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ExtendedOperation;
+import org.opends.server.core.ModifyDNOperation;
+import org.opends.server.core.ModifyOperation;
+import org.opends.server.core.SearchOperation;
+import org.opends.server.core.ServerContext;
+import org.opends.server.core.UnbindOperation;
+import org.opends.server.types.AdditionalLogItem;
+import org.opends.server.types.AuthenticationInfo;
+import org.opends.server.types.Control;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.DisconnectReason;
+import org.opends.server.types.FilePermission;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.Operation;
+import org.opends.server.util.TimeThread;
+
+/**
+ * This class provides an access logger writing compact binary records to compressed log files.
+ * <p>
+ * Each operation is logged by a single record, written once the operation completes, holding both
+ * the request and the response fields, like the combined format of the text access logger. The
+ * records can be read with {@link BinaryAccessLogReader}.
+ */
+public final class BinaryAccessLogPublisher extends
+    AbstractTextAccessLogPublisher<BinaryFileAccessLogPublisherCfg> implements
+    ConfigurationChangeListener<BinaryFileAccessLogPublisherCfg>
+{
+  private BinaryAccessLogWriter writer;
+  private BinaryFileAccessLogPublisherCfg cfg;
+  private boolean includeControlOIDs;
+
+  @Override
+  public void initializeLogPublisher(final BinaryFileAccessLogPublisherCfg cfg, ServerContext serverContext)
+      throws ConfigException, InitializationException
+  {
+    final File logFile = getFileForPath(cfg.getLogFile());
+    final FileNamingPolicy fnPolicy = new TimeStampNaming(logFile);
+
+    try
+    {
+      final FilePermission perm = FilePermission.decodeUNIXMode(cfg.getLogFilePermissions());
+      final LogPublisherErrorHandler errorHandler = new LogPublisherErrorHandler(cfg.dn());
+
+      final MultifileTextWriter theWriter = new MultifileTextWriter(
+          "Multifile Text Writer for " + cfg.dn(),
+          cfg.getTimeInterval(), fnPolicy, perm, errorHandler, "UTF-8",
+          false, cfg.isAppend(), 0);
+
+      // Validate retention and rotation policies.
+      for (final DN dn : cfg.getRotationPolicyDNs())
+      {
+        theWriter.addRotationPolicy(DirectoryServer.getRotationPolicy(dn));
+      }
+      for (final DN dn : cfg.getRetentionPolicyDNs())
+      {
+        theWriter.addRetentionPolicy(DirectoryServer.getRetentionPolicy(dn));
+      }
+
+      writer = new BinaryAccessLogWriter("Binary Access Log Writer for " + cfg.dn(), theWriter,
+          (int) cfg.getBlockSize(), cfg.getCompressionLevel(), cfg.getBlockWriteInterval());
+    }
+    catch (final DirectoryException e)
+    {
+      throw new InitializationException(
+          ERR_CONFIG_LOGGING_CANNOT_CREATE_WRITER.get(cfg.dn(), e), e);
+    }
+    catch (final IOException e)
+    {
+      throw new InitializationException(
+          ERR_CONFIG_LOGGING_CANNOT_OPEN_FILE.get(logFile, cfg.dn(), e), e);
+    }
+
+    initializeFilters(cfg);
+
+    this.cfg = cfg;
+    includeControlOIDs = cfg.isLogControlOids();
+
+    cfg.addBinaryFileAccessChangeListener(this);
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(final BinaryFileAccessLogPublisherCfg config)
+  {
+    final ConfigChangeResult ccr = new ConfigChangeResult();
+
+    try
+    {
+      final MultifileTextWriter mfWriter = writer.getWrappedWriter();
+      mfWriter.setNamingPolicy(new TimeStampNaming(getFileForPath(config.getLogFile())));
+      mfWriter.setFilePermissions(FilePermission.decodeUNIXMode(config.getLogFilePermissions()));
+      mfWriter.setAppend(config.isAppend());
+      mfWriter.setInterval(config.getTimeInterval());
+
+      mfWriter.removeAllRetentionPolicies();
+      mfWriter.removeAllRotationPolicies();
+      for (final DN dn : config.getRotationPolicyDNs())
+      {
+        mfWriter.addRotationPolicy(DirectoryServer.getRotationPolicy(dn));
+      }
+      for (final DN dn : config.getRetentionPolicyDNs())
+      {
+        mfWriter.addRetentionPolicy(DirectoryServer.getRetentionPolicy(dn));
+      }
+
+      writer.setBlockParameters(
+          (int) config.getBlockSize(), config.getCompressionLevel(), config.getBlockWriteInterval());
+
+      cfg = config;
+      includeControlOIDs = cfg.isLogControlOids();
+    }
+    catch (final Exception e)
+    {
+      ccr.setResultCode(DirectoryServer.getCoreConfigManager().getServerErrorResultCode());
+      ccr.addMessage(ERR_CONFIG_LOGGING_CANNOT_CREATE_WRITER.get(
+          config.dn(), stackTraceToSingleLineString(e)));
+    }
+
+    return ccr;
+  }
+
+  @Override
+  public boolean isConfigurationAcceptable(
+      final BinaryFileAccessLogPublisherCfg configuration,
+      final List<LocalizableMessage> unacceptableReasons)
+  {
+    return isFilterConfigurationAcceptable(configuration, unacceptableReasons)
+        && isConfigurationChangeAcceptable(configuration, unacceptableReasons);
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(
+      final BinaryFileAccessLogPublisherCfg config,
+      final List<LocalizableMessage> unacceptableReasons)
+  {
+    // Make sure the permission is valid.
+    try
+    {
+      final FilePermission filePerm = FilePermission.decodeUNIXMode(config.getLogFilePermissions());
+      if (!filePerm.isOwnerWritable())
+      {
+        unacceptableReasons.add(ERR_CONFIG_LOGGING_INSANE_MODE.get(config.getLogFilePermissions()));
+        return false;
+      }
+    }
+    catch (final DirectoryException e)
+    {
+      unacceptableReasons.add(ERR_CONFIG_LOGGING_MODE_INVALID.get(config.getLogFilePermissions(), e));
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  protected void close0()
+  {
+    writer.shutdown(true);
+    if (cfg != null)
+    {
+      cfg.removeBinaryFileAccessChangeListener(this);
+    }
+  }
+
+  @Override
+  public void logConnect(final ClientConnection clientConnection)
+  {
+    if (!isConnectLoggable(clientConnection))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = new BinaryAccessLogRecord(
+        TimeThread.getTime(), "CONNECT", CATEGORY_CONNECT, clientConnection.getConnectionID(), -1, -1);
+    record.addField("from", clientConnection.getClientHostPort());
+    record.addField("to", clientConnection.getServerHostPort());
+    record.addField("protocol", clientConnection.getProtocol());
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logDisconnect(final ClientConnection clientConnection,
+      final DisconnectReason disconnectReason, final LocalizableMessage message)
+  {
+    if (!isDisconnectLoggable(clientConnection))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = new BinaryAccessLogRecord(
+        TimeThread.getTime(), "DISCONNECT", CATEGORY_DISCONNECT, clientConnection.getConnectionID(), -1, -1);
+    record.addField("reason", disconnectReason);
+    record.addField("msg", message);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logAbandonResult(final AbandonOperation abandonOperation)
+  {
+    if (!isResponseLoggable(abandonOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(abandonOperation, "ABANDON");
+    record.addField("idToAbandon", abandonOperation.getIDToAbandon());
+    addRequestFields(abandonOperation, record);
+    addResultFields(abandonOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logAddResponse(final AddOperation addOperation)
+  {
+    if (!isResponseLoggable(addOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(addOperation, "ADD");
+    record.addField("dn", addOperation.getRawEntryDN());
+    addRequestFields(addOperation, record);
+    addResultFields(addOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logBindResponse(final BindOperation bindOperation)
+  {
+    if (!isResponseLoggable(bindOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(bindOperation, "BIND");
+    record.addField("version", bindOperation.getProtocolVersion());
+    record.addField("type", bindOperation.getAuthenticationType());
+    record.addField("mechanism", bindOperation.getSASLMechanism());
+    record.addField("dn", bindOperation.getRawBindDN());
+    addRequestFields(bindOperation, record);
+
+    final LocalizableMessage failureMessage = bindOperation.getAuthFailureReason();
+    if (failureMessage != null)
+    {
+      record.addField("authFailureReason", failureMessage);
+      if (bindOperation.getSASLMechanism() != null && bindOperation.getSASLAuthUserEntry() != null)
+      {
+        record.addField("authDN", bindOperation.getSASLAuthUserEntry().getName());
+      }
+      else
+      {
+        record.addField("authDN", bindOperation.getRawBindDN());
+      }
+    }
+    else if (bindOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      final AuthenticationInfo authInfo = bindOperation.getAuthenticationInfo();
+      if (authInfo != null)
+      {
+        final DN authDN = authInfo.getAuthenticationDN();
+        record.addField("authDN", authDN != null ? authDN : "");
+        final DN authzDN = authInfo.getAuthorizationDN();
+        if (authDN != null && !authDN.equals(authzDN))
+        {
+          record.addField("authzDN", authzDN);
+        }
+      }
+    }
+    addResultFields(bindOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logCompareResponse(final CompareOperation compareOperation)
+  {
+    if (!isResponseLoggable(compareOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(compareOperation, "COMPARE");
+    record.addField("dn", compareOperation.getRawEntryDN());
+    record.addField("attr", compareOperation.getAttributeDescription().getAttributeType().getNameOrOID());
+    addRequestFields(compareOperation, record);
+    addResultFields(compareOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logDeleteResponse(final DeleteOperation deleteOperation)
+  {
+    if (!isResponseLoggable(deleteOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(deleteOperation, "DELETE");
+    record.addField("dn", deleteOperation.getRawEntryDN());
+    addRequestFields(deleteOperation, record);
+    addResultFields(deleteOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logExtendedResponse(final ExtendedOperation extendedOperation)
+  {
+    if (!isResponseLoggable(extendedOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(extendedOperation, "EXTENDED");
+    final String oid = extendedOperation.getRequestOID();
+    record.addField("name", getExtendedOperationName(oid));
+    record.addField("oid", oid);
+    addRequestFields(extendedOperation, record);
+    final String responseOID = extendedOperation.getResponseOID();
+    if (responseOID != null)
+    {
+      record.addField("responseName", getExtendedOperationName(responseOID));
+      record.addField("responseOID", responseOID);
+    }
+    addResultFields(extendedOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logModifyResponse(final ModifyOperation modifyOperation)
+  {
+    if (!isResponseLoggable(modifyOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(modifyOperation, "MODIFY");
+    record.addField("dn", modifyOperation.getRawEntryDN());
+    addRequestFields(modifyOperation, record);
+    addResultFields(modifyOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logModifyDNResponse(final ModifyDNOperation modifyDNOperation)
+  {
+    if (!isResponseLoggable(modifyDNOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(modifyDNOperation, "MODDN");
+    record.addField("dn", modifyDNOperation.getRawEntryDN());
+    record.addField("newRDN", modifyDNOperation.getRawNewRDN());
+    record.addField("deleteOldRDN", modifyDNOperation.deleteOldRDN());
+    record.addField("newSuperior", modifyDNOperation.getRawNewSuperior());
+    addRequestFields(modifyDNOperation, record);
+    addResultFields(modifyDNOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logSearchResultDone(final SearchOperation searchOperation)
+  {
+    if (!isResponseLoggable(searchOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = newResponseRecord(searchOperation, "SEARCH");
+    record.addField("base", searchOperation.getRawBaseDN());
+    record.addField("scope", searchOperation.getScope());
+    record.addField("filter", searchOperation.getRawFilter());
+    final Set<String> attrs = searchOperation.getAttributes();
+    record.addField("attrs", attrs == null || attrs.isEmpty() ? "ALL" : Utils.joinAsString(",", attrs));
+    addRequestFields(searchOperation, record);
+    record.addField("nentries", searchOperation.getEntriesSent());
+    addResultFields(searchOperation, record);
+    writer.writeRecord(record);
+  }
+
+  @Override
+  public void logUnbind(final UnbindOperation unbindOperation)
+  {
+    if (!isRequestLoggable(unbindOperation))
+    {
+      return;
+    }
+
+    final BinaryAccessLogRecord record = new BinaryAccessLogRecord(TimeThread.getTime(), "UNBIND", CATEGORY_REQUEST,
+        unbindOperation.getConnectionID(), unbindOperation.getOperationID(), unbindOperation.getMessageID());
+    addRequestFields(unbindOperation, record);
+    writer.writeRecord(record);
+  }
+
+  private BinaryAccessLogRecord newResponseRecord(final Operation operation, final String opType)
+  {
+    return new BinaryAccessLogRecord(TimeThread.getTime(), opType, CATEGORY_RESPONSE,
+        operation.getConnectionID(), operation.getOperationID(), operation.getMessageID());
+  }
+
+  private String getExtendedOperationName(final String oid)
+  {
+    final ExtendedOperationHandler<?> extOpHandler = DirectoryServer.getExtendedOperationHandler(oid);
+    return extOpHandler != null ? extOpHandler.getExtendedOperationName() : null;
+  }
+
+  /** Adds the fields common to all the requests. */
+  private void addRequestFields(final Operation operation, final BinaryAccessLogRecord record)
+  {
+    addControls(record, "requestControls", operation.getRequestControls());
+    if (operation.isSynchronizationOperation())
+    {
+      record.addField("type", "synchronization");
+    }
+  }
+
+  /** Adds the fields common to all the responses, ending with the processing time. */
+  private void addResultFields(final Operation operation, final BinaryAccessLogRecord record)
+  {
+    record.addField(FIELD_RESULT, operation.getResultCode().intValue());
+    final LocalizableMessageBuilder msg = operation.getErrorMessage();
+    if (msg != null && msg.length() > 0)
+    {
+      record.addField("message", msg);
+    }
+    if (operation.getMaskedResultCode() != null)
+    {
+      record.addField("maskedResult", operation.getMaskedResultCode().intValue());
+    }
+    final LocalizableMessageBuilder maskedMsg = operation.getMaskedErrorMessage();
+    if (maskedMsg != null && maskedMsg.length() > 0)
+    {
+      record.addField("maskedMessage", maskedMsg);
+    }
+
+    addControls(record, "responseControls", operation.getResponseControls());
+    for (final AdditionalLogItem item : operation.getAdditionalLogItems())
+    {
+      final Object value = item.getValue();
+      if (value instanceof Number)
+      {
+        record.addField(item.getKey(), ((Number) value).longValue());
+      }
+      else
+      {
+        record.addField(item.getKey(), value != null ? value : "");
+      }
+    }
+    if (!(operation instanceof BindOperation))
+    {
+      record.addField("authzDN", operation.getProxiedAuthorizationDN());
+    }
+
+    // the server can be configured to log processing time as nanos xor millis
+    long etime = operation.getProcessingNanoTime();
+    if (etime <= -1)
+    {
+      // if it is not configured for nanos, then use millis.
+      etime = operation.getProcessingTime();
+    }
+    record.addField(FIELD_ETIME, etime);
+  }
+
+  private void addControls(final BinaryAccessLogRecord record, final String name, final List<Control> controls)
+  {
+    if (includeControlOIDs && !controls.isEmpty())
+    {
+      final StringBuilder oids = new StringBuilder();
+      for (final Control control : controls)
+      {
+        if (oids.length() > 0)
+        {
+          oids.append(',');
+        }
+        oids.append(control.getOID());
+      }
+      record.addField(name, oids);
+    }
+  }
+}
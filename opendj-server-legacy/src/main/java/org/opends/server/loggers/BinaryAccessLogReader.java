@@ -0,0 +1,362 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import static org.opends.messages.LoggerMessages.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteString;
+
+/**
+ * Reads the records of a binary access log file.
+ * <p>
+ * A binary access log file is a sequence of blocks, each one made of a header followed by the
+ * compressed records:
+ * <ul>
+ * <li>the block magic number and the format version,</li>
+ * <li>the times of the earliest and latest records in the block,</li>
+ * <li>the number of records, the uncompressed size and the compressed size of the block.</li>
+ * </ul>
+ * The blocks can be decoded independently, so the reader skips the blocks whose time range does
+ * not overlap the requested one without decompressing them. The uncompressed data starts with the
+ * time of the first record of the block, relative to the earliest one, the time of each record
+ * being relative to the time of the first record. Each record is prefixed by its length.
+ * Numbers are written as variable length integers, and strings are interned within a block: the
+ * first occurrence of a string is written in full, the next ones refer to it by index.
+ */
+public final class BinaryAccessLogReader implements Closeable
+{
+  /** The magic number starting each block: "DJAL". */
+  static final int BLOCK_MAGIC = 0x444A414C;
+  /** The version of the format of the blocks. */
+  static final byte FORMAT_VERSION = 1;
+  /**
+   * The size of the block header: magic number, version, earliest and latest record times, record
+   * count, uncompressed and compressed sizes.
+   */
+  static final int BLOCK_HEADER_SIZE = 4 + 1 + 8 + 8 + 4 + 4 + 4;
+  /** The type of string field values. */
+  static final byte TYPE_STRING = 0;
+  /** The type of numeric field values. */
+  static final byte TYPE_NUMBER = 1;
+
+  private final File file;
+  private final FileInputStream input;
+  private final FileChannel channel;
+  private final long fromTime;
+  private final long toTime;
+  private final Inflater inflater = new Inflater();
+  private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+  private byte[] compressed = new byte[0];
+  private byte[] uncompressed = new byte[0];
+
+  /** The strings interned in the current block, by index. */
+  private final List<String> strings = new ArrayList<>();
+  private ByteSequenceReader blockReader;
+  private long blockOffset;
+  private long blockBaseTime;
+  private int remainingRecords;
+  private long skippedBlocks;
+  private boolean isTruncated;
+
+  /**
+   * Opens the provided binary access log file for reading all its records.
+   *
+   * @param file
+   *          The binary access log file.
+   * @throws IOException
+   *           If the file cannot be opened.
+   */
+  public BinaryAccessLogReader(File file) throws IOException
+  {
+    this(file, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Opens the provided binary access log file for reading the records logged within the provided
+   * time range. Records outside of this range may still be returned when they are held in a block
+   * with records within the range.
+   *
+   * @param file
+   *          The binary access log file.
+   * @param fromTime
+   *          The earliest record time, in milliseconds since the epoch.
+   * @param toTime
+   *          The latest record time, in milliseconds since the epoch.
+   * @throws IOException
+   *           If the file cannot be opened.
+   */
+  public BinaryAccessLogReader(File file, long fromTime, long toTime) throws IOException
+  {
+    this.file = file;
+    this.input = new FileInputStream(file);
+    this.channel = input.getChannel();
+    this.fromTime = fromTime;
+    this.toTime = toTime;
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return The next record, or {@code null} if the end of the file has been reached.
+   * @throws IOException
+   *           If the file cannot be read or is corrupted.
+   */
+  public BinaryAccessLogRecord readRecord() throws IOException
+  {
+    while (remainingRecords == 0)
+    {
+      if (!readBlock())
+      {
+        return null;
+      }
+    }
+
+    try
+    {
+      final int length = readLength(blockReader);
+      final int recordEnd = blockReader.position() + length;
+      final long time = blockBaseTime + readSigned(blockReader);
+      final String operation = readString(blockReader);
+      final String category = readString(blockReader);
+      final long connectionID = readSigned(blockReader);
+      final long operationID = readSigned(blockReader);
+      final int messageID = (int) readSigned(blockReader);
+      final BinaryAccessLogRecord record =
+          new BinaryAccessLogRecord(time, operation, category, connectionID, operationID, messageID);
+      for (int nbFields = readLength(blockReader); nbFields > 0; nbFields--)
+      {
+        final String name = readString(blockReader);
+        final byte type = blockReader.readByte();
+        switch (type)
+        {
+        case TYPE_STRING:
+          record.addField(name, readString(blockReader));
+          break;
+        case TYPE_NUMBER:
+          record.addField(name, readSigned(blockReader));
+          break;
+        default:
+          throw new IllegalStateException("Unknown field type " + type);
+        }
+      }
+      // Allow later versions to add data at the end of the records
+      blockReader.position(recordEnd);
+      remainingRecords--;
+      return record;
+    }
+    catch (RuntimeException e)
+    {
+      throw new IOException(ERR_BINARY_ACCESS_LOG_INVALID_RECORD.get(file, blockOffset, e).toString(), e);
+    }
+  }
+
+  /**
+   * Reads the next block within the requested time range.
+   *
+   * @return {@code false} if the end of the file has been reached
+   */
+  private boolean readBlock() throws IOException
+  {
+    while (true)
+    {
+      blockOffset = channel.position();
+      header.clear();
+      if (!readFully(header))
+      {
+        return false;
+      }
+      header.flip();
+      if (header.getInt() != BLOCK_MAGIC || header.get() > FORMAT_VERSION)
+      {
+        throw new IOException(ERR_BINARY_ACCESS_LOG_INVALID_BLOCK.get(file, blockOffset).toString());
+      }
+      final long firstTime = header.getLong();
+      final long lastTime = header.getLong();
+      final int recordCount = header.getInt();
+      final int uncompressedLength = header.getInt();
+      final int compressedLength = header.getInt();
+      if (recordCount < 0 || uncompressedLength < 0 || compressedLength < 0)
+      {
+        throw new IOException(ERR_BINARY_ACCESS_LOG_INVALID_BLOCK.get(file, blockOffset).toString());
+      }
+
+      if (lastTime < fromTime || firstTime > toTime)
+      {
+        final long nextBlockOffset = channel.position() + compressedLength;
+        if (nextBlockOffset > channel.size())
+        {
+          isTruncated = true;
+          return false;
+        }
+        channel.position(nextBlockOffset);
+        skippedBlocks++;
+        continue;
+      }
+
+      if (compressed.length < compressedLength)
+      {
+        compressed = new byte[compressedLength];
+      }
+      if (!readFully(ByteBuffer.wrap(compressed, 0, compressedLength)))
+      {
+        isTruncated = true;
+        return false;
+      }
+      if (uncompressed.length < uncompressedLength)
+      {
+        uncompressed = new byte[uncompressedLength];
+      }
+      try
+      {
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        int length = 0;
+        while (length < uncompressedLength && !inflater.finished())
+        {
+          final int n = inflater.inflate(uncompressed, length, uncompressedLength - length);
+          if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          {
+            throw new DataFormatException("Unexpected end of compressed data");
+          }
+          length += n;
+        }
+      }
+      catch (DataFormatException e)
+      {
+        throw new IOException(ERR_BINARY_ACCESS_LOG_INVALID_RECORD.get(file, blockOffset, e).toString(), e);
+      }
+
+      blockReader = ByteString.wrap(uncompressed, 0, uncompressedLength).asReader();
+      try
+      {
+        blockBaseTime = firstTime + readUnsigned(blockReader);
+      }
+      catch (RuntimeException e)
+      {
+        throw new IOException(ERR_BINARY_ACCESS_LOG_INVALID_RECORD.get(file, blockOffset, e).toString(), e);
+      }
+      remainingRecords = recordCount;
+      strings.clear();
+      return true;
+    }
+  }
+
+  /**
+   * Fills the provided buffer from the file.
+   *
+   * @return {@code false} if the end of the file was reached before reading any byte, or before
+   *         filling the buffer, in which case the file is truncated.
+   */
+  private boolean readFully(ByteBuffer buffer) throws IOException
+  {
+    final int expected = buffer.remaining();
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer) < 0)
+      {
+        isTruncated = buffer.remaining() != expected;
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String readString(ByteSequenceReader reader)
+  {
+    final int code = readLength(reader);
+    if ((code & 1) != 0)
+    {
+      return strings.get(code >>> 1);
+    }
+    final String s = reader.readStringUtf8(code >>> 1);
+    strings.add(s);
+    return s;
+  }
+
+  /** Reads a signed number, zigzag encoded so that small negative numbers stay short. */
+  private static long readSigned(ByteSequenceReader reader)
+  {
+    final long zigZag = readUnsigned(reader);
+    return (zigZag >>> 1) ^ -(zigZag & 1);
+  }
+
+  private static int readLength(ByteSequenceReader reader)
+  {
+    final long length = readUnsigned(reader);
+    if (length < 0 || length > Integer.MAX_VALUE)
+    {
+      throw new IllegalStateException("Invalid length " + length);
+    }
+    return (int) length;
+  }
+
+  /** Reads an unsigned number, encoded on as many bytes as needed, 7 bits at a time. */
+  private static long readUnsigned(ByteSequenceReader reader)
+  {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7)
+    {
+      final byte b = reader.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0)
+      {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Invalid number encoding");
+  }
+
+  /**
+   * Returns the number of blocks skipped so far because their time range did not overlap the
+   * requested one.
+   *
+   * @return The number of blocks skipped so far.
+   */
+  public long getSkippedBlockCount()
+  {
+    return skippedBlocks;
+  }
+
+  /**
+   * Indicates whether the end of the file has been reached in the middle of a block. This happens
+   * when the server stopped while writing the block, or is writing it.
+   *
+   * @return {@code true} if the last block of the file is truncated.
+   */
+  public boolean isTruncated()
+  {
+    return isTruncated;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    inflater.end();
+    input.close();
+  }
+}
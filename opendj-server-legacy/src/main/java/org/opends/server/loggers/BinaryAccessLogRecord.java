@@ -0,0 +1,335 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A record of the binary access log: the header common to all the records, followed by the fields
+ * specific to the operation, each one holding either a string or a number.
+ */
+public final class BinaryAccessLogRecord
+{
+  /** The category of the records logging a client connection. */
+  public static final String CATEGORY_CONNECT = "CONNECT";
+  /** The category of the records logging a client disconnection. */
+  public static final String CATEGORY_DISCONNECT = "DISCONNECT";
+  /** The category of the records logging an operation request. */
+  public static final String CATEGORY_REQUEST = "REQ";
+  /** The category of the records logging an operation response. */
+  public static final String CATEGORY_RESPONSE = "RES";
+
+  /** The name of the field holding the result code of operation responses. */
+  public static final String FIELD_RESULT = "result";
+  /** The name of the field holding the processing time of operation responses. */
+  public static final String FIELD_ETIME = "etime";
+
+  /** The format of the record times in JSON, in UTC. */
+  private static final ThreadLocal<SimpleDateFormat> JSON_TIME_FORMAT = new ThreadLocal<SimpleDateFormat>()
+  {
+    @Override
+    protected SimpleDateFormat initialValue()
+    {
+      final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return format;
+    }
+  };
+
+  private final long time;
+  private final String operation;
+  private final String category;
+  private final long connectionID;
+  private final long operationID;
+  private final int messageID;
+  private final Map<String, Object> fields = new LinkedHashMap<>();
+
+  /**
+   * Creates a new binary access log record.
+   *
+   * @param time
+   *          The time of the record, in milliseconds since the epoch.
+   * @param operation
+   *          The type of the logged operation, e.g. "SEARCH", or "CONNECT" for connections.
+   * @param category
+   *          The category of the record.
+   * @param connectionID
+   *          The identifier of the client connection.
+   * @param operationID
+   *          The identifier of the operation, or -1 for connection records.
+   * @param messageID
+   *          The message ID of the operation, or -1 for connection records.
+   */
+  public BinaryAccessLogRecord(long time, String operation, String category, long connectionID, long operationID,
+      int messageID)
+  {
+    this.time = time;
+    this.operation = operation;
+    this.category = category;
+    this.connectionID = connectionID;
+    this.operationID = operationID;
+    this.messageID = messageID;
+  }
+
+  /**
+   * Adds a string field to this record. Nothing is added if the value is {@code null}.
+   *
+   * @param name
+   *          The name of the field.
+   * @param value
+   *          The value of the field.
+   * @return This record.
+   */
+  public BinaryAccessLogRecord addField(String name, Object value)
+  {
+    if (value != null)
+    {
+      fields.put(name, value.toString());
+    }
+    return this;
+  }
+
+  /**
+   * Adds a numeric field to this record.
+   *
+   * @param name
+   *          The name of the field.
+   * @param value
+   *          The value of the field.
+   * @return This record.
+   */
+  public BinaryAccessLogRecord addField(String name, long value)
+  {
+    fields.put(name, value);
+    return this;
+  }
+
+  /**
+   * Returns the time of this record.
+   *
+   * @return The time of this record, in milliseconds since the epoch.
+   */
+  public long getTime()
+  {
+    return time;
+  }
+
+  /**
+   * Returns the type of the logged operation.
+   *
+   * @return The type of the logged operation, e.g. "SEARCH", or "CONNECT" for connections.
+   */
+  public String getOperation()
+  {
+    return operation;
+  }
+
+  /**
+   * Returns the category of this record.
+   *
+   * @return The category of this record.
+   */
+  public String getCategory()
+  {
+    return category;
+  }
+
+  /**
+   * Returns the identifier of the client connection.
+   *
+   * @return The identifier of the client connection.
+   */
+  public long getConnectionID()
+  {
+    return connectionID;
+  }
+
+  /**
+   * Returns the identifier of the operation.
+   *
+   * @return The identifier of the operation, or -1 for connection records.
+   */
+  public long getOperationID()
+  {
+    return operationID;
+  }
+
+  /**
+   * Returns the message ID of the operation.
+   *
+   * @return The message ID of the operation, or -1 for connection records.
+   */
+  public int getMessageID()
+  {
+    return messageID;
+  }
+
+  /**
+   * Returns the fields of this record, in the order they were added. Their values are either
+   * {@link String}s or {@link Long}s.
+   *
+   * @return The fields of this record.
+   */
+  public Map<String, Object> getFields()
+  {
+    return Collections.unmodifiableMap(fields);
+  }
+
+  /**
+   * Returns the value of the provided field.
+   *
+   * @param name
+   *          The name of the field.
+   * @return The value of the field, or {@code null} if this record does not have such a field.
+   */
+  public Object getField(String name)
+  {
+    return fields.get(name);
+  }
+
+  /**
+   * Indicates whether this record logs a connection or disconnection, rather than an operation.
+   *
+   * @return {@code true} if this record logs a connection or disconnection.
+   */
+  public boolean isConnectionRecord()
+  {
+    return CATEGORY_CONNECT.equals(category) || CATEGORY_DISCONNECT.equals(category);
+  }
+
+  /**
+   * Formats this record the same way as the text access log does.
+   *
+   * @param timeFormat
+   *          The format of the record time.
+   * @return The text representation of this record.
+   */
+  public String toText(SimpleDateFormat timeFormat)
+  {
+    final StringBuilder buffer = new StringBuilder(128);
+    buffer.append('[').append(timeFormat.format(new Date(time))).append("] ");
+    buffer.append(operation);
+    if (isConnectionRecord())
+    {
+      buffer.append(" conn=").append(connectionID);
+    }
+    else
+    {
+      buffer.append(' ').append(category);
+      buffer.append(" conn=").append(connectionID);
+      buffer.append(" op=").append(operationID);
+      buffer.append(" msgID=").append(messageID);
+    }
+    for (Map.Entry<String, Object> field : fields.entrySet())
+    {
+      buffer.append(' ').append(field.getKey()).append('=');
+      if (field.getValue() instanceof String)
+      {
+        buffer.append('"').append(field.getValue()).append('"');
+      }
+      else
+      {
+        buffer.append(field.getValue());
+      }
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Formats this record as a JSON object, on a single line.
+   *
+   * @return The JSON representation of this record.
+   */
+  public String toJson()
+  {
+    final StringBuilder buffer = new StringBuilder(160);
+    buffer.append("{\"timestamp\":\"").append(JSON_TIME_FORMAT.get().format(new Date(time))).append('"');
+    buffer.append(",\"operation\":");
+    appendJsonString(buffer, operation);
+    buffer.append(",\"category\":");
+    appendJsonString(buffer, category);
+    buffer.append(",\"connId\":").append(connectionID);
+    if (!isConnectionRecord())
+    {
+      buffer.append(",\"opId\":").append(operationID);
+      buffer.append(",\"msgId\":").append(messageID);
+    }
+    for (Map.Entry<String, Object> field : fields.entrySet())
+    {
+      buffer.append(',');
+      appendJsonString(buffer, field.getKey());
+      buffer.append(':');
+      if (field.getValue() instanceof String)
+      {
+        appendJsonString(buffer, (String) field.getValue());
+      }
+      else
+      {
+        buffer.append(field.getValue());
+      }
+    }
+    return buffer.append('}').toString();
+  }
+
+  private static void appendJsonString(StringBuilder buffer, String value)
+  {
+    buffer.append('"');
+    for (int i = 0; i < value.length(); i++)
+    {
+      final char c = value.charAt(i);
+      switch (c)
+      {
+      case '"':
+        buffer.append("\\\"");
+        break;
+      case '\\':
+        buffer.append("\\\\");
+        break;
+      case '\n':
+        buffer.append("\\n");
+        break;
+      case '\r':
+        buffer.append("\\r");
+        break;
+      case '\t':
+        buffer.append("\\t");
+        break;
+      default:
+        if (c < 0x20)
+        {
+          buffer.append(String.format("\\u%04x", (int) c));
+        }
+        else
+        {
+          buffer.append(c);
+        }
+        break;
+      }
+    }
+    buffer.append('"');
+  }
+
+  @Override
+  public String toString()
+  {
+    return toJson();
+  }
+}
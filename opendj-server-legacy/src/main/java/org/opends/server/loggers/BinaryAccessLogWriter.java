@@ -0,0 +1,490 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import static org.opends.server.loggers.BinaryAccessLogReader.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.ServerShutdownListener;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.util.TimeThread;
+
+/**
+ * Writes binary access log records to the log files, in compressed blocks.
+ * <p>
+ * Records are encoded in the current block as they are logged. The block is handed to the writer
+ * thread once it reaches the block size, or once it has held records for longer than the write
+ * interval. The writer thread compresses the blocks and writes them to the log file, so that the
+ * threads logging records never wait for the compression nor for the disk, unless the writer
+ * thread falls too far behind. The format of the blocks is described in {@link BinaryAccessLogReader}.
+ */
+final class BinaryAccessLogWriter implements ServerShutdownListener
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The number of blocks waiting to be written above which the logging threads write them. */
+  private static final int MAX_PENDING_BLOCKS = 8;
+
+  /** The writer to which the blocks are written. */
+  private final MultifileTextWriter writer;
+  private final String name;
+  private final ByteStringBuilder recordBuffer = new ByteStringBuilder(256);
+  /** The strings interned in the current block, with their index. */
+  private final Map<String, Integer> internedStrings = new HashMap<>();
+  /** The blocks waiting to be compressed and written, in the order they were filled. */
+  private final Queue<Block> pendingBlocks = new ConcurrentLinkedQueue<>();
+  /** Released each time a block is handed to the writer thread. */
+  private final Semaphore blockHandedOff = new Semaphore(0);
+  /** The buffers of the blocks already written, reused for the next blocks. */
+  private final Queue<ByteStringBuilder> spareBuffers = new ConcurrentLinkedQueue<>();
+
+  /** The block being filled, guarded by this writer. */
+  private Block block;
+  private volatile int blockSize;
+  private volatile long writeInterval;
+
+  /** Guards the compression and the writing of the blocks, held without holding this writer. */
+  private final Object writeLock = new Object();
+  private final Deflater deflater;
+  /** The header followed by the compressed records of the block being written. */
+  private byte[] output = new byte[BLOCK_HEADER_SIZE + 1024];
+  /** Holds the offset of the block base time, written before the records. */
+  private final ByteStringBuilder baseTimeOffset = new ByteStringBuilder(10);
+  /** Whether the deflater has been released, guarded by the write lock. */
+  private boolean isDeflaterEnded;
+
+  private volatile boolean stopRequested;
+  /** Whether the writer has been shut down along with the wrapped writer. */
+  private boolean isClosed;
+  private final WriterThread writerThread;
+
+  /** The encoded records of a block, with the information written in its header. */
+  private static final class Block
+  {
+    private final ByteStringBuilder records;
+    /** The time the times of the records are relative to, which is the time of the first record. */
+    private long baseTime;
+    private long firstTime;
+    private long lastTime;
+    private int recordCount;
+    /** When the first record of the block was logged, in milliseconds. */
+    private long startTime;
+
+    private Block(ByteStringBuilder records)
+    {
+      this.records = records;
+    }
+  }
+
+  /**
+   * Creates a new binary access log writer.
+   *
+   * @param name
+   *          The name of the thread writing the blocks.
+   * @param writer
+   *          The writer to which the blocks are written.
+   * @param blockSize
+   *          The size of the uncompressed records held in a block before it is written.
+   * @param compressionLevel
+   *          The compression level of the blocks, from 1 to 9.
+   * @param writeInterval
+   *          The maximum time records are held in a block before it is written, in milliseconds.
+   */
+  BinaryAccessLogWriter(String name, MultifileTextWriter writer, int blockSize, int compressionLevel,
+      long writeInterval)
+  {
+    this.name = name;
+    this.writer = writer;
+    this.blockSize = blockSize;
+    this.writeInterval = writeInterval;
+    this.block = new Block(new ByteStringBuilder(blockSize + 1024));
+    this.deflater = new Deflater(compressionLevel);
+
+    writerThread = new WriterThread();
+    writerThread.start();
+    DirectoryServer.registerShutdownListener(this);
+  }
+
+  /**
+   * Changes the block parameters, applying to the next block.
+   *
+   * @param blockSize
+   *          The size of the uncompressed records held in a block before it is written.
+   * @param compressionLevel
+   *          The compression level of the blocks, from 1 to 9.
+   * @param writeInterval
+   *          The maximum time records are held in a block before it is written, in milliseconds.
+   */
+  void setBlockParameters(int blockSize, int compressionLevel, long writeInterval)
+  {
+    synchronized (this)
+    {
+      this.blockSize = blockSize;
+      this.writeInterval = writeInterval;
+    }
+    synchronized (writeLock)
+    {
+      if (!isDeflaterEnded)
+      {
+        deflater.setLevel(compressionLevel);
+      }
+    }
+    writerThread.interrupt();
+  }
+
+  /**
+   * Returns the multi-file writer to which the blocks are written.
+   *
+   * @return The multi-file writer to which the blocks are written.
+   */
+  MultifileTextWriter getWrappedWriter()
+  {
+    return writer;
+  }
+
+  /**
+   * Adds the provided record to the current block, handing the block to the writer thread if it is
+   * full.
+   *
+   * @param record
+   *          The record to write.
+   */
+  void writeRecord(BinaryAccessLogRecord record)
+  {
+    synchronized (this)
+    {
+      if (isClosed)
+      {
+        return;
+      }
+      encodeRecord(record);
+      if (block.records.length() < blockSize && !stopRequested)
+      {
+        return;
+      }
+      handOffBlock();
+    }
+
+    // Once stopped, there is no thread left for writing the blocks later.
+    // Otherwise, the disk does not keep up: slow down the logging threads rather than using more memory.
+    if (stopRequested || pendingBlocks.size() > MAX_PENDING_BLOCKS)
+    {
+      writePendingBlocks();
+    }
+  }
+
+  private void encodeRecord(BinaryAccessLogRecord record)
+  {
+    final long time = record.getTime();
+    if (block.recordCount == 0)
+    {
+      block.baseTime = time;
+      block.firstTime = time;
+      block.lastTime = time;
+      block.startTime = TimeThread.getTime();
+    }
+
+    recordBuffer.clear();
+    appendSigned(recordBuffer, time - block.baseTime);
+    appendString(recordBuffer, record.getOperation());
+    appendString(recordBuffer, record.getCategory());
+    appendSigned(recordBuffer, record.getConnectionID());
+    appendSigned(recordBuffer, record.getOperationID());
+    appendSigned(recordBuffer, record.getMessageID());
+    final Map<String, Object> fields = record.getFields();
+    appendUnsigned(recordBuffer, fields.size());
+    for (Map.Entry<String, Object> field : fields.entrySet())
+    {
+      appendString(recordBuffer, field.getKey());
+      if (field.getValue() instanceof Long)
+      {
+        recordBuffer.appendByte(TYPE_NUMBER);
+        appendSigned(recordBuffer, (Long) field.getValue());
+      }
+      else
+      {
+        recordBuffer.appendByte(TYPE_STRING);
+        appendString(recordBuffer, (String) field.getValue());
+      }
+    }
+
+    appendUnsigned(block.records, recordBuffer.length());
+    block.records.appendBytes(recordBuffer);
+    // Records are not always logged in time order
+    block.firstTime = Math.min(block.firstTime, time);
+    block.lastTime = Math.max(block.lastTime, time);
+    block.recordCount++;
+  }
+
+  /** Queues the current block to be written, and starts a new one. */
+  private void handOffBlock()
+  {
+    if (block.recordCount == 0)
+    {
+      return;
+    }
+    pendingBlocks.add(block);
+    final ByteStringBuilder spareBuffer = spareBuffers.poll();
+    block = new Block(spareBuffer != null ? spareBuffer : new ByteStringBuilder(blockSize + 1024));
+    internedStrings.clear();
+    blockHandedOff.release();
+  }
+
+  /**
+   * Hands the current block to the writer thread if it has held records for longer than the write
+   * interval.
+   *
+   * @return The time to wait before the current block must be written, in milliseconds.
+   */
+  private synchronized long handOffBlockIfExpired()
+  {
+    if (block.recordCount == 0)
+    {
+      return writeInterval;
+    }
+    final long age = TimeThread.getTime() - block.startTime;
+    if (age >= writeInterval)
+    {
+      handOffBlock();
+      return writeInterval;
+    }
+    return writeInterval - age;
+  }
+
+  /** Compresses the pending blocks, then writes them to the log file, in the order they were filled. */
+  private void writePendingBlocks()
+  {
+    synchronized (writeLock)
+    {
+      Block pendingBlock;
+      while (!isDeflaterEnded && (pendingBlock = pendingBlocks.poll()) != null)
+      {
+        writeBlock(pendingBlock);
+      }
+    }
+  }
+
+  /** Compresses the provided block, then writes it to the log file. */
+  private void writeBlock(Block pendingBlock)
+  {
+    // The time of the first record, relative to the earliest one, comes first
+    baseTimeOffset.clear();
+    appendUnsigned(baseTimeOffset, pendingBlock.baseTime - pendingBlock.firstTime);
+    final ByteStringBuilder records = pendingBlock.records;
+
+    deflater.reset();
+    deflater.setInput(baseTimeOffset.getBackingArray(), 0, baseTimeOffset.length());
+    int outputLength = deflate(BLOCK_HEADER_SIZE, false);
+    deflater.setInput(records.getBackingArray(), 0, records.length());
+    deflater.finish();
+    outputLength = deflate(outputLength, true);
+
+    ByteBuffer.wrap(output, 0, BLOCK_HEADER_SIZE)
+        .putInt(BLOCK_MAGIC)
+        .put(FORMAT_VERSION)
+        .putLong(pendingBlock.firstTime)
+        .putLong(pendingBlock.lastTime)
+        .putInt(pendingBlock.recordCount)
+        .putInt(baseTimeOffset.length() + records.length())
+        .putInt(outputLength - BLOCK_HEADER_SIZE);
+    writer.writeEncodedRecords(output, outputLength);
+
+    // Release the memory used by a block holding unusually large records
+    records.clearAndTruncate(2 * blockSize, blockSize);
+    if (spareBuffers.size() < 2)
+    {
+      spareBuffers.add(records);
+    }
+    if (output.length > 2 * blockSize)
+    {
+      output = new byte[BLOCK_HEADER_SIZE + 1024];
+    }
+  }
+
+  /**
+   * Compresses the input of the deflater into the output buffer, until the deflater needs more
+   * input, or until it is finished if the input is the last one.
+   *
+   * @return The length of the output buffer holding the header and the compressed data.
+   */
+  private int deflate(int outputLength, boolean isLastInput)
+  {
+    while (isLastInput ? !deflater.finished() : !deflater.needsInput())
+    {
+      if (outputLength == output.length)
+      {
+        output = Arrays.copyOf(output, output.length * 2);
+      }
+      outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+    }
+    return outputLength;
+  }
+
+  private void appendString(ByteStringBuilder buffer, String s)
+  {
+    final Integer index = internedStrings.get(s);
+    if (index != null)
+    {
+      appendUnsigned(buffer, ((long) index << 1) | 1);
+      return;
+    }
+    internedStrings.put(s, internedStrings.size());
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    appendUnsigned(buffer, (long) bytes.length << 1);
+    buffer.appendBytes(bytes);
+  }
+
+  /** Appends a signed number, zigzag encoded so that small negative numbers stay short. */
+  static void appendSigned(ByteStringBuilder buffer, long value)
+  {
+    appendUnsigned(buffer, (value << 1) ^ (value >> 63));
+  }
+
+  /** Appends an unsigned number, encoded on as many bytes as needed, 7 bits at a time. */
+  static void appendUnsigned(ByteStringBuilder buffer, long value)
+  {
+    while ((value & ~0x7FL) != 0)
+    {
+      buffer.appendByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.appendByte((int) value);
+  }
+
+  /**
+   * Writes the current block and flushes the log file.
+   */
+  void flush()
+  {
+    synchronized (this)
+    {
+      if (isClosed)
+      {
+        return;
+      }
+      handOffBlock();
+    }
+    synchronized (writeLock)
+    {
+      writePendingBlocks();
+      if (!isDeflaterEnded)
+      {
+        writer.flush();
+      }
+    }
+  }
+
+  /** The thread writing the full blocks, and the blocks which are not full once the write interval has elapsed. */
+  private class WriterThread extends DirectoryThread
+  {
+    public WriterThread()
+    {
+      super(name);
+    }
+
+    @Override
+    public void run()
+    {
+      while (!stopRequested)
+      {
+        try
+        {
+          final long waitTime = handOffBlockIfExpired();
+          writePendingBlocks();
+          if (blockHandedOff.tryAcquire(waitTime, TimeUnit.MILLISECONDS))
+          {
+            blockHandedOff.drainPermits();
+          }
+        }
+        catch (InterruptedException e)
+        {
+          // We expect this to happen.
+        }
+        catch (Exception e)
+        {
+          logger.traceException(e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String getShutdownListenerName()
+  {
+    return "BinaryAccessLogWriter Thread " + name;
+  }
+
+  @Override
+  public void processServerShutdown(LocalizableMessage reason)
+  {
+    // Don't shutdown the wrapped writer on server shutdown as it
+    // might get more write requests before the log publishers are
+    // manually shutdown just before the server process exists.
+    shutdown(false);
+  }
+
+  /**
+   * Writes the current block, then releases any resources held by the writer.
+   *
+   * @param shutdownWrapped
+   *          If the wrapped writer should be closed as well.
+   */
+  void shutdown(boolean shutdownWrapped)
+  {
+    stopRequested = true;
+    writerThread.interrupt();
+    try
+    {
+      writerThread.join();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    flush();
+    if (shutdownWrapped)
+    {
+      synchronized (this)
+      {
+        isClosed = true;
+        handOffBlock();
+      }
+      synchronized (writeLock)
+      {
+        writePendingBlocks();
+        isDeflaterEnded = true;
+        deflater.end();
+      }
+      writer.shutdown();
+    }
+    DirectoryServer.deregisterShutdownListener(this);
+  }
+}
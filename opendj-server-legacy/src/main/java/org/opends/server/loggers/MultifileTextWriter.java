@@ -25,6 +25,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -87,6 +90,8 @@ class MultifileTextWriter
   private MeteredStream outputStream;
   /** The underlying buffered writer using the output stream. */
   private BufferedWriter writer;
+  /** The channel of the underlying file, used for writing already encoded records. */
+  private FileChannel fileChannel;
 
   /**
    * Creates a new instance of MultiFileTextWriter with the supplied policies.
@@ -166,6 +171,7 @@ class MultifileTextWriter
 
     FileOutputStream stream = new FileOutputStream(file, append);
     outputStream = new MeteredStream(stream, file.length());
+    fileChannel = stream.getChannel();
 
     OutputStreamWriter osw = new OutputStreamWriter(outputStream, encoding);
     if(bufferSize <= 0)
@@ -562,6 +568,38 @@ class MultifileTextWriter
     }
   }
 
+  /**
+   * Writes a batch of log records, already encoded in UTF-8 and separated by line separators, to
+   * the file. The size limit of the file is checked before writing the batch, so the file may
+   * exceed it by up to the size of one batch.
+   *
+   * @param records the buffer holding the encoded log records.
+   * @param length the number of bytes to write from the buffer.
+   */
+  public synchronized void writeEncodedRecords(byte[] records, int length)
+  {
+    if (sizeLimit > 0 && outputStream.written + length >= sizeLimit)
+    {
+      rotate();
+    }
+
+    try
+    {
+      // Keep records written as text in order
+      writer.flush();
+      final ByteBuffer buffer = ByteBuffer.wrap(records, 0, length);
+      while (buffer.hasRemaining())
+      {
+        fileChannel.write(buffer);
+      }
+      outputStream.written += length;
+    }
+    catch (Exception e)
+    {
+      errorHandler.handleWriteError(new String(records, 0, length, StandardCharsets.UTF_8), e);
+    }
+  }
+
   @Override
   public void flush()
   {
@@ -0,0 +1,464 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorData;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.api.ServerShutdownListener;
+import org.opends.server.core.DirectoryServer;
+
+/**
+ * A Text Writer which hands log records to a writer thread through a lock-free ring buffer.
+ * <p>
+ * Logging threads encode each record in UTF-8 into a buffer reused by the thread, then copy it into
+ * a preallocated slot of the ring buffer, so logging a record does not allocate memory in the
+ * common case. The writer thread copies the records out of the ring buffer, in order, into a batch
+ * buffer and writes each batch to the file with a single channel write.
+ * <p>
+ * Logging threads wait for the writer thread when the ring buffer is full. The number of times this
+ * happened, along with the throughput of the writer, is reported by a monitor provider registered
+ * while this writer is in use.
+ */
+class RingBufferTextWriter implements ServerShutdownListener, TextWriter
+{
+  /** The size of the batches written to the file. */
+  private static final int BATCH_SIZE = 64 * 1024;
+  /** The initial size of the ring buffer slots and per-thread buffers. */
+  private static final int INITIAL_BUFFER_SIZE = 512;
+  /** Buffers grown beyond this size by a large record are released after use. */
+  private static final int MAX_REUSED_BUFFER_SIZE = 16 * 1024;
+  /** How long the writer thread sleeps when there is no record to write. */
+  private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  /** How long a logging thread sleeps when the ring buffer is full. */
+  private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final byte[] EOL = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+  /** The buffer used by each logging thread to encode its records. */
+  private static final ThreadLocal<byte[][]> ENCODING_BUFFER = new ThreadLocal<byte[][]>()
+  {
+    @Override
+    protected byte[][] initialValue()
+    {
+      return new byte[][] { new byte[INITIAL_BUFFER_SIZE] };
+    }
+  };
+
+  /** A slot of the ring buffer. */
+  private static final class Slot
+  {
+    /** The sequence number of the record held by this slot, written once the record is copied. */
+    private volatile long sequence;
+    private byte[] data = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+  }
+
+  /** The wrapped writer. */
+  private final MultifileTextWriter writer;
+  private final String name;
+  private final boolean autoFlush;
+  private final Slot[] slots;
+  private final int mask;
+
+  /** The sequence number of the next record to log. */
+  private final AtomicLong nextSequence = new AtomicLong();
+  /** The sequence number of the next record to write, all the records before it have been written. */
+  private volatile long writtenSequence;
+  private final AtomicLong bufferFullCount = new AtomicLong();
+  private volatile long writtenBatches;
+  private volatile long writtenBytes;
+
+  private volatile boolean stopRequested;
+  /** Whether the writer thread is, or is about to go, to sleep. */
+  private volatile boolean isWriterIdle;
+  private final WriterThread writerThread;
+  private final RingBufferMonitor monitor;
+
+  /**
+   * Construct a new ring buffer text writer.
+   *
+   * @param name
+   *          the name of the writer thread.
+   * @param monitorName
+   *          the instance name of the monitor provider reporting the statistics of this writer.
+   * @param capacity
+   *          the minimum number of records the ring buffer can hold, rounded up to a power of two.
+   * @param autoFlush
+   *          indicates if the wrapped writer should be flushed after each batch.
+   * @param writer
+   *          the writer to which records are written.
+   */
+  RingBufferTextWriter(String name, String monitorName, int capacity, boolean autoFlush, MultifileTextWriter writer)
+  {
+    this.name = name;
+    this.autoFlush = autoFlush;
+    this.writer = writer;
+
+    final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+    this.slots = new Slot[size];
+    for (int i = 0; i < size; i++)
+    {
+      slots[i] = new Slot();
+      // Not published for the first sequence number using the slot
+      slots[i].sequence = i - size;
+    }
+    this.mask = size - 1;
+
+    writerThread = new WriterThread();
+    writerThread.start();
+    monitor = new RingBufferMonitor(monitorName);
+    DirectoryServer.registerMonitorProvider(monitor);
+    DirectoryServer.registerShutdownListener(this);
+  }
+
+  /** The writer thread is responsible for writing the records published in the ring buffer. */
+  private class WriterThread extends DirectoryThread
+  {
+    private final byte[] batch = new byte[BATCH_SIZE];
+
+    public WriterThread()
+    {
+      super(name);
+    }
+
+    @Override
+    public void run()
+    {
+      while (!stopRequested || writtenSequence != nextSequence.get())
+      {
+        if (!writeAvailableRecords())
+        {
+          isWriterIdle = true;
+          // Records published before the flag was set would not wake this thread up
+          if (!isPublished(writtenSequence) && !stopRequested)
+          {
+            LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+          }
+          isWriterIdle = false;
+        }
+      }
+    }
+
+    /**
+     * Writes the records published so far.
+     *
+     * @return {@code true} if at least one record was written
+     */
+    private boolean writeAvailableRecords()
+    {
+      long sequence = writtenSequence;
+      int batchLength = 0;
+      boolean hasWritten = false;
+      Slot slot;
+      while ((slot = slots[(int) (sequence & mask)]).sequence == sequence)
+      {
+        if (batchLength + slot.length > batch.length)
+        {
+          writeBatch(batch, batchLength);
+          batchLength = 0;
+        }
+        if (slot.length > batch.length)
+        {
+          writeBatch(slot.data, slot.length);
+        }
+        else
+        {
+          System.arraycopy(slot.data, 0, batch, batchLength, slot.length);
+          batchLength += slot.length;
+        }
+        if (slot.data.length > MAX_REUSED_BUFFER_SIZE)
+        {
+          slot.data = new byte[INITIAL_BUFFER_SIZE];
+        }
+        // Release the slot
+        writtenSequence = ++sequence;
+        hasWritten = true;
+      }
+      writeBatch(batch, batchLength);
+      return hasWritten;
+    }
+
+    private void writeBatch(byte[] buffer, int length)
+    {
+      if (length > 0)
+      {
+        writer.writeEncodedRecords(buffer, length);
+        if (autoFlush)
+        {
+          writer.flush();
+        }
+        writtenBatches++;
+        writtenBytes += length;
+      }
+    }
+  }
+
+  private boolean isPublished(long sequence)
+  {
+    return slots[(int) (sequence & mask)].sequence == sequence;
+  }
+
+  @Override
+  public void writeRecord(String record)
+  {
+    writeRecord((CharSequence) record);
+  }
+
+  /**
+   * Writes the provided log record asynchronously. The record is copied, so the caller may reuse it
+   * as soon as this method returns.
+   *
+   * @param record
+   *          the log record to write.
+   */
+  public void writeRecord(CharSequence record)
+  {
+    if (stopRequested)
+    {
+      // The writer thread is gone: write synchronously
+      writer.writeRecord(record.toString());
+      return;
+    }
+
+    final byte[][] holder = ENCODING_BUFFER.get();
+    final byte[] encoded = ensureCapacity(holder, record.length() * 3 + EOL.length);
+    final int length = encode(record, encoded);
+
+    final long sequence = claim();
+    final Slot slot = slots[(int) (sequence & mask)];
+    if (slot.data.length < length)
+    {
+      slot.data = new byte[Math.max(length, slot.data.length * 2)];
+    }
+    System.arraycopy(encoded, 0, slot.data, 0, length);
+    slot.length = length;
+    // Publish the record
+    slot.sequence = sequence;
+
+    if (encoded.length > MAX_REUSED_BUFFER_SIZE)
+    {
+      holder[0] = new byte[INITIAL_BUFFER_SIZE];
+    }
+    if (isWriterIdle)
+    {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Claims the next sequence number, waiting for the writer thread to free a slot if the ring buffer
+   * is full.
+   */
+  private long claim()
+  {
+    boolean isFull = false;
+    while (true)
+    {
+      final long sequence = nextSequence.get();
+      if (sequence - writtenSequence >= slots.length)
+      {
+        if (!isFull)
+        {
+          isFull = true;
+          bufferFullCount.incrementAndGet();
+        }
+        LockSupport.unpark(writerThread);
+        LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+      }
+      else if (nextSequence.compareAndSet(sequence, sequence + 1))
+      {
+        return sequence;
+      }
+    }
+  }
+
+  private static byte[] ensureCapacity(byte[][] holder, int capacity)
+  {
+    if (holder[0].length < capacity)
+    {
+      holder[0] = new byte[Math.max(capacity, holder[0].length * 2)];
+    }
+    return holder[0];
+  }
+
+  /**
+   * Encodes the provided record in UTF-8, followed by a line separator.
+   *
+   * @return the number of bytes written to the buffer
+   */
+  static int encode(CharSequence record, byte[] buffer)
+  {
+    final int length = record.length();
+    int pos = 0;
+    for (int i = 0; i < length; i++)
+    {
+      final char c = record.charAt(i);
+      if (c < 0x80)
+      {
+        buffer[pos++] = (byte) c;
+      }
+      else if (c < 0x800)
+      {
+        buffer[pos++] = (byte) (0xC0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(record.charAt(i + 1)))
+      {
+        final int codePoint = Character.toCodePoint(c, record.charAt(++i));
+        buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+      else if (Character.isSurrogate(c))
+      {
+        // Unpaired surrogate, replaced as String.getBytes() does
+        buffer[pos++] = '?';
+      }
+      else
+      {
+        buffer[pos++] = (byte) (0xE0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    System.arraycopy(EOL, 0, buffer, pos, EOL.length);
+    return pos + EOL.length;
+  }
+
+  @Override
+  public void flush()
+  {
+    writer.flush();
+  }
+
+  @Override
+  public long getBytesWritten()
+  {
+    return writer.getBytesWritten();
+  }
+
+  /**
+   * Retrieves the wrapped writer.
+   *
+   * @return The wrapped writer used by this ring buffer writer.
+   */
+  public MultifileTextWriter getWrappedWriter()
+  {
+    return writer;
+  }
+
+  @Override
+  public String getShutdownListenerName()
+  {
+    return "RingBufferTextWriter Thread " + name;
+  }
+
+  @Override
+  public void processServerShutdown(LocalizableMessage reason)
+  {
+    // Don't shutdown the wrapped writer on server shutdown as it
+    // might get more write requests before the log publishers are
+    // manually shutdown just before the server process exists.
+    shutdown(false);
+  }
+
+  @Override
+  public void shutdown()
+  {
+    shutdown(true);
+  }
+
+  /**
+   * Releases any resources held by the writer.
+   *
+   * @param shutdownWrapped If the wrapped writer should be closed as well.
+   */
+  public void shutdown(boolean shutdownWrapped)
+  {
+    stopRequested = true;
+    LockSupport.unpark(writerThread);
+
+    // The writer thread writes all the claimed records before terminating
+    boolean interrupted = false;
+    while (writerThread.isAlive())
+    {
+      try
+      {
+        writerThread.join();
+      }
+      catch (InterruptedException e)
+      {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+    // Records claimed while the writer thread was terminating
+    writerThread.writeAvailableRecords();
+
+    if (shutdownWrapped)
+    {
+      writer.shutdown();
+    }
+
+    DirectoryServer.deregisterMonitorProvider(monitor);
+    DirectoryServer.deregisterShutdownListener(this);
+  }
+
+  /** Reports the statistics of the ring buffer text writer. */
+  private final class RingBufferMonitor extends MonitorProvider<MonitorProviderCfg>
+  {
+    private final String instanceName;
+
+    private RingBufferMonitor(String instanceName)
+    {
+      this.instanceName = instanceName;
+    }
+
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return instanceName;
+    }
+
+    @Override
+    public MonitorData getMonitorData()
+    {
+      final long written = writtenSequence;
+      final long batches = writtenBatches;
+
+      final MonitorData monitorAttrs = new MonitorData(7);
+      monitorAttrs.add("ringBufferCapacity", slots.length);
+      monitorAttrs.add("pendingRecords", Math.max(0, nextSequence.get() - written));
+      monitorAttrs.add("writtenRecords", written);
+      monitorAttrs.add("writtenBatches", batches);
+      monitorAttrs.add("writtenBytes", writtenBytes);
+      monitorAttrs.add("averageBatchSize", batches > 0 ? (double) written / batches : 0.0);
+      monitorAttrs.add("ringBufferFullCount", bufferFullCount.get());
+      return monitorAttrs;
+    }
+  }
+}
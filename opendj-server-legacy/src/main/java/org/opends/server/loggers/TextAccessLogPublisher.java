@@ -60,6 +60,7 @@ import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.FilePermission;
 import org.opends.server.types.InitializationException;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
 import org.opends.server.util.StaticUtils;
 import org.opends.server.util.TimeThread;
 
@@ -94,10 +95,28 @@ public final class TextAccessLogPublisher extends
     return startupPublisher;
   }
 
+  /** Initial capacity of the buffers reused by the logging threads. */
+  private static final int REUSED_BUFFER_SIZE = 256;
+  /** Buffers grown beyond this capacity by a large record are not reused. */
+  private static final int MAX_REUSED_BUFFER_SIZE = 8192;
+  /**
+   * The buffer reused by each logging thread for formatting its records. It is taken out while in
+   * use, so a record logged while formatting another one gets its own buffer.
+   */
+  private static final ThreadLocal<StringBuilder> REUSED_BUFFER = new ThreadLocal<StringBuilder>()
+  {
+    @Override
+    protected StringBuilder initialValue()
+    {
+      return new StringBuilder(REUSED_BUFFER_SIZE);
+    }
+  };
+
   private TextWriter writer;
   private FileBasedAccessLogPublisherCfg cfg;
   private boolean isCombinedMode;
   private boolean includeControlOIDs;
+  private boolean includeOperationPhases;
   private String timeStampFormat = "dd/MMM/yyyy:HH:mm:ss Z";
   private ServerContext serverContext;
 
@@ -110,15 +129,7 @@ public final class TextAccessLogPublisher extends
     {
       // Determine the writer we are using. If we were writing asynchronously,
       // we need to modify the underlying writer.
-      TextWriter currentWriter;
-      if (writer instanceof AsynchronousTextWriter)
-      {
-        currentWriter = ((AsynchronousTextWriter) writer).getWrappedWriter();
-      }
-      else
-      {
-        currentWriter = writer;
-      }
+      final TextWriter currentWriter = isAsynchronousWriter(writer) ? getWrappedWriter(writer) : writer;
 
       if (currentWriter instanceof MultifileTextWriter)
       {
@@ -127,14 +138,23 @@ public final class TextAccessLogPublisher extends
 
         if (config.isAsynchronous())
         {
-          if (writer instanceof AsynchronousTextWriter)
+          if (isAsynchronousWriter(writer))
           {
             if (hasAsyncConfigChanged(config))
             {
               // reinstantiate
-              final AsynchronousTextWriter previousWriter = (AsynchronousTextWriter) writer;
+              final TextWriter previousWriter = writer;
+              if (previousWriter instanceof RingBufferTextWriter)
+              {
+                // Its monitor must be deregistered before the new writer registers one with the same name.
+                // Meanwhile, it writes the records synchronously.
+                shutdownAsynchronousWriter(previousWriter);
+              }
               writer = newAsyncWriter(mfWriter, config);
-              previousWriter.shutdown(false);
+              if (previousWriter instanceof AsynchronousTextWriter)
+              {
+                shutdownAsynchronousWriter(previousWriter);
+              }
             }
           }
           else
@@ -145,12 +165,12 @@ public final class TextAccessLogPublisher extends
         }
         else
         {
-          if (writer instanceof AsynchronousTextWriter)
+          if (isAsynchronousWriter(writer))
           {
             // asynchronous is being turned off, remove async text writers.
-            final AsynchronousTextWriter previousWriter = (AsynchronousTextWriter) writer;
+            final TextWriter previousWriter = writer;
             writer = mfWriter;
-            previousWriter.shutdown(false);
+            shutdownAsynchronousWriter(previousWriter);
           }
         }
 
@@ -169,6 +189,7 @@ public final class TextAccessLogPublisher extends
         cfg = config;
         isCombinedMode = cfg.getLogFormat() == LogFormat.COMBINED;
         includeControlOIDs = cfg.isLogControlOids();
+        includeOperationPhases = cfg.isLogOperationPhases();
       }
     }
     catch (final Exception e)
@@ -267,6 +288,7 @@ public final class TextAccessLogPublisher extends
     this.cfg = cfg;
     isCombinedMode = cfg.getLogFormat() == LogFormat.COMBINED;
     includeControlOIDs = cfg.isLogControlOids();
+    includeOperationPhases = cfg.isLogOperationPhases();
     timeStampFormat = cfg.getLogRecordTimeFormat();
 
     cfg.addFileBasedAccessChangeListener(this);
@@ -274,7 +296,8 @@ public final class TextAccessLogPublisher extends
 
   private boolean hasAsyncConfigChanged(FileBasedAccessLogPublisherCfg newConfig)
   {
-    return hasParallelConfigChanged(newConfig) && cfg.getQueueSize() != newConfig.getQueueSize();
+    return (hasParallelConfigChanged(newConfig) && cfg.getQueueSize() != newConfig.getQueueSize())
+        || cfg.isUseRingBuffer() != newConfig.isUseRingBuffer();
   }
 
   private boolean hasParallelConfigChanged(FileBasedAccessLogPublisherCfg newConfig)
@@ -282,12 +305,81 @@ public final class TextAccessLogPublisher extends
     return !cfg.dn().equals(newConfig.dn()) && cfg.isAutoFlush() != newConfig.isAutoFlush();
   }
 
-  private AsynchronousTextWriter newAsyncWriter(MultifileTextWriter mfWriter, FileBasedAccessLogPublisherCfg config)
+  private TextWriter newAsyncWriter(MultifileTextWriter mfWriter, FileBasedAccessLogPublisherCfg config)
   {
+    if (config.isUseRingBuffer())
+    {
+      final String name = "Ring Buffer Text Writer for " + config.dn();
+      final String monitorName = config.dn().rdn().getFirstAVA().getAttributeValue() + " Ring Buffer";
+      return new RingBufferTextWriter(name, monitorName, config.getQueueSize(), config.isAutoFlush(), mfWriter);
+    }
     String name = "Asynchronous Text Writer for " + config.dn();
     return new AsynchronousTextWriter(name, config.getQueueSize(), config.isAutoFlush(), mfWriter);
   }
 
+  private static boolean isAsynchronousWriter(TextWriter writer)
+  {
+    return writer instanceof AsynchronousTextWriter || writer instanceof RingBufferTextWriter;
+  }
+
+  private static TextWriter getWrappedWriter(TextWriter asyncWriter)
+  {
+    if (asyncWriter instanceof RingBufferTextWriter)
+    {
+      return ((RingBufferTextWriter) asyncWriter).getWrappedWriter();
+    }
+    return ((AsynchronousTextWriter) asyncWriter).getWrappedWriter();
+  }
+
+  /** Stops the provided asynchronous writer, keeping its wrapped writer open. */
+  private static void shutdownAsynchronousWriter(TextWriter asyncWriter)
+  {
+    if (asyncWriter instanceof RingBufferTextWriter)
+    {
+      ((RingBufferTextWriter) asyncWriter).shutdown(false);
+    }
+    else
+    {
+      ((AsynchronousTextWriter) asyncWriter).shutdown(false);
+    }
+  }
+
+  /**
+   * Returns a buffer for formatting a log record, reusing the buffer of the current thread when
+   * available. The buffer must be handed back with {@link #writeRecord(StringBuilder)}.
+   */
+  private static StringBuilder newBuffer(int capacity)
+  {
+    final StringBuilder buffer = REUSED_BUFFER.get();
+    if (buffer == null)
+    {
+      return new StringBuilder(capacity);
+    }
+    REUSED_BUFFER.set(null);
+    return buffer;
+  }
+
+  /** Writes the log record held in the provided buffer, then keeps the buffer for reuse by the current thread. */
+  private void writeRecord(final StringBuilder buffer)
+  {
+    final TextWriter w = writer;
+    if (w instanceof RingBufferTextWriter)
+    {
+      // Copied by the writer, avoid creating a String
+      ((RingBufferTextWriter) w).writeRecord(buffer);
+    }
+    else
+    {
+      w.writeRecord(buffer.toString());
+    }
+
+    if (buffer.capacity() <= MAX_REUSED_BUFFER_SIZE)
+    {
+      buffer.setLength(0);
+      REUSED_BUFFER.set(buffer);
+    }
+  }
+
   @Override
   public boolean isConfigurationAcceptable(
       final FileBasedAccessLogPublisherCfg configuration,
@@ -343,10 +435,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(abandonOperation, "ABANDON", CATEGORY_REQUEST, buffer);
     appendAbandonRequest(abandonOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -357,7 +449,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(abandonOperation, "ABANDON", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -366,7 +458,8 @@ public final class TextAccessLogPublisher extends
     appendResultCodeAndMessage(buffer, abandonOperation);
     logAdditionalLogItems(abandonOperation, buffer);
     appendEtime(buffer, abandonOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, abandonOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -377,10 +470,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(addOperation, "ADD", CATEGORY_REQUEST, buffer);
     appendAddRequest(addOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -391,7 +484,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(addOperation, "ADD", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -401,7 +494,8 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(addOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", addOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, addOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, addOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -412,10 +506,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(bindOperation, "BIND", CATEGORY_REQUEST, buffer);
     appendBindRequest(bindOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -426,7 +520,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(bindOperation, "BIND", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -477,8 +571,9 @@ public final class TextAccessLogPublisher extends
     }
 
     appendEtime(buffer, bindOperation);
+    appendOperationPhases(buffer, bindOperation);
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -489,10 +584,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(compareOperation, "COMPARE", CATEGORY_REQUEST, buffer);
     appendCompareRequest(compareOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -503,7 +598,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(compareOperation, "COMPARE", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -513,7 +608,8 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(compareOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", compareOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, compareOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, compareOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -525,14 +621,14 @@ public final class TextAccessLogPublisher extends
     }
 
     final long connectionID = clientConnection.getConnectionID();
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     buffer.append('[').append(TimeThread.getUserDefinedTime(timeStampFormat)).append(']');
     buffer.append(" CONNECT conn=").append(connectionID);
     buffer.append(" from=").append(clientConnection.getClientHostPort());
     buffer.append(" to=").append(clientConnection.getServerHostPort());
     buffer.append(" protocol=").append(clientConnection.getProtocol());
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -543,10 +639,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(deleteOperation, "DELETE", CATEGORY_REQUEST, buffer);
     appendDeleteRequest(deleteOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -557,7 +653,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(deleteOperation, "DELETE", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -567,7 +663,8 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(deleteOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", deleteOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, deleteOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, deleteOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -580,13 +677,13 @@ public final class TextAccessLogPublisher extends
     }
 
     final long connectionID = clientConnection.getConnectionID();
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     buffer.append('[').append(TimeThread.getUserDefinedTime(timeStampFormat)).append(']');
     buffer.append(" DISCONNECT conn=").append(connectionID);
     appendLabel(buffer, "reason", disconnectReason);
     appendLabelIfNotNull(buffer, "msg", message);
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -597,10 +694,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(extendedOperation, "EXTENDED", CATEGORY_REQUEST, buffer);
     appendExtendedRequest(extendedOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -611,7 +708,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(extendedOperation, "EXTENDED", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -633,8 +730,9 @@ public final class TextAccessLogPublisher extends
     appendResultCodeAndMessage(buffer, extendedOperation);
     logAdditionalLogItems(extendedOperation, buffer);
     appendEtime(buffer, extendedOperation);
+    appendOperationPhases(buffer, extendedOperation);
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -645,10 +743,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(modifyDNOperation, "MODIFYDN", CATEGORY_REQUEST, buffer);
     appendModifyDNRequest(modifyDNOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -659,7 +757,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(modifyDNOperation, "MODIFYDN", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -669,7 +767,8 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(modifyDNOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", modifyDNOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, modifyDNOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, modifyDNOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -680,10 +779,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(modifyOperation, "MODIFY", CATEGORY_REQUEST, buffer);
     appendModifyRequest(modifyOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -694,7 +793,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(modifyOperation, "MODIFY", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -704,7 +803,8 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(modifyOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", modifyOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, modifyOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, modifyOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -715,10 +815,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(192);
+    final StringBuilder buffer = newBuffer(192);
     appendHeader(searchOperation, "SEARCH", CATEGORY_REQUEST, buffer);
     appendSearchRequest(searchOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -729,7 +829,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(128);
+    final StringBuilder buffer = newBuffer(128);
     appendHeader(searchOperation, "SEARCH", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -740,7 +840,8 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(searchOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", searchOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, searchOperation);
-    writer.writeRecord(buffer.toString());
+    appendOperationPhases(buffer, searchOperation);
+    writeRecord(buffer);
   }
 
   @Override
@@ -751,14 +852,14 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = newBuffer(100);
     appendHeader(unbindOperation, "UNBIND", CATEGORY_REQUEST, buffer);
     if (unbindOperation.isSynchronizationOperation())
     {
       buffer.append(" type=synchronization");
     }
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -917,6 +1018,17 @@ public final class TextAccessLogPublisher extends
     buffer.append(etime);
   }
 
+  private void appendOperationPhases(final StringBuilder buffer, final Operation operation)
+  {
+    final OperationPhaseTimer phaseTimer = operation.getPhaseTimer();
+    if (includeOperationPhases && phaseTimer != null)
+    {
+      buffer.append(" phases=\"");
+      phaseTimer.toString(buffer);
+      buffer.append('"');
+    }
+  }
+
   /** Appends the common log header information to the provided buffer. */
   private void appendHeader(final Operation operation, final String opType,
       final String category, final StringBuilder buffer)
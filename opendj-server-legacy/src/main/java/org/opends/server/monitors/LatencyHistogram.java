@@ -0,0 +1,258 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.monitors;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opends.server.api.MonitorData;
+
+/**
+ * A histogram of latencies, in the style of HdrHistogram: the values are recorded in microseconds
+ * into log-linear buckets, so that any value is recorded with a relative error lower than 1/16,
+ * from one microsecond up to more than one hour.
+ * <p>
+ * Recording is lock-free and rarely contends between threads: each recording thread updates one
+ * of a fixed number of arrays of counters, chosen from its thread ID, and the arrays are only
+ * summed when a snapshot is taken. Using a fixed number of arrays bounds the memory used by a
+ * histogram whatever the number of threads which ever recorded into it.
+ */
+public final class LatencyHistogram
+{
+  /** The number of bits of the values kept by the buckets. */
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+  /** The highest trackable value, in microseconds. Higher values are recorded as this value. */
+  private static final long HIGHEST_TRACKABLE_VALUE = (1L << 32) - 1;
+  private static final int BUCKET_COUNT = getBucketIndex(HIGHEST_TRACKABLE_VALUE) + 1;
+  /** The index, in the recorder arrays, of the sum of the recorded values. */
+  private static final int TOTAL_INDEX = BUCKET_COUNT;
+  /** The index, in the recorder arrays, of the highest recorded value. */
+  private static final int MAX_INDEX = BUCKET_COUNT + 1;
+  private static final int RECORDER_LENGTH = BUCKET_COUNT + 2;
+  /** The number of recorders, a power of two so that threads are spread with a mask. */
+  private static final int RECORDER_COUNT =
+      Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1, 64);
+
+  /**
+   * The recorders, allocated the first time a thread records into them, and replaced as a whole
+   * when the histogram is reset.
+   */
+  private static final class Recorders
+  {
+    private final AtomicReferenceArray<AtomicLongArray> all = new AtomicReferenceArray<>(RECORDER_COUNT);
+
+    private AtomicLongArray get()
+    {
+      // Thread IDs are allocated sequentially, so consecutive threads use distinct recorders
+      final int index = (int) Thread.currentThread().getId() & (RECORDER_COUNT - 1);
+      final AtomicLongArray recorder = all.get(index);
+      if (recorder != null)
+      {
+        return recorder;
+      }
+      all.compareAndSet(index, null, new AtomicLongArray(RECORDER_LENGTH));
+      return all.get(index);
+    }
+  }
+
+  /** A consistent view of the values recorded in a histogram. */
+  public static final class Snapshot
+  {
+    private final long[] counts;
+    private final long count;
+    private final long total;
+    private final long max;
+
+    private Snapshot(long[] counts, long count, long total, long max)
+    {
+      this.counts = counts;
+      this.count = count;
+      this.total = total;
+      this.max = max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The number of recorded values.
+     */
+    public long getCount()
+    {
+      return count;
+    }
+
+    /**
+     * Returns the sum of the recorded values, in microseconds.
+     *
+     * @return The sum of the recorded values, in microseconds.
+     */
+    public long getTotal()
+    {
+      return total;
+    }
+
+    /**
+     * Returns the mean of the recorded values, in microseconds.
+     *
+     * @return The mean of the recorded values, in microseconds, or 0 if no values have been
+     *         recorded.
+     */
+    public long getMean()
+    {
+      return count > 0 ? total / count : 0;
+    }
+
+    /**
+     * Returns the highest recorded value, in microseconds.
+     *
+     * @return The highest recorded value, in microseconds, or 0 if no values have been recorded.
+     */
+    public long getMax()
+    {
+      return max;
+    }
+
+    /**
+     * Returns the value below which the provided percentage of the recorded values fall.
+     *
+     * @param percentile
+     *          The percentile, between 0 and 100.
+     * @return The value at the provided percentile, in microseconds, or 0 if no values have been
+     *         recorded.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+      if (count == 0)
+      {
+        return 0;
+      }
+      final long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+      long cumulativeCount = 0;
+      for (int i = 0; i < counts.length; i++)
+      {
+        cumulativeCount += counts[i];
+        if (cumulativeCount >= rank)
+        {
+          return Math.min(getHighestEquivalentValue(i), max);
+        }
+      }
+      return max;
+    }
+
+    /**
+     * Adds the statistics of this snapshot to the provided monitor data.
+     *
+     * @param attrs
+     *          The monitor data to which the statistics must be added.
+     * @param attributesPrefix
+     *          The prefix of the names of the monitor attributes.
+     */
+    public void addMonitorData(MonitorData attrs, String attributesPrefix)
+    {
+      attrs.add(attributesPrefix + "-count", count);
+      attrs.add(attributesPrefix + "-mean-micros", getMean());
+      attrs.add(attributesPrefix + "-p50-micros", getValueAtPercentile(50));
+      attrs.add(attributesPrefix + "-p90-micros", getValueAtPercentile(90));
+      attrs.add(attributesPrefix + "-p99-micros", getValueAtPercentile(99));
+      attrs.add(attributesPrefix + "-p999-micros", getValueAtPercentile(99.9));
+      attrs.add(attributesPrefix + "-max-micros", max);
+    }
+  }
+
+  private volatile Recorders recorders = new Recorders();
+
+  /**
+   * Records the provided latency.
+   *
+   * @param duration
+   *          The latency to record. Negative values are recorded as 0.
+   * @param unit
+   *          The unit of the latency.
+   */
+  public void recordValue(long duration, TimeUnit unit)
+  {
+    final long value = Math.min(Math.max(unit.toMicros(duration), 0), HIGHEST_TRACKABLE_VALUE);
+    final int index = getBucketIndex(value);
+    final AtomicLongArray recorder = recorders.get();
+    recorder.incrementAndGet(index);
+    recorder.addAndGet(TOTAL_INDEX, value);
+    long max;
+    while (value > (max = recorder.get(MAX_INDEX)) && !recorder.compareAndSet(MAX_INDEX, max, value))
+    {
+      // Another thread sharing this recorder updated the max, check again
+    }
+  }
+
+  /**
+   * Returns a snapshot of the values recorded so far.
+   *
+   * @return A snapshot of the values recorded so far.
+   */
+  public Snapshot getSnapshot()
+  {
+    final long[] counts = new long[BUCKET_COUNT];
+    long count = 0;
+    long total = 0;
+    long max = 0;
+    final AtomicReferenceArray<AtomicLongArray> all = recorders.all;
+    for (int r = 0; r < all.length(); r++)
+    {
+      final AtomicLongArray recorder = all.get(r);
+      if (recorder == null)
+      {
+        continue;
+      }
+      for (int i = 0; i < BUCKET_COUNT; i++)
+      {
+        final long bucketCount = recorder.get(i);
+        counts[i] += bucketCount;
+        count += bucketCount;
+      }
+      total += recorder.get(TOTAL_INDEX);
+      max = Math.max(max, recorder.get(MAX_INDEX));
+    }
+    return new Snapshot(counts, count, total, max);
+  }
+
+  /** Discards all the values recorded so far. */
+  public void reset()
+  {
+    recorders = new Recorders();
+  }
+
+  private static int getBucketIndex(long value)
+  {
+    if (value < 2 * SUB_BUCKET_HALF_COUNT)
+    {
+      return (int) value;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+  }
+
+  private static long getHighestEquivalentValue(int index)
+  {
+    if (index < 2 * SUB_BUCKET_HALF_COUNT)
+    {
+      return index;
+    }
+    final int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+    final long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
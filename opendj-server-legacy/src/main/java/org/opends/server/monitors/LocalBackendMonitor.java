@@ -21,6 +21,7 @@ import static org.opends.server.util.ServerConstants.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.DN;
@@ -30,11 +31,13 @@ import org.opends.server.api.LocalBackend;
 import org.opends.server.api.MonitorData;
 import org.opends.server.api.MonitorProvider;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.OperationType;
 
 /**
  * This class implements a monitor provider that will report generic information
  * for an enabled Directory Server backend, including its backend ID, base DNs,
- * writability mode, and the number of entries it contains.
+ * writability mode, and the number of entries it contains, along with the
+ * latency percentiles of the operations it processed.
  */
 public class LocalBackendMonitor
        extends MonitorProvider<MonitorProviderCfg>
@@ -44,6 +47,11 @@ public class LocalBackendMonitor
 
   /** The name for this monitor. */
   private String monitorName;
+  /**
+   * The latency histograms of the operations processed by the backend, excluding the processing
+   * performed on its subordinate backends.
+   */
+  private final OperationLatencyHistograms operationLatencies = new OperationLatencyHistograms();
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
   /**
@@ -95,9 +103,43 @@ public class LocalBackendMonitor
     attrs.add(ATTR_MONITOR_BACKEND_ENTRY_COUNT, backend.getEntryCount());
     attrs.add(ATTR_MONITOR_BASE_DN_ENTRY_COUNT, getBackendEntryCounts(baseDNs));
     attrs.add(ATTR_MONITOR_BACKEND_WRITABILITY_MODE, backend.getWritabilityMode());
+    operationLatencies.addMonitorData(attrs);
     return attrs;
   }
 
+  /**
+   * Records the time spent by the backend processing an operation.
+   *
+   * @param type
+   *          The type of the operation.
+   * @param nanos
+   *          The time spent by the backend processing the operation, in nanoseconds.
+   */
+  public void updateOperationLatency(OperationType type, long nanos)
+  {
+    operationLatencies.recordOperation(type, nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the latency histograms of the operations processed by the backend, by operation type.
+   *
+   * @return The latency histograms of the operations processed by the backend, by operation type.
+   */
+  public OperationLatencyHistograms getOperationLatencies()
+  {
+    return operationLatencies;
+  }
+
+  /**
+   * Returns the backend with which this monitor is associated.
+   *
+   * @return The backend with which this monitor is associated.
+   */
+  public LocalBackend<?> getBackend()
+  {
+    return backend;
+  }
+
   private Collection<String> getBackendEntryCounts(Set<DN> baseDNs)
   {
     Collection<String> results = new ArrayList<>();
@@ -0,0 +1,98 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.monitors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorData;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.LockManager;
+
+/**
+ * This class defines a Directory Server monitor that can be used to diagnose contention on the
+ * entry locks of a lock manager.
+ */
+public class LockManagerMonitor extends MonitorProvider<MonitorProviderCfg>
+{
+  /** The name to use for the monitor attribute that provides the number of locks in the lock table. */
+  public static final String ATTR_LOCK_TABLE_SIZE = "lockTableSize";
+  /** The name to use for the monitor attribute that provides the number of contended lock attempts. */
+  public static final String ATTR_CONTENDED_LOCK_ATTEMPTS = "contendedLockAttempts";
+  /** The name to use for the monitor attribute that provides the number of lock attempts which timed out. */
+  public static final String ATTR_LOCK_TIMEOUTS = "lockTimeouts";
+  /**
+   * The name to use for the monitor attribute that provides the total time spent waiting for
+   * contended locks, in milliseconds.
+   */
+  public static final String ATTR_TOTAL_LOCK_WAIT_TIME = "totalLockWaitTime";
+  /**
+   * The name to use for the monitor attribute that provides the average time spent waiting for a
+   * contended lock, in microseconds.
+   */
+  public static final String ATTR_AVERAGE_LOCK_WAIT_TIME = "averageLockWaitTimeMicros";
+  /**
+   * The name to use for the monitor attribute that provides the longest time spent waiting for a
+   * contended lock, in milliseconds.
+   */
+  public static final String ATTR_MAX_LOCK_WAIT_TIME = "maxLockWaitTime";
+
+  /** The lock manager with which this monitor is associated. */
+  private final LockManager lockManager;
+
+  /**
+   * Creates a new monitor for the provided lock manager.
+   *
+   * @param lockManager
+   *          The lock manager with which this monitor is associated.
+   */
+  public LockManagerMonitor(LockManager lockManager)
+  {
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public void initializeMonitorProvider(MonitorProviderCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    // No initialization is required.
+  }
+
+  @Override
+  public String getMonitorInstanceName()
+  {
+    return "Lock Manager";
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    final long contendedLockAttempts = lockManager.getContendedLockAttempts();
+    final long totalWaitTimeMicros = lockManager.getTotalLockWaitTime(TimeUnit.MICROSECONDS);
+
+    final MonitorData monitorAttrs = new MonitorData(6);
+    monitorAttrs.add(ATTR_LOCK_TABLE_SIZE, lockManager.getLockTableSize());
+    monitorAttrs.add(ATTR_CONTENDED_LOCK_ATTEMPTS, contendedLockAttempts);
+    monitorAttrs.add(ATTR_LOCK_TIMEOUTS, lockManager.getLockTimeouts());
+    monitorAttrs.add(ATTR_TOTAL_LOCK_WAIT_TIME, TimeUnit.MICROSECONDS.toMillis(totalWaitTimeMicros));
+    monitorAttrs.add(ATTR_AVERAGE_LOCK_WAIT_TIME,
+        contendedLockAttempts > 0 ? totalWaitTimeMicros / contendedLockAttempts : 0L);
+    monitorAttrs.add(ATTR_MAX_LOCK_WAIT_TIME, lockManager.getMaxLockWaitTime(TimeUnit.MILLISECONDS));
+    return monitorAttrs;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.monitors;
+
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.api.MonitorData;
+import org.opends.server.types.OperationType;
+
+/**
+ * The latency histograms of the operations processed by a component of the server, one per
+ * operation type.
+ */
+public final class OperationLatencyHistograms
+{
+  private final Map<OperationType, LatencyHistogram> histograms = new EnumMap<>(OperationType.class);
+
+  /** Creates new empty histograms. */
+  public OperationLatencyHistograms()
+  {
+    for (OperationType type : OperationType.values())
+    {
+      histograms.put(type, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * Records the latency of an operation.
+   *
+   * @param type
+   *          The type of the operation.
+   * @param duration
+   *          The latency of the operation.
+   * @param unit
+   *          The unit of the latency.
+   */
+  public void recordOperation(OperationType type, long duration, TimeUnit unit)
+  {
+    histograms.get(type).recordValue(duration, unit);
+  }
+
+  /**
+   * Returns the latency histogram of the provided operation type.
+   *
+   * @param type
+   *          The type of the operations.
+   * @return The latency histogram of the provided operation type.
+   */
+  public LatencyHistogram getHistogram(OperationType type)
+  {
+    return histograms.get(type);
+  }
+
+  /** Discards all the latencies recorded so far. */
+  public void reset()
+  {
+    for (LatencyHistogram histogram : histograms.values())
+    {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * Adds the latency statistics of each operation type to the provided monitor data.
+   *
+   * @param attrs
+   *          The monitor data to which the statistics must be added.
+   */
+  public void addMonitorData(MonitorData attrs)
+  {
+    for (Map.Entry<OperationType, LatencyHistogram> entry : histograms.entrySet())
+    {
+      entry.getValue().getSnapshot().addMonitorData(attrs,
+          "ds-mon-" + getMonitorName(entry.getKey()) + "-operations-latency");
+    }
+  }
+
+  /**
+   * Returns the name of the provided operation type, as used in the names of the monitor
+   * attributes.
+   *
+   * @param type
+   *          The operation type.
+   * @return The name of the provided operation type, as used in the names of the monitor
+   *         attributes.
+   */
+  public static String getMonitorName(OperationType type)
+  {
+    switch (type)
+    {
+    case MODIFY:
+      return "mod";
+    case MODIFY_DN:
+      return "moddn";
+    default:
+      return toLowerCase(type.getOperationName());
+    }
+  }
+}
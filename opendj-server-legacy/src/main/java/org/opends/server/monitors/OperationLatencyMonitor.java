@@ -0,0 +1,204 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.monitors;
+
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorData;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
+import org.opends.server.types.OperationType;
+
+/**
+ * This class defines a Directory Server monitor reporting the latency percentiles of all the
+ * operations requested by clients, by operation type, along with the time they waited in the work
+ * queue before being processed.
+ * <p>
+ * When the operation phases are timed, it also reports the time spent by the operations in each
+ * phase, and the number of entry cache hits and misses.
+ */
+public class OperationLatencyMonitor extends MonitorProvider<MonitorProviderCfg>
+{
+  /** The prefix of the monitor attributes reporting the time waited in the work queue. */
+  private static final String ATTR_WORK_QUEUE_WAIT = "ds-mon-work-queue-wait";
+  /** The prefix of the monitor attributes reporting the time spent in each operation phase. */
+  private static final String ATTR_PHASE = "ds-mon-phase-";
+  /** The name of the monitor attribute reporting the number of entry cache hits of the timed operations. */
+  private static final String ATTR_ENTRY_CACHE_HITS = "ds-mon-phase-entry-cache-hits";
+  /** The name of the monitor attribute reporting the number of entry cache misses of the timed operations. */
+  private static final String ATTR_ENTRY_CACHE_MISSES = "ds-mon-phase-entry-cache-misses";
+
+  private final OperationLatencyHistograms operationLatencies = new OperationLatencyHistograms();
+  private final LatencyHistogram workQueueWaitLatency = new LatencyHistogram();
+  private final Map<Phase, LatencyHistogram> phaseLatencies = new EnumMap<>(Phase.class);
+  private final AtomicLong entryCacheHits = new AtomicLong();
+  private final AtomicLong entryCacheMisses = new AtomicLong();
+
+  /** Creates a new operation latency monitor. */
+  public OperationLatencyMonitor()
+  {
+    for (Phase phase : Phase.values())
+    {
+      phaseLatencies.put(phase, new LatencyHistogram());
+    }
+  }
+
+  @Override
+  public void initializeMonitorProvider(MonitorProviderCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    // No initialization is required.
+  }
+
+  @Override
+  public String getMonitorInstanceName()
+  {
+    return "Operation Latency";
+  }
+
+  /**
+   * Records the latencies of a completed operation.
+   *
+   * @param type
+   *          The type of the operation.
+   * @param processingNanos
+   *          The time spent processing the operation, in nanoseconds.
+   * @param workQueueWaitNanos
+   *          The time the operation waited before its processing started, in nanoseconds.
+   */
+  public void recordOperation(OperationType type, long processingNanos, long workQueueWaitNanos)
+  {
+    operationLatencies.recordOperation(type, processingNanos, TimeUnit.NANOSECONDS);
+    workQueueWaitLatency.recordValue(workQueueWaitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records the time spent by a completed operation in each phase. The phases where no time was
+   * spent are not recorded.
+   *
+   * @param phaseTimer
+   *          The phase timer of the operation.
+   */
+  public void recordPhases(OperationPhaseTimer phaseTimer)
+  {
+    for (Map.Entry<Phase, LatencyHistogram> entry : phaseLatencies.entrySet())
+    {
+      final long nanos = phaseTimer.getDuration(entry.getKey(), TimeUnit.NANOSECONDS);
+      if (nanos > 0)
+      {
+        entry.getValue().recordValue(nanos, TimeUnit.NANOSECONDS);
+      }
+    }
+    if (phaseTimer.getEntryCacheHits() > 0)
+    {
+      entryCacheHits.addAndGet(phaseTimer.getEntryCacheHits());
+    }
+    if (phaseTimer.getEntryCacheMisses() > 0)
+    {
+      entryCacheMisses.addAndGet(phaseTimer.getEntryCacheMisses());
+    }
+  }
+
+  /**
+   * Returns the latency histograms of the operations, by operation type.
+   *
+   * @return The latency histograms of the operations, by operation type.
+   */
+  public OperationLatencyHistograms getOperationLatencies()
+  {
+    return operationLatencies;
+  }
+
+  /**
+   * Returns the histogram of the time waited by the operations before their processing started.
+   *
+   * @return The histogram of the time waited by the operations before their processing started.
+   */
+  public LatencyHistogram getWorkQueueWaitLatency()
+  {
+    return workQueueWaitLatency;
+  }
+
+  /**
+   * Returns the histogram of the time spent by the timed operations in the provided phase.
+   *
+   * @param phase
+   *          The operation phase.
+   * @return The histogram of the time spent by the timed operations in the provided phase.
+   */
+  public LatencyHistogram getPhaseLatency(Phase phase)
+  {
+    return phaseLatencies.get(phase);
+  }
+
+  /**
+   * Returns the number of entry cache hits of the timed operations.
+   *
+   * @return The number of entry cache hits of the timed operations.
+   */
+  public long getEntryCacheHits()
+  {
+    return entryCacheHits.get();
+  }
+
+  /**
+   * Returns the number of entry cache misses of the timed operations.
+   *
+   * @return The number of entry cache misses of the timed operations.
+   */
+  public long getEntryCacheMisses()
+  {
+    return entryCacheMisses.get();
+  }
+
+  /**
+   * Returns the name used for the provided phase in the monitor attributes, e.g.
+   * {@code backend-read}.
+   *
+   * @param phase
+   *          The operation phase.
+   * @return The name used for the provided phase in the monitor attributes.
+   */
+  public static String getMonitorName(Phase phase)
+  {
+    return toLowerCase(phase.name()).replace('_', '-');
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    final MonitorData monitorAttrs =
+        new MonitorData(7 * (OperationType.values().length + 1 + phaseLatencies.size()) + 2);
+    operationLatencies.addMonitorData(monitorAttrs);
+    workQueueWaitLatency.getSnapshot().addMonitorData(monitorAttrs, ATTR_WORK_QUEUE_WAIT);
+    for (Map.Entry<Phase, LatencyHistogram> entry : phaseLatencies.entrySet())
+    {
+      entry.getValue().getSnapshot().addMonitorData(monitorAttrs, ATTR_PHASE + getMonitorName(entry.getKey()));
+    }
+    monitorAttrs.add(ATTR_ENTRY_CACHE_HITS, entryCacheHits.get());
+    monitorAttrs.add(ATTR_ENTRY_CACHE_MISSES, entryCacheMisses.get());
+    return monitorAttrs;
+  }
+}
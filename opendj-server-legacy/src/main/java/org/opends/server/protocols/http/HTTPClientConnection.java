@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.http.MutableUri;
@@ -72,6 +73,7 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.IntermediateResponse;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
 import org.opends.server.types.OperationType;
 import org.opends.server.types.SearchResultEntry;
 import org.opends.server.types.SearchResultReference;
@@ -321,6 +323,8 @@ final class HTTPClientConnection extends ClientConnection
   {
     final long time = getProcessingTime(operation);
     this.totalProcessingTime.addAndGet(time);
+    this.statTracker.updateOperationLatency(operation.getOperationType(),
+        operation.getProcessingDuration(TimeUnit.NANOSECONDS));
 
     if (keepStats)
     {
@@ -346,6 +350,12 @@ final class HTTPClientConnection extends ClientConnection
         op.promise.handleException(e);
       }
     }
+
+    final OperationPhaseTimer phaseTimer = operation.getPhaseTimer();
+    if (phaseTimer != null)
+    {
+      DirectoryServer.getOperationLatencyMonitor().recordPhases(phaseTimer);
+    }
   }
 
   private long getProcessingTime(Operation operation)
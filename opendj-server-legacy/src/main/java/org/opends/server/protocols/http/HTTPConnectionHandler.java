@@ -88,6 +88,7 @@ import org.opends.server.core.ServerContext;
 import org.opends.server.extensions.NullKeyManagerProvider;
 import org.opends.server.loggers.HTTPAccessLogger;
 import org.opends.server.monitors.ClientConnectionMonitorProvider;
+import org.opends.server.monitors.OperationLatencyHistograms;
 import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.types.AbstractOperation;
 import org.opends.server.types.DirectoryException;
@@ -405,6 +406,12 @@ public class HTTPConnectionHandler extends ConnectionHandler<HTTPConnectionHandl
     return statTracker;
   }
 
+  @Override
+  public OperationLatencyHistograms getOperationLatencies()
+  {
+    return statTracker != null ? statTracker.getOperationLatencies() : null;
+  }
+
   @Override
   public void initializeConnectionHandler(ServerContext serverContext, HTTPConnectionHandlerCfg config)
       throws ConfigException, InitializationException
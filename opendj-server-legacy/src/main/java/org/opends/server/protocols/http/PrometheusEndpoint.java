@@ -0,0 +1,242 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.protocols.http;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.HttpApplication;
+import org.forgerock.http.HttpApplicationException;
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.opendj.server.config.server.PrometheusEndpointCfg;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.opends.server.api.ConnectionHandler;
+import org.opends.server.api.HttpEndpoint;
+import org.opends.server.api.LocalBackend;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+import org.opends.server.monitors.LatencyHistogram;
+import org.opends.server.monitors.LocalBackendMonitor;
+import org.opends.server.monitors.OperationLatencyHistograms;
+import org.opends.server.monitors.OperationLatencyMonitor;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.OperationPhaseTimer.Phase;
+import org.opends.server.types.OperationType;
+
+/**
+ * An HTTP endpoint exposing the latency histograms of the server in the Prometheus text exposition
+ * format, as summaries: server wide, per connection handler and per backend by operation type,
+ * along with the time waited by the operations in the work queue and, when the operation phases
+ * are timed, the time spent in each phase.
+ */
+public final class PrometheusEndpoint extends HttpEndpoint<PrometheusEndpointCfg>
+{
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+  private static final String OPERATION_LATENCY = "opendj_operation_latency_seconds";
+  private static final String WORK_QUEUE_WAIT = "opendj_work_queue_wait_seconds";
+  private static final String CONNECTION_HANDLER_LATENCY = "opendj_connection_handler_operation_latency_seconds";
+  private static final String BACKEND_LATENCY = "opendj_backend_operation_latency_seconds";
+  private static final String PHASE_LATENCY = "opendj_operation_phase_seconds";
+  private static final String ENTRY_CACHE_LOOKUPS = "opendj_operation_entry_cache_lookups_total";
+
+  /**
+   * Create a new PrometheusEndpoint with the supplied configuration.
+   *
+   * @param configuration
+   *          Configuration to use for the {@link HttpApplication}
+   * @param serverContext
+   *          Server of this LDAP server
+   */
+  public PrometheusEndpoint(PrometheusEndpointCfg configuration, ServerContext serverContext)
+  {
+    super(configuration, serverContext);
+  }
+
+  @Override
+  public HttpApplication newHttpApplication() throws InitializationException
+  {
+    return new PrometheusHttpApplication();
+  }
+
+  /** {@link HttpApplication} rendering the latency histograms on each request. */
+  private final class PrometheusHttpApplication implements HttpApplication, Handler
+  {
+    @Override
+    public Handler start() throws HttpApplicationException
+    {
+      return this;
+    }
+
+    @Override
+    public void stop()
+    {
+      // Nothing to do
+    }
+
+    @Override
+    public Factory<Buffer> getBufferFactory()
+    {
+      return null;
+    }
+
+    @Override
+    public Promise<Response, NeverThrowsException> handle(Context context, Request request)
+    {
+      if (!"GET".equalsIgnoreCase(request.getMethod()))
+      {
+        return Response.newResponsePromise(new Response(Status.METHOD_NOT_ALLOWED));
+      }
+      final Response response = new Response(Status.OK).setEntity(getMetrics());
+      response.getHeaders().put("Content-Type", CONTENT_TYPE);
+      return Response.newResponsePromise(response);
+    }
+  }
+
+  /**
+   * Returns the latency histograms of the server in the Prometheus text exposition format.
+   *
+   * @return The latency histograms of the server in the Prometheus text exposition format.
+   */
+  String getMetrics()
+  {
+    final StringBuilder metrics = new StringBuilder();
+
+    final OperationLatencyMonitor latencyMonitor = DirectoryServer.getOperationLatencyMonitor();
+    appendHeader(metrics, OPERATION_LATENCY, "Latency of the operations requested by clients.");
+    appendOperationLatencies(metrics, OPERATION_LATENCY, "", latencyMonitor.getOperationLatencies());
+
+    appendHeader(metrics, WORK_QUEUE_WAIT, "Time waited by the operations before their processing started.");
+    appendSummary(metrics, WORK_QUEUE_WAIT, "", latencyMonitor.getWorkQueueWaitLatency());
+
+    appendHeader(metrics, PHASE_LATENCY, "Time spent by the operations in each processing phase, when timed.");
+    for (Phase phase : Phase.values())
+    {
+      appendSummary(metrics, PHASE_LATENCY,
+          label("phase", OperationLatencyMonitor.getMonitorName(phase).replace('-', '_')),
+          latencyMonitor.getPhaseLatency(phase));
+    }
+
+    metrics.append("# HELP ").append(ENTRY_CACHE_LOOKUPS)
+           .append(" Entry cache lookups of the operations whose phases are timed.\n");
+    metrics.append("# TYPE ").append(ENTRY_CACHE_LOOKUPS).append(" counter\n");
+    metrics.append(ENTRY_CACHE_LOOKUPS).append('{').append(label("result", "hit")).append("} ")
+           .append(latencyMonitor.getEntryCacheHits()).append('\n');
+    metrics.append(ENTRY_CACHE_LOOKUPS).append('{').append(label("result", "miss")).append("} ")
+           .append(latencyMonitor.getEntryCacheMisses()).append('\n');
+
+    appendHeader(metrics, CONNECTION_HANDLER_LATENCY,
+        "Latency of the operations requested by clients, per connection handler.");
+    for (ConnectionHandler<?> handler : DirectoryServer.getConnectionHandlers())
+    {
+      final OperationLatencyHistograms latencies = handler.getOperationLatencies();
+      if (latencies != null)
+      {
+        appendOperationLatencies(metrics, CONNECTION_HANDLER_LATENCY,
+            label("connection_handler", handler.getConnectionHandlerName()) + ",", latencies);
+      }
+    }
+
+    appendHeader(metrics, BACKEND_LATENCY, "Time spent by the backends processing the operations.");
+    for (LocalBackend<?> backend : serverContext.getBackendConfigManager().getLocalBackends())
+    {
+      final LocalBackendMonitor backendMonitor = backend.getBackendMonitor();
+      if (backendMonitor != null)
+      {
+        appendOperationLatencies(metrics, BACKEND_LATENCY,
+            label("backend", backend.getBackendID()) + ",", backendMonitor.getOperationLatencies());
+      }
+    }
+    return metrics.toString();
+  }
+
+  private static void appendHeader(StringBuilder metrics, String name, String help)
+  {
+    metrics.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    metrics.append("# TYPE ").append(name).append(" summary\n");
+  }
+
+  private static void appendOperationLatencies(StringBuilder metrics, String name, String labels,
+      OperationLatencyHistograms latencies)
+  {
+    for (OperationType type : OperationType.values())
+    {
+      appendSummary(metrics, name, labels + label("operation", OperationLatencyHistograms.getMonitorName(type)),
+          latencies.getHistogram(type));
+    }
+  }
+
+  /** Appends the samples of a summary, the labels being separated by commas and possibly empty. */
+  private static void appendSummary(StringBuilder metrics, String name, String labels, LatencyHistogram histogram)
+  {
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    final String separator = labels.isEmpty() ? "" : ",";
+    for (double quantile : QUANTILES)
+    {
+      metrics.append(name).append('{').append(labels).append(separator)
+             .append("quantile=\"").append(quantile).append("\"} ");
+      if (snapshot.getCount() > 0)
+      {
+        metrics.append(toSeconds(snapshot.getValueAtPercentile(quantile * 100)));
+      }
+      else
+      {
+        metrics.append("NaN");
+      }
+      metrics.append('\n');
+    }
+    final String sampleLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+    metrics.append(name).append("_sum").append(sampleLabels).append(' ')
+           .append(toSeconds(snapshot.getTotal())).append('\n');
+    metrics.append(name).append("_count").append(sampleLabels).append(' ')
+           .append(snapshot.getCount()).append('\n');
+  }
+
+  private static double toSeconds(long micros)
+  {
+    return micros / 1000000d;
+  }
+
+  private static String label(String name, String value)
+  {
+    final StringBuilder label = new StringBuilder(name).append("=\"");
+    for (int i = 0; i < value.length(); i++)
+    {
+      final char c = value.charAt(i);
+      switch (c)
+      {
+      case '\\':
+        label.append("\\\\");
+        break;
+      case '"':
+        label.append("\\\"");
+        break;
+      case '\n':
+        label.append("\\n");
+        break;
+      default:
+        label.append(c);
+        break;
+      }
+    }
+    return label.append('"').toString();
+  }
+}
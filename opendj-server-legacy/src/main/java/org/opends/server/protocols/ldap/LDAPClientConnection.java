@@ -40,6 +40,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -84,6 +85,8 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.IntermediateResponse;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.OperationType;
 import org.opends.server.types.SearchResultEntry;
 import org.opends.server.types.SearchResultReference;
@@ -662,6 +665,8 @@ public final class LDAPClientConnection extends ClientConnection implements
     // race conditions in which the client immediately sends another
     // request with the same message ID as was used for this operation.
 
+    statTracker.updateOperationLatency(operation.getOperationType(),
+        operation.getProcessingDuration(TimeUnit.NANOSECONDS));
     if (keepStats) {
         long time;
         if (useNanoTime) {
@@ -683,9 +688,15 @@ public final class LDAPClientConnection extends ClientConnection implements
       LDAPMessage message = operationToResponseLDAPMessage(operation);
       if (message != null)
       {
-        sendLDAPMessage(message);
+        sendLDAPMessage(message, operation);
       }
     }
+
+    final OperationPhaseTimer phaseTimer = operation.getPhaseTimer();
+    if (phaseTimer != null)
+    {
+      DirectoryServer.getOperationLatencyMonitor().recordPhases(phaseTimer);
+    }
   }
 
   /**
@@ -841,7 +852,7 @@ public final class LDAPClientConnection extends ClientConnection implements
         new SearchResultEntryProtocolOp(searchEntry, ldapVersion);
 
     sendLDAPMessage(new LDAPMessage(searchOperation.getMessageID(),
-        protocolOp, searchEntry.getControls()));
+        protocolOp, searchEntry.getControls()), searchOperation);
   }
 
   /**
@@ -876,7 +887,7 @@ public final class LDAPClientConnection extends ClientConnection implements
         new SearchResultReferenceProtocolOp(searchReference);
 
     sendLDAPMessage(new LDAPMessage(searchOperation.getMessageID(),
-        protocolOp, searchReference.getControls()));
+        protocolOp, searchReference.getControls()), searchOperation);
     return true;
   }
 
@@ -915,13 +926,44 @@ public final class LDAPClientConnection extends ClientConnection implements
    *          The LDAP message to send to the client.
    */
   private void sendLDAPMessage(LDAPMessage message)
+  {
+    sendLDAPMessage(message, (Operation) null);
+  }
+
+  /**
+   * Sends the provided LDAP message to the client, recording the time spent
+   * encoding and writing it in the phase timer of the provided operation.
+   *
+   * @param message
+   *          The LDAP message to send to the client.
+   * @param operation
+   *          The operation the message responds to, or {@code null} if it is
+   *          not associated with an operation.
+   */
+  private void sendLDAPMessage(LDAPMessage message, Operation operation)
   {
     // Use a thread local writer.
     final ASN1WriterHolder holder = getASN1Writer();
     try
     {
-      message.write(holder.writer);
-      holder.buffer.copyTo(saslChannel);
+      final long encodeToken = OperationPhaseTimer.start(operation);
+      try
+      {
+        message.write(holder.writer);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(operation, Phase.RESULT_ENCODING, encodeToken);
+      }
+      final long socketToken = OperationPhaseTimer.start(operation);
+      try
+      {
+        holder.buffer.copyTo(saslChannel);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(operation, Phase.SOCKET_WRITE, socketToken);
+      }
 
       if (logger.isTraceEnabled())
       {
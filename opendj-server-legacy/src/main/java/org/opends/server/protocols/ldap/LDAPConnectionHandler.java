@@ -55,6 +55,7 @@ import org.opends.server.core.WorkQueueStrategy;
 import org.opends.server.extensions.NullKeyManagerProvider;
 import org.opends.server.extensions.TLSByteChannel;
 import org.opends.server.monitors.ClientConnectionMonitorProvider;
+import org.opends.server.monitors.OperationLatencyHistograms;
 import org.opends.server.types.*;
 import org.opends.server.util.SelectableCertificateKeyManager;
 import org.opends.server.util.StaticUtils;
@@ -559,6 +560,12 @@ public final class LDAPConnectionHandler extends
     return statTracker;
   }
 
+  @Override
+  public OperationLatencyHistograms getOperationLatencies()
+  {
+    return statTracker != null ? statTracker.getOperationLatencies() : null;
+  }
+
   @Override
   public void initializeConnectionHandler(ServerContext serverContext, LDAPConnectionHandlerCfg config)
       throws ConfigException, InitializationException
@@ -20,6 +20,7 @@ import static org.opends.messages.ProtocolMessages.*;
 import static org.opends.server.protocols.ldap.LDAPConstants.*;
 import static org.opends.server.util.ServerConstants.*;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -29,6 +30,7 @@ import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
 import org.opends.server.api.MonitorData;
 import org.opends.server.api.MonitorProvider;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.monitors.OperationLatencyHistograms;
 import org.opends.server.types.OperationType;
 
 /**
@@ -46,6 +48,7 @@ import org.opends.server.types.OperationType;
  * broken down by message type.</LI>
  * <LI>The total number of bytes read from LDAP clients.</LI>
  * <LI>The total number of bytes written to LDAP clients.</LI>
+ * <LI>The latency percentiles of the operations, by operation type.</LI>
  * </UL>
  * <BR>
  * <BR>
@@ -116,6 +119,9 @@ public class LDAPStatistics extends MonitorProvider<MonitorProviderCfg>
   private AtomicLong extOperationCount = new AtomicLong(0);
   private AtomicLong extOperationTime = new AtomicLong(0);
 
+  /** The latency histograms of the operations, always maintained regardless of keep-stats. */
+  private final OperationLatencyHistograms operationLatencies = new OperationLatencyHistograms();
+
   /**
    * Creates a new instance of this class with the specified parent.
    *
@@ -167,7 +173,7 @@ public class LDAPStatistics extends MonitorProvider<MonitorProviderCfg>
      *        and associated with their objectclass
      *        OC_MONITOR_CONNHANDLERSTATS
      */
-    final MonitorData attrs = new MonitorData(31 + 10 * 2);
+    final MonitorData attrs = new MonitorData(31 + 10 * 2 + 10 * 7);
     attrs.add("connectionsEstablished", connectionsEstablished);
     attrs.add("connectionsClosed", connectionsClosed);
     attrs.add("bytesRead", bytesRead);
@@ -240,6 +246,8 @@ public class LDAPStatistics extends MonitorProvider<MonitorProviderCfg>
     attrs.add("ds-mon-extended-operations-total-count", extOperationCount);
     attrs.add("ds-mon-resident-time-extended-operations-total-time", extOperationTime);
 
+    operationLatencies.addMonitorData(attrs);
+
     return attrs;
   }
 
@@ -298,6 +306,7 @@ public class LDAPStatistics extends MonitorProvider<MonitorProviderCfg>
       abandonOperationTime.set(0);
       extOperationCount.set(0);
       extOperationTime.set(0);
+      operationLatencies.reset();
   }
 
   /**
@@ -809,6 +818,29 @@ public class LDAPStatistics extends MonitorProvider<MonitorProviderCfg>
       return unbindRequests.get();
   }
 
+  /**
+   * Records the latency of an operation in the histogram of its type.
+   *
+   * @param type
+   *          The type of the operation.
+   * @param nanos
+   *          The time spent processing the operation, in nanoseconds.
+   */
+  public void updateOperationLatency(OperationType type, long nanos)
+  {
+    operationLatencies.recordOperation(type, nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the latency histograms of the operations, by operation type.
+   *
+   * @return The latency histograms of the operations, by operation type.
+   */
+  public OperationLatencyHistograms getOperationLatencies()
+  {
+    return operationLatencies;
+  }
+
   /**
    * Update the operation counters and times depending on the OperationType.
    * @param type of the operation.
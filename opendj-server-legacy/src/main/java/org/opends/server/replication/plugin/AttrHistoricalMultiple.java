@@ -566,21 +566,20 @@ public class AttrHistoricalMultiple extends AttrHistorical
   public void assign(HistoricalAttributeValue histVal)
   {
     final ByteString value = histVal.getAttributeValue();
-    final AttributeType attrType = histVal.getAttributeDescription().getAttributeType();
     final CSN csn = histVal.getCSN();
     switch (histVal.getHistKey())
     {
     case ADD:
       if (value != null)
       {
-        add(value, attrType, csn);
+        update(csn, new AttrValueHistorical(histVal, csn, null));
       }
       break;
 
     case DEL:
       if (value != null)
       {
-        delete(value, attrType, csn);
+        update(csn, new AttrValueHistorical(histVal, null, csn));
       }
       break;
 
@@ -588,7 +587,7 @@ public class AttrHistoricalMultiple extends AttrHistorical
       delete(csn);
       if (value != null)
       {
-        add(value, attrType, csn);
+        update(csn, new AttrValueHistorical(histVal, csn, null));
       }
       break;
 
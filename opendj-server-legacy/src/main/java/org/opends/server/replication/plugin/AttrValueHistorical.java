@@ -31,6 +31,10 @@ public class AttrValueHistorical
   private ByteString normalizedValue;
   private CSN valueDeleteTime;
   private CSN valueUpdateTime;
+  /** The key of the historical value this object was decoded from, if any. */
+  private HistAttrModificationKey decodedKey;
+  /** The historical value this object was decoded from, if any. */
+  private ByteString encodedValue;
 
   /**
    * Build an AttrValueHistorical for a provided attribute value, providing
@@ -48,6 +52,22 @@ public class AttrValueHistorical
     this.valueDeleteTime = csnDelete;
   }
 
+  /**
+   * Build an AttrValueHistorical decoded from the provided historical value.
+   * The historical value is kept so that it can be stored again without being
+   * encoded if it has not changed.
+   *
+   * @param histVal the historical value this object is decoded from
+   * @param csnUpdate last time when this value was updated
+   * @param csnDelete last time when this value for deleted
+   */
+  AttrValueHistorical(HistoricalAttributeValue histVal, CSN csnUpdate, CSN csnDelete)
+  {
+    this(histVal.getAttributeValue(), histVal.getAttributeDescription().getAttributeType(), csnUpdate, csnDelete);
+    this.decodedKey = histVal.getHistKey();
+    this.encodedValue = histVal.getEncodedValue();
+  }
+
   @Override
   public boolean equals(Object obj)
   {
@@ -106,6 +126,19 @@ public class AttrValueHistorical
     return valueUpdateTime;
   }
 
+  /**
+   * Returns the historical value this object was decoded from, provided it was
+   * encoded with the provided key.
+   *
+   * @param key the key with which this object is about to be encoded
+   * @return the historical value this object was decoded from, or {@code null}
+   *         if it was not decoded from a historical value with the provided key
+   */
+  ByteString getEncodedValue(HistAttrModificationKey key)
+  {
+    return key == decodedKey ? encodedValue : null;
+  }
+
   /**
    * Get the attributeValue for which this object was generated.
    * @return the value for which this object was generated
@@ -30,6 +30,7 @@ import java.util.TreeMap;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.AttributeDescription;
 import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.forgerock.opendj.ldap.DN;
 import org.forgerock.opendj.ldap.ModificationType;
 import org.forgerock.opendj.ldap.schema.AttributeType;
@@ -84,9 +85,9 @@ public class EntryHistorical
    * This delay indicates the time the domain keeps the historical information
    * necessary to solve conflicts. When a change stored in the historical part
    * of the user entry has a date (from its replication CSN) older than this
-   * delay, it is candidate to be purged. The purge is triggered on 2 events:
-   * modify of the entry, dedicated purge task. The purge is done when the
-   * historical is encoded.
+   * delay, it is candidate to be purged. The purge is triggered on 3 events:
+   * modify of the entry, dedicated purge task, background compaction of the
+   * domain. The purge is done when the historical is encoded.
    */
   private long purgeDelayInMillisec = -1;
 
@@ -373,8 +374,7 @@ public class EntryHistorical
             // this hist must be purged now, so skip its encoding
             continue;
           }
-          String strValue = encode(DEL, options, attrValHist.getValueDeleteTime(), value);
-          builder.add(strValue);
+          builder.add(encode(DEL, options, attrValHist, attrValHist.getValueDeleteTime(), value));
         }
         else if (attrValHist.getValueUpdateTime() != null)
         {
@@ -384,27 +384,24 @@ public class EntryHistorical
             continue;
           }
 
-          String strValue;
           final CSN updateTime = attrValHist.getValueUpdateTime();
           // FIXME very suspicious use of == in the next if statement,
           // unit tests do not like changing it
           if (attrDel && updateTime == deleteTime && value != null)
           {
-            strValue = encode(REPL, options, updateTime, value);
+            builder.add(encode(REPL, options, attrValHist, updateTime, value));
             attrDel = false;
           }
           else if (value != null)
           {
-            strValue = encode(ADD, options, updateTime, value);
+            builder.add(encode(ADD, options, attrValHist, updateTime, value));
           }
           else
           {
             // "add" without any value is suspicious. Tests never go there.
             // Is this used to encode "add" with an empty string?
-            strValue = encode(ADD, options, updateTime);
+            builder.add(encode(ADD, options, updateTime));
           }
-
-          builder.add(strValue);
         }
       }
 
@@ -452,9 +449,25 @@ public class EntryHistorical
     return options + ":" + changeTime + ":" + modKey;
   }
 
-  private String encode(HistAttrModificationKey modKey, String options, CSN changeTime, ByteString value)
+  /**
+   * Encodes the historical of an attribute value. The historical value it was
+   * decoded from is reused when it is still accurate, saving the encoding of
+   * every unchanged value of entries with large historical information.
+   */
+  private ByteString encode(HistAttrModificationKey modKey, String options, AttrValueHistorical attrValHist,
+      CSN changeTime, ByteString value)
   {
-    return options + ":" + changeTime + ":" + modKey + ":" + value;
+    final ByteString encodedValue = attrValHist.getEncodedValue(modKey);
+    if (encodedValue != null)
+    {
+      return encodedValue;
+    }
+    return new ByteStringBuilder(options.length() + value.length() + 40)
+        .appendUtf8(options).appendByte(':')
+        .appendUtf8(changeTime.toString()).appendByte(':')
+        .appendUtf8(modKey.toString()).appendByte(':')
+        .appendBytes(value)
+        .toByteString();
   }
 
   /**
@@ -532,6 +545,7 @@ public class EntryHistorical
     {
       // For each value of the historical attr read (mod. on a user attribute)
       //   build an AttrInfo sub-object
+      final Map<String, AttributeDescription> attrDescs = new HashMap<>();
 
       // Traverse the Attributes (when several options for the hist attr)
       // of the historical attribute read from the entry
@@ -541,7 +555,7 @@ public class EntryHistorical
         for (ByteString histAttrValueFromEntry : histAttrFromEntry)
         {
           // From each value of the hist attr, create an object
-          final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histAttrValueFromEntry.toString());
+          final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histAttrValueFromEntry, attrDescs);
           final CSN csn = histVal.getCSN();
 
           // update the oldest CSN stored in the new entry historical
@@ -611,11 +625,12 @@ public class EntryHistorical
   public static Iterable<FakeOperation> generateFakeOperations(Entry entry)
   {
     TreeMap<CSN, FakeOperation> operations = new TreeMap<>();
+    Map<String, AttributeDescription> attrDescs = new HashMap<>();
     for (Attribute attr : getHistoricalAttr(entry))
     {
       for (ByteString val : attr)
       {
-        HistoricalAttributeValue histVal = new HistoricalAttributeValue(val.toString());
+        HistoricalAttributeValue histVal = new HistoricalAttributeValue(val, attrDescs);
         if (histVal.isADDOperation())
         {
           // Found some historical information indicating that this entry was just added.
@@ -19,6 +19,9 @@ package org.opends.server.replication.plugin;
 import static org.opends.server.replication.plugin.HistAttrModificationKey.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.forgerock.opendj.ldap.AttributeDescription;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ModificationType;
@@ -58,6 +61,10 @@ import org.opends.server.types.Modification;
  *  options are stored with the attribute names using; as a separator
  *  example :
  *  description;FR;France:00000108b3a65541000000000001:add:added_value
+ *
+ *  The attribute value is kept as a slice of the encoded form, and the encoded
+ *  form itself is kept so that it can be stored again as is when the
+ *  historical information it holds has not changed.
  */
 class HistoricalAttributeValue
 {
@@ -67,7 +74,8 @@ class HistoricalAttributeValue
   private final ByteString attributeValue;
   private final CSN csn;
   private final HistAttrModificationKey histKey;
-  private final String stringValue;
+  /** The encoded form this object was created from. */
+  private final ByteString encodedValue;
   private boolean attrTypeIsNull;
   /**
    * This flag indicates that this value was generated to store the last date
@@ -83,37 +91,79 @@ class HistoricalAttributeValue
    */
   HistoricalAttributeValue(String strVal)
   {
-    String[] token = strVal.split(":", 4);
+    this(ByteString.valueOfUtf8(strVal), new HashMap<String, AttributeDescription>(1));
+  }
 
-    attrDesc = AttributeDescription.valueOf(token[0]);
+  /**
+   * Create a new object from the encoded form stored in the DB attribute.
+   *
+   * @param encodedVal The encoded form of historical attribute value.
+   * @param attrDescs The attribute descriptions already decoded, keyed by their
+   *                  encoded form. Sharing it across all the values of an entry
+   *                  avoids decoding the same attribute description for each value.
+   * @see EntryHistorical#encodeAndPurge() encoding in EntryHistorical
+   */
+  HistoricalAttributeValue(ByteString encodedVal, Map<String, AttributeDescription> attrDescs)
+  {
+    final int attrEnd = indexOfColon(encodedVal, 0);
+    final int csnEnd = indexOfColon(encodedVal, attrEnd + 1);
+    final int keyEnd = csnEnd < encodedVal.length() ? indexOfColon(encodedVal, csnEnd + 1) : csnEnd;
+    if (attrEnd == encodedVal.length() || csnEnd == encodedVal.length())
+    {
+      throw new IllegalArgumentException("Invalid historical value: " + encodedVal);
+    }
+
+    final String attrToken = encodedVal.subSequence(0, attrEnd).toString();
+    AttributeDescription desc = attrDescs.get(attrToken);
+    if (desc == null)
+    {
+      desc = AttributeDescription.valueOf(attrToken);
+      attrDescs.put(attrToken, desc);
+    }
+    attrDesc = desc;
     attrString = toLowerCase(attrDesc.getNameOrOID());
     // This HistVal was used to store the date when some
     // modifications were done to the entries.
     attrTypeIsNull = attrString.equalsIgnoreCase("dn");
+
+    csn = new CSN(encodedVal.subSequence(attrEnd + 1, csnEnd).toString());
+    final String keyToken = encodedVal.subSequence(csnEnd + 1, keyEnd).toString();
     // This HistVal is used to store the date when the entry
     // was added to the directory or when it was last renamed.
-    isModDN = attrTypeIsNull && token.length >= 3 && token[2].compareTo("moddn") == 0;
-
-    csn = new CSN(token[1]);
-    histKey = HistAttrModificationKey.decodeKey(token[2]);
-    if (histKey != ATTRDEL)
+    isModDN = attrTypeIsNull && "moddn".equals(keyToken);
+    histKey = HistAttrModificationKey.decodeKey(keyToken);
+    if (histKey != ATTRDEL && keyEnd < encodedVal.length())
     {
-      if (token.length == 4)
-      {
-        stringValue = token[3];
-        attributeValue = ByteString.valueOfUtf8(stringValue);
-      }
-      else
-      {
-        stringValue = null;
-        attributeValue = null;
-      }
+      attributeValue = encodedVal.subSequence(keyEnd + 1, encodedVal.length());
     }
     else
     {
-      stringValue = null;
       attributeValue = null;
     }
+    encodedValue = encodedVal;
+  }
+
+  /** Returns the index of the first colon at or after the provided index, or the length if there is none. */
+  private static int indexOfColon(ByteString bs, int fromIndex)
+  {
+    for (int i = fromIndex; i < bs.length(); i++)
+    {
+      if (bs.byteAt(i) == ':')
+      {
+        return i;
+      }
+    }
+    return bs.length();
+  }
+
+  /**
+   * Get the encoded form this object was created from.
+   *
+   * @return The encoded form this object was created from.
+   */
+  ByteString getEncodedValue()
+  {
+    return encodedValue;
   }
 
   /**
@@ -224,9 +274,9 @@ class HistoricalAttributeValue
     final StringBuilder sb = new StringBuilder();
     sb.append(attrDesc);
     sb.append(":").append(csn).append(":").append(getModificationType());
-    if (stringValue != null)
+    if (attributeValue != null)
     {
-      sb.append(":").append(stringValue);
+      sb.append(":").append(attributeValue);
     }
     return sb.toString();
   }
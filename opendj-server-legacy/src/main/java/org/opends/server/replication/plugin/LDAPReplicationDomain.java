@@ -49,7 +49,6 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -296,10 +295,15 @@ public final class LDAPReplicationDomain extends ReplicationDomain
 
   private final DSRSShutdownSync dsrsShutdownSync;
   /**
-   * The update to replay message queue where the listener thread is going to
+   * The lanes of updates to replay where the listener thread is going to
    * push incoming update messages.
    */
-  private final BlockingQueue<UpdateToReplay> updateToReplayQueue;
+  private final ReplayLanes replayLanes;
+  /**
+   * The maximum number of replay lanes of this domain, read once so that the
+   * updates of an entry are never spread over several lanes while this domain runs.
+   */
+  private final int numberOfReplayLanes;
   /** The number of naming conflicts successfully resolved. */
   private final AtomicInteger numResolvedNamingConflicts = new AtomicInteger();
   /** The number of modify conflicts successfully resolved. */
@@ -348,6 +352,8 @@ public final class LDAPReplicationDomain extends ReplicationDomain
   private volatile boolean done = true;
 
   private final ServerStateFlush flushThread;
+  /** The thread compacting the historical information in the background. */
+  private final HistoricalCompactor historicalCompactor;
 
   /** The attribute name used to store the generation id in the backend. */
   private static final String REPLICATION_GENERATION_ID = "ds-sync-generation-id";
@@ -420,6 +426,11 @@ public final class LDAPReplicationDomain extends ReplicationDomain
    * the server starts.
    */
   private CSN lastCSNPurgedFromHist = new CSN(0,0,0);
+  /**
+   * Ensures the purge task and the background compaction do not purge the historical of an entry concurrently.
+   * Also guards {@link #lastCSNPurgedFromHist}.
+   */
+  private final Object purgeHistoricalLock = new Object();
 
   /**
    * The thread that periodically saves the ServerState of this
@@ -462,6 +473,56 @@ public final class LDAPReplicationDomain extends ReplicationDomain
     }
   }
 
+  /**
+   * The thread that periodically rewrites the entries of this
+   * LDAPReplicationDomain holding historical information older than the purge
+   * delay, so that the historical information of entries which are no longer
+   * modified does not grow the database forever.
+   */
+  private class HistoricalCompactor extends DirectoryThread
+  {
+    protected HistoricalCompactor()
+    {
+      super("Replica DS(" + getServerId() + ") historical compactor for domain \"" + getBaseDN() + "\"");
+    }
+
+    @Override
+    public void run()
+    {
+      long lastCompactionTime = TimeThread.getTime();
+      while (!isShutdownInitiated())
+      {
+        try
+        {
+          synchronized (this)
+          {
+            wait(1000);
+          }
+          final long interval = getHistoricalCompactionInterval();
+          if (interval > 0 && TimeThread.getTime() - lastCompactionTime >= interval)
+          {
+            if (!disabled && !ieRunning() && getHistoricalPurgeDelay() > 0)
+            {
+              purgeConflictsHistorical(null, Long.MAX_VALUE, config.getConflictsHistoricalCompactionRate());
+            }
+            lastCompactionTime = TimeThread.getTime();
+          }
+        }
+        catch (InterruptedException e)
+        {
+          // Thread interrupted: stop compacting.
+          Thread.currentThread().interrupt();
+          return;
+        }
+        catch (DirectoryException e)
+        {
+          logger.traceException(e);
+          lastCompactionTime = TimeThread.getTime();
+        }
+      }
+    }
+  }
+
   /**
    * The thread that is responsible to update the RS to which this domain is
    * connected in case it is late and there is no RS which is up to date.
@@ -534,18 +595,20 @@ public final class LDAPReplicationDomain extends ReplicationDomain
    * Creates a new ReplicationDomain using configuration from configEntry.
    *
    * @param configuration    The configuration of this ReplicationDomain.
-   * @param updateToReplayQueue The queue for update messages to replay.
+   * @param replayLanes The lanes for update messages to replay.
    * @param dsrsShutdownSync Synchronization object for shutdown of combined DS/RS instances.
    * @throws ConfigException In case of invalid configuration.
    */
   LDAPReplicationDomain(ReplicationDomainCfg configuration,
-      BlockingQueue<UpdateToReplay> updateToReplayQueue,
+      ReplayLanes replayLanes,
       DSRSShutdownSync dsrsShutdownSync) throws ConfigException
   {
     super(configuration, -1);
 
-    this.updateToReplayQueue = updateToReplayQueue;
+    this.replayLanes = replayLanes;
     this.dsrsShutdownSync = dsrsShutdownSync;
+    final Integer nbLanes = configuration.getNumUpdateReplayLanes();
+    this.numberOfReplayLanes = nbLanes != null ? nbLanes : Integer.MAX_VALUE;
 
     // Get assured configuration
     readAssuredConfig(configuration, false);
@@ -578,6 +641,7 @@ public final class LDAPReplicationDomain extends ReplicationDomain
     state = new PersistentServerState(getBaseDN(), getServerId(),
         getServerState());
     flushThread = new ServerStateFlush();
+    historicalCompactor = new HistoricalCompactor();
 
     /*
      * CSNGenerator is used to create new unique CSNs for each operation done on
@@ -2242,6 +2306,14 @@ public final class LDAPReplicationDomain extends ReplicationDomain
           flushThread.notify();
         }
       }
+      if (historicalCompactor != null)
+      {
+        historicalCompactor.initiateShutdown();
+        synchronized (historicalCompactor)
+        {
+          historicalCompactor.notify();
+        }
+      }
 
       DirectoryServer.deregisterAlertGenerator(this);
       getServerContext().getBackendConfigManager()
@@ -2266,12 +2338,14 @@ public final class LDAPReplicationDomain extends ReplicationDomain
   }
 
   /**
-   * Marks the specified message as the one currently processed by a replay thread.
-   * @param msg the message being processed
+   * Returns the maximum number of replay threads that may replay the updates
+   * of this domain in parallel.
+   *
+   * @return the maximum number of replay lanes of this domain
    */
-  void markInProgress(LDAPUpdateMsg msg)
+  int getNumberOfReplayLanes()
   {
-    remotePendingChanges.markInProgress(msg);
+    return numberOfReplayLanes;
   }
 
   /**
@@ -3866,6 +3940,7 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
   {
     // Create the ServerStateFlush thread
     flushThread.start();
+    historicalCompactor.start();
 
     startListenService();
   }
@@ -4267,15 +4342,15 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
         return true;
       }
 
-      // Put update message into the replay queue
-      // (block until some place in the queue is available)
+      // Put update message into the replay lane of its entry
+      // (block until some place in the lane is available)
       final UpdateToReplay updateToReplay = new UpdateToReplay(msg, this);
       while (!isListenerShuttingDown())
       {
-        // loop until we can offer to the queue or shutdown was initiated
+        // loop until we can offer to the lane or shutdown was initiated
         try
         {
-          if (updateToReplayQueue.offer(updateToReplay, 1, TimeUnit.SECONDS))
+          if (replayLanes.offer(updateToReplay, 1, TimeUnit.SECONDS))
           {
             // successful offer to the queue, let's exit the loop
             break;
@@ -4901,6 +4976,17 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
     return config.getConflictsHistoricalPurgeDelay() * 60 * 1000;
   }
 
+  /**
+   * Return the interval (in ms) between two background compactions of the
+   * historical information, 0 if the background compaction is disabled.
+   *
+   * @return the historical compaction interval.
+   */
+  private long getHistoricalCompactionInterval()
+  {
+    return config.getConflictsHistoricalCompactionInterval() * 60 * 1000;
+  }
+
   /**
    * Check and purge the historical attribute on all eligible entries under this domain.
    *
@@ -4920,27 +5006,61 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
   public void purgeConflictsHistorical(PurgeConflictsHistoricalTask task,
       long endDate) throws DirectoryException
   {
+    synchronized (purgeHistoricalLock)
+    {
+      try
+      {
+        purgeConflictsHistorical(task, endDate, 0);
+      }
+      catch (InterruptedException e)
+      {
+        // Cannot happen without rate limit
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Check and purge the historical attribute on all eligible entries under this
+   * domain, rewriting at most the provided number of entries per second.
+   * The purge stops early when the domain is shut down.
+   * <p>
+   * Each entry is rewritten while holding {@code purgeHistoricalLock}, which is
+   * released while waiting for the rate limit, so that a purge task is not held
+   * back by a rate limited sweep.
+   */
+  private void purgeConflictsHistorical(PurgeConflictsHistoricalTask task,
+      long endDate, int maxEntriesPerSecond) throws DirectoryException, InterruptedException
+  {
+    final CSN startCSN;
+    synchronized (purgeHistoricalLock)
+    {
+      startCSN = lastCSNPurgedFromHist;
+    }
     logger.trace("[PURGE] purgeConflictsHistorical "
          + "on domain: " + getBaseDN()
          + "endDate:" + new Date(endDate)
          + "lastCSNPurgedFromHist: "
-         + lastCSNPurgedFromHist.toStringUI());
+         + startCSN.toStringUI());
 
 
     // It would be nice to have an upper bound on this filter to eliminate results that don't have a purgeable
     // csn in them. However, historicalCsnOrderingMatch keys start with serverid rather than timestamp so this
     // isn't possible.
-    String filter = "(" + HISTORICAL_ATTRIBUTE_NAME + ">=dummy:" + lastCSNPurgedFromHist + ")";
+    String filter = "(" + HISTORICAL_ATTRIBUTE_NAME + ">=dummy:" + startCSN + ")";
 
     int count = 0;
+    CSN progressCSN = startCSN;
     boolean finished = false;
     ByteString pagingCookie = null;
+    long rateWindowStart = TimeThread.getTime();
+    int rewrittenInRateWindow = 0;
 
     while(!finished)
     {
       if (task != null)
       {
-        task.setProgressStats(lastCSNPurgedFromHist, count);
+        task.setProgressStats(progressCSN, count);
       }
 
       finished = true;
@@ -4976,38 +5096,171 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
           throw new DirectoryException(ResultCode.ADMIN_LIMIT_EXCEEDED,
               LocalizableMessage.raw(" end date reached"));
         }
+        if (shutdown.get())
+        {
+          // resume from lastCSNPurgedFromHist next time this server runs the purge
+          return;
+        }
+        if (task == null && (disabled || ieRunning()))
+        {
+          // the background compaction must not rewrite entries while the
+          // backend is being imported or the domain is disabled
+          return;
+        }
 
-        EntryHistorical entryHist = EntryHistorical.newInstanceFromEntry(entry);
-
-        CSN latestOldCSN = entryHist.getOldestCSN();
-        entryHist.setPurgeDelay(getHistoricalPurgeDelay());
-        Attribute attr = entryHist.encodeAndPurge();
+        final int purgedValuesCount;
+        final boolean rewritten;
+        synchronized (purgeHistoricalLock)
+        {
+          purgedValuesCount = purgeEntryHistorical(entry);
+          rewritten = purgedValuesCount > 0;
+          progressCSN = lastCSNPurgedFromHist;
+        }
+        if (purgedValuesCount == 0)
+        {
+          continue;
+        }
 
-        if(entryHist.getLastPurgedValuesCount() > 0)
+        if (rewritten)
         {
-          lastCSNPurgedFromHist = latestOldCSN;
-          List<Modification> mods = newArrayList(new Modification(ModificationType.REPLACE, attr));
-          count += entryHist.getLastPurgedValuesCount();
-          ModifyOperation newOp = new ModifyOperationBasis(
-              conn, nextOperationID(), nextMessageID(), new ArrayList<Control>(0),
-              entry.getName(), mods);
-          runAsSynchronizedOperation(newOp);
-
-          if (newOp.getResultCode() != ResultCode.SUCCESS)
+          count += purgedValuesCount;
+          if (task != null)
           {
-            // Log information for the repair tool.
-            logger.error(ERR_CANNOT_ADD_CONFLICT_ATTRIBUTE, newOp, newOp.getResultCode());
+            task.setProgressStats(progressCSN, count);
           }
-          else if (task != null)
+        }
+
+        if (maxEntriesPerSecond > 0 && ++rewrittenInRateWindow >= maxEntriesPerSecond)
+        {
+          final long elapsed = TimeThread.getTime() - rateWindowStart;
+          if (elapsed < 1000)
           {
-            task.setProgressStats(lastCSNPurgedFromHist, count);
+            Thread.sleep(1000 - elapsed);
           }
+          rateWindowStart = TimeThread.getTime();
+          rewrittenInRateWindow = 0;
         }
       }
     }
     // If a full sweep was completed, the lastCSNPurgedFromHist must be reset so that the next
     // run-through starts from the beginning. Otherwise, subsequent runs of the task would only
     // pick up purgeable changes for the last server id.
-    lastCSNPurgedFromHist = new CSN(0,0,0);
+    synchronized (purgeHistoricalLock)
+    {
+      lastCSNPurgedFromHist = new CSN(0,0,0);
+    }
+  }
+
+  /**
+   * Rewrites the historical attribute of the provided entry without the values
+   * older than the purge delay.
+   * <p>
+   * Only the purged values are deleted, rather than replacing the whole
+   * attribute with the content of a possibly stale entry, so that a concurrent
+   * update of the historical information makes the modification fail instead
+   * of being lost. The entry is then read again and the purge retried.
+   * <p>
+   * Must be called while holding {@code purgeHistoricalLock}.
+   *
+   * @param entry
+   *          the entry to purge, as returned by the search
+   * @return the number of purged values, 0 when there was nothing to purge,
+   *         or -1 when the entry could not be rewritten
+   * @throws DirectoryException
+   *           if the entry could not be read again
+   */
+  private int purgeEntryHistorical(Entry entry) throws DirectoryException
+  {
+    Entry current = entry;
+    for (int attempt = 0;; attempt++)
+    {
+      EntryHistorical entryHist = EntryHistorical.newInstanceFromEntry(current);
+      CSN latestOldCSN = entryHist.getOldestCSN();
+      entryHist.setPurgeDelay(getHistoricalPurgeDelay());
+      Attribute purgedAttr = entryHist.encodeAndPurge();
+      int purgedValuesCount = entryHist.getLastPurgedValuesCount();
+      if (purgedValuesCount == 0)
+      {
+        return 0;
+      }
+
+      ModifyOperation newOp = new ModifyOperationBasis(
+          conn, nextOperationID(), nextMessageID(), new ArrayList<Control>(0),
+          current.getName(), getPurgeHistoricalMods(current, purgedAttr));
+      runAsSynchronizedOperation(newOp);
+
+      ResultCode resultCode = newOp.getResultCode();
+      if (resultCode == ResultCode.SUCCESS)
+      {
+        lastCSNPurgedFromHist = latestOldCSN;
+        return purgedValuesCount;
+      }
+      if (attempt == 0
+          && (resultCode == ResultCode.NO_SUCH_ATTRIBUTE || resultCode == ResultCode.ATTRIBUTE_OR_VALUE_EXISTS))
+      {
+        // the historical information changed since the entry was read
+        current = DirectoryServer.getEntry(current.getName());
+        if (current == null)
+        {
+          return 0;
+        }
+        continue;
+      }
+
+      // Log information for the repair tool.
+      logger.error(ERR_CANNOT_ADD_CONFLICT_ATTRIBUTE, newOp, resultCode);
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the modifications turning the historical attribute of the provided
+   * entry into the provided purged historical attribute.
+   */
+  private List<Modification> getPurgeHistoricalMods(Entry entry, Attribute purgedAttr)
+  {
+    AttributeBuilder deleted = new AttributeBuilder(HISTORICAL_ATTRIBUTE_NAME);
+    for (Attribute attr : getHistoricalAttr(entry))
+    {
+      for (ByteString value : attr)
+      {
+        if (!purgedAttr.contains(value))
+        {
+          deleted.add(value);
+        }
+      }
+    }
+
+    AttributeBuilder added = new AttributeBuilder(HISTORICAL_ATTRIBUTE_NAME);
+    for (ByteString value : purgedAttr)
+    {
+      if (!entryHasHistoricalValue(entry, value))
+      {
+        added.add(value);
+      }
+    }
+
+    List<Modification> mods = new ArrayList<>(2);
+    if (!deleted.isEmpty())
+    {
+      mods.add(new Modification(ModificationType.DELETE, deleted.toAttribute()));
+    }
+    if (!added.isEmpty())
+    {
+      mods.add(new Modification(ModificationType.ADD, added.toAttribute()));
+    }
+    return mods;
+  }
+
+  private boolean entryHasHistoricalValue(Entry entry, ByteString value)
+  {
+    for (Attribute attr : getHistoricalAttr(entry))
+    {
+      if (attr.contains(value))
+      {
+        return true;
+      }
+    }
+    return false;
   }
 }
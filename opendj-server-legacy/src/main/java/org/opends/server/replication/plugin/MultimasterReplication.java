@@ -29,9 +29,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -98,12 +96,12 @@ public class MultimasterReplication
   private ReplicationServerListener replicationServerListener;
   private static final Map<DN, LDAPReplicationDomain> domains = new ConcurrentHashMap<>(4);
   private static final DSRSShutdownSync dsrsShutdownSync = new DSRSShutdownSync();
-  /** The queue of received update messages, to be treated by the ReplayThread threads. */
-  private static final BlockingQueue<UpdateToReplay> updateToReplayQueue = new LinkedBlockingQueue<>(10000);
-  /** The list of ReplayThread threads. */
-  private static final List<ReplayThread> replayThreads = new ArrayList<>();
   /** The configurable number of replay threads. */
   private static int replayThreadNumber = 10;
+  /** The lanes of received update messages, each one treated by one of the ReplayThread threads. */
+  private static final ReplayLanes replayLanes = new ReplayLanes(replayThreadNumber);
+  /** The list of ReplayThread threads. */
+  private static final List<ReplayThread> replayThreads = new ArrayList<>();
 
   /** Enum that symbolizes the state of the multimaster replication. */
   private enum State
@@ -194,7 +192,7 @@ public class MultimasterReplication
     try
     {
       final LDAPReplicationDomain domain = new LDAPReplicationDomain(
-          configuration, updateToReplayQueue, dsrsShutdownSync);
+          configuration, replayLanes, dsrsShutdownSync);
       if (domains.isEmpty())
       {
         // Create the threads that will process incoming update messages
@@ -230,7 +228,7 @@ public class MultimasterReplication
       throws ConfigException
   {
     final LDAPReplicationDomain domain =
-        new LDAPReplicationDomain(configuration, queue, dsrsShutdownSync);
+        new LDAPReplicationDomain(configuration, new ReplayLanes(queue), dsrsShutdownSync);
     domains.put(domain.getBaseDN(), domain);
     return domain;
   }
@@ -296,15 +294,15 @@ public class MultimasterReplication
     return value == null ? Platform.computeNumberOfThreads(16, 2.0f) : value;
   }
 
-  /** Create the threads that will wait for incoming update messages. */
+  /** Create the threads that will wait for incoming update messages, one per replay lane. */
   private static synchronized void createReplayThreads()
   {
     replayThreads.clear();
 
-    ReentrantLock switchQueueLock = new ReentrantLock();
+    replayLanes.resize(replayThreadNumber);
     for (int i = 0; i < replayThreadNumber; i++)
     {
-      ReplayThread replayThread = new ReplayThread(updateToReplayQueue, switchQueueLock);
+      ReplayThread replayThread = new ReplayThread(replayLanes.getLane(i));
       replayThread.start();
       replayThreads.add(replayThread);
     }
@@ -16,6 +16,9 @@
  */
 package org.opends.server.replication.plugin;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.opends.server.replication.common.CSN;
 import org.opends.server.replication.protocol.LDAPUpdateMsg;
 import org.opends.server.replication.protocol.UpdateMsg;
@@ -31,6 +34,8 @@ class PendingChange implements Comparable<PendingChange>
   private boolean committed;
   private UpdateMsg msg;
   private final PluginOperation op;
+  /** The older changes that must be committed before this one can be replayed. */
+  private List<PendingChange> dependencies;
 
   /**
    * Construct a new PendingChange.
@@ -116,6 +121,41 @@ class PendingChange implements Comparable<PendingChange>
     return this.op;
   }
 
+  /**
+   * Records that this change cannot be replayed before the provided change is
+   * committed.
+   *
+   * @param dependency the change this change depends on
+   */
+  void addDependency(PendingChange dependency)
+  {
+    if (dependencies == null)
+    {
+      dependencies = new ArrayList<>(1);
+    }
+    dependencies.add(dependency);
+  }
+
+  /**
+   * Indicates whether all the changes this change depends on are committed.
+   *
+   * @return true if this change can be replayed
+   */
+  boolean isDependenciesCommitted()
+  {
+    if (dependencies != null)
+    {
+      for (PendingChange dependency : dependencies)
+      {
+        if (!dependency.isCommitted())
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /** {@inheritDoc} */
   @Override
   public int compareTo(PendingChange o)
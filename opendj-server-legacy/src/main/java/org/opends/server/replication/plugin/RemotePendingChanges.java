@@ -49,6 +49,10 @@ import org.opends.server.types.Operation;
  *
  * It is used to know when the ServerState must be updated and to compute
  * the dependencies between operations.
+ * <p>
+ * Changes are replayed in parallel by several replay threads. A change found to
+ * depend on older changes not yet committed is put aside, and handed again to
+ * a replay thread as soon as the changes it depends on have been committed.
  *
  * One of this object is instantiated for each ReplicationDomain.
  */
@@ -66,8 +70,8 @@ final class RemotePendingChanges
   @GuardedBy("dependentChangesLock")
   private final SortedSet<PendingChange> dependentChanges = new TreeSet<>();
   /**
-   * {@code activeAndDependentChanges} also contains changes discovered to be dependent
-   * on currently in progress changes.
+   * The changes waiting for being replayed or being replayed, including the
+   * changes discovered to be dependent on other changes.
    */
   private final ConcurrentSkipListSet<PendingChange> activeAndDependentChanges = new ConcurrentSkipListSet<>();
 
@@ -109,9 +113,9 @@ final class RemotePendingChanges
   }
 
   /**
-   * Returns the number of changes actively being replayed.
+   * Returns the number of changes waiting for being replayed or being replayed.
    *
-   * @return the number of changes actively being replayed.
+   * @return the number of changes waiting for being replayed or being replayed.
    */
   public int changesInProgressSize()
   {
@@ -138,7 +142,11 @@ final class RemotePendingChanges
 
   /**
    * Add a new LDAPUpdateMsg that was received from the replication server
-   * to the pendingList.
+   * to the pendingList, and mark it as in progress.
+   * <p>
+   * Updates must be put in the order they are received, before being handed to
+   * the replay threads: this guarantees the dependencies of an update on the
+   * updates received before it are detected whichever replay threads replay them.
    *
    * @param update The LDAPUpdateMsg that was received from the replication
    *               server and that will be added to the pending list.
@@ -151,7 +159,14 @@ final class RemotePendingChanges
     try
     {
       CSN csn = update.getCSN();
-      return pendingChanges.put(csn, new PendingChange(csn, null, update)) == null;
+      if (pendingChanges.containsKey(csn))
+      {
+        return false;
+      }
+      final PendingChange change = new PendingChange(csn, null, update);
+      pendingChanges.put(csn, change);
+      activeAndDependentChanges.add(change);
+      return true;
     }
     finally
     {
@@ -199,20 +214,8 @@ final class RemotePendingChanges
     }
   }
 
-  public void markInProgress(LDAPUpdateMsg msg)
-  {
-    pendingChangesReadLock.lock();
-    try
-    {
-      activeAndDependentChanges.add(pendingChanges.get(msg.getCSN()));
-    }
-    finally
-    {
-      pendingChangesReadLock.unlock();
-    }
-  }
   /**
-   * Get the first update in the list that have some dependencies cleared.
+   * Get the oldest update in the list that have all its dependencies cleared.
    *
    * @return The LDAPUpdateMsg to be handled.
    */
@@ -224,11 +227,16 @@ final class RemotePendingChanges
     {
       if (!dependentChanges.isEmpty())
       {
-        PendingChange firstDependentChange = dependentChanges.first();
-        if (pendingChanges.firstKey().isNewerThanOrEqualTo(firstDependentChange.getCSN()))
+        final CSN oldestPendingCSN = pendingChanges.firstKey();
+        for (Iterator<PendingChange> it = dependentChanges.iterator(); it.hasNext();)
         {
-          dependentChanges.remove(firstDependentChange);
-          return firstDependentChange.getLDAPUpdateMsg();
+          final PendingChange dependentChange = it.next();
+          if (dependentChange.isDependenciesCommitted()
+              || oldestPendingCSN.isNewerThanOrEqualTo(dependentChange.getCSN()))
+          {
+            it.remove();
+            return dependentChange.getLDAPUpdateMsg();
+          }
         }
       }
       return null;
@@ -244,12 +252,15 @@ final class RemotePendingChanges
    * Mark the first pendingChange as dependent on the second PendingChange.
    * @param dependentChange The PendingChange that depend on the second
    *                        PendingChange.
+   * @param dependency The PendingChange that must be committed before the
+   *                   first one can be replayed.
    */
-  private void addDependency(PendingChange dependentChange)
+  private void addDependency(PendingChange dependentChange, PendingChange dependency)
   {
     dependentChangesLock.lock();
     try
     {
+      dependentChange.addDependency(dependency);
       dependentChanges.add(dependentChange);
     }
     finally
@@ -312,7 +323,7 @@ final class RemotePendingChanges
         {
           // it is a deleteOperation on the same DN
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof AddMsg)
@@ -321,7 +332,7 @@ final class RemotePendingChanges
         {
           // it is an addOperation on a parent of the current AddOperation
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof ModifyDNMsg)
@@ -331,7 +342,7 @@ final class RemotePendingChanges
         if (pendingMsg.getDN().equals(targetDN))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
         else
         {
@@ -339,7 +350,7 @@ final class RemotePendingChanges
           if (pendingModDn.newDNIsParent(targetDN))
           {
             hasDependencies = true;
-            addDependency(change);
+            addDependency(change, pendingChange);
           }
         }
       }
@@ -386,7 +397,7 @@ final class RemotePendingChanges
         {
           // it is an addOperation on a same DN
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof ModifyDNMsg)
@@ -394,7 +405,7 @@ final class RemotePendingChanges
         if (((ModifyDNMsg) pendingMsg).newDNIsEqual(targetDN))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
     }
@@ -445,7 +456,7 @@ final class RemotePendingChanges
         if (msg.newDNIsEqual(pendingMsg.getDN()))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof AddMsg)
@@ -455,14 +466,14 @@ final class RemotePendingChanges
         if (msg.newParentIsEqual(pendingMsg.getDN()))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
         // Check if the AddOperation was done on the same DN as the
         // target DN of the MODDN operation
         if (pendingMsg.getDN().equals(targetDN))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof ModifyDNMsg)
@@ -471,7 +482,7 @@ final class RemotePendingChanges
         {
           // the ModifyDNOperation was done from the new DN of the MODDN operation
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
     }
@@ -522,7 +533,7 @@ final class RemotePendingChanges
         if (pendingMsg.getDN().isSubordinateOrEqualTo(targetDN))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof AddMsg)
@@ -534,7 +545,7 @@ final class RemotePendingChanges
         if (pendingMsg.getDN().equals(targetDN))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
       else if (pendingMsg instanceof ModifyDNMsg)
@@ -547,7 +558,7 @@ final class RemotePendingChanges
         if (pendingMsg.getDN().isSubordinateOrEqualTo(targetDN) || pendingModDn.newDNIsParent(targetDN))
         {
           hasDependencies = true;
-          addDependency(change);
+          addDependency(change, pendingChange);
         }
       }
     }
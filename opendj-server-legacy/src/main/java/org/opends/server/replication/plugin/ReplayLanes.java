@@ -0,0 +1,233 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.opends.server.replication.protocol.LDAPUpdateMsg;
+
+/**
+ * The queues of updates to be replayed by the replay threads, one lane per
+ * replay thread.
+ * <p>
+ * Updates are partitioned across the lanes by target entry, so that the updates
+ * of an entry are replayed in order by the same replay thread while updates of
+ * different entries are replayed in parallel. The dependencies between updates
+ * of different entries (e.g. adding a parent entry before its children) are
+ * tracked by {@link RemotePendingChanges}.
+ * <p>
+ * Each replication domain can restrict the number of lanes its updates are
+ * spread across. The lanes of a domain are chosen from an offset depending on
+ * its base DN, so that domains using few lanes do not all share the same
+ * replay threads.
+ */
+final class ReplayLanes
+{
+  /** The maximum number of updates waiting to be replayed, all lanes included. */
+  private static final int TOTAL_CAPACITY = 10000;
+
+  /** Used to ensure no update is offered to a lane while the lanes are replaced. */
+  private final ReentrantReadWriteLock lanesLock = new ReentrantReadWriteLock(true);
+  @GuardedBy("lanesLock")
+  private List<BlockingQueue<UpdateToReplay>> lanes;
+
+  /**
+   * Creates the provided number of lanes.
+   *
+   * @param nbLanes
+   *          the number of lanes
+   */
+  ReplayLanes(int nbLanes)
+  {
+    lanes = newLanes(nbLanes, Collections.<List<UpdateToReplay>> emptyList());
+  }
+
+  /**
+   * Creates a single lane backed by the provided queue.
+   *
+   * @param lane
+   *          the queue of the single lane
+   */
+  ReplayLanes(BlockingQueue<UpdateToReplay> lane)
+  {
+    lanes = Collections.singletonList(lane);
+  }
+
+  private static List<BlockingQueue<UpdateToReplay>> newLanes(int nbLanes, List<List<UpdateToReplay>> contents)
+  {
+    final int laneCapacity = Math.max(TOTAL_CAPACITY / nbLanes, 1);
+    final List<BlockingQueue<UpdateToReplay>> newLanes = new ArrayList<>(nbLanes);
+    for (int i = 0; i < nbLanes; i++)
+    {
+      final List<UpdateToReplay> content =
+          i < contents.size() ? contents.get(i) : Collections.<UpdateToReplay> emptyList();
+      // do not lose any update when moving them from larger lanes
+      newLanes.add(new LinkedBlockingQueue<>(Math.max(laneCapacity, content.size())));
+      newLanes.get(i).addAll(content);
+    }
+    return newLanes;
+  }
+
+  /**
+   * Changes the number of lanes. The updates waiting to be replayed are moved to
+   * the new lanes, preserving their order for each entry.
+   * <p>
+   * This must only be called while no replay thread is running.
+   *
+   * @param nbLanes
+   *          the new number of lanes
+   */
+  void resize(int nbLanes)
+  {
+    lanesLock.writeLock().lock();
+    try
+    {
+      if (lanes.size() == nbLanes)
+      {
+        return;
+      }
+      final List<List<UpdateToReplay>> contents = new ArrayList<>(nbLanes);
+      for (int i = 0; i < nbLanes; i++)
+      {
+        contents.add(new ArrayList<UpdateToReplay>());
+      }
+      for (BlockingQueue<UpdateToReplay> lane : lanes)
+      {
+        for (UpdateToReplay update : lane)
+        {
+          contents.get(getLaneIndex(update, nbLanes)).add(update);
+        }
+      }
+      lanes = newLanes(nbLanes, contents);
+    }
+    finally
+    {
+      lanesLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of lanes.
+   *
+   * @return the number of lanes
+   */
+  int size()
+  {
+    lanesLock.readLock().lock();
+    try
+    {
+      return lanes.size();
+    }
+    finally
+    {
+      lanesLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the lane at the provided index.
+   *
+   * @param index
+   *          the index of the lane
+   * @return the lane at the provided index
+   */
+  BlockingQueue<UpdateToReplay> getLane(int index)
+  {
+    lanesLock.readLock().lock();
+    try
+    {
+      return lanes.get(index);
+    }
+    finally
+    {
+      lanesLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Inserts the provided update in the lane of its target entry, waiting up to
+   * the specified wait time if necessary for space to become available.
+   *
+   * @param update
+   *          the update to replay
+   * @param timeout
+   *          how long to wait before giving up, in units of {@code unit}
+   * @param unit
+   *          the time unit of the {@code timeout} argument
+   * @return {@code true} if successful, or {@code false} if the specified
+   *         waiting time elapses before space is available
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  boolean offer(UpdateToReplay update, long timeout, TimeUnit unit) throws InterruptedException
+  {
+    lanesLock.readLock().lock();
+    try
+    {
+      return lanes.get(getLaneIndex(update, lanes.size())).offer(update, timeout, unit);
+    }
+    finally
+    {
+      lanesLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the index of the lane of the provided update.
+   *
+   * @param update
+   *          the update to replay
+   * @param nbLanes
+   *          the total number of lanes
+   * @return the index of the lane of the provided update
+   */
+  static int getLaneIndex(UpdateToReplay update, int nbLanes)
+  {
+    if (nbLanes == 1)
+    {
+      return 0;
+    }
+    final LDAPReplicationDomain domain = update.getReplicationDomain();
+    final int domainLanes = Math.min(domain.getNumberOfReplayLanes(), nbLanes);
+    final int offset = spread(domain.getBaseDN().hashCode()) % nbLanes;
+    return (offset + spread(getEntryHash(update.getUpdateMessage())) % domainLanes) % nbLanes;
+  }
+
+  /**
+   * Returns a hash of the entry targeted by the provided update. The entryUUID
+   * is preferred over the DN so that the updates of an entry still go to the same
+   * lane after it has been renamed.
+   */
+  private static int getEntryHash(LDAPUpdateMsg msg)
+  {
+    final String entryUUID = msg.getEntryUUID();
+    return entryUUID != null ? entryUUID.hashCode() : msg.getDN().hashCode();
+  }
+
+  /** Spreads the higher bits of the hash, and returns a positive value. */
+  private static int spread(int hash)
+  {
+    return (hash ^ (hash >>> 16)) & 0x7fffffff;
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes and decodes the frames carrying several replication messages at once,
+ * optionally compressed.
+ * <p>
+ * Batch frames are only sent to peers supporting
+ * {@link ProtocolVersion#REPLICATION_PROTOCOL_V9}. They are built and unpacked
+ * by the {@link Session}, so they never reach the replication code. A batch
+ * frame is stored in the form:
+ *
+ * <pre>
+ * &lt;message type&gt;&lt;flags&gt;[&lt;uncompressed payload length&gt;]&lt;payload&gt;
+ * </pre>
+ *
+ * where the payload is a sequence of <code>&lt;length&gt;&lt;encoded message&gt;</code>,
+ * deflated when the flags say so. The uncompressed payload is at most
+ * {@link #MAX_PAYLOAD_LENGTH} bytes long, larger messages are sent in their own
+ * plain frame.
+ */
+final class BatchFrame
+{
+  /** Flag indicating the payload is compressed with the deflate algorithm. */
+  private static final byte FLAG_DEFLATE = 0x01;
+  /** Payloads smaller than this are not worth compressing. */
+  private static final int MIN_COMPRESSED_LENGTH = 256;
+  /**
+   * The maximum length of the uncompressed payload of a batch frame, so that a
+   * peer cannot make the receiver allocate an arbitrary amount of memory.
+   */
+  static final int MAX_PAYLOAD_LENGTH = 64 * 1024;
+
+  private BatchFrame()
+  {
+    // Hide default constructor.
+  }
+
+  /**
+   * Indicates whether the provided frame is a batch frame.
+   *
+   * @param frame
+   *          the frame received from the peer
+   * @return true if the provided frame is a batch frame
+   */
+  static boolean isBatchFrame(byte[] frame)
+  {
+    return frame.length > 0 && frame[0] == ReplicationMsg.MSG_TYPE_BATCH;
+  }
+
+  /**
+   * Returns the number of bytes taken by the provided message in the payload of
+   * a batch frame.
+   *
+   * @param encodedMsg
+   *          the message to send, already encoded
+   * @return the number of bytes taken by the message in the payload
+   */
+  static int getPayloadLength(byte[] encodedMsg)
+  {
+    return ByteArrayBuilder.ints(1) + encodedMsg.length;
+  }
+
+  /**
+   * Encodes the provided messages in a single batch frame.
+   *
+   * @param encodedMsgs
+   *          the messages to send, already encoded, taking at most
+   *          {@link #MAX_PAYLOAD_LENGTH} bytes in the payload
+   * @param deflater
+   *          the deflater used to compress the frame, or {@code null} to send it
+   *          uncompressed
+   * @return the batch frame
+   */
+  static byte[] encode(List<byte[]> encodedMsgs, Deflater deflater)
+  {
+    int payloadLength = 0;
+    for (byte[] encodedMsg : encodedMsgs)
+    {
+      payloadLength += getPayloadLength(encodedMsg);
+    }
+    if (payloadLength > MAX_PAYLOAD_LENGTH)
+    {
+      throw new IllegalArgumentException("Batch frame payload too large: " + payloadLength);
+    }
+    final ByteArrayBuilder payload = new ByteArrayBuilder(payloadLength);
+    for (byte[] encodedMsg : encodedMsgs)
+    {
+      payload.appendInt(encodedMsg.length);
+      payload.appendByteArray(encodedMsg);
+    }
+    final byte[] payloadBytes = payload.toByteArray();
+
+    if (deflater != null && payloadBytes.length >= MIN_COMPRESSED_LENGTH)
+    {
+      final byte[] compressed = deflate(deflater, payloadBytes);
+      if (compressed != null)
+      {
+        return new ByteArrayBuilder(ByteArrayBuilder.bytes(2) + ByteArrayBuilder.ints(1) + compressed.length)
+            .appendByte(ReplicationMsg.MSG_TYPE_BATCH)
+            .appendByte(FLAG_DEFLATE)
+            .appendInt(payloadBytes.length)
+            .appendByteArray(compressed)
+            .toByteArray();
+      }
+    }
+    return new ByteArrayBuilder(ByteArrayBuilder.bytes(2) + payloadBytes.length)
+        .appendByte(ReplicationMsg.MSG_TYPE_BATCH)
+        .appendByte(0)
+        .appendByteArray(payloadBytes)
+        .toByteArray();
+  }
+
+  /** Returns the compressed bytes, or null if compressing does not make them smaller. */
+  private static byte[] deflate(Deflater deflater, byte[] bytes)
+  {
+    deflater.reset();
+    deflater.setInput(bytes);
+    deflater.finish();
+    final byte[] buffer = new byte[bytes.length];
+    int length = 0;
+    while (!deflater.finished() && length < buffer.length)
+    {
+      length += deflater.deflate(buffer, length, buffer.length - length);
+    }
+    if (!deflater.finished())
+    {
+      return null;
+    }
+    final byte[] compressed = new byte[length];
+    System.arraycopy(buffer, 0, compressed, 0, length);
+    return compressed;
+  }
+
+  /**
+   * Decodes the messages carried by the provided batch frame.
+   *
+   * @param frame
+   *          the batch frame received from the peer
+   * @param inflater
+   *          the inflater used to uncompress the frame
+   * @return the messages carried by the batch frame, still encoded
+   * @throws DataFormatException
+   *           if the frame is not a valid batch frame
+   */
+  static List<byte[]> decode(byte[] frame, Inflater inflater) throws DataFormatException
+  {
+    final ByteArrayScanner scanner = new ByteArrayScanner(frame);
+    if (scanner.nextByte() != ReplicationMsg.MSG_TYPE_BATCH)
+    {
+      throw new DataFormatException("byte[] is not a valid batch frame");
+    }
+    final byte flags = scanner.nextByte();
+    final byte[] payload;
+    if ((flags & FLAG_DEFLATE) != 0)
+    {
+      payload = inflate(inflater, scanner.nextInt(), scanner.remainingBytes());
+    }
+    else
+    {
+      payload = scanner.remainingBytes();
+      if (payload.length > MAX_PAYLOAD_LENGTH)
+      {
+        throw new DataFormatException("Batch frame payload too large: " + payload.length);
+      }
+    }
+
+    final List<byte[]> encodedMsgs = new ArrayList<>();
+    final ByteArrayScanner payloadScanner = new ByteArrayScanner(payload);
+    while (!payloadScanner.isEmpty())
+    {
+      final int length = payloadScanner.nextInt();
+      if (length <= 0 || length > payload.length)
+      {
+        throw new DataFormatException("Invalid message length in batch frame: " + length);
+      }
+      encodedMsgs.add(payloadScanner.nextByteArray(length));
+    }
+    if (encodedMsgs.isEmpty())
+    {
+      throw new DataFormatException("Empty batch frame");
+    }
+    return encodedMsgs;
+  }
+
+  private static byte[] inflate(Inflater inflater, int length, byte[] compressed) throws DataFormatException
+  {
+    if (length < 0 || length > MAX_PAYLOAD_LENGTH)
+    {
+      throw new DataFormatException("Invalid uncompressed length in batch frame: " + length);
+    }
+    inflater.reset();
+    inflater.setInput(compressed);
+    final byte[] payload = new byte[length];
+    int inflated = 0;
+    while (inflated < length && !inflater.finished())
+    {
+      final int read = inflater.inflate(payload, inflated, length - inflated);
+      if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+      {
+        break;
+      }
+      inflated += read;
+    }
+    if (inflated != length)
+    {
+      throw new DataFormatException("Truncated compressed batch frame");
+    }
+    return payload;
+  }
+}
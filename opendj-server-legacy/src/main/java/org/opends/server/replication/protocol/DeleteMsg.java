@@ -89,6 +89,12 @@ public class DeleteMsg extends LDAPUpdateMsg
       // truth, we assume 'subtree'
       isSubtreeDelete = true;
     }
+
+    if (protocolVersion == ProtocolVersion.getCurrentVersion())
+    {
+      // Forwarded as is, without re-encoding
+      bytes = in;
+    }
   }
 
   /** {@inheritDoc} */
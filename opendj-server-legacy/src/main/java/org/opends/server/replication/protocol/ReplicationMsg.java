@@ -84,6 +84,13 @@ public abstract class ReplicationMsg
   /** @since {@link ProtocolVersion#REPLICATION_PROTOCOL_V8} */
   static final byte MSG_TYPE_REPLICA_OFFLINE = 37;
 
+  /**
+   * Frames carrying several messages, handled by the {@link Session}.
+   *
+   * @since {@link ProtocolVersion#REPLICATION_PROTOCOL_V9}
+   */
+  static final byte MSG_TYPE_BATCH = 38;
+
   // Adding a new type of message here probably requires to
   // change accordingly generateMsg method below
 
@@ -26,6 +26,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +37,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import javax.net.ssl.SSLSocket;
 
@@ -43,6 +49,13 @@ import org.opends.server.util.StaticUtils;
 
 /**
  * This class defines a replication session using TLS.
+ * <p>
+ * When the session thread is running, the messages published are queued and
+ * sent by the session thread. With peers supporting
+ * {@link ProtocolVersion#REPLICATION_PROTOCOL_V9}, the messages queued while
+ * the previous frame was being sent are grouped in a single batch frame,
+ * optionally compressed, so that they share the framing and TLS record
+ * overhead.
  */
 public final class Session extends DirectoryThread implements Closeable
 {
@@ -96,7 +109,25 @@ public final class Session extends DirectoryThread implements Closeable
    */
   private BufferedOutputStream output;
 
-  private final LinkedBlockingQueue<byte[]> sendQueue = new LinkedBlockingQueue<>(4000);
+  /** Whether batch frames sent to the peer are compressed. */
+  private volatile boolean compressionEnabled;
+  /** The messages of the last batch frame received, not yet returned by {@link #receive()}. */
+  private final LinkedList<byte[]> receivedBatch = new LinkedList<>();
+  /**
+   * Inflater and its state guarded by inflaterLock: the thread calling
+   * {@link #receive()} uses it while another thread may close the session and
+   * release its native memory.
+   */
+  private final Object inflaterLock = new Object();
+  private Inflater inflater;
+  private boolean inflaterEnded;
+
+  private final LinkedBlockingQueue<byte[]> sendQueue;
+  /**
+   * The messages published without blocking while the send queue was full.
+   * They are sent by the session thread before the messages of the send queue.
+   */
+  private final ConcurrentLinkedQueue<byte[]> deferredQueue = new ConcurrentLinkedQueue<>();
   private AtomicBoolean isRunning = new AtomicBoolean(false);
   private final CountDownLatch latch = new CountDownLatch(1);
 
@@ -112,6 +143,23 @@ public final class Session extends DirectoryThread implements Closeable
    */
   public Session(final Socket socket,
                  final SSLSocket secureSocket) throws IOException
+  {
+    this(socket, secureSocket, 4000);
+  }
+
+  /**
+   * Creates a new Session with the provided send queue capacity.
+   *
+   * @param socket
+   *          The regular Socket on which the SocketSession will be based.
+   * @param secureSocket
+   *          The secure Socket on which the SocketSession will be based.
+   * @param sendQueueCapacity
+   *          The maximum number of messages waiting to be sent.
+   * @throws IOException
+   *           When an IException happens on the socket.
+   */
+  Session(final Socket socket, final SSLSocket secureSocket, final int sendQueueCapacity) throws IOException
   {
     super("Replication Session from "+ socket.getLocalSocketAddress() +
         " to " + socket.getRemoteSocketAddress());
@@ -124,6 +172,7 @@ public final class Session extends DirectoryThread implements Closeable
           stackTraceToSingleLineString(new Exception()));
     }
 
+    this.sendQueue = new LinkedBlockingQueue<>(sendQueueCapacity);
     this.plainSocket = socket;
     this.secureSocket = secureSocket;
     this.plainInput = plainSocket.getInputStream();
@@ -201,6 +250,34 @@ public final class Session extends DirectoryThread implements Closeable
     }
 
     StaticUtils.close(plainSocket, secureSocket);
+    endInflater();
+  }
+
+  private void endInflater()
+  {
+    synchronized (inflaterLock)
+    {
+      inflaterEnded = true;
+      if (inflater != null)
+      {
+        inflater.end();
+        inflater = null;
+      }
+    }
+  }
+
+  /**
+   * Returns whether the resources used to decompress the received messages
+   * have been released. Only used by tests.
+   *
+   * @return true if the session cannot decompress messages anymore
+   */
+  boolean isInflaterEnded()
+  {
+    synchronized (inflaterLock)
+    {
+      return inflaterEnded;
+    }
   }
 
 
@@ -338,6 +415,43 @@ public final class Session extends DirectoryThread implements Closeable
     }
   }
 
+  /**
+   * Sends a replication message to the remote peer without waiting for room
+   * in the send queue. When the send queue is full, the message is deferred and
+   * sent by the session thread ahead of the queued messages, so this is only
+   * suitable for messages whose order relative to the other messages does not
+   * matter, like acknowledgements.
+   *
+   * @param msg
+   *          The message to be sent.
+   * @throws IOException
+   *           If an IO error occurred.
+   */
+  public void publishWithoutBlocking(final ReplicationMsg msg) throws IOException
+  {
+    final byte[] buffer = msg.getBytes(protocolVersion);
+    if (buffer == null)
+    {
+      // skip anything that cannot be encoded for this peer.
+      return;
+    }
+    if (!isRunning.get())
+    {
+      send(buffer);
+    }
+    else if (!closeInitiated && !sendQueue.offer(buffer))
+    {
+      deferredQueue.add(buffer);
+    }
+  }
+
+  /** Returns the next message to send without waiting, or {@code null} if there is none. */
+  private byte[] pollNextBuffer()
+  {
+    final byte[] deferred = deferredQueue.poll();
+    return deferred != null ? deferred : sendQueue.poll();
+  }
+
   /** Sends a replication message already encoded to the socket.
    *
    * @param buffer
@@ -393,38 +507,69 @@ public final class Session extends DirectoryThread implements Closeable
   {
     try
     {
+      byte[] buffer = receivedBatch.poll();
+      if (buffer == null)
+      {
+        buffer = receiveFrame();
+        if (BatchFrame.isBatchFrame(buffer))
+        {
+          receivedBatch.addAll(decodeBatchFrame(buffer));
+          buffer = receivedBatch.poll();
+        }
+      }
+
       /*
-       * Let's start the stop-watch before waiting on read for the heartbeat
-       * check to be operational.
+       * We do not want the heartbeat to close the session when we are
+       * processing a message even a time consuming one.
        */
-      lastReceiveTime = System.currentTimeMillis();
+      lastReceiveTime = 0;
+      return ReplicationMsg.generateMsg(buffer, protocolVersion);
+    }
+    catch (final IOException | DataFormatException | NotSupportedOldVersionPDUException | RuntimeException e)
+    {
+      setSessionError(e);
+      throw e;
+    }
+  }
 
-      // Read the first 8 bytes containing the packet length.
-      read(rcvLengthBuf);
-      final int totalLength = Integer.parseInt(new String(rcvLengthBuf), 16);
+  private byte[] receiveFrame() throws IOException
+  {
+    /*
+     * Let's start the stop-watch before waiting on read for the heartbeat
+     * check to be operational.
+     */
+    lastReceiveTime = System.currentTimeMillis();
 
-      try
-      {
-        final byte[] buffer = new byte[totalLength];
-        read(buffer);
+    // Read the first 8 bytes containing the packet length.
+    read(rcvLengthBuf);
+    final int totalLength = Integer.parseInt(new String(rcvLengthBuf), 16);
 
-        /*
-         * We do not want the heartbeat to close the session when we are
-         * processing a message even a time consuming one.
-         */
-        lastReceiveTime = 0;
-        return ReplicationMsg.generateMsg(buffer, protocolVersion);
+    try
+    {
+      final byte[] buffer = new byte[totalLength];
+      read(buffer);
+      return buffer;
+    }
+    catch (final OutOfMemoryError e)
+    {
+      throw new IOException("Packet too large, can't allocate "
+          + totalLength + " bytes.");
+    }
+  }
+
+  private List<byte[]> decodeBatchFrame(byte[] frame) throws IOException, DataFormatException
+  {
+    synchronized (inflaterLock)
+    {
+      if (inflaterEnded)
+      {
+        throw new IOException("Session closed");
       }
-      catch (final OutOfMemoryError e)
+      if (inflater == null)
       {
-        throw new IOException("Packet too large, can't allocate "
-            + totalLength + " bytes.");
+        inflater = new Inflater();
       }
-    }
-    catch (final IOException | DataFormatException | NotSupportedOldVersionPDUException | RuntimeException e)
-    {
-      setSessionError(e);
-      throw e;
+      return BatchFrame.decode(frame, inflater);
     }
   }
 
@@ -456,6 +601,19 @@ public final class Session extends DirectoryThread implements Closeable
   }
 
 
+  /**
+   * Sets whether the messages sent to the peer are compressed. This only
+   * applies to sessions using {@link ProtocolVersion#REPLICATION_PROTOCOL_V9}
+   * or later, once the session thread is running.
+   *
+   * @param compressionEnabled
+   *          true if the messages sent to the peer must be compressed
+   */
+  public void setCompressionEnabled(final boolean compressionEnabled)
+  {
+    this.compressionEnabled = compressionEnabled;
+  }
+
   /**
    * Returns the version of the protocol that is currently used.
    *
@@ -533,12 +691,25 @@ public final class Session extends DirectoryThread implements Closeable
       logger.trace(getName() + " starting.");
     }
     boolean needClosing = false;
+    final List<byte[]> batch = new ArrayList<>();
+    Deflater deflater = null;
+    // The message which did not fit in the previous batch frame
+    byte[] heldBuffer = null;
     while (!closeInitiated)
     {
-      byte[] buffer;
+      byte[] buffer = heldBuffer != null ? heldBuffer : deferredQueue.poll();
+      heldBuffer = null;
       try
       {
-        buffer = sendQueue.take();
+        if (buffer == null)
+        {
+          // Do not wait forever so that the messages deferred meanwhile are sent.
+          buffer = sendQueue.poll(100, TimeUnit.MILLISECONDS);
+          if (buffer == null)
+          {
+            continue;
+          }
+        }
       }
       catch (InterruptedException ie)
       {
@@ -546,6 +717,34 @@ public final class Session extends DirectoryThread implements Closeable
       }
       try
       {
+        int payloadLength = BatchFrame.getPayloadLength(buffer);
+        if (protocolVersion >= ProtocolVersion.REPLICATION_PROTOCOL_V9
+            && payloadLength <= BatchFrame.MAX_PAYLOAD_LENGTH)
+        {
+          // group the messages queued while the previous frame was sent
+          batch.add(buffer);
+          byte[] next;
+          while ((next = pollNextBuffer()) != null)
+          {
+            payloadLength += BatchFrame.getPayloadLength(next);
+            if (payloadLength > BatchFrame.MAX_PAYLOAD_LENGTH)
+            {
+              heldBuffer = next;
+              break;
+            }
+            batch.add(next);
+          }
+          final boolean compress = compressionEnabled;
+          if (compress && deflater == null)
+          {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+          }
+          if (batch.size() > 1 || compress)
+          {
+            buffer = BatchFrame.encode(batch, compress ? deflater : null);
+          }
+          batch.clear();
+        }
         send(buffer);
       }
       catch (IOException e)
@@ -554,6 +753,10 @@ public final class Session extends DirectoryThread implements Closeable
         needClosing = true;
       }
     }
+    if (deflater != null)
+    {
+      deflater.end();
+    }
     isRunning.set(false);
     if (needClosing)
     {
@@ -18,7 +18,10 @@ package org.opends.server.replication.server;
 
 import static org.opends.messages.ReplicationMessages.*;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -49,6 +52,11 @@ import org.opends.server.types.InitializationException;
  * the message to the registered message handlers.
  * LocalizableMessage are buffered into a queue.
  * Consumers are expected to come and consume the UpdateMsg from the queue.
+ * <p>
+ * Producers and the consumer do not share any lock: the queues are lock free,
+ * trimming the message queue is signalled to the consumer through a trim
+ * counter, and the consumer parks when the message queue is empty until a
+ * producer adds a message.
  */
 class MessageHandler extends MonitorProvider<MonitorProviderCfg>
 {
@@ -57,14 +65,31 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
 
   private static final int MINIMUM_TRESHOLD_MSG_QUEUE_SIZE = 5;
 
+  /** Maximum time the consumer parks waiting for an update, in milliseconds. */
+  private static final long CONSUMER_PARK_MILLIS = 500;
+
   /** UpdateMsg queue. */
   private final MsgQueue msgQueue = new MsgQueue();
   /**
    * Late queue. All access to the lateQueue in getNextMessage() is
-   * single-threaded. However, reads from threads calling getOlderUpdateCN()
-   * need protecting against removals performed using getNextMessage().
+   * single-threaded. Reads from threads calling getOlderUpdateCSN() rely on
+   * the queue being safe for concurrent use.
    */
   private final MsgQueue lateQueue = new MsgQueue();
+  /**
+   * Number of msgQueue trims started. Producers increment it before clearing
+   * the following flag and removing a message, so the consumer can detect it
+   * raced with a trim and fall back to the changelog.
+   */
+  private final AtomicLong trimsStarted = new AtomicLong();
+  /**
+   * Number of msgQueue trims completed. Producers increment it once the
+   * message has been removed: a trim is in progress as long as it differs
+   * from {@link #trimsStarted}.
+   */
+  private final AtomicLong trimsCompleted = new AtomicLong();
+  /** The consumer thread parked waiting for an update, if any. */
+  private volatile Thread parkedConsumer;
   /** Local hosting RS. */
   protected final ReplicationServer replicationServer;
   /** Specifies the related replication server domain based on baseDN. */
@@ -78,7 +103,7 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
   /** Specifies the max queue size in bytes for this handler. */
   private final int maxQueueBytesSize;
   /** Specifies whether the consumer is following the producer (is not late). */
-  private boolean following;
+  private volatile boolean following;
   /** Specifies the current serverState of this handler. */
   private ServerState serverState;
   /** Specifies the baseDN of the domain. */
@@ -88,7 +113,7 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    * If not active, the handler will not return any message.
    * Called at the beginning of shutdown process.
    */
-  private boolean activeConsumer = true;
+  private volatile boolean activeConsumer = true;
   /** Set when ServerHandler is stopping. */
   private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
 
@@ -114,25 +139,31 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    */
   void add(UpdateMsg update)
   {
-    synchronized (msgQueue)
+    msgQueue.add(update);
+
+    // TODO : size should be configurable and larger than max-receive-queue-size
+    while (isMsgQueueAboveThreshold())
     {
-      /*
-       * If queue was empty the writer thread was probably asleep
-       * waiting for some changes, wake it up
-       */
-      if (msgQueue.isEmpty())
+      trimsStarted.incrementAndGet();
+      following = false;
+      final UpdateMsg removed = msgQueue.removeFirst();
+      trimsCompleted.incrementAndGet();
+      if (removed == null)
       {
-        msgQueue.notify();
+        break;
       }
+    }
 
-      msgQueue.add(update);
+    // the writer thread was probably asleep waiting for some changes, wake it up
+    wakeUpConsumer();
+  }
 
-      // TODO : size should be configurable and larger than max-receive-queue-size
-      while (isMsgQueueAboveThreshold())
-      {
-        following = false;
-        msgQueue.removeFirst();
-      }
+  private void wakeUpConsumer()
+  {
+    final Thread consumer = parkedConsumer;
+    if (consumer != null)
+    {
+      LockSupport.unpark(consumer);
     }
   }
 
@@ -263,14 +294,12 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
           {
             // we could not find any messages in the changelog
             // so the remote server is not late anymore.
-            synchronized (msgQueue)
+            // Ensure we are below threshold so this server will follow the
+            // msgQueue without fearing the msgQueue gets trimmed
+            final long trims = getStableTrimCount();
+            if (isMsgQueueBelowThreshold())
             {
-              // Ensure we are below threshold so this server will follow the
-              // msgQueue without fearing the msgQueue gets trimmed
-              if (isMsgQueueBelowThreshold())
-              {
-                following = true;
-              }
+              startFollowing(trims);
             }
           }
           else
@@ -281,18 +310,15 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
              * -> set following to true and empty the lateQueue.
              */
             UpdateMsg msg = lateQueue.first();
-            synchronized (msgQueue)
+            final long trims = getStableTrimCount();
+            if (msgQueue.contains(msg) && startFollowing(trims))
             {
-              if (msgQueue.contains(msg))
+              /* we finally catch up with the regular queue */
+              lateQueue.clear();
+              msgQueue.consumeUpTo(msg);
+              if (updateServerState(msg))
               {
-                /* we finally catch up with the regular queue */
-                following = true;
-                lateQueue.clear();
-                msgQueue.consumeUpTo(msg);
-                if (updateServerState(msg))
-                {
-                  return msg;
-                }
+                return msg;
               }
             }
           }
@@ -300,17 +326,14 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
         else
         {
           // get the next change from the lateQueue
-          UpdateMsg msg;
-          synchronized (msgQueue) // TODO JNR why synchronize(msgQueue) here?
+          final long trims = getStableTrimCount();
+          final UpdateMsg msg = lateQueue.removeFirst();
+          // By default a server is always not following. A weird case where messages not representing
+          // an operation may happen, making the late queue repeatedly fill and be emptied without ever
+          // getting the server out of state "not following".
+          if (lateQueue.isEmpty() && msgQueue.isEmpty())
           {
-            msg = lateQueue.removeFirst();
-            // By default a server is always not following. A weird case where messages not representing
-            // an operation may happen, making the late queue repeatedly fill and be emptied without ever
-            // getting the server out of state "not following".
-            if (lateQueue.isEmpty() && msgQueue.isEmpty())
-            {
-              following = true;
-            }
+            startFollowing(trims);
           }
           if (updateServerState(msg))
           {
@@ -320,36 +343,43 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
         }
       }
 
-      synchronized (msgQueue)
+      final long trims = getStableTrimCount();
+      if (!following)
+      {
+        continue;
+      }
+      if (trims < 0)
       {
-        if (following)
+        // a producer is trimming the queue, it is about to clear the following flag
+        Thread.yield();
+        continue;
+      }
+      final UpdateMsg msg = msgQueue.removeFirst();
+      if (msg == null)
+      {
+        if (!waitForUpdate())
         {
-          try
-          {
-            while (msgQueue.isEmpty() && following)
-            {
-              msgQueue.wait(500);
-              if (!activeConsumer)
-              {
-                return null;
-              }
-            }
-          } catch (InterruptedException e)
-          {
-            return null;
-          }
-          UpdateMsg msg = msgQueue.removeFirst();
-          if (updateServerState(msg))
-          {
-            /*
-             * Only push the message if it has not yet been seen
-             * by the other server.
-             * Otherwise just loop to select the next message.
-             */
-            return msg;
-          }
+          return null;
         }
       }
+      else if (trimsStarted.get() != trims)
+      {
+        /*
+         * The queue was trimmed while this message was being removed:
+         * older messages may have been discarded, so drop this one as well
+         * and read them all back from the changelog.
+         */
+        following = false;
+      }
+      else if (updateServerState(msg))
+      {
+        /*
+         * Only push the message if it has not yet been seen
+         * by the other server.
+         * Otherwise just loop to select the next message.
+         */
+        return msg;
+      }
       /*
        * Need to loop because following flag may have gone to false between the
        * first check at the beginning of this method and the second check just
@@ -359,6 +389,68 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
     return null;
   }
 
+  /**
+   * Returns the number of msgQueue trims, or -1 if a producer is currently
+   * trimming the msgQueue. The consumer must read it before looking at the
+   * content of the queues.
+   *
+   * @return the number of msgQueue trims, or -1 if a trim is in progress
+   */
+  private long getStableTrimCount()
+  {
+    final long started = trimsStarted.get();
+    return trimsCompleted.get() == started ? started : -1;
+  }
+
+  /**
+   * Switches the consumer to the msgQueue, unless a producer trimmed the
+   * msgQueue since the trim count was read.
+   *
+   * @param trims
+   *          the trim count returned by {@link #getStableTrimCount()} before
+   *          checking the content of the queues
+   * @return {@code true} if the consumer now follows the msgQueue
+   */
+  private boolean startFollowing(long trims)
+  {
+    if (trims < 0)
+    {
+      return false;
+    }
+    following = true;
+    // the producers increment the count before clearing the flag:
+    // an unchanged count guarantees any later trim will clear the flag again
+    if (trimsStarted.get() != trims)
+    {
+      following = false;
+    }
+    return following;
+  }
+
+  /**
+   * Parks the consumer thread until a producer adds an update to the msgQueue,
+   * or until the waiting delay expires.
+   *
+   * @return {@code false} if the consumer should stop, {@code true} otherwise
+   */
+  private boolean waitForUpdate()
+  {
+    parkedConsumer = Thread.currentThread();
+    try
+    {
+      // check again now producers can see this thread is about to park
+      if (msgQueue.isEmpty() && following && activeConsumer)
+      {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(CONSUMER_PARK_MILLIS));
+      }
+    }
+    finally
+    {
+      parkedConsumer = null;
+    }
+    return activeConsumer && !Thread.currentThread().isInterrupted();
+  }
+
   /**
    * Fills the late queue with the most recent changes, accepting only the
    * messages from provided replica ids.
@@ -386,35 +478,25 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    */
   public CSN getOlderUpdateCSN()
   {
-    synchronized (msgQueue)
+    if (following)
     {
-      if (following)
-      {
-        if (!msgQueue.isEmpty())
-        {
-          return msgQueue.first().getCSN();
-        }
-      }
-      else
-      {
-        if (!lateQueue.isEmpty())
-        {
-          return lateQueue.first().getCSN();
-        }
-        else
-        {
-          /*
-          following is false AND lateQueue is empty
-          We may be at the very moment when the writer has emptied the
-          lateQueue when it sent the last update. The writer will fill again
-          the lateQueue when it will send the next update but we are not yet
-          there. So let's take the last change not sent directly from the db.
-          */
-          return findOldestCSNFromReplicaDBs();
-        }
-      }
+      final UpdateMsg first = msgQueue.first();
+      return first != null ? first.getCSN() : null;
     }
-    return null;
+
+    final UpdateMsg first = lateQueue.first();
+    if (first != null)
+    {
+      return first.getCSN();
+    }
+    /*
+    following is false AND lateQueue is empty
+    We may be at the very moment when the writer has emptied the
+    lateQueue when it sent the last update. The writer will fill again
+    the lateQueue when it will send the next update but we are not yet
+    there. So let's take the last change not sent directly from the db.
+    */
+    return findOldestCSNFromReplicaDBs();
   }
 
   private CSN findOldestCSNFromReplicaDBs()
@@ -452,27 +534,24 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    */
   public int getRcvMsgQueueSize()
   {
-    synchronized (msgQueue)
+    /*
+     * When the server is up to date or close to be up to date,
+     * the number of updates to be sent is the size of the receive queue.
+     */
+    if (following)
     {
-      /*
-       * When the server is up to date or close to be up to date,
-       * the number of updates to be sent is the size of the receive queue.
-       */
-      if (following)
-      {
-        return msgQueue.count();
-      }
-
-      /*
-       * When the server is not able to follow, the msgQueue may become too
-       * large and therefore won't contain all the changes. Some changes may
-       * only be stored in the backing DB of the servers.
-       * The total size of the receive queue is calculated by doing the sum of
-       * the number of missing changes for every replicaDB.
-       */
-      ServerState latestState = replicationServerDomain.getLatestServerState();
-      return ServerState.diffChanges(latestState, serverState);
+      return msgQueue.count();
     }
+
+    /*
+     * When the server is not able to follow, the msgQueue may become too
+     * large and therefore won't contain all the changes. Some changes may
+     * only be stored in the backing DB of the servers.
+     * The total size of the receive queue is calculated by doing the sum of
+     * the number of missing changes for every replicaDB.
+     */
+    ServerState latestState = replicationServerDomain.getLatestServerState();
+    return ServerState.diffChanges(latestState, serverState);
   }
 
   /**
@@ -523,6 +602,10 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
   public void setConsumerActive(boolean active)
   {
     this.activeConsumer = active;
+    if (!active)
+    {
+      wakeUpConsumer();
+    }
   }
 
   /**
@@ -571,12 +654,8 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
   /** Shutdown this handler. */
   public void shutdown()
   {
-    synchronized (msgQueue)
-    {
-      msgQueue.clear();
-      msgQueue.notify();
-      msgQueue.notifyAll();
-    }
+    msgQueue.clear();
+    wakeUpConsumer();
 
     DirectoryServer.deregisterMonitorProvider(this);
   }
@@ -18,7 +18,10 @@ package org.opends.server.replication.server;
 
 import static org.opends.messages.ReplicationMessages.*;
 
-import java.util.TreeMap;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.jcip.annotations.ThreadSafe;
 
@@ -29,36 +32,34 @@ import org.opends.server.replication.protocol.UpdateMsg;
 /**
  * This class is used to build ordered lists of UpdateMsg.
  * The order is defined by the order of the CSN of the UpdateMsg.
+ * <p>
+ * This queue does not rely on any lock: producers and consumers can
+ * concurrently add and remove messages. The number of messages and the number
+ * of bytes are maintained separately from the underlying map so they can be
+ * read in constant time. They are incremented before a message becomes visible
+ * and decremented after it has been removed, so they never under estimate the
+ * content of the queue, but may briefly over estimate it.
  */
 @ThreadSafe
 public class MsgQueue
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
-  private TreeMap<CSN, UpdateMsg> map = new TreeMap<>();
-  /**
-   * FIXME JNR to be investigated:
-   * I strongly suspect that we could replace this field
-   * by using the synchronized keyword on each method.
-   * However, MessageHandler is weirdly synchronizing on msgQueue field
-   * even though it is touching the lateQueue field (?!?).
-   */
-  private final Object lock = new Object();
-
+  private final ConcurrentNavigableMap<CSN, UpdateMsg> map = new ConcurrentSkipListMap<>();
+  /** The number of messages in the queue. */
+  private final AtomicInteger count = new AtomicInteger();
   /** The total number of bytes for all the message in the queue. */
-  private int bytesCount;
+  private final AtomicInteger bytesCount = new AtomicInteger();
 
   /**
    * Return the first UpdateMsg in the MsgQueue.
    *
-   * @return The first UpdateMsg in the MsgQueue.
+   * @return The first UpdateMsg in the MsgQueue, or {@code null} if the queue is empty.
    */
   public UpdateMsg first()
   {
-    synchronized (lock)
-    {
-      return map.get(map.firstKey());
-    }
+    final Entry<CSN, UpdateMsg> first = map.firstEntry();
+    return first != null ? first.getValue() : null;
   }
 
   /**
@@ -68,10 +69,7 @@ public class MsgQueue
    */
   public int count()
   {
-    synchronized (lock)
-    {
-      return map.size();
-    }
+    return count.get();
   }
 
   /**
@@ -81,10 +79,7 @@ public class MsgQueue
    */
   public int bytesCount()
   {
-    synchronized (lock)
-    {
-      return bytesCount;
-    }
+    return bytesCount.get();
   }
 
   /**
@@ -94,10 +89,7 @@ public class MsgQueue
    */
   public boolean isEmpty()
   {
-    synchronized (lock)
-    {
-      return map.isEmpty();
-    }
+    return map.isEmpty();
   }
 
   /**
@@ -107,31 +99,27 @@ public class MsgQueue
    */
   public void add(UpdateMsg update)
   {
-    synchronized (lock)
+    count.incrementAndGet();
+    bytesCount.addAndGet(update.size());
+    final UpdateMsg msgSameCSN = map.put(update.getCSN(), update);
+    if (msgSameCSN != null)
     {
-      final UpdateMsg msgSameCSN = map.put(update.getCSN(), update);
-      if (msgSameCSN != null)
+      // it is a replacement, not an ADD
+      count.decrementAndGet();
+      bytesCount.addAndGet(-msgSameCSN.size());
+      try
       {
-        try
+        if (msgSameCSN.getBytes().length != update.getBytes().length
+            || msgSameCSN.isAssured() != update.isAssured()
+            || msgSameCSN.getVersion() != update.getVersion())
         {
-          if (msgSameCSN.getBytes().length != update.getBytes().length
-              || msgSameCSN.isAssured() != update.isAssured()
-              || msgSameCSN.getVersion() != update.getVersion())
-          {
-            // Adding 2 msgs with the same CSN is ok only when the 2 msgs are the same
-            bytesCount += update.size() - msgSameCSN.size();
-            logger.error(ERR_RSQUEUE_DIFFERENT_MSGS_WITH_SAME_CSN, msgSameCSN.getCSN(), msgSameCSN, update);
-          }
-        }
-        catch (Exception e)
-        {
-          logger.traceException(e);
+          // Adding 2 msgs with the same CSN is ok only when the 2 msgs are the same
+          logger.error(ERR_RSQUEUE_DIFFERENT_MSGS_WITH_SAME_CSN, msgSameCSN.getCSN(), msgSameCSN, update);
         }
       }
-      else
+      catch (Exception e)
       {
-        // it is really an ADD
-        bytesCount += update.size();
+        logger.traceException(e);
       }
     }
   }
@@ -139,25 +127,24 @@ public class MsgQueue
   /**
    * Get and remove the first UpdateMsg in this MessageQueue.
    *
-   * @return The first UpdateMsg in this MessageQueue.
+   * @return The first UpdateMsg in this MessageQueue, or {@code null} if the queue is empty.
    */
   public UpdateMsg removeFirst()
   {
-    synchronized (lock)
+    final Entry<CSN, UpdateMsg> first = map.pollFirstEntry();
+    if (first == null)
     {
-      // FIXME JNR replace next 2 lines with just that one:
-      // final UpdateMsg update = map.pollFirstEntry().getValue();
-      final UpdateMsg update = map.get(map.firstKey());
-      map.remove(update.getCSN());
-      bytesCount -= update.size();
-      if (map.isEmpty() && bytesCount != 0)
-      {
-        // should never happen
-        logger.error(ERR_BYTE_COUNT, bytesCount);
-        bytesCount = 0;
-      }
-      return update;
+      return null;
     }
+    final UpdateMsg update = first.getValue();
+    removed(update);
+    return update;
+  }
+
+  private void removed(UpdateMsg update)
+  {
+    count.decrementAndGet();
+    bytesCount.addAndGet(-update.size());
   }
 
   /**
@@ -171,47 +158,36 @@ public class MsgQueue
    */
   public boolean contains(UpdateMsg msg)
   {
-    synchronized (lock)
-    {
-      return map.containsKey(msg.getCSN());
-    }
+    return map.containsKey(msg.getCSN());
   }
 
   /** Removes all UpdateMsg form this queue. */
   public void clear()
   {
-    synchronized (lock)
+    while (removeFirst() != null)
     {
-      map.clear();
-      bytesCount = 0;
+      // keep removing so the counters remain consistent with concurrent additions
     }
   }
 
   /**
    * Consumes all the messages in this queue up to and including the passed in
-   * message. If the passed in message is not contained in the current queue,
-   * then all messages will be removed from it.
+   * message. Messages added concurrently with a CSN newer than the passed in
+   * message are left in the queue.
    *
    * @param finalMsg
    *          the final message to reach when consuming messages from this queue
    */
   public void consumeUpTo(UpdateMsg finalMsg)
   {
-    // FIXME this code could be more efficient if the msgQueue could call the
-    // following code (to be tested):
-    // if (!map.containsKey(finalMsg.getCSN())) {
-    // map.clear();
-    // } else {
-    // map.headMap(finalMsg.getCSN(), true).clear();
-    // }
-
     final CSN finalCSN = finalMsg.getCSN();
-    UpdateMsg msg;
-    do
+    for (Entry<CSN, UpdateMsg> entry : map.headMap(finalCSN, true).entrySet())
     {
-      msg = removeFirst();
+      if (map.remove(entry.getKey(), entry.getValue()))
+      {
+        removed(entry.getValue());
+      }
     }
-    while (!finalCSN.equals(msg.getCSN()));
   }
 
   @Override
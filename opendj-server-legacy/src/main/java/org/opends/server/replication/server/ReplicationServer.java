@@ -824,6 +824,61 @@ public class ReplicationServer
     return this.config.getReplicationPurgeDelay() * 1000;
   }
 
+  /**
+   * Retrieves the path of the directory where the changelog files are archived.
+   *
+   * @return  The changelog archive directory, or {@code null} if the changelog
+   *          files are never archived.
+   */
+  public String getChangelogArchiveDirectory()
+  {
+    return this.config.getChangelogArchiveDirectory();
+  }
+
+  /**
+   * Retrieves the time after which the changelog files are moved to the
+   * changelog archive directory (in milliseconds).
+   *
+   * @return  The changelog archive delay (in milliseconds).
+   */
+  public long getChangelogArchiveDelay()
+  {
+    return this.config.getChangelogArchiveDelay() * 1000;
+  }
+
+  /**
+   * Retrieves the maximum time during which changes written to the changelog
+   * may remain unsynchronized with the disk (in milliseconds).
+   *
+   * @return  The changelog group commit interval (in milliseconds).
+   */
+  public long getChangelogGroupCommitInterval()
+  {
+    return this.config.getChangelogGroupCommitInterval();
+  }
+
+  /**
+   * Retrieves the size of the changes written to the changelog after which
+   * they are synchronized with the disk (in bytes).
+   *
+   * @return  The changelog group commit size (in bytes).
+   */
+  public long getChangelogGroupCommitSize()
+  {
+    return this.config.getChangelogGroupCommitSize();
+  }
+
+  /**
+   * Indicates whether the replication messages sent by this replication
+   * server are compressed.
+   *
+   * @return true if the replication messages sent are compressed
+   */
+  public boolean isCompressionEnabled()
+  {
+    return this.config.isCompressionEnabled();
+  }
+
   /**
    * Check if the provided configuration is acceptable for add.
    *
@@ -874,6 +929,15 @@ public class ReplicationServer
     {
       this.changelogDB.setPurgeDelay(getPurgeDelay());
     }
+    if (config.getChangelogGroupCommitInterval() != oldConfig.getChangelogGroupCommitInterval()
+        || config.getChangelogGroupCommitSize() != oldConfig.getChangelogGroupCommitSize())
+    {
+      this.changelogDB.setGroupCommitWindow(getChangelogGroupCommitInterval(), getChangelogGroupCommitSize());
+    }
+    if (config.getChangelogArchiveDelay() != oldConfig.getChangelogArchiveDelay())
+    {
+      this.changelogDB.setArchiveDelay(getChangelogArchiveDelay());
+    }
     final boolean computeCN = config.isComputeChangeNumber();
     if (computeCN != oldConfig.isComputeChangeNumber())
     {
@@ -326,6 +326,10 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
     {
       return;
     }
+    if (preparedAssuredInfo != null && preparedAssuredInfo.sendAckWhenDurable)
+    {
+      sendAckWhenDurable(sourceHandler, new AckMsg(updateMsg.getCSN()));
+    }
 
     final List<Integer> assuredServers = getAssuredServers(updateMsg, preparedAssuredInfo);
 
@@ -573,6 +577,13 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
        * received. Null if expectedServers is null.
        */
       public ExpectedAcksInfo expectedAcksInfo;
+
+      /**
+       * Whether an ack must be sent back to the server the update came from as
+       * soon as the update is durable in the changelog, without waiting for
+       * acks from other servers.
+       */
+      public boolean sendAckWhenDurable;
   }
 
   /**
@@ -660,7 +671,8 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
 
   /**
    * Process a just received assured update message in Safe Data mode. If the
-   * ack can be sent immediately, it is done here. This will also determine to
+   * ack can be sent without waiting for other servers, it is flagged to be sent
+   * once the update is durable in the changelog. This will also determine to
    * which suitable servers an ack should be requested from, and which ones are
    * not eligible for an ack request.
    * This method is an helper method for the put method. Have a look at the put
@@ -670,14 +682,13 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
    *        update was received
    * @return A suitable PreparedAssuredInfo object that contains every needed
    * info to proceed with post to server writers.
-   * @throws IOException When an IO exception happens during the update
-   *         processing.
    */
   private PreparedAssuredInfo processSafeDataUpdateMsg(
-    UpdateMsg update, ServerHandler sourceHandler) throws IOException
+    UpdateMsg update, ServerHandler sourceHandler)
   {
     CSN csn = update.getCSN();
     boolean interestedInAcks = false;
+    boolean sendAckWhenDurable = false;
     byte safeDataLevel = update.getSafeDataLevel();
     byte groupId = localReplicationServer.getGroupId();
     byte sourceGroupId = sourceHandler.getGroupId();
@@ -696,11 +707,11 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
           if (safeDataLevel == (byte) 1)
           {
             /**
-             * Immediately return the ack for an assured message in safe data
-             * mode with safe data level 1, coming from a DS. No need to wait
-             * for more acks
+             * Return the ack for an assured message in safe data mode with
+             * safe data level 1, coming from a DS, as soon as the update is
+             * durable. No need to wait for more acks
              */
-            sourceHandler.send(new AckMsg(csn));
+            sendAckWhenDurable = true;
           } else
           {
             /**
@@ -720,7 +731,7 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
            */
           if (safeDataLevel > (byte) 1)
           {
-            sourceHandler.send(new AckMsg(csn));
+            sendAckWhenDurable = true;
           }
         }
     }
@@ -733,6 +744,7 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
 
     // Return computed structures
     PreparedAssuredInfo preparedAssuredInfo = new PreparedAssuredInfo();
+    preparedAssuredInfo.sendAckWhenDurable = sendAckWhenDurable;
     int nExpectedServers = expectedServers.size();
     if (interestedInAcks) // interestedInAcks so level > 1
     {
@@ -754,8 +766,8 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
       } else
       {
         // level > 1 and source is a DS but no eligible servers found, send the
-        // ack immediately
-        sourceHandler.send(new AckMsg(csn));
+        // ack as soon as the update is durable
+        preparedAssuredInfo.sendAckWhenDurable = true;
       }
     }
 
@@ -823,22 +835,13 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
           waitingAcks.remove(csn);
           AckMsg finalAck = expectedAcksInfo.createAck(false);
           ServerHandler origServer = expectedAcksInfo.getRequesterServer();
-          try
+          if (expectedAcksInfo instanceof SafeDataExpectedAcksInfo)
           {
-            origServer.send(finalAck);
-          } catch (IOException e)
+            sendAckWhenDurable(origServer, finalAck);
+          }
+          else
           {
-            /**
-             * An error happened trying the send back an ack to the server.
-             * Log an error and close the connection to this server.
-             */
-            LocalizableMessageBuilder mb = new LocalizableMessageBuilder();
-            mb.append(ERR_RS_ERROR_SENDING_ACK.get(
-                localReplicationServer.getServerId(), origServer.getServerId(), csn, baseDN));
-            mb.append(" ");
-            mb.append(stackTraceToSingleLineString(e));
-            logger.error(mb.toMessage());
-            stopServer(origServer, false);
+            sendAck(origServer, finalAck);
           }
           // Mark the ack info object as completed to prevent potential timeout
           // code parallel run
@@ -851,6 +854,47 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
      */
   }
 
+  /**
+   * Sends the provided ack once the acknowledged update is durable in the
+   * changelog. The ack is sent by the changelog group committer thread, so it
+   * must not wait for room in the send queue of a slow server.
+   *
+   * @param origServer The server the acknowledged update came from.
+   * @param ack The ack to send.
+   */
+  private void sendAckWhenDurable(final ServerHandler origServer, final AckMsg ack)
+  {
+    domainDB.runWhenDurable(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        sendAck(origServer, ack);
+      }
+    });
+  }
+
+  private void sendAck(ServerHandler origServer, AckMsg ack)
+  {
+    try
+    {
+      origServer.sendWithoutBlocking(ack);
+    } catch (IOException e)
+    {
+      /**
+       * An error happened trying the send back an ack to the server.
+       * Log an error and close the connection to this server.
+       */
+      LocalizableMessageBuilder mb = new LocalizableMessageBuilder();
+      mb.append(ERR_RS_ERROR_SENDING_ACK.get(
+          localReplicationServer.getServerId(), origServer.getServerId(), ack.getCSN(), baseDN));
+      mb.append(" ");
+      mb.append(stackTraceToSingleLineString(e));
+      logger.error(mb.toMessage());
+      stopServer(origServer, false);
+    }
+  }
+
   /**
    * The code run when the timeout occurs while waiting for acks of the
    * eligible servers. This basically sends a timeout ack (with any additional
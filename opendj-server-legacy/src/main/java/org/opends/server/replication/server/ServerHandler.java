@@ -295,6 +295,7 @@ public abstract class ServerHandler extends MessageHandler
       session.setName("Replication server RS(" + getReplicationServerId()
           + ") session thread to " + this + " at "
           + session.getReadableRemoteAddress());
+      session.setCompressionEnabled(replicationServer.isCompressionEnabled());
       session.start();
       try
       {
@@ -345,6 +346,27 @@ public abstract class ServerHandler extends MessageHandler
     session.publish(msg);
   }
 
+  /**
+   * Sends a message to the server handled by this ServerHandler without
+   * blocking when its send queue is full.
+   *
+   * @param msg
+   *          The message to be sent.
+   * @throws IOException
+   *           When it occurs while sending the message,
+   * @see Session#publishWithoutBlocking(ReplicationMsg)
+   */
+  public void sendWithoutBlocking(ReplicationMsg msg) throws IOException
+  {
+    if (logger.isTraceEnabled())
+    {
+      logger.trace("In "
+          + replicationServerDomain.getLocalRSMonitorInstanceName() + " "
+          + this + " publishes message without blocking:\n" + msg);
+    }
+    session.publishWithoutBlocking(msg);
+  }
+
   /**
    * Get the age of the older change that has not yet been replicated
    * to the server handled by this ServerHandler.
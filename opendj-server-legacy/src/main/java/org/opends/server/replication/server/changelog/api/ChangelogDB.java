@@ -45,6 +45,28 @@ public interface ChangelogDB
    */
   void setPurgeDelay(long delayInMillis);
 
+  /**
+   * Sets the window within which the changes written to the replication database
+   * are synchronized together with the disk. Can be called while the database is
+   * running.
+   *
+   * @param intervalInMillis
+   *          the maximum time a change may remain unsynchronized, in milliseconds
+   * @param sizeInBytes
+   *          the size of the unsynchronized changes after which they are
+   *          synchronized without waiting for the interval to elapse, in bytes
+   */
+  void setGroupCommitWindow(long intervalInMillis, long sizeInBytes);
+
+  /**
+   * Sets the delay after which the changes are moved to the archive directory of
+   * the replication database, if any. Can be called while the database is running.
+   *
+   * @param delayInMillis
+   *          the delay after which changes are archived, in milliseconds
+   */
+  void setArchiveDelay(long delayInMillis);
+
   /**
    * Sets whether the replication database must compute change numbers for
    * replicated changes. Change numbers are computed using a separate new
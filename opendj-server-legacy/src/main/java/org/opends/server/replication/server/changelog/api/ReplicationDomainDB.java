@@ -199,6 +199,19 @@ public interface ReplicationDomainDB
   boolean publishUpdateMsg(DN baseDN, UpdateMsg updateMsg)
       throws ChangelogException;
 
+  /**
+   * Runs the provided task once all the changes published so far have been
+   * persisted to the disk. The task may be run by the calling thread or by a
+   * thread of the changelog DB, hence it must not block.
+   * <p>
+   * If persisting the changes fails, the task is not run and the replication
+   * server is shutdown.
+   *
+   * @param task
+   *          the task to run once the changes published so far are durable
+   */
+  void runWhenDurable(Runnable task);
+
   /**
    * Let the DB know this replica is alive.
    * <p>
@@ -24,6 +24,7 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ByteStringBuilder;
@@ -44,6 +45,10 @@ import org.opends.server.util.StaticUtils;
  * <p>
  * The reader provides both sequential access, using the {@code readRecord()} method,
  * and reasonably fast random access, using the {@code seekToRecord(K, boolean)} method.
+ * <p>
+ * The log file is either read through a {@code RandomAccessFile}, or from a memory-mapped
+ * {@code ByteBuffer} when the log file is read-only. The latter avoids one system call per
+ * read, which matters when many replicas are catching up on old changes.
  *
  * @param <K>
  *          Type of the key of a record, which must be comparable.
@@ -69,10 +74,171 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
 
   private final RecordParser<K, V> parser;
 
-  private final RandomAccessFile reader;
+  private final LogInput reader;
 
   private final File file;
 
+  /** Random access input on the content of a log file. */
+  private interface LogInput extends Closeable
+  {
+    long length() throws IOException;
+
+    long getFilePointer() throws IOException;
+
+    void seek(long position) throws IOException;
+
+    void skipBytes(int length) throws IOException;
+
+    int readInt() throws IOException;
+
+    void readFully(ByteStringBuilder builder, int length) throws IOException;
+  }
+
+  /** Reads the log file through a random access file. */
+  private static final class FileLogInput implements LogInput
+  {
+    private final RandomAccessFile file;
+
+    FileLogInput(final RandomAccessFile file)
+    {
+      this.file = file;
+    }
+
+    @Override
+    public long length() throws IOException
+    {
+      return file.length();
+    }
+
+    @Override
+    public long getFilePointer() throws IOException
+    {
+      return file.getFilePointer();
+    }
+
+    @Override
+    public void seek(final long position) throws IOException
+    {
+      file.seek(position);
+    }
+
+    @Override
+    public void skipBytes(final int length) throws IOException
+    {
+      file.skipBytes(length);
+    }
+
+    @Override
+    public int readInt() throws IOException
+    {
+      return file.readInt();
+    }
+
+    @Override
+    public void readFully(final ByteStringBuilder builder, final int length) throws IOException
+    {
+      builder.appendBytes(file, length);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      file.close();
+    }
+
+    @Override
+    public String toString()
+    {
+      return file.toString();
+    }
+  }
+
+  /**
+   * Reads the log file from a memory-mapped buffer. The buffer is a private view on the mapping,
+   * which is shared by all the readers of the file: closing the input only notifies the owner of
+   * the mapping, which releases it once no reader uses it any more.
+   */
+  private static final class MappedLogInput implements LogInput
+  {
+    private final ByteBuffer buffer;
+    /** Notified when this input is closed, may be {@code null}. */
+    private final Closeable onClose;
+    private boolean closed;
+
+    MappedLogInput(final ByteBuffer buffer, final Closeable onClose)
+    {
+      this.buffer = buffer;
+      this.onClose = onClose;
+    }
+
+    @Override
+    public long length()
+    {
+      return buffer.limit();
+    }
+
+    @Override
+    public long getFilePointer()
+    {
+      return buffer.position();
+    }
+
+    @Override
+    public void seek(final long position)
+    {
+      buffer.position((int) Math.min(position, buffer.limit()));
+    }
+
+    @Override
+    public void skipBytes(final int length)
+    {
+      buffer.position(Math.min(buffer.position() + length, buffer.limit()));
+    }
+
+    @Override
+    public int readInt() throws EOFException
+    {
+      checkRemaining(Integer.SIZE / Byte.SIZE);
+      return buffer.getInt();
+    }
+
+    @Override
+    public void readFully(final ByteStringBuilder builder, final int length) throws EOFException
+    {
+      checkRemaining(length);
+      builder.appendBytes(buffer, length);
+    }
+
+    private void checkRemaining(final int length) throws EOFException
+    {
+      if (buffer.remaining() < length)
+      {
+        // Same behaviour as a random access file: no partial read
+        buffer.position(buffer.limit());
+        throw new EOFException();
+      }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      if (!closed)
+      {
+        closed = true;
+        if (onClose != null)
+        {
+          onClose.close();
+        }
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return "MappedLogInput(position=" + buffer.position() + ", length=" + buffer.limit() + ")";
+    }
+  }
+
   /**
    * Creates a reader for the provided file, file reader and parser.
    *
@@ -91,7 +257,30 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
   static <K extends Comparable<K>, V> BlockLogReader<K, V> newReader(
       final File file, final RandomAccessFile reader, final RecordParser<K, V> parser)
   {
-    return new BlockLogReader<>(file, reader, parser, BLOCK_SIZE);
+    return new BlockLogReader<>(file, new FileLogInput(reader), parser, BLOCK_SIZE);
+  }
+
+  /**
+   * Creates a reader for the provided file, memory-mapped content and parser.
+   *
+   * @param <K>
+   *          Type of the key of a record, which must be comparable.
+   * @param <V>
+   *          Type of the value of a record.
+   * @param file
+   *          The log file to read.
+   * @param mappedFile
+   *          The memory-mapped content of the log file, which is not modified by the reader.
+   * @param parser
+   *          The parser to decode the records read.
+   * @param onClose
+   *          Notified once when the reader is closed, so that the mapping can be released.
+   * @return a new log reader
+   */
+  static <K extends Comparable<K>, V> BlockLogReader<K, V> newMappedReader(
+      final File file, final ByteBuffer mappedFile, final RecordParser<K, V> parser, final Closeable onClose)
+  {
+    return new BlockLogReader<>(file, new MappedLogInput(mappedFile.duplicate(), onClose), parser, BLOCK_SIZE);
   }
 
   /**
@@ -117,11 +306,37 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
   static <K extends Comparable<K>, V> BlockLogReader<K, V> newReaderForTests(
       final File file, final RandomAccessFile reader, final RecordParser<K, V> parser, int blockSize)
   {
-    return new BlockLogReader<>(file, reader, parser, blockSize);
+    return new BlockLogReader<>(file, new FileLogInput(reader), parser, blockSize);
+  }
+
+  /**
+   * Creates a reader for the provided file, memory-mapped content, parser and block size.
+   * <p>
+   * This method is intended for tests only, to allow tuning of the block size.
+   *
+   * @param <K>
+   *          Type of the key of a record, which must be comparable.
+   * @param <V>
+   *          Type of the value of a record.
+   * @param file
+   *          The log file to read.
+   * @param mappedFile
+   *          The memory-mapped content of the log file, which is not modified by the reader.
+   * @param parser
+   *          The parser to decode the records read.
+   * @param blockSize
+   *          The size of each block, or frequency at which the record offset is
+   *          present in the log file.
+   * @return a new log reader
+   */
+  static <K extends Comparable<K>, V> BlockLogReader<K, V> newMappedReaderForTests(
+      final File file, final ByteBuffer mappedFile, final RecordParser<K, V> parser, int blockSize)
+  {
+    return new BlockLogReader<>(file, new MappedLogInput(mappedFile.duplicate(), null), parser, blockSize);
   }
 
   private BlockLogReader(
-      final File file, final RandomAccessFile reader, final RecordParser<K, V> parser, final int blockSize)
+      final File file, final LogInput reader, final RecordParser<K, V> parser, final int blockSize)
   {
     this.file = file;
     this.reader = reader;
@@ -265,9 +480,7 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
     reader.seek(blockStartPosition);
     if (blockStartPosition > 0)
     {
-      final byte[] offsetData = new byte[SIZE_OF_BLOCK_OFFSET];
-      reader.readFully(offsetData);
-      final int offsetToRecord = ByteString.wrap(offsetData).toInt();
+      final int offsetToRecord = reader.readInt();
       if (offsetToRecord > 0)
       {
         reader.seek(blockStartPosition - offsetToRecord);
@@ -305,7 +518,7 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
       {
         if (distanceToBlockStart != 0)
         {
-          recordBytes.appendBytes(reader, distanceToBlockStart);
+          reader.readFully(recordBytes, distanceToBlockStart);
         }
         // skip the offset
         reader.skipBytes(SIZE_OF_BLOCK_OFFSET);
@@ -318,7 +531,7 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
       if (remainingBytesToRead > 0)
       {
         // last bytes of the record
-        recordBytes.appendBytes(reader, remainingBytesToRead);
+        reader.readFully(recordBytes, remainingBytesToRead);
       }
       return recordBytes.toByteString();
     }
@@ -357,10 +570,10 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
     final ByteStringBuilder lengthBytes = new ByteStringBuilder(SIZE_OF_RECORD_SIZE);
     if (distanceToBlockStart > 0 && distanceToBlockStart < SIZE_OF_RECORD_SIZE)
     {
-      lengthBytes.appendBytes(reader, distanceToBlockStart);
+      reader.readFully(lengthBytes, distanceToBlockStart);
       // skip the offset
       reader.skipBytes(SIZE_OF_BLOCK_OFFSET);
-      lengthBytes.appendBytes(reader, SIZE_OF_RECORD_SIZE - distanceToBlockStart);
+      reader.readFully(lengthBytes, SIZE_OF_RECORD_SIZE - distanceToBlockStart);
     }
     else
     {
@@ -369,7 +582,7 @@ class BlockLogReader<K extends Comparable<K>, V> implements Closeable
         // skip the offset
         reader.skipBytes(SIZE_OF_BLOCK_OFFSET);
       }
-      lengthBytes.appendBytes(reader, SIZE_OF_RECORD_SIZE);
+      return reader.readInt();
     }
     return lengthBytes.toByteString().toInt();
   }
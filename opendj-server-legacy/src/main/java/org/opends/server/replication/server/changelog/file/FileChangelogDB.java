@@ -109,6 +109,21 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
   private volatile long purgeDelayInMillis;
   private final AtomicReference<ChangelogDBPurger> cnPurger = new AtomicReference<>();
 
+  /**
+   * The directory where the replicaDBs log files are archived, or {@code null}
+   * if they are never archived.
+   */
+  private final File archiveDirectory;
+  /**
+   * The archive delay (in milliseconds). The replicaDBs log files holding only
+   * records older than this delay are moved to the archive directory.
+   */
+  private volatile long archiveDelayInMillis;
+  private final AtomicReference<ChangelogDBArchiver> archiver = new AtomicReference<>();
+
+  /** Synchronizes the records appended to the replicaDBs with the file system. */
+  private final AtomicReference<GroupCommitter> groupCommitter = new AtomicReference<>();
+
   /** The local replication server. */
   private final ReplicationServer replicationServer;
   private final AtomicBoolean shutdown = new AtomicBoolean();
@@ -135,6 +150,8 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
   {
     this.replicationServer = replicationServer;
     this.dbDirectory = makeDir(dbDirectoryPath);
+    final String archiveDirectoryPath = replicationServer.getChangelogArchiveDirectory();
+    this.archiveDirectory = archiveDirectoryPath != null ? getFileForPath(archiveDirectoryPath) : null;
     this.cryptoSuite = cryptoSuite;
   }
 
@@ -283,6 +300,8 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     try
     {
       replicationEnv = new ReplicationEnvironment(dbDirectory.getAbsolutePath(), replicationServer, TimeService.SYSTEM);
+      replicationEnv.setArchiveRootPath(archiveDirectory);
+      startGroupCommitter();
       final ChangelogState changelogState = replicationEnv.getChangelogState();
       initializeToChangelogState(changelogState);
       if (replicationServer.isChangeNumberEnabled())
@@ -290,6 +309,7 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
         startIndexer();
       }
       setPurgeDelay(replicationServer.getPurgeDelay());
+      setArchiveDelay(replicationServer.getChangelogArchiveDelay());
     }
     catch (ChangelogException e)
     {
@@ -334,6 +354,8 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
 
     shutdownCNIndexerAndPurger();
+    shutdownArchiver();
+    shutdownGroupCommitter();
 
     // Remember the first exception because :
     // - we want to try to remove everything we want to remove
@@ -405,6 +427,55 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
   }
 
+  private void shutdownArchiver()
+  {
+    final ChangelogDBArchiver currentArchiver = archiver.getAndSet(null);
+    if (currentArchiver != null)
+    {
+      currentArchiver.initiateShutdown();
+      try
+      {
+        currentArchiver.join();
+      }
+      catch (InterruptedException e)
+      {
+        // do nothing: we are already shutting down
+      }
+    }
+  }
+
+  private void startGroupCommitter()
+  {
+    final GroupCommitter newCommitter = new GroupCommitter(replicationServer,
+        replicationServer.getChangelogGroupCommitInterval(), replicationServer.getChangelogGroupCommitSize());
+    if (groupCommitter.compareAndSet(null, newCommitter))
+    {
+      newCommitter.start();
+    }
+  }
+
+  private void shutdownGroupCommitter()
+  {
+    final GroupCommitter committer = groupCommitter.getAndSet(null);
+    if (committer == null)
+    {
+      return;
+    }
+    committer.initiateShutdown();
+    if (committer != Thread.currentThread())
+    {
+      // wait for the final synchronization of the replicaDBs
+      try
+      {
+        committer.join();
+      }
+      catch (InterruptedException e)
+      {
+        // do nothing: we are already shutting down
+      }
+    }
+  }
+
   /**
    * Clears all records from the changelog (does not remove the changelog itself).
    *
@@ -472,6 +543,10 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
   {
     shutdownDB();
     StaticUtils.recursiveDelete(dbDirectory);
+    if (archiveDirectory != null)
+    {
+      StaticUtils.recursiveDelete(archiveDirectory);
+    }
   }
 
   @Override
@@ -555,6 +630,16 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
   }
 
+  @Override
+  public void setGroupCommitWindow(final long intervalInMillis, final long sizeInBytes)
+  {
+    final GroupCommitter committer = groupCommitter.get();
+    if (committer != null)
+    {
+      committer.setCommitWindow(intervalInMillis, sizeInBytes);
+    }
+  }
+
   @Override
   public void setPurgeDelay(final long purgeDelayInMillis)
   {
@@ -579,6 +664,31 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
   }
 
+  @Override
+  public void setArchiveDelay(final long archiveDelayInMillis)
+  {
+    this.archiveDelayInMillis = archiveDelayInMillis;
+    if (archiveDirectory == null)
+    {
+      return;
+    }
+
+    final ChangelogDBArchiver newArchiver = new ChangelogDBArchiver();
+    if (archiver.compareAndSet(null, newArchiver))
+    { // no archiver was running, run this new one
+      newArchiver.start();
+    }
+    else
+    { // an archiver was already running, just wake that one up
+      // to verify if some log files can be archived with the new delay
+      final ChangelogDBArchiver currentArchiver = archiver.get();
+      synchronized (currentArchiver)
+      {
+        currentArchiver.notify();
+      }
+    }
+  }
+
   private void startCNPurger()
   {
     final ChangelogDBPurger newPurger = new ChangelogDBPurger();
@@ -809,6 +919,11 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
         csn.getServerId(), replicationServer);
     final FileReplicaDB replicaDB = pair.getFirst();
     replicaDB.add(updateMsg);
+    final GroupCommitter committer = groupCommitter.get();
+    if (committer != null)
+    {
+      committer.recordsAppended(replicaDB.getLog(), updateMsg.size());
+    }
 
     ChangelogBackend.getInstance().notifyCookieEntryAdded(baseDN, updateMsg);
 
@@ -821,6 +936,20 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     return pair.getSecond(); // replica DB was created
   }
 
+  @Override
+  public void runWhenDurable(final Runnable task)
+  {
+    final GroupCommitter committer = groupCommitter.get();
+    if (committer != null)
+    {
+      committer.runWhenDurable(task);
+    }
+    else
+    {
+      task.run();
+    }
+  }
+
   @Override
   public void replicaHeartbeat(final DN baseDN, final CSN heartbeatCSN) throws ChangelogException
   {
@@ -1020,4 +1149,81 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
       }
     }
   }
+
+  /**
+   * The thread archiving the replicaDBs on a regular interval. The read-only
+   * log files of the replicaDBs are moved to the archive directory once all
+   * their records are older than the archive delay. They remain readable and
+   * are purged like the other log files.
+   */
+  private final class ChangelogDBArchiver extends DirectoryThread
+  {
+    /** Minimum time between two archiving runs, in milliseconds. */
+    private static final long MIN_SLEEP = 1000;
+    /** Maximum time between two archiving runs, in milliseconds. */
+    private static final long MAX_SLEEP = 60 * 1000;
+
+    private ChangelogDBArchiver()
+    {
+      super("Changelog DB archiver");
+    }
+
+    @Override
+    public void run()
+    {
+      while (!isShutdownInitiated())
+      {
+        try
+        {
+          archiveReplicaDBs();
+        }
+        catch (ChangelogException e)
+        {
+          // the log files not archived remain available, try again later
+          logger.error(e.getMessageObject());
+        }
+
+        try
+        {
+          synchronized (this)
+          {
+            if (!isShutdownInitiated())
+            {
+              wait(Math.max(MIN_SLEEP, Math.min(archiveDelayInMillis / 2, MAX_SLEEP)));
+            }
+          }
+        }
+        catch (InterruptedException e)
+        {
+          // shutdown initiated?
+        }
+      }
+    }
+
+    private void archiveReplicaDBs() throws ChangelogException
+    {
+      final CSN archiveCSN = new CSN(TimeThread.getTime() - archiveDelayInMillis, 0, 0);
+      for (final Map<Integer, FileReplicaDB> domainMap : domainToReplicaDBs.values())
+      {
+        for (final FileReplicaDB replicaDB : domainMap.values())
+        {
+          if (isShutdownInitiated())
+          {
+            return;
+          }
+          replicaDB.archiveUpTo(archiveCSN);
+        }
+      }
+    }
+
+    @Override
+    public void initiateShutdown()
+    {
+      super.initiateShutdown();
+      synchronized (this)
+      {
+        notify(); // wake up the archiver thread for faster shutdown
+      }
+    }
+  }
 }
@@ -16,12 +16,12 @@
 package org.opends.server.replication.server.changelog.file;
 
 import static org.opends.messages.ReplicationMessages.*;
-import static org.opends.server.replication.protocol.ProtocolVersion.REPLICATION_PROTOCOL_V7;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Date;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
 
 import net.jcip.annotations.Immutable;
 
@@ -34,6 +34,8 @@ import org.opends.server.api.MonitorProvider;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.crypto.CryptoSuite;
 import org.opends.server.replication.common.CSN;
+import org.opends.server.replication.protocol.NotSupportedOldVersionPDUException;
+import org.opends.server.replication.protocol.ProtocolVersion;
 import org.opends.server.replication.protocol.UpdateMsg;
 import org.opends.server.replication.server.ReplicationServer;
 import org.opends.server.replication.server.ReplicationServerDomain;
@@ -188,6 +190,16 @@ class FileReplicaDB
     return csnLimits.newestCSN;
   }
 
+  /**
+   * Returns the log in which the update messages of this DB are persisted.
+   *
+   * @return the log in which the update messages of this DB are persisted.
+   */
+  Log<CSN, UpdateMsg> getLog()
+  {
+    return log;
+  }
+
   /**
    * Returns a cursor that allows to retrieve the update messages from this DB.
    * The actual starting position is defined by the provided CSN, the key
@@ -244,6 +256,19 @@ class FileReplicaDB
     }
   }
 
+  /**
+   * Synchronously archive the log files holding only changes older than archiveCSN.
+   *
+   * @param archiveCSN
+   *          The CSN up to which changes can be archived.
+   * @throws ChangelogException
+   *           In case of database problem.
+   */
+  void archiveUpTo(final CSN archiveCSN) throws ChangelogException
+  {
+    log.archiveUpTo(archiveCSN);
+  }
+
   /**
    * Implements monitoring capabilities of the ReplicaDB.
    */
@@ -343,6 +368,26 @@ class FileReplicaDB
     return new ReplicaDBParser(cryptoSuite);
   }
 
+  /**
+   * Decodes an update message from the bytes of a record.
+   * <p>
+   * Records are written with the encoding of the current protocol version, which the decoded
+   * message keeps as is, so that it is forwarded to the replicas without being encoded again.
+   *
+   * @param recordBytes
+   *          the bytes of the record, which must not be modified afterwards
+   * @return the decoded update message
+   * @throws DataFormatException
+   *           if the record does not contain a valid update message
+   * @throws NotSupportedOldVersionPDUException
+   *           if the record contains a message of an unsupported protocol version
+   */
+  static UpdateMsg decodeUpdateMsg(final byte[] recordBytes)
+      throws DataFormatException, NotSupportedOldVersionPDUException
+  {
+    return (UpdateMsg) UpdateMsg.generateMsg(recordBytes, ProtocolVersion.getCurrentVersion());
+  }
+
   /** Parser of records persisted in the ReplicaDB log. */
   private static class ReplicaDBParser implements RecordParser<CSN, UpdateMsg>
   {
@@ -403,7 +448,7 @@ class FileReplicaDB
         {
           recordBytes = data.toByteArray();
         }
-        final UpdateMsg msg = (UpdateMsg) UpdateMsg.generateMsg(recordBytes, REPLICATION_PROTOCOL_V7);
+        final UpdateMsg msg = decodeUpdateMsg(recordBytes);
         return Record.from(msg.getCSN(), msg);
       }
       catch (Exception e)
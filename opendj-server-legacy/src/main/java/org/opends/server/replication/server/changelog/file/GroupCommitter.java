@@ -0,0 +1,272 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import static org.opends.messages.ReplicationMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.replication.server.ReplicationServer;
+import org.opends.server.replication.server.changelog.api.ChangelogException;
+
+/**
+ * Synchronizes the records appended to the changelog logs with the file system in batches, so
+ * that the cost of each synchronization is shared by all the logs written since the previous one.
+ * <p>
+ * Records are still appended to the logs by the threads publishing them, which then notify this
+ * group committer of the logs they wrote to. A single thread synchronizes all these logs together
+ * once the configured interval has elapsed since the first record of the batch was appended, or as
+ * soon as the size of the batch reaches the configured size, whichever comes first.
+ * <p>
+ * Tasks that must wait for the records appended so far to be durable, like the sending of assured
+ * replication acknowledgments, are run by the group committer thread once the batch including these
+ * records has been synchronized.
+ */
+final class GroupCommitter extends DirectoryThread
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The local replication server, shutdown if a synchronization fails. May be null in tests. */
+  private final ReplicationServer replicationServer;
+  private final Object lock = new Object();
+
+  /** The logs written since the last synchronization. */
+  @GuardedBy("lock")
+  private Set<Log<?, ?>> pendingLogs = new HashSet<>();
+  /** The tasks to run after the next synchronization. */
+  @GuardedBy("lock")
+  private List<Runnable> pendingTasks = new ArrayList<>();
+  /** The number of bytes appended to the logs since the last synchronization. */
+  @GuardedBy("lock")
+  private long pendingBytes;
+  /** The time at which the first record of the current batch was appended, in nanoseconds. */
+  @GuardedBy("lock")
+  private long batchStartTime;
+  /** Whether a batch is being synchronized. */
+  @GuardedBy("lock")
+  private boolean isCommitting;
+  /** Whether the group committer thread has stopped. */
+  @GuardedBy("lock")
+  private boolean isStopped;
+
+  private volatile long intervalInNanos;
+  private volatile long sizeInBytes;
+
+  /**
+   * Creates a new group committer. The thread must be started by the caller.
+   *
+   * @param replicationServer
+   *          the local replication server
+   * @param intervalInMillis
+   *          the maximum time a record may remain unsynchronized, in milliseconds
+   * @param sizeInBytes
+   *          the size of the pending records triggering a synchronization, in bytes
+   */
+  GroupCommitter(final ReplicationServer replicationServer, final long intervalInMillis, final long sizeInBytes)
+  {
+    super("Changelog group committer");
+    this.replicationServer = replicationServer;
+    setCommitWindow(intervalInMillis, sizeInBytes);
+  }
+
+  /**
+   * Sets the time and size window of the batches.
+   *
+   * @param intervalInMillis
+   *          the maximum time a record may remain unsynchronized, in milliseconds
+   * @param sizeInBytes
+   *          the size of the pending records triggering a synchronization, in bytes
+   */
+  void setCommitWindow(final long intervalInMillis, final long sizeInBytes)
+  {
+    this.intervalInNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalInMillis, 0));
+    this.sizeInBytes = Math.max(sizeInBytes, 1);
+    synchronized (lock)
+    {
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Notifies this group committer that records have been appended to the provided log.
+   *
+   * @param log
+   *          the log the records have been appended to
+   * @param nbBytes
+   *          the approximate size of the appended records, in bytes
+   */
+  void recordsAppended(final Log<?, ?> log, final long nbBytes)
+  {
+    synchronized (lock)
+    {
+      final boolean isNewBatch = pendingLogs.isEmpty();
+      if (isNewBatch)
+      {
+        batchStartTime = System.nanoTime();
+      }
+      pendingLogs.add(log);
+      pendingBytes += nbBytes;
+      if (isNewBatch || pendingBytes >= sizeInBytes)
+      {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Runs the provided task once all the records appended to the logs before this call are durable.
+   * The task is run immediately by the calling thread if there is nothing left to synchronize,
+   * otherwise it is run by the group committer thread and must not block.
+   *
+   * @param task
+   *          the task to run
+   */
+  void runWhenDurable(final Runnable task)
+  {
+    synchronized (lock)
+    {
+      if (!isStopped && (isCommitting || !pendingLogs.isEmpty()))
+      {
+        pendingTasks.add(task);
+        return;
+      }
+    }
+    task.run();
+  }
+
+  @Override
+  public void run()
+  {
+    while (true)
+    {
+      final Set<Log<?, ?>> logsToSync;
+      final List<Runnable> tasksToRun;
+      synchronized (lock)
+      {
+        try
+        {
+          while (!isShutdownInitiated() && !isCommitDue())
+          {
+            lock.wait(getWaitTimeInMillis());
+          }
+        }
+        catch (InterruptedException e)
+        {
+          // shutdown initiated?
+        }
+        if (isShutdownInitiated() && pendingLogs.isEmpty() && pendingTasks.isEmpty())
+        {
+          isStopped = true;
+          return;
+        }
+        logsToSync = pendingLogs;
+        tasksToRun = pendingTasks;
+        pendingLogs = new HashSet<>();
+        pendingTasks = new ArrayList<>();
+        pendingBytes = 0;
+        isCommitting = true;
+      }
+
+      final boolean isDurable = commit(logsToSync);
+
+      synchronized (lock)
+      {
+        isCommitting = false;
+      }
+      if (isDurable)
+      {
+        runTasks(tasksToRun);
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private boolean isCommitDue()
+  {
+    if (pendingLogs.isEmpty())
+    {
+      // records of the tasks are in the batch that has just been synchronized
+      return !pendingTasks.isEmpty();
+    }
+    return pendingBytes >= sizeInBytes || System.nanoTime() - batchStartTime >= intervalInNanos;
+  }
+
+  @GuardedBy("lock")
+  private long getWaitTimeInMillis()
+  {
+    if (pendingLogs.isEmpty())
+    {
+      return 0; // wait until notified
+    }
+    final long remainingNanos = intervalInNanos - (System.nanoTime() - batchStartTime);
+    return Math.max(TimeUnit.NANOSECONDS.toMillis(remainingNanos), 1);
+  }
+
+  private boolean commit(final Set<Log<?, ?>> logsToSync)
+  {
+    try
+    {
+      for (Log<?, ?> log : logsToSync)
+      {
+        log.syncToFileSystem();
+      }
+      return true;
+    }
+    catch (ChangelogException e)
+    {
+      logger.error(ERR_CHANGELOG_SHUTDOWN_DATABASE_ERROR, stackTraceToSingleLineString(e));
+      if (replicationServer != null)
+      {
+        replicationServer.shutdown();
+      }
+      return false;
+    }
+  }
+
+  private void runTasks(final List<Runnable> tasksToRun)
+  {
+    for (Runnable task : tasksToRun)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (RuntimeException e)
+      {
+        logger.traceException(e);
+      }
+    }
+  }
+
+  @Override
+  public void initiateShutdown()
+  {
+    super.initiateShutdown();
+    synchronized (lock)
+    {
+      lock.notifyAll(); // wake up the group committer thread for a final synchronization
+    }
+  }
+}
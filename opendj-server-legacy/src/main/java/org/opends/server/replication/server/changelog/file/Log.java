@@ -23,7 +23,10 @@ import static org.opends.server.util.StaticUtils.*;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -69,6 +72,12 @@ import org.opends.server.util.StaticUtils;
  * read-only file and a new empty head log file is opened. There is no limit on the
  * number of read-only files, but they can be purged.
  * <p>
+ * A log may also have an archive directory, possibly on another file system.
+ * The read-only log files older than a given key can be moved to this directory
+ * using the {@code archiveUpTo()} method. Archived log files keep their name and
+ * are read, purged and cleared like any other read-only log file: cursors read
+ * across the log path and the archive directory transparently.
+ * <p>
  * A log is obtained using the {@code Log.openLog()} method and must always be
  * released using the {@code close()} method.
  * <p>
@@ -104,6 +113,18 @@ final class Log<K extends Comparable<K>, V> implements Closeable
 
   private static final String LOG_FILE_NAME_SEPARATOR = "_";
 
+  /** Suffix of the log files being copied to the archive directory. */
+  private static final String ARCHIVE_TEMP_FILE_SUFFIX = ".tmp";
+
+  private static final FileFilter ARCHIVE_TEMP_FILES_FILTER = new FileFilter()
+  {
+    @Override
+    public boolean accept(File file)
+    {
+      return file.isFile() && file.getName().endsWith(LOG_FILE_SUFFIX + ARCHIVE_TEMP_FILE_SUFFIX);
+    }
+  };
+
   private static final FileFilter READ_ONLY_LOG_FILES_FILTER = new FileFilter()
   {
     @Override
@@ -127,6 +148,12 @@ final class Log<K extends Comparable<K>, V> implements Closeable
   /** The path of directory for this log, where log files are stored. */
   private final File logPath;
 
+  /**
+   * The path of the directory where read-only log files are archived, or
+   * {@code null} if the log files of this log are never archived.
+   */
+  private final File archivePath;
+
   /** The parser used for encoding/decoding of records. */
   private final RecordParser<K, V> recordParser;
 
@@ -142,7 +169,8 @@ final class Log<K extends Comparable<K>, V> implements Closeable
    * The head log file is always present and is associated with the maximum
    * possible key, given by the record parser.
    * <p>
-   * The read-only log files are associated with the highest key they contain.
+   * The read-only log files are associated with the highest key they contain,
+   * whether they are stored in the log path or in the archive directory.
    */
   private final TreeMap<K, LogFile<K, V>> logFiles = new TreeMap<>();
 
@@ -207,16 +235,48 @@ final class Log<K extends Comparable<K>, V> implements Closeable
    * @throws ChangelogException
    *           If a problem occurs during initialization.
    */
-  static synchronized <K extends Comparable<K>, V> Log<K, V> openLog(final ReplicationEnvironment replicationEnv,
+  static <K extends Comparable<K>, V> Log<K, V> openLog(final ReplicationEnvironment replicationEnv,
       final File logPath, final RecordParser<K, V> parser, final LogRotationParameters rotationParameters)
       throws ChangelogException
+  {
+    return openLog(replicationEnv, logPath, null, parser, rotationParameters);
+  }
+
+  /**
+   * Open a log with the provided log path, archive path, record parser and
+   * maximum size per log file.
+   * <p>
+   * If no log exists for the provided path, a new one is created.
+   *
+   * @param <K>
+   *          Type of the key of a record, which must be comparable.
+   * @param <V>
+   *          Type of the value of a record.
+   * @param replicationEnv
+   *          The replication environment used to create this log.
+   * @param logPath
+   *          Path of the log.
+   * @param archivePath
+   *          Path of the directory where read-only log files are archived, or
+   *          {@code null} if log files must never be archived.
+   * @param parser
+   *          Parser for encoding/decoding of records.
+   * @param rotationParameters
+   *          Parameters for the log files rotation.
+   * @return a log
+   * @throws ChangelogException
+   *           If a problem occurs during initialization.
+   */
+  static synchronized <K extends Comparable<K>, V> Log<K, V> openLog(final ReplicationEnvironment replicationEnv,
+      final File logPath, final File archivePath, final RecordParser<K, V> parser,
+      final LogRotationParameters rotationParameters) throws ChangelogException
   {
     Reject.ifNull(logPath, parser);
     @SuppressWarnings("unchecked")
     Log<K, V> log = (Log<K, V>) logsCache.get(logPath);
     if (log == null)
     {
-      log = new Log<>(replicationEnv, logPath, parser, rotationParameters);
+      log = new Log<>(replicationEnv, logPath, archivePath, parser, rotationParameters);
       logsCache.put(logPath, log);
     }
     else
@@ -315,6 +375,8 @@ final class Log<K extends Comparable<K>, V> implements Closeable
    *            The replication environment used to create this log.
    * @param logPath
    *            The directory path of the log.
+   * @param archivePath
+   *            The directory path where read-only log files are archived, may be {@code null}.
    * @param parser
    *          Parser of records.
    * @param rotationParams
@@ -323,11 +385,12 @@ final class Log<K extends Comparable<K>, V> implements Closeable
    * @throws ChangelogException
    *            If a problem occurs during initialization.
    */
-  private Log(final ReplicationEnvironment replicationEnv, final File logPath, final RecordParser<K, V> parser,
-      final LogRotationParameters rotationParams) throws ChangelogException
+  private Log(final ReplicationEnvironment replicationEnv, final File logPath, final File archivePath,
+      final RecordParser<K, V> parser, final LogRotationParameters rotationParams) throws ChangelogException
   {
     this.replicationEnv = replicationEnv;
     this.logPath = logPath;
+    this.archivePath = archivePath;
     this.recordParser = parser;
     this.sizeLimitPerLogFileInBytes = rotationParams.sizeLimitPerFileInBytes;
     this.rotationIntervalInMillis = rotationParams.rotationInterval;
@@ -348,11 +411,23 @@ final class Log<K extends Comparable<K>, V> implements Closeable
     exclusiveLock.lock();
     try
     {
-      createRootDirIfNotExists();
+      createDirIfNotExists(logPath);
       openHeadLogFile();
-      for (final File file : getReadOnlyLogFiles())
+      if (archivePath != null)
+      {
+        openArchivedLogFiles();
+      }
+      for (final File file : getReadOnlyLogFiles(logPath))
       {
-        openReadOnlyLogFile(file);
+        if (archivePath != null && new File(archivePath, file.getName()).exists())
+        {
+          // archiving was interrupted after the archived copy was completed
+          deleteLogFile(file);
+        }
+        else
+        {
+          openReadOnlyLogFile(file);
+        }
       }
       isClosed = false;
     }
@@ -369,22 +444,48 @@ final class Log<K extends Comparable<K>, V> implements Closeable
     }
   }
 
-  private File[] getReadOnlyLogFiles() throws ChangelogException
+  /** Opens the archived log files, discarding the copies left over by an interrupted archiving. */
+  private void openArchivedLogFiles() throws ChangelogException
+  {
+    createDirIfNotExists(archivePath);
+    final File[] tempFiles = archivePath.listFiles(ARCHIVE_TEMP_FILES_FILTER);
+    if (tempFiles != null)
+    {
+      for (final File file : tempFiles)
+      {
+        deleteLogFile(file);
+      }
+    }
+    for (final File file : getReadOnlyLogFiles(archivePath))
+    {
+      openReadOnlyLogFile(file);
+    }
+  }
+
+  private void deleteLogFile(final File file)
   {
-    File[] files = logPath.listFiles(READ_ONLY_LOG_FILES_FILTER);
+    if (!file.delete())
+    {
+      logger.trace("Could not delete log file %s", file.getPath());
+    }
+  }
+
+  private File[] getReadOnlyLogFiles(final File dirPath) throws ChangelogException
+  {
+    File[] files = dirPath.listFiles(READ_ONLY_LOG_FILES_FILTER);
     if (files == null)
     {
       throw new ChangelogException(
-          ERR_CHANGELOG_UNABLE_TO_RETRIEVE_READ_ONLY_LOG_FILES_LIST.get(logPath.getPath()));
+          ERR_CHANGELOG_UNABLE_TO_RETRIEVE_READ_ONLY_LOG_FILES_LIST.get(dirPath.getPath()));
     }
     return files;
   }
 
-  private void createRootDirIfNotExists() throws ChangelogException
+  private void createDirIfNotExists(final File dirPath) throws ChangelogException
   {
-    if (!logPath.exists() && !logPath.mkdirs())
+    if (!dirPath.exists() && !dirPath.mkdirs())
     {
-      throw new ChangelogException(ERR_CHANGELOG_UNABLE_TO_CREATE_LOG_DIRECTORY.get(logPath.getPath()));
+      throw new ChangelogException(ERR_CHANGELOG_UNABLE_TO_CREATE_LOG_DIRECTORY.get(dirPath.getPath()));
     }
   }
 
@@ -499,20 +600,28 @@ final class Log<K extends Comparable<K>, V> implements Closeable
    * <p>
    * After a successful call to this method, it is guaranteed that all records
    * added to the log are persisted to the file system.
+   * <p>
+   * Records can be appended to the head log file while it is synchronized. Records
+   * of the read-only log files are synchronized when the head log file is rotated.
    *
    * @throws ChangelogException
    *           If the synchronization fails.
    */
   public void syncToFileSystem() throws ChangelogException
   {
-    exclusiveLock.lock();
+    sharedLock.lock();
     try
     {
+      if (isClosed)
+      {
+        // log files have been synchronized on close
+        return;
+      }
       getHeadLogFile().syncToFileSystem();
     }
     finally
     {
-      exclusiveLock.unlock();
+      sharedLock.unlock();
     }
   }
 
@@ -747,6 +856,135 @@ final class Log<K extends Comparable<K>, V> implements Closeable
     }
   }
 
+  /**
+   * Archive the read-only log files containing only records with a key lower
+   * than the provided key, by moving them to the archive directory.
+   * <p>
+   * The log files are copied without holding any lock, so appending and
+   * reading records is not blocked while copying to a slower file system.
+   * The cursors opened on a log file are then moved to its archived copy.
+   * Does nothing if this log has no archive directory.
+   *
+   * @param archiveKey
+   *          the key up to which log files can be archived
+   * @return the number of archived log files
+   * @throws ChangelogException
+   *           if a log file cannot be archived.
+   */
+  public int archiveUpTo(final K archiveKey) throws ChangelogException
+  {
+    if (archivePath == null)
+    {
+      return 0;
+    }
+    final List<LogFile<K, V>> logFilesToArchive = new ArrayList<>();
+    sharedLock.lock();
+    try
+    {
+      if (isClosed)
+      {
+        return 0;
+      }
+      for (final LogFile<K, V> logFile : logFiles.headMap(archiveKey).values())
+      {
+        if (!isArchivedLogFile(logFile))
+        {
+          logFilesToArchive.add(logFile);
+        }
+      }
+    }
+    finally
+    {
+      sharedLock.unlock();
+    }
+
+    int nbArchived = 0;
+    for (final LogFile<K, V> logFile : logFilesToArchive)
+    {
+      if (archive(logFile))
+      {
+        nbArchived++;
+      }
+    }
+    return nbArchived;
+  }
+
+  private boolean archive(final LogFile<K, V> logFile) throws ChangelogException
+  {
+    final File logFilePath = logFile.getFile();
+    final File archivedPath = new File(archivePath, logFilePath.getName());
+    final File tempPath = new File(archivePath, logFilePath.getName() + ARCHIVE_TEMP_FILE_SUFFIX);
+    try
+    {
+      // read-only log files are immutable: they can be copied while being read
+      copyFile(logFilePath, tempPath);
+      StaticUtils.renameFile(tempPath, archivedPath);
+    }
+    catch (IOException e)
+    {
+      deleteLogFile(tempPath);
+      throw new ChangelogException(
+          ERR_CHANGELOG_UNABLE_TO_ARCHIVE_LOG_FILE.get(logFilePath.getPath(), archivePath.getPath()), e);
+    }
+
+    exclusiveLock.lock();
+    try
+    {
+      final K highestKey = getKeyBounds(logFile).getSecond();
+      if (isClosed || logFiles.get(highestKey) != logFile)
+      {
+        // the log file was purged or the log cleared while copying
+        deleteLogFile(archivedPath);
+        return false;
+      }
+
+      final List<Pair<AbortableLogCursor<K, V>, CursorState<K, V>>> cursors = disableOpenedCursorsOn(logFile);
+      logFile.close();
+      final LogFile<K, V> archivedLogFile = LogFile.newReadOnlyLogFile(archivedPath, recordParser);
+      logFiles.put(highestKey, archivedLogFile);
+      for (Pair<AbortableLogCursor<K, V>, CursorState<K, V>> pair : cursors)
+      {
+        final CursorState<K, V> cursorState = pair.getSecond();
+        if (cursorState.isValid())
+        {
+          pair.getFirst().reinitializeTo(
+              new CursorState<K, V>(archivedLogFile, cursorState.filePosition, cursorState.record));
+        }
+      }
+      logger.trace("Archived log file %s to %s", logFilePath.getPath(), archivedPath.getPath());
+      // the remaining copy, if any, is discarded when opening the log
+      deleteLogFile(logFilePath);
+      return true;
+    }
+    finally
+    {
+      exclusiveLock.unlock();
+    }
+  }
+
+  /** Copies the provided file, ensuring the copy is persisted to the file system. */
+  private static void copyFile(final File source, final File target) throws IOException
+  {
+    try (FileInputStream in = new FileInputStream(source);
+        FileOutputStream out = new FileOutputStream(target))
+    {
+      final FileChannel inChannel = in.getChannel();
+      final FileChannel outChannel = out.getChannel();
+      final long size = inChannel.size();
+      long position = 0;
+      while (position < size)
+      {
+        position += inChannel.transferTo(position, size - position, outChannel);
+      }
+      outChannel.force(true);
+    }
+  }
+
+  private boolean isArchivedLogFile(final LogFile<K, V> logFile)
+  {
+    return archivePath != null && archivePath.equals(logFile.getFile().getParentFile());
+  }
+
   /** Abort all cursors opened on the provided log file. */
   @GuardedBy("exclusiveLock")
   private void abortCursorsOpenOnLogFile(LogFile<K, V> logFile)
@@ -957,7 +1195,8 @@ final class Log<K extends Comparable<K>, V> implements Closeable
   private void rotateHeadLogFile() throws ChangelogException
   {
     // Temporarily disable cursors opened on head, saving their state
-    final List<Pair<AbortableLogCursor<K, V>, CursorState<K, V>>> cursorsOnHead = disableOpenedCursorsOnHead();
+    final List<Pair<AbortableLogCursor<K, V>, CursorState<K, V>>> cursorsOnHead =
+        disableOpenedCursorsOn(getHeadLogFile());
 
     final LogFile<K, V> headLogFile = getHeadLogFile();
     final File readOnlyLogFile = new File(logPath, generateReadOnlyFileName(headLogFile));
@@ -1061,22 +1300,23 @@ final class Log<K extends Comparable<K>, V> implements Closeable
   }
 
   /**
-   * Disable the cursors opened on the head log file log, by closing their underlying cursor.
+   * Disable the cursors opened on the provided log file, by closing their underlying cursor.
    * Returns the state of each cursor just before the close operation.
    *
-   * @return the pairs (cursor, cursor state) for each cursor pointing to head log file.
+   * @param logFile
+   *          the log file which is about to be closed
+   * @return the pairs (cursor, cursor state) for each cursor pointing to the log file.
    * @throws ChangelogException
    *           If an error occurs.
    */
   @GuardedBy("exclusiveLock")
-  private List<Pair<AbortableLogCursor<K, V>, CursorState<K, V>>> disableOpenedCursorsOnHead()
+  private List<Pair<AbortableLogCursor<K, V>, CursorState<K, V>>> disableOpenedCursorsOn(LogFile<K, V> logFile)
       throws ChangelogException
   {
     final List<Pair<AbortableLogCursor<K, V>, CursorState<K, V>>> openCursorsStates = new ArrayList<>();
-    final LogFile<K, V> headLogFile = getHeadLogFile();
     for (AbortableLogCursor<K, V> cursor : openCursors)
     {
-      if (cursor.isAccessingLogFile(headLogFile))
+      if (cursor.isAccessingLogFile(logFile))
       {
         openCursorsStates.add(Pair.of(cursor, cursor.getState()));
         cursor.closeUnderlyingCursor();
@@ -108,7 +108,7 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
     sharedLock = rwLock.readLock();
     createLogFileIfNotExists();
 
-    readerPool = new LogReaderPool<>(logfile, parser);
+    readerPool = new LogReaderPool<>(logfile, parser, !isWriteEnabled);
     if (isWriteEnabled)
     {
       ensureLogFileIsValid(parser);
@@ -313,7 +313,10 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
    * are effectively persisted.
    * <p>
    * After a successful call to this method, it is guaranteed that all records
-   * added to the log are persisted to the file system.
+   * added to the log before the call are persisted to the file system.
+   * <p>
+   * Appends are not blocked during the synchronization. The caller must ensure
+   * this log file is not closed concurrently.
    *
    * @throws ChangelogException
    *           If the synchronization fails.
@@ -321,7 +324,6 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
   void syncToFileSystem() throws ChangelogException
   {
     checkLogIsEnabledForWrite();
-    sharedLock.lock();
     try
     {
       writer.sync();
@@ -330,10 +332,6 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
     {
       throw new ChangelogException(ERR_CHANGELOG_UNABLE_TO_SYNC.get(getPath()), e);
     }
-    finally
-    {
-      sharedLock.unlock();
-    }
   }
 
   /**
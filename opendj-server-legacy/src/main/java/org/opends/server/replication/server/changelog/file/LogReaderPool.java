@@ -15,17 +15,28 @@
  */
 package org.opends.server.replication.server.changelog.file;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 import org.opends.server.replication.server.changelog.api.ChangelogException;
 import org.opends.server.util.StaticUtils;
 
+import static com.forgerock.opendj.util.OperatingSystem.*;
 import static org.opends.messages.ReplicationMessages.*;
 
 /**
  * A Pool of readers to a log file.
-
+ * <p>
+ * Read-only log files are memory-mapped once, on first read, and all the readers share the
+ * mapping, which is released when the pool is shut down and the last reader using it is closed.
+ * Mapping is not used on Windows, where a mapped file cannot be deleted while it is mapped,
+ * nor for files too large to be mapped in a single buffer.
  *
  * @param <K>
  *          Type of the key of a record, which must be comparable.
@@ -35,11 +46,55 @@ import static org.opends.messages.ReplicationMessages.*;
 // TODO : implement a real pool - reusing readers instead of opening-closing them each time
 class LogReaderPool<K extends Comparable<K>, V>
 {
+  /** The method returning the cleaner of a mapped buffer, {@code null} if not supported by the JVM. */
+  private static final Method DIRECT_BUFFER_CLEANER_METHOD;
+  /** The method releasing the memory of a mapped buffer, {@code null} if not supported by the JVM. */
+  private static final Method CLEANER_CLEAN_METHOD;
+
+  static
+  {
+    Method tmpDirectBufferCleanerMethod = null;
+    Method tmpCleanerCleanMethod = null;
+    try
+    {
+      tmpDirectBufferCleanerMethod = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+      tmpDirectBufferCleanerMethod.setAccessible(true);
+      tmpCleanerCleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      tmpCleanerCleanMethod.setAccessible(true);
+    }
+    catch (Exception e)
+    {
+      tmpDirectBufferCleanerMethod = null;
+      tmpCleanerCleanMethod = null;
+    }
+    DIRECT_BUFFER_CLEANER_METHOD = tmpDirectBufferCleanerMethod;
+    CLEANER_CLEAN_METHOD = tmpCleanerCleanMethod;
+  }
+
   /** The file to read. */
   private final File file;
 
   private final RecordParser<K, V> parser;
 
+  /** Indicates whether the file can be memory-mapped. */
+  private boolean canMapFile;
+
+  /** The memory-mapped content of the file, {@code null} until the first read. */
+  private ByteBuffer mappedFile;
+
+  /** The number of readers using the memory-mapped content of the file. */
+  private int mappedReaders;
+
+  /** Notified when a reader using the memory-mapped content of the file is closed. */
+  private final Closeable mappedReaderCloser = new Closeable()
+  {
+    @Override
+    public void close()
+    {
+      releaseMappedFile();
+    }
+  };
+
   /**
    * Creates a pool of readers for provided file.
    *
@@ -47,11 +102,14 @@ class LogReaderPool<K extends Comparable<K>, V>
    *          The file to read.
    * @param parser
    *          The parser to decode the records read.
+   * @param isReadOnly
+   *          Indicates whether the file is read-only, in which case it can be memory-mapped.
    */
-  LogReaderPool(File file, RecordParser<K, V> parser)
+  LogReaderPool(File file, RecordParser<K, V> parser, boolean isReadOnly)
   {
     this.file = file;
     this.parser = parser;
+    this.canMapFile = isReadOnly && !isWindows();
   }
 
   /**
@@ -66,6 +124,11 @@ class LogReaderPool<K extends Comparable<K>, V>
    */
   BlockLogReader<K, V> get() throws ChangelogException
   {
+    final ByteBuffer mapped = acquireMappedFile();
+    if (mapped != null)
+    {
+      return BlockLogReader.newMappedReader(file, mapped, parser, mappedReaderCloser);
+    }
     return getReader(file);
   }
 
@@ -96,13 +159,104 @@ class LogReaderPool<K extends Comparable<K>, V>
     }
   }
 
+  /**
+   * Returns the memory-mapped content of the file for a new reader, or {@code null} if the file
+   * cannot be mapped.
+   */
+  private synchronized ByteBuffer acquireMappedFile() throws ChangelogException
+  {
+    if (!canMapFile)
+    {
+      return null;
+    }
+    if (mappedFile == null)
+    {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+          FileChannel channel = randomAccessFile.getChannel())
+      {
+        final long length = channel.size();
+        if (length <= Integer.MAX_VALUE)
+        {
+          mappedFile = channel.map(MapMode.READ_ONLY, 0, length);
+        }
+        else
+        {
+          canMapFile = false;
+        }
+      }
+      catch (IOException e)
+      {
+        throw new ChangelogException(ERR_CHANGELOG_UNABLE_TO_OPEN_READER_ON_LOG_FILE.get(file.getPath()), e);
+      }
+    }
+    if (mappedFile != null)
+    {
+      mappedReaders++;
+    }
+    return mappedFile;
+  }
+
+  /** Called when a reader using the memory-mapped content of the file is closed. */
+  private synchronized void releaseMappedFile()
+  {
+    mappedReaders--;
+    unmapIfUnused();
+  }
+
   /**
    * Shutdown this pool, releasing all files handles opened
    * on the file.
+   * <p>
+   * The mapping of the file, if any, is released as soon as the last reader still using it is
+   * closed.
+   */
+  synchronized void shutdown()
+  {
+    canMapFile = false;
+    unmapIfUnused();
+  }
+
+  /** Releases the mapping of the file once the pool is shut down and no reader uses it. */
+  private void unmapIfUnused()
+  {
+    if (!canMapFile && mappedReaders == 0 && mappedFile != null)
+    {
+      unmap(mappedFile);
+      mappedFile = null;
+    }
+  }
+
+  /**
+   * Releases the memory mapping held by the provided buffer without waiting for it to be garbage
+   * collected. The buffer, and any view on it, must not be accessed any more.
+   */
+  private static void unmap(final ByteBuffer buffer)
+  {
+    if (DIRECT_BUFFER_CLEANER_METHOD != null && buffer.isDirect())
+    {
+      try
+      {
+        final Object cleaner = DIRECT_BUFFER_CLEANER_METHOD.invoke(buffer);
+        if (cleaner != null)
+        {
+          CLEANER_CLEAN_METHOD.invoke(cleaner);
+        }
+      }
+      catch (Exception ignored)
+      {
+        // The mapping is released when the buffer is garbage collected
+      }
+    }
+  }
+
+  /**
+   * Returns whether the memory-mapped content of the file is currently held by this pool.
+   * <p>
+   * This method is intended for tests only.
    */
-  void shutdown()
+  synchronized boolean isFileMapped()
   {
-    // Nothing to do yet as no file handle is kept opened.
+    return mappedFile != null;
   }
 
 }
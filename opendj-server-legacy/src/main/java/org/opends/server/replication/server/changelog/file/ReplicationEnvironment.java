@@ -92,6 +92,11 @@ import net.jcip.annotations.GuardedBy;
  *  of the domain is offline. This file contains the offline CSN, encoded as a String on a single line.</li>
  * </ul>
  * See {@code Log} class for details on the log files.
+ * <p>
+ * When an archive directory is defined, the read-only log files of the replica
+ * DBs can be moved to it. It is organized like the root directory, with one
+ * directory per domain and one directory per server id, named after the
+ * corresponding directories of the root directory.
  *
  * <p>
  * Layout example with two domains "o=test1" and "o=test2", each having server
@@ -236,6 +241,12 @@ class ReplicationEnvironment implements ChangelogStateProvider
   /** The time service used for timing. */
   private final TimeService timeService;
 
+  /**
+   * Root path where the replica DB log files are archived, or {@code null} if they are never archived.
+   * It must be set before opening the replica DBs.
+   */
+  private volatile File archiveRootPath;
+
   /**
    * For CN Index DB, a log file can be rotated once it has exceeded a given time interval.
    * <p>
@@ -271,6 +282,18 @@ class ReplicationEnvironment implements ChangelogStateProvider
     this.cnIndexDBLastRotationTime = readOnDiskLastRotationTime();
   }
 
+  /**
+   * Sets the root path where the read-only log files of the replica DBs are archived.
+   * Only the replica DBs opened after this call are archived.
+   *
+   * @param archiveRootPath
+   *          the archive root path, or {@code null} if log files must never be archived.
+   */
+  void setArchiveRootPath(final File archiveRootPath)
+  {
+    this.archiveRootPath = archiveRootPath;
+  }
+
   /**
    * Sets the rotation time interval of a log file for the CN Index DB.
    *
@@ -368,7 +391,8 @@ class ReplicationEnvironment implements ChangelogStateProvider
         ensureGenerationIdFileExists(generationIdPath);
         changelogState.setDomainGenerationId(domainDN, generationId);
 
-        return openLog(serverIdPath, FileReplicaDB.newReplicaDBParser(cryptoSuite),
+        return openLog(serverIdPath, getArchivedServerIdPath(domainId, serverId),
+            FileReplicaDB.newReplicaDBParser(cryptoSuite),
             new LogRotationParameters(REPLICA_DB_MAX_LOG_FILE_SIZE_IN_BYTES, 0, 0), logsReplicaDB);
       }
     }
@@ -398,7 +422,7 @@ class ReplicationEnvironment implements ChangelogStateProvider
     {
       final LogRotationParameters rotationParams = new LogRotationParameters(CN_INDEX_DB_MAX_LOG_FILE_SIZE_IN_BYTES,
           cnIndexDBRotationInterval, cnIndexDBLastRotationTime);
-      return openLog(path, FileChangeNumberIndexDB.RECORD_PARSER, rotationParams, logsCNIndexDB);
+      return openLog(path, null, FileChangeNumberIndexDB.RECORD_PARSER, rotationParams, logsCNIndexDB);
     }
     catch (Exception e)
     {
@@ -746,12 +770,13 @@ class ReplicationEnvironment implements ChangelogStateProvider
   }
 
   /** Open a log from the provided path and record parser. */
-  private <K extends Comparable<K>, V> Log<K, V> openLog(final File serverIdPath, final RecordParser<K, V> parser,
-      LogRotationParameters rotationParams, List<Log<K, V>> logsCache) throws ChangelogException
+  private <K extends Comparable<K>, V> Log<K, V> openLog(final File serverIdPath, final File archivePath,
+      final RecordParser<K, V> parser, LogRotationParameters rotationParams, List<Log<K, V>> logsCache)
+      throws ChangelogException
   {
     checkShutDownBeforeOpening(serverIdPath);
 
-    final Log<K, V> log = Log.openLog(this, serverIdPath, parser, rotationParams);
+    final Log<K, V> log = Log.openLog(this, serverIdPath, archivePath, parser, rotationParams);
 
     checkShutDownAfterOpening(serverIdPath, log);
 
@@ -871,6 +896,17 @@ class ReplicationEnvironment implements ChangelogStateProvider
     return new File(getDomainPath(domainId), serverId + SERVER_ID_SUFFIX);
   }
 
+  /** Returns the archive path for the provided domain id and server id, or {@code null} if there is none. */
+  private File getArchivedServerIdPath(final String domainId, final int serverId)
+  {
+    final File archiveRoot = archiveRootPath;
+    if (archiveRoot == null)
+    {
+      return null;
+    }
+    return new File(new File(archiveRoot, domainId + DOMAIN_SUFFIX), serverId + SERVER_ID_SUFFIX);
+  }
+
   private File getGenerationIdPath(final String domainId, final long generationId)
   {
     return new File(getDomainPath(domainId), GENERATION_ID_FILE_PREFIX + generationId + GENERATION_ID_FILE_SUFFIX);
@@ -12,25 +12,57 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2006-2008 Sun Microsystems, Inc.
- * Portions Copyright 2014-2015 ForgeRock AS.
+ * Portions Copyright 2014-2016 ForgeRock AS.
  */
 package org.opends.server.replication.service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.api.DirectoryThread;
 
 /**
  * This class creates an output stream that can be used to export entries
  * to a synchronization domain.
+ * <p>
+ * The exported bytes are gathered into large chunks which are published by a
+ * dedicated sender thread, so that reading and encoding the entries from the
+ * backend overlaps with the flow controlled publishing of the chunks.
  */
 class ReplOutputStream extends OutputStream
 {
+  /** Size of the chunks of exported bytes sent in each entry message. */
+  static final int CHUNK_SIZE = 64 * 1024;
+  /** Maximum number of chunks waiting to be published by the sender thread. */
+  private static final int MAX_PENDING_CHUNKS = 8;
+  /** Marks the end of the export in the queue of pending chunks. */
+  private static final byte[] END_OF_EXPORT = new byte[0];
+
   /** The synchronization domain on which the export is done. */
   private final ReplicationDomain domain;
 
   /** The current number of entries exported. */
   private final long numExportedEntries = 0;
 
+  /** The chunks waiting to be published by the sender thread. */
+  private final BlockingQueue<byte[]> pendingChunks = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+  /** The thread publishing the chunks. */
+  private final SenderThread sender;
+  /** The chunk currently filled by the exporting thread. */
+  private byte[] chunk = new byte[CHUNK_SIZE];
+  /** The number of bytes written into the current chunk. */
+  private int chunkLength;
+  private boolean closed;
+  /** Whether the exporting thread gave up, in which case the remaining bytes must not be published. */
+  private boolean aborted;
+  /** The error raised by the sender thread, which aborts the export. */
+  private volatile IOException failure;
+
   /**
    * Creates a new ReplLDIFOutputStream related to a replication
    * domain.
@@ -40,20 +72,176 @@ class ReplOutputStream extends OutputStream
   ReplOutputStream(ReplicationDomain domain)
   {
     this.domain = domain;
+    this.sender = new SenderThread();
+    this.sender.start();
   }
 
-  /** {@inheritDoc} */
   @Override
   public void write(int i) throws IOException
   {
     throw new IOException("Invalid call");
   }
 
-  /** {@inheritDoc} */
   @Override
   public void write(byte b[], int off, int len) throws IOException
   {
-    domain.exportLDIFEntry(b, off, len);
+    ensureOpen();
+    while (len > 0)
+    {
+      final int copied = Math.min(len, chunk.length - chunkLength);
+      System.arraycopy(b, off, chunk, chunkLength, copied);
+      chunkLength += copied;
+      off += copied;
+      len -= copied;
+      if (chunkLength == chunk.length)
+      {
+        sendChunk();
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException
+  {
+    ensureOpen();
+    sendChunk();
+  }
+
+  /**
+   * Returns a view of this stream which does not close it when closed. The code
+   * exporting the entries closes the stream it writes to even when the export
+   * fails, while the end of the export must only be published on success.
+   *
+   * @return a view of this stream ignoring {@code close()}
+   */
+  OutputStream nonClosingView()
+  {
+    return new OutputStream()
+    {
+      @Override
+      public void write(int b) throws IOException
+      {
+        ReplOutputStream.this.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+        ReplOutputStream.this.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException
+      {
+        ReplOutputStream.this.flush();
+      }
+
+      @Override
+      public void close()
+      {
+        // The export is ended by the owner of the stream
+      }
+    };
+  }
+
+  /**
+   * Notifies this stream that the export failed: the bytes which have not been
+   * published yet will be discarded when this stream is closed, instead of
+   * publishing a truncated entry.
+   */
+  void abort()
+  {
+    aborted = true;
+  }
+
+  /**
+   * Publishes the remaining bytes and waits for the sender thread to be done
+   * with all the chunks, unless the export has been aborted.
+   *
+   * @throws IOException
+   *           If the export was aborted while publishing the chunks.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (!closed)
+    {
+      closed = true;
+      boolean ended = false;
+      try
+      {
+        if (failure == null && !aborted)
+        {
+          sendChunk();
+          enqueue(END_OF_EXPORT);
+          ended = true;
+        }
+      }
+      finally
+      {
+        if (!ended)
+        {
+          // the remaining chunks will not be sent, make sure the sender thread ends
+          pendingChunks.clear();
+          pendingChunks.offer(END_OF_EXPORT);
+        }
+        try
+        {
+          sender.join();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    if (failure != null)
+    {
+      throw failure;
+    }
+  }
+
+  private void ensureOpen() throws IOException
+  {
+    if (closed)
+    {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void sendChunk() throws IOException
+  {
+    if (chunkLength > 0)
+    {
+      final byte[] toSend = chunkLength == chunk.length ? chunk : Arrays.copyOf(chunk, chunkLength);
+      enqueue(toSend);
+      chunk = new byte[CHUNK_SIZE];
+      chunkLength = 0;
+    }
+  }
+
+  private void enqueue(byte[] toSend) throws IOException
+  {
+    try
+    {
+      while (!pendingChunks.offer(toSend, 100, TimeUnit.MILLISECONDS))
+      {
+        // the sender thread may have given up
+        if (failure != null)
+        {
+          throw failure;
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    }
+    if (failure != null)
+    {
+      throw failure;
+    }
   }
 
   /**
@@ -63,4 +251,44 @@ class ReplOutputStream extends OutputStream
   public long getNumExportedEntries() {
     return numExportedEntries;
   }
+
+  /** Publishes the chunks of exported bytes, one entry message per chunk. */
+  private final class SenderThread extends DirectoryThread
+  {
+    private SenderThread()
+    {
+      super("Total update sender for domain " + domain.getBaseDN());
+    }
+
+    @Override
+    public void run()
+    {
+      try
+      {
+        byte[] toSend;
+        while ((toSend = pendingChunks.take()) != END_OF_EXPORT)
+        {
+          domain.exportLDIFEntry(toSend, 0, toSend.length);
+        }
+      }
+      catch (IOException e)
+      {
+        failure = e;
+      }
+      catch (InterruptedException e)
+      {
+        failure = new InterruptedIOException(e.getMessage());
+      }
+      catch (Throwable t)
+      {
+        // Unblock the exporting thread whatever the reason the sender gives up
+        failure = new IOException(t);
+      }
+      if (failure != null)
+      {
+        // Make sure the export is not reported as successful
+        domain.exportFailed(failure);
+      }
+    }
+  }
 }
@@ -1216,6 +1216,11 @@ public class ReplicationBroker
 
       // Alright set the timeout to the desired value
       session.setSoTimeout(timeout);
+      if (session.getProtocolVersion() >= ProtocolVersion.REPLICATION_PROTOCOL_V9)
+      {
+        // Let the session thread group the updates published concurrently
+        startSessionThread(session);
+      }
       setConnectedRS(electedRS);
       return topologyMsg;
     }
@@ -1229,6 +1234,15 @@ public class ReplicationBroker
     }
   }
 
+  private void startSessionThread(Session session) throws InterruptedException
+  {
+    session.setCompressionEnabled(config.isCompressionEnabled());
+    session.setName("Replica DS(" + getServerId() + ") session thread to "
+        + session.getReadableRemoteAddress() + " for domain \"" + getBaseDN() + "\"");
+    session.start();
+    session.waitForStartup();
+  }
+
   /**
    * Class holding evaluation results for electing the best replication server
    * for the local directory server.
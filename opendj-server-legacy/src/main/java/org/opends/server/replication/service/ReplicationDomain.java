@@ -18,12 +18,14 @@ package org.opends.server.replication.service;
 
 import static org.forgerock.opendj.ldap.ResultCode.*;
 import static org.opends.messages.ReplicationMessages.*;
+import static org.opends.messages.ToolMessages.ERR_LDIFEXPORT_ERROR_DURING_EXPORT;
 import static org.opends.server.replication.common.AssuredMode.*;
 import static org.opends.server.replication.common.StatusMachine.*;
 import static org.opends.server.util.CollectionUtils.*;
+import static org.opends.server.util.StaticUtils.*;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
@@ -1298,7 +1300,7 @@ public abstract class ReplicationDomain
      */
     public void setExceptionIfNoneSet(DirectoryException exception)
     {
-      if (exception == null)
+      if (this.exception == null)
       {
         this.exception = exception;
       }
@@ -1310,7 +1312,7 @@ public abstract class ReplicationDomain
      * @param serverId serverId of the acknowledger/receiver/importer server.
      * @param numAck   id of the message received.
      */
-    private void setAckVal(int serverId, int numAck)
+    private synchronized void setAckVal(int serverId, int numAck)
     {
       if (logger.isTraceEnabled())
       {
@@ -1331,6 +1333,37 @@ public abstract class ReplicationDomain
           minMsgReceived = nbMsgReceived;
         }
       }
+      // Wake up the exporter waiting for the slowest server
+      notifyAll();
+    }
+
+    /**
+     * Returns the id of the last EntryMsg acknowledged by the provided
+     * receiver (importer) server.
+     *
+     * @param serverId serverId of the acknowledger/receiver/importer server.
+     * @return the id of the last EntryMsg acknowledged by this server.
+     */
+    private synchronized int getAckVal(int serverId)
+    {
+      return ackVals.get(serverId);
+    }
+
+    /**
+     * Waits until the slowest server has acknowledged enough EntryMsg to let
+     * the provided message be sent within the initialization window, or until
+     * the provided timeout expires.
+     *
+     * @param msgId the id of the last EntryMsg sent.
+     * @param timeoutMillis the maximum time to wait in milliseconds.
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    private synchronized void waitForAck(int msgId, long timeoutMillis) throws InterruptedException
+    {
+      if (msgId - ackVals.get(slowestServerId) > initWindow)
+      {
+        wait(timeoutMillis);
+      }
     }
 
     /**
@@ -1339,7 +1372,7 @@ public abstract class ReplicationDomain
      * @return serverId of the server with latest acknowledge.
      *                  0 when no ack has been received yet.
      */
-    public int getSlowestServer()
+    public synchronized int getSlowestServer()
     {
       if (logger.isTraceEnabled())
       {
@@ -1513,7 +1546,31 @@ public abstract class ReplicationDomain
               ERR_INIT_NO_SUCCESS_START_FROM_SERVERS.get(getBaseDN(), ieCtx.failureList));
         }
 
-        exportBackend(new BufferedOutputStream(new ReplOutputStream(this)));
+        final ReplOutputStream output = new ReplOutputStream(this);
+        try
+        {
+          // exportBackend() closes the stream it is given, even when it fails:
+          // only publish the last chunk once the whole backend has been exported
+          exportBackend(output.nonClosingView());
+          // Wait for the last chunks to be published
+          output.close();
+        }
+        catch (IOException e)
+        {
+          exportFailed(e);
+        }
+        finally
+        {
+          // Does nothing when the export succeeded, otherwise
+          // does not publish the truncated last chunk
+          output.abort();
+          close(output);
+        }
+        if (ieCtx.getException() != null)
+        {
+          // The export was aborted while publishing the chunks
+          throw ieCtx.getException();
+        }
 
         // Notify the peer of the success
         broker.publish(
@@ -2025,6 +2082,23 @@ public abstract class ReplicationDomain
     return entryCount;
   }
 
+  /**
+   * Records the error which aborted the export of the entries, unless an error
+   * has already been recorded for the current export, so that the export is
+   * reported as failed instead of successful.
+   *
+   * @param cause The error which aborted the export.
+   */
+  void exportFailed(Throwable cause)
+  {
+    final ImportExportContext ieCtx = importExportContext.get();
+    if (ieCtx != null)
+    {
+      ieCtx.setExceptionIfNoneSet(new DirectoryException(ResultCode.OTHER,
+          ERR_LDIFEXPORT_ERROR_DURING_EXPORT.get(stackTraceToSingleLineString(cause)), cause));
+    }
+  }
+
   /**
    * Exports an entry in LDIF format.
    *
@@ -2072,7 +2146,7 @@ public abstract class ReplicationDomain
       }
 
       int ourLastExportedCnt = ieCtx.msgCnt;
-      int slowestCnt = ieCtx.ackVals.get(slowestServerId);
+      int slowestCnt = ieCtx.getAckVal(slowestServerId);
 
       if (logger.isTraceEnabled())
       {
@@ -2088,8 +2162,15 @@ public abstract class ReplicationDomain
         }
 
         // our export is too far beyond the slowest importer - let's wait
-        try { Thread.sleep(100); }
-        catch(Exception e) { /* do nothing */ }
+        try
+        {
+          ieCtx.waitForAck(ourLastExportedCnt, 100);
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException(e.getMessage());
+        }
 
         // process any connection error
         if (broker.hasConnectionError()
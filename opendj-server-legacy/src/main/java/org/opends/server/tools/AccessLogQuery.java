@@ -0,0 +1,402 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.tools;
+
+import static com.forgerock.opendj.cli.CliMessages.INFO_FILE_PLACEHOLDER;
+import static com.forgerock.opendj.cli.CommonArguments.*;
+import static com.forgerock.opendj.cli.Utils.*;
+
+import static org.opends.messages.ToolMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.GeneralizedTime;
+import org.opends.server.core.DirectoryServer.DirectoryServerVersionHandler;
+import org.opends.server.loggers.BinaryAccessLogReader;
+import org.opends.server.loggers.BinaryAccessLogRecord;
+import org.opends.server.loggers.JDKLogging;
+import org.opends.server.monitors.LatencyHistogram;
+import org.opends.server.types.NullOutputStream;
+
+import com.forgerock.opendj.cli.ArgumentException;
+import com.forgerock.opendj.cli.ArgumentParser;
+import com.forgerock.opendj.cli.BooleanArgument;
+import com.forgerock.opendj.cli.IntegerArgument;
+import com.forgerock.opendj.cli.MultiChoiceArgument;
+import com.forgerock.opendj.cli.StringArgument;
+import com.forgerock.opendj.cli.TableBuilder;
+import com.forgerock.opendj.cli.TextTablePrinter;
+
+/**
+ * This program provides a utility that may be used to filter, aggregate and convert to text or JSON
+ * the files written by the binary file access log publisher. It does not require the server to be
+ * running.
+ */
+public class AccessLogQuery
+{
+  private static final String FORMAT_TEXT = "text";
+  private static final String FORMAT_JSON = "json";
+  /** The format of the record times in text, as used by default by the text access logger. */
+  private static final String TEXT_TIME_FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
+  /** The percentiles of the processing times displayed when aggregating the records. */
+  private static final int[] PERCENTILES = { 50, 90, 99 };
+
+  /** The criteria selecting the records to output. */
+  private static final class RecordFilter
+  {
+    private long startTime = Long.MIN_VALUE;
+    private long endTime = Long.MAX_VALUE;
+    private final Set<String> operations = new HashSet<>();
+    private final Set<Long> connectionIDs = new HashSet<>();
+    private final Set<Long> resultCodes = new HashSet<>();
+    private long minEtime = -1;
+
+    private boolean matches(BinaryAccessLogRecord record)
+    {
+      if (record.getTime() < startTime || record.getTime() > endTime)
+      {
+        return false;
+      }
+      if (!operations.isEmpty() && !operations.contains(record.getOperation()))
+      {
+        return false;
+      }
+      if (!connectionIDs.isEmpty() && !connectionIDs.contains(record.getConnectionID()))
+      {
+        return false;
+      }
+      if (!resultCodes.isEmpty() && !resultCodes.contains(record.getField(BinaryAccessLogRecord.FIELD_RESULT)))
+      {
+        return false;
+      }
+      if (minEtime >= 0)
+      {
+        final Object etime = record.getField(BinaryAccessLogRecord.FIELD_ETIME);
+        return etime instanceof Long && (Long) etime >= minEtime;
+      }
+      return true;
+    }
+  }
+
+  /** The statistics about the processing times of one operation type. */
+  private static final class OperationStats
+  {
+    private long count;
+    private long errors;
+    private long totalEtime;
+    private long maxEtime;
+    /** The distribution of the processing times, in memory independent of the number of records. */
+    private final LatencyHistogram etimes = new LatencyHistogram();
+
+    private void add(BinaryAccessLogRecord record)
+    {
+      final Object etime = record.getField(BinaryAccessLogRecord.FIELD_ETIME);
+      if (!(etime instanceof Long))
+      {
+        return;
+      }
+      // The histogram records microseconds, the values are the logged ones whatever their unit
+      etimes.recordValue((Long) etime, TimeUnit.MICROSECONDS);
+      count++;
+      totalEtime += (Long) etime;
+      maxEtime = Math.max(maxEtime, (Long) etime);
+      if (isError(record.getField(BinaryAccessLogRecord.FIELD_RESULT)))
+      {
+        errors++;
+      }
+    }
+
+    private static boolean isError(Object resultCode)
+    {
+      // success, compareFalse, compareTrue and saslBindInProgress
+      return resultCode instanceof Long && !Arrays.asList(0L, 5L, 6L, 14L).contains(resultCode);
+    }
+  }
+
+  /**
+   * Parses the provided command-line arguments and uses that information to
+   * query the binary access log files.
+   *
+   * @param  args  The command-line arguments provided to this program.
+   */
+  public static void main(String[] args)
+  {
+    int retCode = queryAccessLogs(args, System.out, System.err);
+
+    if(retCode != 0)
+    {
+      System.exit(filterExitCode(retCode));
+    }
+  }
+
+  /**
+   * Parses the provided command-line arguments and uses that information to
+   * query the binary access log files.
+   *
+   * @param  args       The command-line arguments provided to this program.
+   * @param  outStream  The output stream to use for standard output, or
+   *                    <CODE>null</CODE> if standard output is not needed.
+   * @param  errStream  The output stream to use for standard error, or
+   *                    <CODE>null</CODE> if standard error is not needed.
+   *
+   * @return  A return code indicating whether the processing was successful.
+   */
+  public static int queryAccessLogs(String[] args, OutputStream outStream, OutputStream errStream)
+  {
+    PrintStream out = NullOutputStream.wrapOrNullStream(outStream);
+    PrintStream err = NullOutputStream.wrapOrNullStream(errStream);
+    JDKLogging.disableLogging();
+
+    BooleanArgument displayUsage;
+    MultiChoiceArgument<String> outputFormat;
+    BooleanArgument aggregate;
+    StringArgument startTime;
+    StringArgument endTime;
+    StringArgument operation;
+    IntegerArgument connectionID;
+    IntegerArgument resultCode;
+    IntegerArgument minEtime;
+
+    // Create the command-line argument parser for use with this program.
+    LocalizableMessage toolDescription = INFO_ACCESS_LOG_QUERY_TOOL_DESCRIPTION.get();
+    ArgumentParser argParser = new ArgumentParser("org.opends.server.tools.AccessLogQuery",
+        toolDescription, false, true, 1, 0, INFO_FILE_PLACEHOLDER.get().toString());
+    argParser.setShortToolDescription(REF_SHORT_DESC_ACCESS_LOG_QUERY.get());
+    argParser.setVersionHandler(new DirectoryServerVersionHandler());
+
+    // Initialize all the command-line argument types and register them with the parser.
+    try
+    {
+      outputFormat =
+              MultiChoiceArgument.<String>builder("outputFormat")
+                      .shortIdentifier('F')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_OUTPUT_FORMAT.get())
+                      .allowedValues(FORMAT_TEXT, FORMAT_JSON)
+                      .defaultValue(FORMAT_TEXT)
+                      .valuePlaceholder(INFO_ACCESS_LOG_QUERY_FORMAT_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+      aggregate =
+              BooleanArgument.builder("aggregate")
+                      .shortIdentifier('a')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_AGGREGATE.get())
+                      .buildAndAddToParser(argParser);
+      startTime =
+              StringArgument.builder("startTime")
+                      .shortIdentifier('s')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_START_TIME.get())
+                      .valuePlaceholder(INFO_START_DATETIME_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+      endTime =
+              StringArgument.builder("endTime")
+                      .shortIdentifier('e')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_END_TIME.get())
+                      .valuePlaceholder(INFO_ACCESS_LOG_QUERY_END_TIME_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+      operation =
+              StringArgument.builder("operation")
+                      .shortIdentifier('o')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_OPERATION.get())
+                      .multiValued()
+                      .valuePlaceholder(INFO_ACCESS_LOG_QUERY_OPERATION_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+      connectionID =
+              IntegerArgument.builder("connectionID")
+                      .shortIdentifier('c')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_CONNECTION_ID.get())
+                      .multiValued()
+                      .lowerBound(0)
+                      .valuePlaceholder(INFO_ACCESS_LOG_QUERY_CONNECTION_ID_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+      resultCode =
+              IntegerArgument.builder("resultCode")
+                      .shortIdentifier('r')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_RESULT_CODE.get())
+                      .multiValued()
+                      .lowerBound(0)
+                      .valuePlaceholder(INFO_ACCESS_LOG_QUERY_RESULT_CODE_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+      minEtime =
+              IntegerArgument.builder("minEtime")
+                      .shortIdentifier('m')
+                      .description(INFO_ACCESS_LOG_QUERY_DESCRIPTION_MIN_ETIME.get())
+                      .lowerBound(0)
+                      .valuePlaceholder(INFO_ACCESS_LOG_QUERY_ETIME_PLACEHOLDER.get())
+                      .buildAndAddToParser(argParser);
+
+      displayUsage = showUsageArgument();
+      argParser.addArgument(displayUsage);
+      argParser.setUsageArgument(displayUsage, out);
+    }
+    catch (ArgumentException ae)
+    {
+      printWrappedText(err, ERR_CANNOT_INITIALIZE_ARGS.get(ae.getMessage()));
+      return 1;
+    }
+
+    // Parse the command-line arguments provided to this program.
+    final RecordFilter filter = new RecordFilter();
+    final boolean isJson;
+    try
+    {
+      argParser.parseArguments(args);
+      if (argParser.usageOrVersionDisplayed())
+      {
+        return 0;
+      }
+
+      isJson = FORMAT_JSON.equals(outputFormat.getTypedValue());
+      for (String value : operation.getValues())
+      {
+        filter.operations.add(toUpperCase(value));
+      }
+      for (String value : connectionID.getValues())
+      {
+        filter.connectionIDs.add(Long.valueOf(value));
+      }
+      for (String value : resultCode.getValues())
+      {
+        filter.resultCodes.add(Long.valueOf(value));
+      }
+      if (minEtime.isPresent())
+      {
+        filter.minEtime = minEtime.getIntValue();
+      }
+    }
+    catch (ArgumentException ae)
+    {
+      argParser.displayMessageAndUsageReference(err, ERR_ERROR_PARSING_ARGS.get(ae.getMessage()));
+      return 1;
+    }
+
+    try
+    {
+      if (startTime.isPresent())
+      {
+        filter.startTime = parseTime(startTime.getValue());
+      }
+      if (endTime.isPresent())
+      {
+        filter.endTime = parseTime(endTime.getValue());
+      }
+    }
+    catch (IllegalArgumentException e)
+    {
+      printWrappedText(err, ERR_ACCESS_LOG_QUERY_INVALID_TIME.get(getExceptionMessage(e)));
+      return 1;
+    }
+
+    final Map<String, OperationStats> stats = new TreeMap<>();
+    final SimpleDateFormat timeFormat = new SimpleDateFormat(TEXT_TIME_FORMAT);
+    int returnCode = 0;
+    for (String fileName : argParser.getTrailingArguments())
+    {
+      final File file = new File(fileName);
+      try (BinaryAccessLogReader reader = new BinaryAccessLogReader(file, filter.startTime, filter.endTime))
+      {
+        BinaryAccessLogRecord record;
+        while ((record = reader.readRecord()) != null)
+        {
+          if (!filter.matches(record))
+          {
+            continue;
+          }
+          if (aggregate.isPresent())
+          {
+            OperationStats operationStats = stats.get(record.getOperation());
+            if (operationStats == null)
+            {
+              operationStats = new OperationStats();
+              stats.put(record.getOperation(), operationStats);
+            }
+            operationStats.add(record);
+          }
+          else
+          {
+            out.println(isJson ? record.toJson() : record.toText(timeFormat));
+          }
+        }
+        if (reader.isTruncated())
+        {
+          printWrappedText(err, WARN_ACCESS_LOG_QUERY_TRUNCATED_FILE.get(file));
+        }
+      }
+      catch (IOException e)
+      {
+        printWrappedText(err, ERR_ACCESS_LOG_QUERY_CANNOT_READ_FILE.get(file, getExceptionMessage(e)));
+        returnCode = 1;
+      }
+    }
+
+    if (aggregate.isPresent())
+    {
+      printStats(stats, out);
+    }
+    return returnCode;
+  }
+
+  private static long parseTime(String value)
+  {
+    return GeneralizedTime.valueOf(value).getTimeInMillis();
+  }
+
+  private static void printStats(Map<String, OperationStats> stats, PrintStream out)
+  {
+    final TableBuilder table = new TableBuilder();
+    table.appendHeading(INFO_ACCESS_LOG_QUERY_LABEL_OPERATION.get());
+    table.appendHeading(INFO_ACCESS_LOG_QUERY_LABEL_COUNT.get());
+    table.appendHeading(INFO_ACCESS_LOG_QUERY_LABEL_ERRORS.get());
+    table.appendHeading(INFO_ACCESS_LOG_QUERY_LABEL_AVERAGE_ETIME.get());
+    for (int percentile : PERCENTILES)
+    {
+      table.appendHeading(INFO_ACCESS_LOG_QUERY_LABEL_PERCENTILE_ETIME.get(percentile));
+    }
+    table.appendHeading(INFO_ACCESS_LOG_QUERY_LABEL_MAX_ETIME.get());
+
+    for (Map.Entry<String, OperationStats> entry : stats.entrySet())
+    {
+      final OperationStats operationStats = entry.getValue();
+      if (operationStats.count == 0)
+      {
+        continue;
+      }
+      final LatencyHistogram.Snapshot etimes = operationStats.etimes.getSnapshot();
+
+      table.startRow();
+      table.appendCell(entry.getKey());
+      table.appendCell(operationStats.count);
+      table.appendCell(operationStats.errors);
+      table.appendCell(String.format("%.2f", (double) operationStats.totalEtime / operationStats.count));
+      for (int percentile : PERCENTILES)
+      {
+        table.appendCell(etimes.getValueAtPercentile(percentile));
+      }
+      table.appendCell(operationStats.maxEtime);
+    }
+    table.print(new TextTablePrinter(out));
+  }
+}
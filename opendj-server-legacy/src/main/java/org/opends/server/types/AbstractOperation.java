@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizableMessageBuilder;
@@ -131,10 +132,14 @@ public abstract class AbstractOperation
   private long processingStartTime;
   /** The time that processing ended on this operation in milliseconds. */
   private long processingStopTime;
+  /** The time that this operation was created in nanoseconds. */
+  private final long creationNanoTime;
   /** The time that processing started on this operation in nanoseconds. */
   private long processingStartNanoTime;
   /** The time that processing ended on this operation in nanoseconds. */
   private long processingStopNanoTime;
+  /** The timer of the processing phases, or {@code null} if they are not timed. */
+  private OperationPhaseTimer phaseTimer;
 
   /** The callbacks to be invoked once a response has been sent. */
   private List<Runnable> postResponseCallbacks;
@@ -159,6 +164,7 @@ public abstract class AbstractOperation
     this.operationID      = operationID;
     this.messageID        = messageID;
     this.useNanoTime = DirectoryServer.getCoreConfigManager().isUseNanoTime();
+    this.creationNanoTime = System.nanoTime();
     this.requestControls = requestControls != null ? requestControls : new ArrayList<Control>(0);
     authorizationEntry = clientConnection.getAuthenticationInfo().getAuthorizationEntry();
   }
@@ -575,13 +581,18 @@ public abstract class AbstractOperation
 
   /**
    * Set the time at which the processing started for this operation.
+   * <p>
+   * The timer of the processing phases is created at this point when
+   * they are timed.
    */
   public final void setProcessingStartTime()
   {
     processingStartTime = System.currentTimeMillis();
-    if(useNanoTime)
+    processingStartNanoTime = System.nanoTime();
+    if (!isInternalOperation && OperationPhaseTimer.isEnabled())
     {
-      processingStartNanoTime = System.nanoTime();
+      phaseTimer = new OperationPhaseTimer(processingStartNanoTime - creationNanoTime);
+      OperationPhaseTimer.setCurrent(phaseTimer);
     }
   }
 
@@ -595,13 +606,22 @@ public abstract class AbstractOperation
    * Set the time at which the processing stopped for this operation.
    * This will actually hold a time immediately before the response
    * was sent to the client.
+   * <p>
+   * The latency of the operations requested by clients is recorded at
+   * this point, along with the time they waited before being processed.
    */
   public final void setProcessingStopTime()
   {
     this.processingStopTime = System.currentTimeMillis();
-    if(useNanoTime)
+    this.processingStopNanoTime = System.nanoTime();
+    if (!isInternalOperation)
+    {
+      DirectoryServer.getOperationLatencyMonitor().recordOperation(getOperationType(),
+          processingStopNanoTime - processingStartNanoTime, processingStartNanoTime - creationNanoTime);
+    }
+    if (phaseTimer != null)
     {
-      this.processingStopNanoTime = System.nanoTime();
+      OperationPhaseTimer.setCurrent(null);
     }
   }
 
@@ -621,6 +641,18 @@ public abstract class AbstractOperation
     return -1;
   }
 
+  @Override
+  public final long getProcessingDuration(TimeUnit unit)
+  {
+    return unit.convert(processingStopNanoTime - processingStartNanoTime, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public final OperationPhaseTimer getPhaseTimer()
+  {
+    return phaseTimer;
+  }
+
   @Override
   public final void registerPostResponseCallback(Runnable callback)
   {
@@ -17,8 +17,11 @@ package org.opends.server.types;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -66,17 +69,18 @@ import org.forgerock.util.Reject;
  * from the root DN down to the immediate parent of the subtree to be locked. Then a <b>subtree</b>
  * write lock is acquired for the target subtree.
  * <p>
- * The lock table itself is not represented using a {@code ConcurrentHashMap} because the JDK6/7
- * APIs do not provide the ability to atomically add-and-lock or unlock-and-remove locks (this
- * capability is provided in JDK8). Instead, we provide our own implementation comprising of a fixed
- * number of buckets, a bucket being a {@code LinkedList} of {@code DNLock}s. In addition, it is
- * important to be able to efficiently iterate up and down a chain of hierarchically related locks,
- * so each lock maintains a reference to its parent lock. Modern directories tend to have a flat
- * structure so it is also important to avoid contention on "hot" parent DNs. Typically, a lock
- * attempt against a DN will involve a cache miss for the target DN and a cache hit for the parent,
- * but the parent will be the same parent for all lock requests, resulting in a lot of contention on
- * the same lock bucket. To avoid this the lock manager maintains a small-thread local cache of
- * locks, so that parent locks can be acquired using a lock-free algorithm.
+ * The lock table itself is a {@code ConcurrentHashMap}. The JDK7 APIs do not provide the ability
+ * to atomically add-and-lock or unlock-and-remove locks, so this is achieved using the reference
+ * count of the locks: a lock whose reference count has dropped to zero is dead and can never be
+ * referenced again. Threads finding a dead lock in the lock table remove it and retry, so neither
+ * lookups nor updates of the lock table ever block. In addition, it is important to be able to
+ * efficiently iterate up and down a chain of hierarchically related locks, so each lock maintains
+ * a reference to its parent lock. Modern directories tend to have a flat structure so it is also
+ * important to avoid contention on "hot" parent DNs. Typically, a lock attempt against a DN will
+ * involve a cache miss for the target DN and a cache hit for the parent, but the parent will be the
+ * same parent for all lock requests. To avoid contending on its reference count the lock manager
+ * maintains a small-thread local cache of locks, so that parent locks can be acquired without
+ * touching the lock table.
  * <p>
  * Since the thread local cache may reference locks which are not actively locked by anyone, a
  * reference counting mechanism is used in order to prevent cached locks from being removed from the
@@ -98,6 +102,12 @@ import org.forgerock.util.Reject;
  * Locks are dereferenced when they are unlocked, when they are evicted from a thread local cache,
  * and when a child lock's reference count reaches zero. A lock is completely removed from the lock
  * table once its reference count reaches zero.
+ * <p>
+ * Most lock attempts are uncontended, so they first try to grab the underlying read-write locks
+ * without blocking. When this fails the thread spins for a short while before blocking, the number
+ * of spins being adapted depending on whether spinning recently succeeded. The time spent waiting
+ * for contended locks is recorded so that contention can be diagnosed using the lock manager
+ * monitor.
  */
 @org.opends.server.types.PublicAPI(stability = org.opends.server.types.StabilityLevel.UNCOMMITTED,
     mayInstantiate = false, mayExtend = false, mayInvoke = true)
@@ -153,7 +163,7 @@ public final class LockManager
   /** Lock implementation. */
   private final class DNLockHolder
   {
-    private final AtomicInteger refCount = new AtomicInteger();
+    private final AtomicInteger refCount = new AtomicInteger(1);
     private final DNLockHolder parent;
     private final DN dn;
     private final int dnHashCode;
@@ -243,9 +253,18 @@ public final class LockManager
 
     private boolean tryLockWithTimeout(final Lock lock)
     {
+      // Fast path: the lock is not contended.
+      if (lock.tryLock())
+      {
+        return true;
+      }
+
+      final long startTime = System.nanoTime();
+      boolean isLocked = false;
       try
       {
-        return lock.tryLock(lockTimeout, lockTimeoutUnits);
+        isLocked = trySpinLock(lock) || lock.tryLock(lockTimeout, lockTimeoutUnits);
+        return isLocked;
       }
       catch (final InterruptedException e)
       {
@@ -253,25 +272,61 @@ public final class LockManager
         Thread.currentThread().interrupt();
         return false;
       }
+      finally
+      {
+        recordLockWait(System.nanoTime() - startTime, isLocked);
+      }
+    }
+
+    private boolean trySpinLock(final Lock lock)
+    {
+      final int spins = spinLimit;
+      for (int i = 0; i < spins; i++)
+      {
+        if (lock.tryLock())
+        {
+          // Spinning paid off: allow more spins next time.
+          spinLimit = Math.min(spins << 1, MAX_SPINS);
+          return true;
+        }
+      }
+      // The lock is held for too long: spin less next time.
+      spinLimit = Math.max(spins >> 1, MIN_SPINS);
+      return false;
     }
   }
 
   private static final long DEFAULT_LOCK_TIMEOUT = 9;
   private static final TimeUnit DEFAULT_LOCK_TIMEOUT_UNITS = TimeUnit.SECONDS;
-  private static final int MINIMUM_NUMBER_OF_BUCKETS = 64;
+  private static final int INITIAL_LOCK_TABLE_CAPACITY = 1024;
   private static final int THREAD_LOCAL_CACHE_SIZE = 8;
+  /** Spinning is pointless on a single processor. */
+  private static final boolean CAN_SPIN = Runtime.getRuntime().availableProcessors() > 1;
+  private static final int MIN_SPINS = CAN_SPIN ? 4 : 0;
+  private static final int MAX_SPINS = CAN_SPIN ? 256 : 0;
 
-  private final int numberOfBuckets;
-  private final LinkedList<DNLockHolder>[] lockTable;
+  private final ConcurrentMap<DN, DNLockHolder> lockTable;
   private final long lockTimeout;
   private final TimeUnit lockTimeoutUnits;
 
+  /** The number of spins attempted before blocking, racy updates are harmless. */
+  private volatile int spinLimit = MIN_SPINS;
+
+  /** The number of lock attempts which could not immediately acquire a lock. */
+  private final AtomicLong contendedLockAttempts = new AtomicLong();
+  /** The number of lock attempts which timed out. */
+  private final AtomicLong lockTimeouts = new AtomicLong();
+  /** The total time spent waiting for contended locks, in nanoseconds. */
+  private final AtomicLong totalLockWaitTime = new AtomicLong();
+  /** The longest time spent waiting for a contended lock, in nanoseconds. */
+  private final AtomicLong maxLockWaitTime = new AtomicLong();
+
   /** Avoid sub-classing in order to workaround class leaks in app servers. */
   private final ThreadLocal<LinkedList<DNLockHolder>> threadLocalCache = new ThreadLocal<>();
 
   /**
-   * Creates a new lock manager with a lock timeout of 9 seconds and an automatically chosen number
-   * of lock table buckets based on the number of processors.
+   * Creates a new lock manager with a lock timeout of 9 seconds and an automatically chosen lock
+   * table concurrency level based on the number of processors.
    */
   public LockManager()
   {
@@ -279,8 +334,8 @@ public final class LockManager
   }
 
   /**
-   * Creates a new lock manager with the specified lock timeout and an automatically chosen number
-   * of lock table buckets based on the number of processors.
+   * Creates a new lock manager with the specified lock timeout and an automatically chosen lock
+   * table concurrency level based on the number of processors.
    *
    * @param lockTimeout
    *          The lock timeout.
@@ -299,41 +354,28 @@ public final class LockManager
    *          The lock timeout.
    * @param lockTimeoutUnit
    *          The lock timeout units.
-   * @param numberOfBuckets
-   *          The number of buckets to use in the lock table. The minimum number of buckets is 64.
+   * @param concurrencyLevel
+   *          The estimated number of threads concurrently updating the lock table.
    */
-  @SuppressWarnings("unchecked")
-  private LockManager(final long lockTimeout, final TimeUnit lockTimeoutUnit, final int numberOfBuckets)
+  private LockManager(final long lockTimeout, final TimeUnit lockTimeoutUnit, final int concurrencyLevel)
   {
     Reject.ifFalse(lockTimeout >= 0, "lockTimeout must be a non-negative integer");
     Reject.ifNull(lockTimeoutUnit, "lockTimeoutUnit must be non-null");
-    Reject.ifFalse(numberOfBuckets > 0, "numberOfBuckets must be a positive integer");
+    Reject.ifFalse(concurrencyLevel > 0, "concurrencyLevel must be a positive integer");
 
     this.lockTimeout = lockTimeout;
     this.lockTimeoutUnits = lockTimeoutUnit;
-    this.numberOfBuckets = getNumberOfBuckets(numberOfBuckets);
-    this.lockTable = new LinkedList[this.numberOfBuckets];
-    for (int i = 0; i < this.numberOfBuckets; i++)
-    {
-      this.lockTable[i] = new LinkedList<>();
-    }
+    this.lockTable = new ConcurrentHashMap<>(INITIAL_LOCK_TABLE_CAPACITY, 0.75f, concurrencyLevel);
   }
 
   @Override
   public String toString()
   {
     final StringBuilder builder = new StringBuilder();
-    for (int i = 0; i < numberOfBuckets; i++)
+    for (final DNLockHolder lock : lockTable.values())
     {
-      final LinkedList<DNLockHolder> bucket = lockTable[i];
-      synchronized (bucket)
-      {
-        for (final DNLockHolder lock : bucket)
-        {
-          builder.append(lock);
-          builder.append('\n');
-        }
-      }
+      builder.append(lock);
+      builder.append('\n');
     }
     return builder.toString();
   }
@@ -378,22 +420,82 @@ public final class LockManager
     return acquireLockFromCache(subtree).tryWriteLockSubtree();
   }
 
-  /** For unit testing. */
-  int getLockTableRefCountFor(final DN dn)
+  /**
+   * Returns the number of locks currently held in the lock table, whether they are locked or only
+   * cached by some threads.
+   *
+   * @return The number of locks currently held in the lock table.
+   */
+  public int getLockTableSize()
   {
-    final int dnHashCode = dn.hashCode();
-    final LinkedList<DNLockHolder> bucket = getBucket(dnHashCode);
-    synchronized (bucket)
+    return lockTable.size();
+  }
+
+  /**
+   * Returns the number of lock attempts which could not immediately acquire a lock because it was
+   * held by another thread.
+   *
+   * @return The number of contended lock attempts.
+   */
+  public long getContendedLockAttempts()
+  {
+    return contendedLockAttempts.get();
+  }
+
+  /**
+   * Returns the number of lock attempts which failed to acquire a lock within the lock timeout.
+   *
+   * @return The number of lock attempts which timed out.
+   */
+  public long getLockTimeouts()
+  {
+    return lockTimeouts.get();
+  }
+
+  /**
+   * Returns the total time spent by threads waiting for contended locks.
+   *
+   * @param unit
+   *          The unit of the returned time.
+   * @return The total time spent waiting for contended locks.
+   */
+  public long getTotalLockWaitTime(final TimeUnit unit)
+  {
+    return unit.convert(totalLockWaitTime.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the longest time spent by a thread waiting for a contended lock.
+   *
+   * @param unit
+   *          The unit of the returned time.
+   * @return The longest time spent waiting for a contended lock.
+   */
+  public long getMaxLockWaitTime(final TimeUnit unit)
+  {
+    return unit.convert(maxLockWaitTime.get(), TimeUnit.NANOSECONDS);
+  }
+
+  private void recordLockWait(final long waitTime, final boolean isLocked)
+  {
+    contendedLockAttempts.incrementAndGet();
+    if (!isLocked)
     {
-      for (final DNLockHolder lock : bucket)
-      {
-        if (lock.dnHashCode == dnHashCode && lock.dn.equals(dn))
-        {
-          return lock.refCount.get();
-        }
-      }
-      return -1;
+      lockTimeouts.incrementAndGet();
     }
+    totalLockWaitTime.addAndGet(waitTime);
+    long maxWaitTime = maxLockWaitTime.get();
+    while (waitTime > maxWaitTime && !maxLockWaitTime.compareAndSet(maxWaitTime, waitTime))
+    {
+      maxWaitTime = maxLockWaitTime.get();
+    }
+  }
+
+  /** For unit testing. */
+  int getLockTableRefCountFor(final DN dn)
+  {
+    final DNLockHolder lock = lockTable.get(dn);
+    return lock != null ? lock.refCount.get() : -1;
   }
 
   /** For unit testing. */
@@ -448,29 +550,35 @@ public final class LockManager
   {
     /*
      * The lock doesn't exist yet so we'll have to create a new one referencing its parent lock. The
-     * parent lock may not yet exist in the lock table either so acquire it before locking the
-     * bucket in order to avoid deadlocks resulting from reentrant bucket locks. Note that we
-     * pre-emptively fetch the parent lock because experiments show that the requested child lock is
-     * almost never in the lock-table. Specifically, this method is only called if we are already on
-     * the slow path due to a cache miss in the thread-local cache.
+     * parent lock may not yet exist in the lock table either so acquire it before creating the new
+     * lock. Note that we pre-emptively fetch the parent lock because experiments show that the
+     * requested child lock is almost never in the lock-table. Specifically, this method is only
+     * called if we are already on the slow path due to a cache miss in the thread-local cache.
      */
     final DN parentDN = dn.parent();
     final DNLockHolder parentLock = parentDN != null ? acquireLockFromCache0(parentDN, cache) : null;
     boolean parentLockWasUsed = false;
     try
     {
-      final LinkedList<DNLockHolder> bucket = getBucket(dnHashCode);
-      synchronized (bucket)
+      while (true)
       {
-        DNLockHolder lock = removeLock(bucket, dn, dnHashCode);
+        DNLockHolder lock = lockTable.get(dn);
         if (lock == null)
         {
-          lock = new DNLockHolder(parentLock, dn, dnHashCode);
-          parentLockWasUsed = true;
+          final DNLockHolder newLock = new DNLockHolder(parentLock, dn, dnHashCode);
+          lock = lockTable.putIfAbsent(dn, newLock);
+          if (lock == null)
+          {
+            parentLockWasUsed = true;
+            return newLock;
+          }
+        }
+        if (tryReference(lock))
+        {
+          return lock;
         }
-        bucket.addFirst(lock); // optimize for LRU
-        lock.refCount.incrementAndGet();
-        return lock;
+        // The lock is dead and is being removed by another thread: help it and retry.
+        lockTable.remove(dn, lock);
       }
     }
     finally
@@ -482,51 +590,34 @@ public final class LockManager
     }
   }
 
-  private void dereference(final DNLockHolder lock)
+  /** Bumps the reference count of the provided lock, unless it is already dead. */
+  private boolean tryReference(final DNLockHolder lock)
   {
-    if (lock.refCount.decrementAndGet() <= 0)
+    while (true)
     {
-      final LinkedList<DNLockHolder> bucket = getBucket(lock.dnHashCode);
-      boolean lockWasRemoved = false;
-      synchronized (bucket)
+      final int refCount = lock.refCount.get();
+      if (refCount <= 0)
       {
-        // Double check: another thread could have acquired the lock since we decremented it to zero.
-        if (lock.refCount.get() <= 0)
-        {
-          removeLock(bucket, lock.dn, lock.dnHashCode);
-          lockWasRemoved = true;
-        }
+        return false;
       }
-
-      /*
-       * Dereference the parent outside of the bucket lock to avoid potential deadlocks due to
-       * reentrant bucket locks.
-       */
-      if (lockWasRemoved && lock.parent != null)
+      if (lock.refCount.compareAndSet(refCount, refCount + 1))
       {
-        dereference(lock.parent);
+        return true;
       }
     }
   }
 
-  private LinkedList<DNLockHolder> getBucket(final int dnHashCode)
-  {
-    return lockTable[dnHashCode & numberOfBuckets - 1];
-  }
-
-  /**
-   * Ensure that the number of buckets is a power of 2 in order to make it easier to map hash codes
-   * to bucket indexes.
-   */
-  private int getNumberOfBuckets(final int buckets)
+  private void dereference(final DNLockHolder lock)
   {
-    final int roundedNumberOfBuckets = Math.min(buckets, MINIMUM_NUMBER_OF_BUCKETS);
-    int powerOf2 = 1;
-    while (powerOf2 < roundedNumberOfBuckets)
+    if (lock.refCount.decrementAndGet() == 0)
     {
-      powerOf2 <<= 1;
+      // The lock is now dead: nobody can reference it anymore, so it can be safely removed.
+      lockTable.remove(lock.dn, lock);
+      if (lock.parent != null)
+      {
+        dereference(lock.parent);
+      }
     }
-    return powerOf2;
   }
 
   private DNLockHolder removeLock(final LinkedList<DNLockHolder> lockList, final DN dn, final int dnHashCode)
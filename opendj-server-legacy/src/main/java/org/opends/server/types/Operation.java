@@ -18,6 +18,7 @@ package org.opends.server.types;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizableMessageBuilder;
@@ -555,6 +556,28 @@ public interface Operation extends Runnable
    */
   long getProcessingNanoTime();
 
+  /**
+   * Retrieves the length of time that the server spent processing this
+   * operation, whether or not the server is configured to use nanosecond
+   * resolution for the processing times. This should not be called until
+   * after the server has sent the response to the client.
+   *
+   * @param  unit  The unit of the returned length of time.
+   *
+   * @return  The length of time that the server spent processing this
+   *          operation.
+   */
+  long getProcessingDuration(TimeUnit unit);
+
+  /**
+   * Retrieves the timer measuring the time spent by this operation in
+   * each processing phase.
+   *
+   * @return  The phase timer of this operation, or {@code null} if the
+   *          operation phases are not timed.
+   */
+  OperationPhaseTimer getPhaseTimer();
+
   /**
    * Indicates that processing on this operation has completed
    * successfully and that the client should perform any associated
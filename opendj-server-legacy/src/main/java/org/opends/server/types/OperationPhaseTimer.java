@@ -0,0 +1,283 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.types;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time spent by an operation in each of its processing phases.
+ * <p>
+ * A timer is only created for the operations requested by clients when the phase timing is enabled
+ * in the global configuration. The static methods of this class accept operations without a timer
+ * and then do nothing, so that measuring a phase neither allocates nor reads the clock when the
+ * phase timing is disabled.
+ * <p>
+ * The phases may be nested, for instance the backend reads performed while evaluating the access
+ * controls. The time recorded for a phase is exclusive: it does not include the time recorded for
+ * the phases nested in it.
+ * <p>
+ * A timer is updated without synchronization, by the thread which processes its operation. The
+ * phases measured from other threads, e.g. while sending persistent search notifications, are
+ * ignored.
+ */
+public final class OperationPhaseTimer
+{
+  /** The processing phases of an operation. */
+  public enum Phase
+  {
+    /** The time waited in the work queue before the processing started. */
+    WORK_QUEUE_WAIT("queue"),
+    /** The time spent in the pre-operation plugins. */
+    PRE_OPERATION_PLUGINS("preOp"),
+    /** The time spent evaluating the access controls. */
+    ACCESS_CONTROL("aci"),
+    /** The time spent reading entries from the backend. */
+    BACKEND_READ("read"),
+    /** The time spent writing entries to the backend. */
+    BACKEND_WRITE("write"),
+    /** The time spent encoding the results sent to the client. */
+    RESULT_ENCODING("encode"),
+    /** The time spent writing the results to the client socket. */
+    SOCKET_WRITE("socket");
+
+    private final String label;
+
+    private Phase(String label)
+    {
+      this.label = label;
+    }
+
+    /**
+     * Returns the short name of this phase, used in the access log records.
+     *
+     * @return The short name of this phase.
+     */
+    public String getLabel()
+    {
+      return label;
+    }
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  /** The timer of the operation being processed by the current thread, if any. */
+  private static final ThreadLocal<OperationPhaseTimer> CURRENT = new ThreadLocal<>();
+  /** Whether the phase timing is enabled in the global configuration. */
+  private static volatile boolean enabled;
+
+  /** The thread processing the operation. */
+  private final Thread owner;
+  /** The time recorded for each phase, in nanoseconds. */
+  private final long[] durations = new long[PHASES.length];
+  /** The sum of the recorded durations, used to exclude the nested phases from their enclosing phase. */
+  private long totalRecorded;
+  private int entryCacheHits;
+  private int entryCacheMisses;
+
+  /**
+   * Creates a new timer for an operation processed by the current thread.
+   *
+   * @param workQueueWaitNanos
+   *          The time the operation waited in the work queue, in nanoseconds.
+   */
+  public OperationPhaseTimer(long workQueueWaitNanos)
+  {
+    this.owner = Thread.currentThread();
+    durations[Phase.WORK_QUEUE_WAIT.ordinal()] = workQueueWaitNanos;
+  }
+
+  /**
+   * Starts measuring a phase of the provided operation.
+   *
+   * @param operation
+   *          The operation, which may be {@code null}.
+   * @return The token to provide to {@link #stop(Operation, Phase, long)}.
+   */
+  public static long start(Operation operation)
+  {
+    final OperationPhaseTimer timer = operation != null ? operation.getPhaseTimer() : null;
+    return timer != null ? timer.start() : 0;
+  }
+
+  /**
+   * Stops measuring a phase of the provided operation, and records its duration.
+   *
+   * @param operation
+   *          The operation, which may be {@code null}.
+   * @param phase
+   *          The phase being measured.
+   * @param token
+   *          The token returned by {@link #start(Operation)}.
+   */
+  public static void stop(Operation operation, Phase phase, long token)
+  {
+    final OperationPhaseTimer timer = operation != null ? operation.getPhaseTimer() : null;
+    if (timer != null)
+    {
+      timer.stop(phase, token);
+    }
+  }
+
+  private long start()
+  {
+    return Thread.currentThread() == owner ? System.nanoTime() - totalRecorded : 0;
+  }
+
+  private void stop(Phase phase, long token)
+  {
+    if (Thread.currentThread() == owner)
+    {
+      final long exclusive = System.nanoTime() - totalRecorded - token;
+      if (exclusive > 0)
+      {
+        durations[phase.ordinal()] += exclusive;
+        totalRecorded += exclusive;
+      }
+    }
+  }
+
+  /**
+   * Returns whether the processing phases of the operations requested by clients are timed.
+   *
+   * @return {@code true} if the processing phases of the operations are timed
+   */
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Sets whether the processing phases of the operations requested by clients are timed. Only the
+   * operations starting after this call are affected.
+   *
+   * @param enabled
+   *          {@code true} if the processing phases of the operations must be timed
+   */
+  public static void setEnabled(boolean enabled)
+  {
+    OperationPhaseTimer.enabled = enabled;
+  }
+
+  /**
+   * Makes the provided timer the timer of the operation processed by the current thread, so that
+   * the code not aware of the operation can record entry cache hits and misses.
+   *
+   * @param timer
+   *          The timer, or {@code null} once the processing of the operation is complete.
+   */
+  public static void setCurrent(OperationPhaseTimer timer)
+  {
+    CURRENT.set(timer);
+  }
+
+  /**
+   * Records entry cache lookups for the operation processed by the current thread, if any.
+   *
+   * @param hits
+   *          The number of entries found in the entry cache.
+   * @param misses
+   *          The number of entries looked up in the entry cache but not found.
+   */
+  public static void recordEntryCacheLookups(int hits, int misses)
+  {
+    if (!enabled)
+    {
+      return;
+    }
+    final OperationPhaseTimer timer = CURRENT.get();
+    if (timer != null)
+    {
+      timer.entryCacheHits += hits;
+      timer.entryCacheMisses += misses;
+    }
+  }
+
+  /**
+   * Returns the time recorded for the provided phase.
+   *
+   * @param phase
+   *          The phase.
+   * @param unit
+   *          The unit of the returned duration.
+   * @return The time recorded for the provided phase.
+   */
+  public long getDuration(Phase phase, TimeUnit unit)
+  {
+    return unit.convert(durations[phase.ordinal()], TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the number of entries found in the entry cache.
+   *
+   * @return The number of entries found in the entry cache.
+   */
+  public int getEntryCacheHits()
+  {
+    return entryCacheHits;
+  }
+
+  /**
+   * Returns the number of entries looked up in the entry cache but not found.
+   *
+   * @return The number of entries looked up in the entry cache but not found.
+   */
+  public int getEntryCacheMisses()
+  {
+    return entryCacheMisses;
+  }
+
+  /**
+   * Appends the phases with a recorded time, in microseconds, and the entry cache hits and misses
+   * to the provided buffer, e.g. {@code queue=12 aci=40 read=310 cacheHits=1 cacheMisses=2}.
+   *
+   * @param buffer
+   *          The buffer to which the phases are appended.
+   */
+  public void toString(StringBuilder buffer)
+  {
+    final int length = buffer.length();
+    for (Phase phase : PHASES)
+    {
+      final long micros = getDuration(phase, TimeUnit.MICROSECONDS);
+      if (micros > 0)
+      {
+        appendSeparator(buffer, length);
+        buffer.append(phase.getLabel()).append('=').append(micros);
+      }
+    }
+    if (entryCacheHits > 0 || entryCacheMisses > 0)
+    {
+      appendSeparator(buffer, length);
+      buffer.append("cacheHits=").append(entryCacheHits).append(" cacheMisses=").append(entryCacheMisses);
+    }
+  }
+
+  private static void appendSeparator(StringBuilder buffer, int length)
+  {
+    if (buffer.length() > length)
+    {
+      buffer.append(' ');
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder buffer = new StringBuilder();
+    toString(buffer);
+    return buffer.toString();
+  }
+}
@@ -47,6 +47,7 @@ import org.opends.server.api.ClientConnection;
 import org.opends.server.api.PasswordStorageScheme;
 import org.opends.server.api.PasswordValidator;
 import org.opends.server.api.SynchronizationProvider;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.controls.LDAPAssertionRequestControl;
 import org.opends.server.controls.LDAPPostReadRequestControl;
 import org.opends.server.controls.PasswordPolicyErrorType;
@@ -57,7 +58,6 @@ import org.opends.server.core.AddOperationWrapper;
 import org.opends.server.core.BackendConfigManager;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.PasswordPolicy;
-import org.opends.server.core.PersistentSearch;
 import org.opends.server.core.ServerContext;
 import org.opends.server.schema.AuthPasswordSyntax;
 import org.opends.server.schema.UserPasswordSyntax;
@@ -69,6 +69,8 @@ import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LockManager.DNLock;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.Privilege;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.operation.PostOperationAddOperation;
@@ -193,10 +195,7 @@ public class LocalBackendAddOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
-          {
-            psearch.processAdd(entry);
-          }
+          backend.getPersistentSearchDispatcher().processAdd(entry);
         }
       });
     }
@@ -316,7 +315,15 @@ public class LocalBackendAddOperation
       Entry parentEntry = null;
       if (parentDN != null)
       {
-        parentEntry = DirectoryServer.getEntry(parentDN);
+        final long readToken = OperationPhaseTimer.start(this);
+        try
+        {
+          parentEntry = DirectoryServer.getEntry(parentDN);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+        }
 
         if (parentEntry == null)
         {
@@ -429,7 +436,17 @@ public class LocalBackendAddOperation
       if (!isSynchronizationOperation())
       {
         executePostOpPlugins.set(true);
-        if (!processOperationResult(this, getPluginConfigManager().invokePreOperationAddPlugins(this)))
+        final PluginResult.PreOperation preOpResult;
+        final long preOpToken = OperationPhaseTimer.start(this);
+        try
+        {
+          preOpResult = getPluginConfigManager().invokePreOperationAddPlugins(this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+        }
+        if (!processOperationResult(this, preOpResult))
         {
           return;
         }
@@ -462,7 +479,15 @@ public class LocalBackendAddOperation
           }
         }
 
-        backend.addEntry(entry, this);
+        final long writeToken = OperationPhaseTimer.start(this);
+        try
+        {
+          backend.addEntry(entry, this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_WRITE, writeToken);
+        }
       }
 
       LocalBackendWorkflowElement.addPostReadResponse(this, postReadRequest,
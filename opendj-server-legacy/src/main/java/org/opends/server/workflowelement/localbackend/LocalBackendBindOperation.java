@@ -32,9 +32,11 @@ import org.opends.server.api.AuthenticationPolicyState;
 import org.opends.server.api.LocalBackend;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.SASLMechanismHandler;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.controls.*;
 import org.opends.server.core.*;
 import org.opends.server.types.*;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.operation.PostOperationBindOperation;
 import org.opends.server.types.operation.PostResponseBindOperation;
 import org.opends.server.types.operation.PreOperationBindOperation;
@@ -369,7 +371,15 @@ public class LocalBackendBindOperation
     Entry userEntry;
     try
     {
-      userEntry = backend.getEntry(bindDN);
+      final long readToken = OperationPhaseTimer.start(this);
+      try
+      {
+        userEntry = backend.getEntry(bindDN);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+      }
     }
     catch (DirectoryException de)
     {
@@ -732,7 +742,17 @@ public class LocalBackendBindOperation
   private boolean invokePreOpPlugins()
   {
     executePostOpPlugins = true;
-    return processOperationResult(this, pluginConfigManager.invokePreOperationBindPlugins(this));
+    final PluginResult.PreOperation preOpResult;
+    final long preOpToken = OperationPhaseTimer.start(this);
+    try
+    {
+      preOpResult = pluginConfigManager.invokePreOperationBindPlugins(this);
+    }
+    finally
+    {
+      OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+    }
+    return processOperationResult(this, preOpResult);
   }
 
   /**
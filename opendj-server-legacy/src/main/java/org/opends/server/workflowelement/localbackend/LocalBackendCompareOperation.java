@@ -35,6 +35,7 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.api.AccessControlHandler;
 import org.opends.server.api.LocalBackend;
 import org.opends.server.api.ClientConnection;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.backends.ConfigurationBackend;
 import org.opends.server.controls.LDAPAssertionRequestControl;
 import org.opends.server.core.AccessControlConfigManager;
@@ -46,6 +47,8 @@ import org.opends.server.types.CanceledOperationException;
 import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.Privilege;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.operation.PostOperationCompareOperation;
@@ -169,7 +172,15 @@ public class LocalBackendCompareOperation
       // Get the entry. If it does not exist, then fail.
       try
       {
-        entry = DirectoryServer.getEntry(entryDN);
+        final long readToken = OperationPhaseTimer.start(this);
+        try
+        {
+          entry = DirectoryServer.getEntry(entryDN);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+        }
         if (entry == null)
         {
           setResultCode(ResultCode.NO_SUCH_OBJECT);
@@ -226,7 +237,17 @@ public class LocalBackendCompareOperation
 
       // Invoke the pre-operation compare plugins.
       executePostOpPlugins.set(true);
-      if (!processOperationResult(this, getPluginConfigManager().invokePreOperationComparePlugins(this)))
+      final PluginResult.PreOperation preOpResult;
+      final long preOpToken = OperationPhaseTimer.start(this);
+      try
+      {
+        preOpResult = getPluginConfigManager().invokePreOperationComparePlugins(this);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+      }
+      if (!processOperationResult(this, preOpResult))
       {
         return;
       }
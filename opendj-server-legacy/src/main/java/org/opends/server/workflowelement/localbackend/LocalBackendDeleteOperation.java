@@ -25,6 +25,7 @@ import org.opends.server.api.AccessControlHandler;
 import org.opends.server.api.LocalBackend;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.SynchronizationProvider;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.controls.LDAPAssertionRequestControl;
 import org.opends.server.controls.LDAPPreReadRequestControl;
 import org.opends.server.core.AccessControlConfigManager;
@@ -32,13 +33,14 @@ import org.opends.server.core.BackendConfigManager;
 import org.opends.server.core.DeleteOperation;
 import org.opends.server.core.DeleteOperationWrapper;
 import org.opends.server.core.DirectoryServer;
-import org.opends.server.core.PersistentSearch;
 import org.opends.server.types.CanceledOperationException;
 import org.opends.server.types.Control;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LockManager.DNLock;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SynchronizationProviderResult;
 import org.opends.server.types.operation.PostOperationDeleteOperation;
@@ -166,10 +168,7 @@ public class LocalBackendDeleteOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
-          {
-            psearch.processDelete(entry);
-          }
+          backend.getPersistentSearchDispatcher().processDelete(entry);
         }
       });
     }
@@ -209,7 +208,15 @@ public class LocalBackendDeleteOperation
       }
 
       // Get the entry to delete. If it doesn't exist, then fail.
-      entry = backend.getEntry(entryDN);
+      final long readToken = OperationPhaseTimer.start(this);
+      try
+      {
+        entry = backend.getEntry(entryDN);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+      }
       if (entry == null)
       {
         setResultCode(ResultCode.NO_SUCH_OBJECT);
@@ -261,7 +268,17 @@ public class LocalBackendDeleteOperation
       if (!isSynchronizationOperation())
       {
         executePostOpPlugins.set(true);
-        if (!processOperationResult(this, getPluginConfigManager().invokePreOperationDeletePlugins(this)))
+        final PluginResult.PreOperation preOpResult;
+        final long preOpToken = OperationPhaseTimer.start(this);
+        try
+        {
+          preOpResult = getPluginConfigManager().invokePreOperationDeletePlugins(this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+        }
+        if (!processOperationResult(this, preOpResult))
         {
           return;
         }
@@ -295,7 +312,15 @@ public class LocalBackendDeleteOperation
         {
           return;
         }
-        backend.deleteEntry(entryDN, this);
+        final long writeToken = OperationPhaseTimer.start(this);
+        try
+        {
+          backend.deleteEntry(entryDN, this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_WRITE, writeToken);
+        }
       }
 
       LocalBackendWorkflowElement.addPreReadResponse(this, preReadRequest, entry);
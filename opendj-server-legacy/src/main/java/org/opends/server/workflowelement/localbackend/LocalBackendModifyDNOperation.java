@@ -33,6 +33,7 @@ import org.opends.server.api.AccessControlHandler;
 import org.opends.server.api.LocalBackend;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.SynchronizationProvider;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.controls.LDAPAssertionRequestControl;
 import org.opends.server.controls.LDAPPostReadRequestControl;
 import org.opends.server.controls.LDAPPreReadRequestControl;
@@ -41,7 +42,6 @@ import org.opends.server.core.BackendConfigManager;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.ModifyDNOperation;
 import org.opends.server.core.ModifyDNOperationWrapper;
-import org.opends.server.core.PersistentSearch;
 import org.opends.server.types.Attribute;
 import org.opends.server.types.Attributes;
 import org.opends.server.types.CanceledOperationException;
@@ -52,6 +52,8 @@ import org.opends.server.types.Entry;
 import org.opends.server.types.LockManager.DNLock;
 import org.opends.server.types.Modification;
 import org.forgerock.opendj.ldap.RDN;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.operation.PostOperationModifyDNOperation;
 import org.opends.server.types.operation.PostResponseModifyDNOperation;
@@ -206,10 +208,7 @@ public class LocalBackendModifyDNOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
-          {
-            psearch.processModifyDN(newEntry, currentEntry.getName());
-          }
+          backend.getPersistentSearchDispatcher().processModifyDN(newEntry, currentEntry.getName());
         }
       });
     }
@@ -328,7 +327,15 @@ public class LocalBackendModifyDNOperation
 
       // Get the current entry from the appropriate backend. If it doesn't
       // exist, then fail.
-      currentEntry = currentBackend.getEntry(entryDN);
+      final long readToken = OperationPhaseTimer.start(this);
+      try
+      {
+        currentEntry = currentBackend.getEntry(entryDN);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+      }
 
       if (getOriginalEntry() == null)
       {
@@ -406,7 +413,17 @@ public class LocalBackendModifyDNOperation
         int modCount = modifications.size();
 
         executePostOpPlugins.set(true);
-        if (!processOperationResult(this, getPluginConfigManager().invokePreOperationModifyDNPlugins(this)))
+        final PluginResult.PreOperation preOpResult;
+        final long preOpToken = OperationPhaseTimer.start(this);
+        try
+        {
+          preOpResult = getPluginConfigManager().invokePreOperationModifyDNPlugins(this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+        }
+        if (!processOperationResult(this, preOpResult))
         {
           return;
         }
@@ -437,7 +454,15 @@ public class LocalBackendModifyDNOperation
         {
           return;
         }
-        currentBackend.renameEntry(entryDN, newEntry, this);
+        final long writeToken = OperationPhaseTimer.start(this);
+        try
+        {
+          currentBackend.renameEntry(entryDN, newEntry, this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_WRITE, writeToken);
+        }
       }
 
       // Attach the pre-read and/or post-read controls to the response if
@@ -44,6 +44,7 @@ import org.opends.server.api.LocalBackend;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.PasswordStorageScheme;
 import org.opends.server.api.SynchronizationProvider;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.api.plugin.PluginResult.PostOperation;
 import org.opends.server.controls.LDAPAssertionRequestControl;
 import org.opends.server.controls.LDAPPostReadRequestControl;
@@ -56,7 +57,6 @@ import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.ModifyOperationWrapper;
 import org.opends.server.core.PasswordPolicy;
 import org.opends.server.core.PasswordPolicyState;
-import org.opends.server.core.PersistentSearch;
 import org.opends.server.schema.AuthPasswordSyntax;
 import org.opends.server.schema.UserPasswordSyntax;
 import org.opends.server.types.AcceptRejectWarn;
@@ -71,6 +71,8 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LockManager.DNLock;
 import org.opends.server.types.Modification;
+import org.opends.server.types.OperationPhaseTimer;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.Privilege;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SynchronizationProviderResult;
@@ -300,10 +302,7 @@ public class LocalBackendModifyOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
-          {
-            psearch.processModify(modifiedEntry, currentEntry);
-          }
+          backend.getPersistentSearchDispatcher().processModify(modifiedEntry, currentEntry);
         }
       });
     }
@@ -314,7 +313,17 @@ public class LocalBackendModifyOperation
     if (!isSynchronizationOperation())
     {
       preOperationPluginsExecuted = true;
-      if (!processOperationResult(this, getPluginConfigManager().invokePreOperationModifyPlugins(this)))
+      final PluginResult.PreOperation preOpResult;
+      final long preOpToken = OperationPhaseTimer.start(this);
+      try
+      {
+        preOpResult = getPluginConfigManager().invokePreOperationModifyPlugins(this);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+      }
+      if (!processOperationResult(this, preOpResult))
       {
         return false;
       }
@@ -385,7 +394,15 @@ public class LocalBackendModifyOperation
 
       checkIfCanceled(false);
 
-      currentEntry = backend.getEntry(entryDN);
+      final long readToken = OperationPhaseTimer.start(this);
+      try
+      {
+        currentEntry = backend.getEntry(entryDN);
+      }
+      finally
+      {
+        OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+      }
       if (currentEntry == null)
       {
         setResultCode(ResultCode.NO_SUCH_OBJECT);
@@ -489,7 +506,15 @@ public class LocalBackendModifyOperation
           return;
         }
 
-        backend.replaceEntry(currentEntry, modifiedEntry, this);
+        final long writeToken = OperationPhaseTimer.start(this);
+        try
+        {
+          backend.replaceEntry(currentEntry, modifiedEntry, this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_WRITE, writeToken);
+        }
 
         if (isAuthnManagedLocally())
         {
@@ -24,9 +24,11 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.api.AccessControlHandler;
 import org.opends.server.api.LocalBackend;
 import org.opends.server.api.ClientConnection;
+import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.controls.*;
 import org.opends.server.core.*;
 import org.opends.server.types.*;
+import org.opends.server.types.OperationPhaseTimer.Phase;
 import org.opends.server.types.operation.PostOperationSearchOperation;
 import org.opends.server.types.operation.PreOperationSearchOperation;
 import org.opends.server.types.operation.SearchEntrySearchOperation;
@@ -170,7 +172,17 @@ public class LocalBackendSearchOperation
 
     // Invoke the pre-operation search plugins.
     executePostOpPlugins.set(true);
-    if (!processOperationResult(this, getPluginConfigManager().invokePreOperationSearchPlugins(this)))
+    final PluginResult.PreOperation preOpResult;
+    final long preOpToken = OperationPhaseTimer.start(this);
+    try
+    {
+      preOpResult = getPluginConfigManager().invokePreOperationSearchPlugins(this);
+    }
+    finally
+    {
+      OperationPhaseTimer.stop(this, Phase.PRE_OPERATION_PLUGINS, preOpToken);
+    }
+    if (!processOperationResult(this, preOpResult))
     {
       return;
     }
@@ -221,7 +233,15 @@ public class LocalBackendSearchOperation
       if (processSearchNow)
       {
         // Process the search in the backend and all its subordinates.
-        backend.search(this);
+        final long readToken = OperationPhaseTimer.start(this);
+        try
+        {
+          backend.search(this);
+        }
+        finally
+        {
+          OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+        }
       }
     }
     catch (DirectoryException de)
@@ -299,7 +319,15 @@ public class LocalBackendSearchOperation
         Entry entry;
         try
         {
-          entry = DirectoryServer.getEntry(baseDN);
+          final long readToken = OperationPhaseTimer.start(this);
+          try
+          {
+            entry = DirectoryServer.getEntry(baseDN);
+          }
+          finally
+          {
+            OperationPhaseTimer.stop(this, Phase.BACKEND_READ, readToken);
+          }
         }
         catch (DirectoryException de)
         {
@@ -44,6 +44,7 @@ import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.ModifyDNOperation;
 import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.SearchOperation;
+import org.opends.server.monitors.LocalBackendMonitor;
 import org.opends.server.types.AbstractOperation;
 import org.opends.server.types.AdditionalLogItem;
 import org.opends.server.types.CanceledOperationException;
@@ -740,7 +741,19 @@ public class LocalBackendWorkflowElement
       return false;
     }
 
-    executeOperation(operation, backend);
+    final long startNanoTime = System.nanoTime();
+    try
+    {
+      executeOperation(operation, backend);
+    }
+    finally
+    {
+      final LocalBackendMonitor backendMonitor = backend.getBackendMonitor();
+      if (backendMonitor != null)
+      {
+        backendMonitor.updateOperationLatency(operation.getOperationType(), System.nanoTime() - startNanoTime);
+      }
+    }
 
     // For subtree search operation we need to go through the subordinate nodes.
     if (operation.getOperationType() == OperationType.SEARCH)
@@ -61,4 +61,24 @@ public class AciBodyTest extends DirectoryServerTestCase
     assertThat(aciBody.toString()).isEqualTo(aci);
     assertThat(aciBody.getPermBindRulePairs()).hasSize(1);
   }
+
+  @DataProvider(name = "bindRules")
+  public Object[][] getBindRules()
+  {
+    return new Object[][] {
+      { "userdn=\"ldap:///anyone\"", false },
+      { "userdn=\"ldap:///uid=*,ou=people,o=test\"", false },
+      { "groupdn=\"ldap:///cn=group,o=test\"", false },
+      { "userdn=\"ldap:///self\"", true },
+      { "userdn=\"ldap:///cn=admin,o=test || ldap:///parent\"", true },
+      { "userattr=\"manager#USERDN\"", true },
+      { "ip=\"127.0.0.1\" and userdn=\"ldap:///self\"", true },
+      { "ip=\"127.0.0.1\" or (authmethod=\"simple\" and ssf>=\"128\")", false }, };
+  }
+
+  @Test(dataProvider = "bindRules")
+  public void bindRuleDependsOnResource(String bindRule, boolean dependsOnResource) throws Exception
+  {
+    assertThat(BindRule.decode(bindRule).dependsOnResource()).isEqualTo(dependsOnResource);
+  }
 }
@@ -23,9 +23,11 @@ import static org.opends.server.backends.pluggable.EntryIDSet.*;
 import static org.opends.server.backends.pluggable.State.IndexFlag.*;
 import static org.opends.server.backends.pluggable.Utils.assertIdsEquals;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -135,6 +137,17 @@ public class DefaultIndexTest extends DirectoryServerTestCase
       return getTree(treeName).get(key);
     }
 
+    @Override
+    public List<ByteString> multiRead(TreeName treeName, List<? extends ByteSequence> keys)
+    {
+      final List<ByteString> values = new ArrayList<>();
+      for (ByteSequence key : keys)
+      {
+        values.add(read(treeName, key));
+      }
+      return values;
+    }
+
     private TreeMap<ByteString, ByteString> getTree(TreeName treeName) {
       final TreeMap<ByteString, ByteString> tree = storage.get(treeName);
       if ( tree == null ) {
@@ -290,9 +290,83 @@ public class EntryIDSetTest extends DirectoryServerTestCase
     assertIdsEquals(retained, 1, 3, 5, 7, 9);
   }
 
+  @Test
+  public void testBitmapAddRemove()
+  {
+    final EntryIDSet set = newBitmapSet(6, 8, 10, 12);
+
+    assertThat(set.add(id(4))).isTrue();
+    assertThat(set.add(id(70000))).isTrue();
+    assertThat(set.add(id(10))).isFalse();
+    assertIdsEquals(set, 4, 6, 8, 10, 12, 70000);
+    assertThat(set.size()).isEqualTo(6);
+
+    assertThat(set.remove(id(70000))).isTrue();
+    assertThat(set.remove(id(70000))).isFalse();
+    assertThat(set.contains(id(8))).isTrue();
+    assertThat(set.contains(id(9))).isFalse();
+    assertThat(set.toLongArray()).containsExactly(4, 6, 8, 10, 12);
+  }
+
+  @Test
+  public void testBitmapSetOperations()
+  {
+    final EntryIDSet set = newBitmapSet(1, 2, 4, 6, 8, 9, 10, 12, 65536, 131072);
+
+    set.retainAll(newBitmapSet(2, 3, 4, 10, 65536, 200000));
+    assertThat(set.toLongArray()).containsExactly(2, 4, 10, 65536);
+
+    set.addAll(newBitmapSet(3, 131072));
+    assertThat(set.toLongArray()).containsExactly(2, 3, 4, 10, 65536, 131072);
+
+    set.removeAll(newDefinedSet(4, 65536));
+    assertThat(set.toLongArray()).containsExactly(2, 3, 10, 131072);
+
+    set.retainAll(newDefinedSet(3, 131072));
+    assertThat(set.toLongArray()).containsExactly(3, 131072);
+  }
+
+  @Test
+  public void testBitmapDenseSet()
+  {
+    final long[] ids = new long[100000];
+    for (int i = 0; i < ids.length; i++)
+    {
+      ids[i] = i * 2 + 1;
+    }
+    final EntryIDSet set = newBitmapSet(ids);
+    assertThat(set.size()).isEqualTo(ids.length);
+
+    set.retainAll(newBitmapSet(1, 3, 4, 199999, 200001));
+    assertThat(set.toLongArray()).containsExactly(1, 3, 199999);
+
+    final ByteString encoded = CODEC_V4.encode(newBitmapSet(ids));
+    assertThat(CODEC_V4.decode(KEY, encoded).toLongArray()).containsExactly(ids);
+  }
+
+  @Test
+  public void testUndefinedRetainAllBitmapDoesNotShareBitmap()
+  {
+    final EntryIDSet bitmap = newBitmapSet(1, 2, 3);
+    final EntryIDSet retained = newUndefinedSet();
+    retained.retainAll(bitmap);
+    retained.remove(id(2));
+
+    assertIdsEquals(retained, 1, 3);
+    assertThat(bitmap.toLongArray()).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void testNewSetFromUnionsOfBitmaps()
+  {
+    final EntryIDSet union =
+        newSetFromUnion(Arrays.asList(newBitmapSet(1, 2, 3), newBitmapSet(4, 5, 70000), newBitmapSet(3, 4)));
+    assertThat(union.toLongArray()).containsExactly(1, 2, 3, 4, 5, 70000);
+  }
+
   @DataProvider(name = "codecs")
   public static Object[][] codecs() {
-     return new Object[][] { { CODEC_V1 }, { CODEC_V2 } };
+     return new Object[][] { { CODEC_V1 }, { CODEC_V2 }, { CODEC_V4 } };
   }
 
 }
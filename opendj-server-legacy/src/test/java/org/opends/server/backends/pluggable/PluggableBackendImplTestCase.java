@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.DN;
@@ -59,6 +60,7 @@ import org.opends.server.backends.RebuildConfig;
 import org.opends.server.backends.RebuildConfig.RebuildMode;
 import org.opends.server.backends.VerifyConfig;
 import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -71,12 +73,17 @@ import org.opends.server.core.DeleteOperation;
 import org.opends.server.core.ModifyDNOperation;
 import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.SearchOperation;
+import org.opends.server.controls.PagedResultsControl;
 import org.opends.server.core.ServerContext;
 import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchListener;
 import org.opends.server.protocols.internal.InternalSearchOperation;
 import org.opends.server.protocols.internal.SearchRequest;
 import org.opends.server.types.BackupConfig;
 import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.CanceledOperationException;
+import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LDIFExportConfig;
@@ -85,6 +92,7 @@ import org.opends.server.types.Modification;
 import org.opends.server.types.RestoreConfig;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SearchResultEntry;
+import org.opends.server.types.SearchResultReference;
 import org.opends.server.workflowelement.localbackend.LocalBackendSearchOperation;
 import org.testng.Reporter;
 import org.testng.annotations.AfterClass;
@@ -100,6 +108,7 @@ import org.testng.annotations.Test;
 public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg> extends DirectoryServerTestCase
 {
   private BackendImpl<C> backend;
+  private C backendConfig;
   private List<Entry> topEntries;
   private List<Entry> entries;
   private List<Entry> workEntries;
@@ -150,6 +159,7 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     testBaseDN = DN.valueOf("dc=test,dc=com");
 
     C backendCfg = createBackendCfg();
+    backendConfig = backendCfg;
     when(backendCfg.dn()).thenReturn(testBaseDN);
     when(backendCfg.getBaseDN()).thenReturn(newTreeSet(testBaseDN));
     when(backendCfg.listBackendIndexes()).thenReturn(backendIndexes.keySet().toArray(new String[0]));
@@ -868,6 +878,235 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     assertThat(searchOperation.getEntriesSent()).isEqualTo(0);
   }
 
+  @Test
+  public void testParallelIndexedSearch() throws Exception
+  {
+    final List<DN> expectedDNs = addParallelSearchEntries();
+    try
+    {
+      for (int parallelism : new int[] { 1, 4 })
+      {
+        final List<DN> returnedDNs = new ArrayList<>();
+        parallelSearch(parallelism, newParallelSearchRequest(), returnedDNs);
+        // Entries are returned in the order of their IDs whatever the parallelism
+        assertThat(returnedDNs).as("parallelism " + parallelism).isEqualTo(expectedDNs);
+      }
+    }
+    finally
+    {
+      deleteParallelSearchEntries();
+    }
+  }
+
+  @Test
+  public void testParallelIndexedSearchWithPagedResults() throws Exception
+  {
+    final List<DN> expectedDNs = addParallelSearchEntries();
+    try
+    {
+      // Pages end in the middle of the batches of candidates fetched in parallel
+      final int pageSize = 50;
+      final List<ByteString> sequentialCookies = new ArrayList<>();
+      final List<ByteString> parallelCookies = new ArrayList<>();
+      assertThat(pagedParallelSearch(1, pageSize, sequentialCookies)).isEqualTo(expectedDNs);
+      assertThat(pagedParallelSearch(4, pageSize, parallelCookies)).isEqualTo(expectedDNs);
+      assertThat(parallelCookies).isEqualTo(sequentialCookies);
+      assertThat(parallelCookies).hasSize(expectedDNs.size() / pageSize);
+    }
+    finally
+    {
+      deleteParallelSearchEntries();
+    }
+  }
+
+  @Test
+  public void testParallelIndexedSearchWithSizeLimit() throws Exception
+  {
+    final List<DN> expectedDNs = addParallelSearchEntries();
+    try
+    {
+      final int sizeLimit = 70;
+      for (int parallelism : new int[] { 1, 4 })
+      {
+        final List<DN> returnedDNs = new ArrayList<>();
+        final InternalSearchOperation search =
+            parallelSearch(parallelism, newParallelSearchRequest().setSizeLimit(sizeLimit), returnedDNs);
+        assertThat(search.getResultCode()).isEqualTo(ResultCode.SIZE_LIMIT_EXCEEDED);
+        assertThat(returnedDNs).as("parallelism " + parallelism).isEqualTo(expectedDNs.subList(0, sizeLimit));
+      }
+    }
+    finally
+    {
+      deleteParallelSearchEntries();
+    }
+  }
+
+  @Test
+  public void testParallelIndexedSearchCancellation() throws Exception
+  {
+    final List<DN> expectedDNs = addParallelSearchEntries();
+    try
+    {
+      for (int parallelism : new int[] { 1, 4 })
+      {
+        final List<DN> returnedDNs = new ArrayList<>();
+        try
+        {
+          // Cancel the search in the middle of the first batch of candidates
+          parallelSearch(parallelism, newParallelSearchRequest(), returnedDNs, 10);
+          fail("Expected the search to be canceled");
+        }
+        catch (CanceledOperationException expected)
+        {
+          // Only the entries returned before the search was canceled have been returned
+          assertThat(returnedDNs).isEqualTo(expectedDNs.subList(0, returnedDNs.size()));
+          assertThat(returnedDNs.size()).isGreaterThanOrEqualTo(10);
+          if (parallelism > 1)
+          {
+            // The remaining batches are not returned
+            assertThat(returnedDNs.size()).isLessThan(expectedDNs.size());
+          }
+        }
+      }
+    }
+    finally
+    {
+      deleteParallelSearchEntries();
+    }
+  }
+
+  /** Adds enough entries for an indexed search to fetch its candidates in parallel batches. */
+  private List<DN> addParallelSearchEntries() throws Exception
+  {
+    final List<Entry> parallelEntries = new ArrayList<>();
+    final List<DN> matchingDNs = new ArrayList<>();
+    parallelEntries.add(TestCaseUtils.makeEntry(
+        "dn: ou=Parallel," + testBaseDN,
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: Parallel"));
+    for (int i = 0; i < 300; i++)
+    {
+      final Entry entry = TestCaseUtils.makeEntry(
+          "dn: uid=parallel." + i + ",ou=Parallel," + testBaseDN,
+          "objectClass: top",
+          "objectClass: person",
+          "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson",
+          "uid: parallel." + i,
+          "cn: Parallel " + i,
+          "sn: Parallel",
+          // Half of the candidates are filtered out
+          "description: " + (i % 2 == 0 ? "even" : "odd"));
+      parallelEntries.add(entry);
+      if (i % 2 == 0)
+      {
+        matchingDNs.add(entry.getName());
+      }
+    }
+    addEntriesToBackend(parallelEntries);
+    return matchingDNs;
+  }
+
+  private void deleteParallelSearchEntries() throws Exception
+  {
+    final DeleteOperation op = mock(DeleteOperation.class);
+    for (int i = 0; i < 300; i++)
+    {
+      backend.deleteEntry(DN.valueOf("uid=parallel." + i + ",ou=Parallel," + testBaseDN), op);
+    }
+    backend.deleteEntry(DN.valueOf("ou=Parallel," + testBaseDN), op);
+  }
+
+  private SearchRequest newParallelSearchRequest() throws DirectoryException
+  {
+    return newSearchRequest(DN.valueOf("ou=Parallel," + testBaseDN), SearchScope.WHOLE_SUBTREE,
+        "(&(sn=Parallel)(description=even))");
+  }
+
+  private List<DN> pagedParallelSearch(int parallelism, int pageSize, List<ByteString> cookies) throws Exception
+  {
+    final List<DN> returnedDNs = new ArrayList<>();
+    ByteString cookie = ByteString.empty();
+    do
+    {
+      final SearchRequest request =
+          newParallelSearchRequest().addControl(new PagedResultsControl(true, pageSize, cookie));
+      final int previousSize = returnedDNs.size();
+      final InternalSearchOperation search = parallelSearch(parallelism, request, returnedDNs);
+      assertThat(returnedDNs.size() - previousSize).isLessThanOrEqualTo(pageSize);
+      cookie = getPagedResultsCookie(search);
+      if (cookie.length() > 0)
+      {
+        cookies.add(cookie);
+      }
+    }
+    while (cookie.length() > 0);
+    return returnedDNs;
+  }
+
+  private ByteString getPagedResultsCookie(InternalSearchOperation search)
+  {
+    for (Control control : search.getResponseControls())
+    {
+      if (control instanceof PagedResultsControl)
+      {
+        return ((PagedResultsControl) control).getCookie();
+      }
+    }
+    fail("Missing paged results control in the search response");
+    return null;
+  }
+
+  private InternalSearchOperation parallelSearch(int parallelism, SearchRequest request, List<DN> returnedDNs)
+      throws Exception
+  {
+    return parallelSearch(parallelism, request, returnedDNs, 0);
+  }
+
+  /**
+   * Runs the search against the backend with the provided indexed search parallelism, optionally canceling it once
+   * the provided number of entries have been returned.
+   */
+  private InternalSearchOperation parallelSearch(int parallelism, SearchRequest request, final List<DN> returnedDNs,
+      final int cancelAfter) throws Exception
+  {
+    final int previousParallelism = backendConfig.getIndexedSearchParallelism();
+    when(backendConfig.getIndexedSearchParallelism()).thenReturn(parallelism);
+    backend.getRootContainer().applyConfigurationChange(backendConfig);
+    try
+    {
+      final InternalSearchListener listener = new InternalSearchListener()
+      {
+        @Override
+        public void handleInternalSearchEntry(InternalSearchOperation searchOperation, SearchResultEntry searchEntry)
+        {
+          returnedDNs.add(searchEntry.getName());
+          if (returnedDNs.size() == cancelAfter)
+          {
+            searchOperation.abort(new CancelRequest(false, LocalizableMessage.raw("test")));
+          }
+        }
+
+        @Override
+        public void handleInternalSearchReference(InternalSearchOperation searchOperation,
+            SearchResultReference searchReference)
+        {
+          // No referrals in these tests
+        }
+      };
+      final InternalSearchOperation search =
+          new InternalSearchOperation(getRootConnection(), -1, -1, request, listener);
+      backend.search(new LocalBackendSearchOperation(search));
+      return search;
+    }
+    finally
+    {
+      when(backendConfig.getIndexedSearchParallelism()).thenReturn(previousParallelism);
+      backend.getRootContainer().applyConfigurationChange(backendConfig);
+    }
+  }
+
   private void subTreeSearch(boolean useInternalConnection) throws Exception
   {
     SearchRequest request = newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, "objectclass=*");
@@ -1138,6 +1377,48 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     assertThat(backend.verifyBackend(config)).isEqualTo(1);
   }
 
+  @Test
+  public void testMultiRead() throws Exception
+  {
+    final ID2Entry id2Entry = backend.getRootContainer().getEntryContainer(testBaseDN).getID2Entry();
+    backend.getRootContainer().getStorage().read(new ReadOperation<Void>()
+    {
+      @Override
+      public Void run(ReadableTransaction txn) throws Exception
+      {
+        final List<EntryID> entryIDs = new ArrayList<>();
+        try (final Cursor<EntryID, Entry> cursor = id2Entry.openCursor(txn))
+        {
+          while (cursor.next())
+          {
+            entryIDs.add(cursor.getKey());
+          }
+        }
+        assertThat(entryIDs).isNotEmpty();
+
+        // Dense keys, a missing key and a key lower than the previous one
+        final List<EntryID> keys = new ArrayList<>(entryIDs);
+        keys.add(keys.size() / 2, new EntryID(Long.MAX_VALUE));
+        keys.add(entryIDs.get(0));
+        final Entry[] entries = id2Entry.get(txn, keys);
+        assertThat(entries).hasSize(keys.size());
+        for (int i = 0; i < keys.size(); i++)
+        {
+          final Entry expected = id2Entry.get(txn, keys.get(i));
+          if (expected == null)
+          {
+            assertThat(entries[i]).isNull();
+          }
+          else
+          {
+            assertThat(entries[i].getName()).isEqualTo(expected.getName());
+          }
+        }
+        return null;
+      }
+    });
+  }
+
   @Test
   public void testBackupAndRestore() throws Exception
   {
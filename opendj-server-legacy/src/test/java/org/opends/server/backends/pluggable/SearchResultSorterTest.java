@@ -0,0 +1,138 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+public class SearchResultSorterTest extends DirectoryServerTestCase
+{
+  private static final int NB_KEYS = 1000;
+
+  @Test
+  public void testLowestKeys()
+  {
+    try (final SearchResultSorter sorter = SearchResultSorter.lowestKeys(10))
+    {
+      final List<ByteString> keys = addShuffledKeys(sorter);
+
+      assertThat(sorter.getNbKeysAdded()).isEqualTo(NB_KEYS);
+      assertThat(sorter.toLongArray()).isEqualTo(entryIDs(keys.subList(0, 10)));
+    }
+  }
+
+  @Test
+  public void testHighestKeys()
+  {
+    try (final SearchResultSorter sorter = SearchResultSorter.highestKeys(10))
+    {
+      final List<ByteString> keys = addShuffledKeys(sorter);
+
+      assertThat(sorter.getNbKeysAdded()).isEqualTo(NB_KEYS);
+      assertThat(sorter.toLongArray()).isEqualTo(entryIDs(keys.subList(NB_KEYS - 10, NB_KEYS)));
+    }
+  }
+
+  @Test
+  public void testCountKeys()
+  {
+    try (final SearchResultSorter sorter = SearchResultSorter.lowestKeys(0))
+    {
+      addShuffledKeys(sorter);
+
+      assertThat(sorter.getNbKeysAdded()).isEqualTo(NB_KEYS);
+      assertThat(sorter.toLongArray()).isEmpty();
+    }
+  }
+
+  @Test
+  public void testAllKeysInMemory() throws Exception
+  {
+    final File tempDir = TestCaseUtils.createTemporaryDirectory("testAllKeysInMemory");
+    try (final SearchResultSorter sorter = SearchResultSorter.allKeys(tempDir, "test", 1024 * 1024))
+    {
+      final List<ByteString> keys = addShuffledKeys(sorter);
+
+      assertThat(sorter.toLongArray()).isEqualTo(entryIDs(keys));
+    }
+    assertThat(tempDir.list()).isEmpty();
+  }
+
+  @Test
+  public void testAllKeysSpilled() throws Exception
+  {
+    final File tempDir = TestCaseUtils.createTemporaryDirectory("testAllKeysSpilled");
+    try (final SearchResultSorter sorter = SearchResultSorter.allKeys(tempDir, "test", 1024))
+    {
+      final List<ByteString> keys = addShuffledKeys(sorter);
+      assertThat(tempDir.list()).hasSize(1);
+
+      assertThat(sorter.toLongArray()).isEqualTo(entryIDs(keys));
+    }
+    assertThat(tempDir.list()).isEmpty();
+  }
+
+  @Test
+  public void testSpilledKeysRemovedWhenNotRead() throws Exception
+  {
+    final File tempDir = TestCaseUtils.createTemporaryDirectory("testSpilledKeysRemovedWhenNotRead");
+    try (final SearchResultSorter sorter = SearchResultSorter.allKeys(tempDir, "test", 1024))
+    {
+      addShuffledKeys(sorter);
+    }
+    assertThat(tempDir.list()).isEmpty();
+  }
+
+  /** Adds VLV like keys whose entry IDs are not in key order, and returns the keys in ascending order. */
+  private static List<ByteString> addShuffledKeys(SearchResultSorter sorter)
+  {
+    final List<ByteString> keys = new ArrayList<>(NB_KEYS);
+    for (int i = 0; i < NB_KEYS; i++)
+    {
+      keys.add(new ByteStringBuilder().appendUtf8(String.format("sn=%05d", i)).appendLong(NB_KEYS - i).toByteString());
+    }
+    final List<ByteString> shuffledKeys = new ArrayList<>(keys);
+    Collections.shuffle(shuffledKeys, new Random(0));
+    for (ByteString key : shuffledKeys)
+    {
+      sorter.add(key);
+    }
+    return keys;
+  }
+
+  private static long[] entryIDs(List<ByteString> keys)
+  {
+    final long[] entryIDs = new long[keys.size()];
+    for (int i = 0; i < entryIDs.length; i++)
+    {
+      entryIDs[i] = keys.get(i).subSequence(keys.get(i).length() - 8, keys.get(i).length()).toLong();
+    }
+    return entryIDs;
+  }
+}
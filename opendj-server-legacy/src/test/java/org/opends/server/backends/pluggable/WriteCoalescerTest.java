@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class WriteCoalescerTest extends DirectoryServerTestCase
+{
+  private final AtomicInteger transactionCount = new AtomicInteger();
+  private Storage storage;
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    transactionCount.set(0);
+    storage = mock(Storage.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        transactionCount.incrementAndGet();
+        ((WriteOperation) invocation.getArguments()[0]).run(mock(WriteableTransaction.class));
+        return null;
+      }
+    }).when(storage).write(any(WriteOperation.class));
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testDisabledCommitsEachOperation() throws Exception
+  {
+    final WriteCoalescer coalescer = new WriteCoalescer(storage, null);
+    final CountingWriteOperation op = new CountingWriteOperation(false);
+
+    coalescer.write(op);
+    coalescer.write(op);
+
+    assertThat(op.runCount.get()).isEqualTo(2);
+    assertThat(transactionCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testConcurrentOperationsAreCommittedTogether() throws Exception
+  {
+    final int nbOperations = 5;
+    final WriteCoalescer coalescer = new WriteCoalescer(storage, null);
+    // The leader waits for the batch to be full
+    coalescer.setBatchLimits(nbOperations, 10, TimeUnit.SECONDS);
+
+    final List<CountingWriteOperation> ops = new ArrayList<>();
+    final List<Future<Void>> results = new ArrayList<>();
+    for (int i = 0; i < nbOperations; i++)
+    {
+      final CountingWriteOperation op = new CountingWriteOperation(false);
+      ops.add(op);
+      results.add(submit(coalescer, op));
+    }
+
+    for (Future<Void> result : results)
+    {
+      result.get(10, TimeUnit.SECONDS);
+    }
+    assertThat(transactionCount.get()).isEqualTo(1);
+    for (CountingWriteOperation op : ops)
+    {
+      assertThat(op.runCount.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testFailedOperationIsRetriedAlone() throws Exception
+  {
+    final WriteCoalescer coalescer = new WriteCoalescer(storage, null);
+    coalescer.setBatchLimits(3, 10, TimeUnit.SECONDS);
+
+    final CountingWriteOperation op1 = new CountingWriteOperation(false);
+    final CountingWriteOperation failingOp = new CountingWriteOperation(true);
+    final CountingWriteOperation op3 = new CountingWriteOperation(false);
+    final Future<Void> result1 = submit(coalescer, op1);
+    final Future<Void> failingResult = submit(coalescer, failingOp);
+    final Future<Void> result3 = submit(coalescer, op3);
+
+    result1.get(10, TimeUnit.SECONDS);
+    result3.get(10, TimeUnit.SECONDS);
+    try
+    {
+      failingResult.get(10, TimeUnit.SECONDS);
+      failBecauseExceptionWasNotThrown(DirectoryException.class);
+    }
+    catch (ExecutionException e)
+    {
+      assertThat(e.getCause()).isInstanceOf(DirectoryException.class);
+    }
+    // One transaction for the whole batch, rolled back, then one for each operation
+    assertThat(transactionCount.get()).isEqualTo(4);
+    assertThat(failingOp.runCount.get()).isEqualTo(2);
+  }
+
+  private Future<Void> submit(final WriteCoalescer coalescer, final WriteOperation op)
+  {
+    return executor.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception
+      {
+        coalescer.write(op);
+        return null;
+      }
+    });
+  }
+
+  private static final class CountingWriteOperation implements WriteOperation
+  {
+    private final AtomicInteger runCount = new AtomicInteger();
+    private final boolean fails;
+
+    private CountingWriteOperation(boolean fails)
+    {
+      this.fails = fails;
+    }
+
+    @Override
+    public void run(WriteableTransaction txn) throws Exception
+    {
+      runCount.incrementAndGet();
+      if (fails)
+      {
+        throw new DirectoryException(ResultCode.ENTRY_ALREADY_EXISTS, LocalizableMessage.raw("already exists"));
+      }
+    }
+  }
+}
@@ -200,6 +200,69 @@ public class GroupManagerTestCase
     assertTrue(group1Instance.isMember(user5DN));
   }
 
+  /**
+   * Checks the membership index used to resolve the groups of a user, with
+   * static groups nesting a dynamic group, and keeps it up to date when
+   * members and nested groups are removed.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testMembershipIndex() throws Exception {
+    TestCaseUtils.initializeTestBackend(true);
+    GroupManager groupManager = DirectoryServer.getGroupManager();
+    groupManager.deregisterAllGroups();
+    addNestedGroupTestEntries();
+    DN group1DN = DN.valueOf("cn=group 1,ou=Groups,o=test");
+    DN group2DN = DN.valueOf("cn=group 2,ou=Groups,o=test");
+    DN group3DN = DN.valueOf("cn=group 3,ou=Groups,o=test");
+    DN group4DN = DN.valueOf("cn=group 4,ou=Groups,o=test");
+    DN user1DN = DN.valueOf("uid=user.1,ou=People,o=test");
+    DN user3DN = DN.valueOf("uid=user.3,ou=People,o=test");
+    DN user5DN = DN.valueOf("uid=user.5,ou=People,o=test");
+    Entry user1Entry = DirectoryServer.getEntry(user1DN);
+    Entry user3Entry = DirectoryServer.getEntry(user3DN);
+    Entry user5Entry = DirectoryServer.getEntry(user5DN);
+    Group<?> group1Instance = groupManager.getGroupInstance(group1DN);
+    Group<?> group2Instance = groupManager.getGroupInstance(group2DN);
+    Group<?> group3Instance = groupManager.getGroupInstance(group3DN);
+    //Group 4 is a dynamic group.
+    Group<?> group4Instance = groupManager.getGroupInstance(group4DN);
+    group1Instance.addNestedGroup(group2DN);
+    group2Instance.addNestedGroup(group3DN);
+    group3Instance.addNestedGroup(group4DN);
+    group1Instance.addMember(user1Entry);
+    group3Instance.addMember(user3Entry);
+
+    assertEquals(groupManager.getGroupsOf(user1Entry), asSet(group1Instance));
+    assertEquals(groupManager.getGroupsOf(user3Entry),
+        asSet(group1Instance, group2Instance, group3Instance));
+    assertEquals(groupManager.getGroupsOf(user5Entry),
+        asSet(group1Instance, group2Instance, group3Instance, group4Instance));
+    assertTrue(groupManager.isMember(group1Instance, user5DN, null));
+    assertTrue(groupManager.isMember(group2Instance, user3DN, user3Entry));
+    assertFalse(groupManager.isMember(group3Instance, user1DN, user1Entry));
+
+    group2Instance.removeNestedGroup(group3DN);
+    assertEquals(groupManager.getGroupsOf(user3Entry), asSet(group3Instance));
+    assertFalse(groupManager.isMember(group1Instance, user3DN, null));
+    assertFalse(groupManager.isMember(group1Instance, user5DN, user5Entry));
+
+    group3Instance.removeMember(user3DN);
+    assertTrue(groupManager.getGroupsOf(user3Entry).isEmpty());
+    assertFalse(groupManager.isMember(group3Instance, user3DN, null));
+  }
+
+  private static Set<Group<?>> asSet(Group<?>... groups)
+  {
+    Set<Group<?>> set = new LinkedHashSet<>();
+    for (Group<?> group : groups)
+    {
+      set.add(group);
+    }
+    return set;
+  }
+
   /**
    * Invokes membership and nested group APIs using a group instance that has
    * been changed by the group manager via ldap modify.
@@ -0,0 +1,185 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.core;
+
+import static org.forgerock.opendj.ldap.SearchScope.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.EnumSet;
+
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.controls.PersistentSearchChangeType;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.Control;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PersistentSearchDispatcherTestCase extends CoreTestCase
+{
+  private static final String SUFFIX = "dc=example,dc=com";
+  private static final String PEOPLE = "ou=people," + SUFFIX;
+
+  private PersistentSearchDispatcher dispatcher;
+  private Entry entry;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    dispatcher = new PersistentSearchDispatcher();
+    entry = TestCaseUtils.makeEntry(
+        "dn: uid=jdoe,ou=people,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: jdoe",
+        "cn: John Doe",
+        "sn: Doe",
+        "description: before");
+  }
+
+  @Test
+  public void testCandidatesByBaseDN() throws Exception
+  {
+    final SearchOperation inSubtree = register(PEOPLE, WHOLE_SUBTREE, "(objectClass=*)");
+    final SearchOperation atRoot = register(SUFFIX, WHOLE_SUBTREE, "(objectClass=*)");
+    final SearchOperation otherSubtree = register("ou=groups,dc=example,dc=com", WHOLE_SUBTREE, "(objectClass=*)");
+    final SearchOperation baseOnly = register(PEOPLE, BASE_OBJECT, "(objectClass=*)");
+
+    dispatcher.processAdd(entry);
+
+    verifyNotified(inSubtree);
+    verifyNotified(atRoot);
+    verifyNotNotified(otherSubtree);
+    verifyNotNotified(baseOnly);
+  }
+
+  @Test
+  public void testCandidatesByFilter() throws Exception
+  {
+    final SearchOperation equality = register(SUFFIX, WHOLE_SUBTREE, "(uid=JDOE)");
+    final SearchOperation otherValue = register(SUFFIX, WHOLE_SUBTREE, "(uid=someone)");
+    final SearchOperation and = register(SUFFIX, WHOLE_SUBTREE, "(&(objectClass=person)(cn=john doe))");
+    final SearchOperation presence = register(SUFFIX, WHOLE_SUBTREE, "(mail=*)");
+    final SearchOperation substring = register(SUFFIX, WHOLE_SUBTREE, "(sn=D*)");
+    final SearchOperation or = register(SUFFIX, WHOLE_SUBTREE, "(|(uid=someone)(sn=doe))");
+    final SearchOperation not = register(SUFFIX, WHOLE_SUBTREE, "(!(uid=someone))");
+
+    dispatcher.processAdd(entry);
+    dispatcher.processDelete(entry);
+
+    verifyNotified(equality, 2);
+    verifyNotNotified(otherValue);
+    verifyNotified(and, 2);
+    verifyNotNotified(presence);
+    verifyNotified(substring, 2);
+    verifyNotified(or, 2);
+    verifyNotified(not, 2);
+  }
+
+  @Test
+  public void testModifyMatchesOldOrNewEntry() throws Exception
+  {
+    final SearchOperation before = register(SUFFIX, WHOLE_SUBTREE, "(description=before)");
+    final SearchOperation after = register(SUFFIX, WHOLE_SUBTREE, "(description=after)");
+    final SearchOperation neither = register(SUFFIX, WHOLE_SUBTREE, "(description=other)");
+
+    final Entry newEntry = entry.duplicate(false);
+    newEntry.replaceAttribute(Attributes.create("description", "after"));
+    dispatcher.processModify(newEntry, entry);
+
+    verifyNotified(before);
+    verifyNotified(after);
+    verifyNotNotified(neither);
+  }
+
+  @Test
+  public void testModifyDNMatchesOldOrNewDN() throws Exception
+  {
+    final SearchOperation oldSubtree = register(PEOPLE, WHOLE_SUBTREE, "(uid=jdoe)");
+    final SearchOperation newSubtree = register("ou=former,dc=example,dc=com", WHOLE_SUBTREE, "(uid=jdoe)");
+
+    final Entry newEntry = entry.duplicate(false);
+    newEntry.setDN(DN.valueOf("uid=jdoe,ou=former,dc=example,dc=com"));
+    dispatcher.processModifyDN(newEntry, entry.getName());
+
+    verifyNotified(oldSubtree);
+    verifyNotified(newSubtree);
+  }
+
+  @Test
+  public void testDeregister() throws Exception
+  {
+    final SearchOperation searchOperation = mockSearchOperation(SUFFIX, WHOLE_SUBTREE, "(uid=jdoe)");
+    final PersistentSearch psearch = newPersistentSearch(searchOperation);
+    dispatcher.register(psearch);
+    dispatcher.deregister(psearch);
+
+    dispatcher.processAdd(entry);
+
+    verifyNotNotified(searchOperation);
+  }
+
+  private SearchOperation register(String baseDN, SearchScope scope, String filter) throws Exception
+  {
+    final SearchOperation searchOperation = mockSearchOperation(baseDN, scope, filter);
+    dispatcher.register(newPersistentSearch(searchOperation));
+    return searchOperation;
+  }
+
+  private SearchOperation mockSearchOperation(String baseDN, SearchScope scope, String filter) throws Exception
+  {
+    final SearchOperation searchOperation = mock(SearchOperation.class);
+    when(searchOperation.getBaseDN()).thenReturn(DN.valueOf(baseDN));
+    when(searchOperation.getScope()).thenReturn(scope);
+    when(searchOperation.getFilter()).thenReturn(SearchFilter.createFilterFromString(filter));
+    when(searchOperation.returnEntry(any(Entry.class), anyListOf(Control.class))).thenReturn(true);
+    return searchOperation;
+  }
+
+  private PersistentSearch newPersistentSearch(SearchOperation searchOperation)
+  {
+    return new PersistentSearch(searchOperation, EnumSet.allOf(PersistentSearchChangeType.class), true, false);
+  }
+
+  private void verifyNotified(SearchOperation searchOperation)
+  {
+    verifyNotified(searchOperation, 1);
+  }
+
+  private void verifyNotified(SearchOperation searchOperation, int times)
+  {
+    verify(searchOperation, times(times)).returnEntry(any(Entry.class), anyListOf(Control.class));
+  }
+
+  private void verifyNotNotified(SearchOperation searchOperation)
+  {
+    verifyNotified(searchOperation, 0);
+  }
+}
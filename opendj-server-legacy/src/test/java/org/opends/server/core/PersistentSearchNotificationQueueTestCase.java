@@ -0,0 +1,164 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.core;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.opendj.ldap.SearchScope.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.DN;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.controls.PersistentSearchChangeType;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.types.AuthenticationInfo;
+import org.opends.server.types.Control;
+import org.opends.server.types.DisconnectReason;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PersistentSearchNotificationQueueTestCase extends CoreTestCase
+{
+  private Entry entry;
+  private InternalClientConnection connection;
+  private SearchOperation searchOperation;
+  private PersistentSearch psearch;
+  private CountDownLatch firstNotificationStarted;
+  private CountDownLatch releaseNotifications;
+  private CountDownLatch notificationsSent;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.dsconfig("set-global-configuration-prop", "--set", "psearch-notification-queue-size:1");
+    entry = TestCaseUtils.makeEntry(
+        "dn: uid=jdoe,ou=people,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "uid: jdoe",
+        "cn: John Doe",
+        "sn: Doe");
+    firstNotificationStarted = new CountDownLatch(1);
+    releaseNotifications = new CountDownLatch(1);
+    notificationsSent = new CountDownLatch(2);
+
+    connection = spy(new InternalClientConnection(new AuthenticationInfo()));
+    doNothing().when(connection).disconnect(any(DisconnectReason.class), anyBoolean(), any(LocalizableMessage.class));
+    searchOperation = mock(SearchOperation.class);
+    when(searchOperation.getClientConnection()).thenReturn(connection);
+    when(searchOperation.getBaseDN()).thenReturn(DN.valueOf("dc=example,dc=com"));
+    when(searchOperation.getScope()).thenReturn(WHOLE_SUBTREE);
+    when(searchOperation.getFilter()).thenReturn(SearchFilter.objectClassPresent());
+    when(searchOperation.returnEntry(any(Entry.class), anyListOf(Control.class))).thenAnswer(new Answer<Boolean>()
+    {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Throwable
+      {
+        firstNotificationStarted.countDown();
+        final boolean released = releaseNotifications.await(10, TimeUnit.SECONDS);
+        notificationsSent.countDown();
+        return released;
+      }
+    });
+    psearch = new PersistentSearch(searchOperation, EnumSet.allOf(PersistentSearchChangeType.class), true, false);
+    psearch.enable();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception
+  {
+    releaseNotifications.countDown();
+    psearch.cancel();
+    TestCaseUtils.dsconfig("set-global-configuration-prop",
+        "--reset", "psearch-notification-queue-size",
+        "--reset", "psearch-notification-queue-overflow-policy");
+  }
+
+  @Test
+  public void testDropPolicyKeepsConnectionOpen() throws Exception
+  {
+    TestCaseUtils.dsconfig("set-global-configuration-prop", "--set", "psearch-notification-queue-overflow-policy:drop");
+
+    fillNotificationQueue();
+    psearch.processAdd(entry);
+
+    final PersistentSearchNotificationQueue queue = connection.getPersistentSearchNotificationQueue();
+    assertThat(queue.size()).isEqualTo(1);
+    releaseNotifications.countDown();
+    assertThat(notificationsSent.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(queue.size()).isEqualTo(0);
+
+    verify(searchOperation, times(2)).returnEntry(any(Entry.class), anyListOf(Control.class));
+    verify(connection, never()).disconnect(any(DisconnectReason.class), anyBoolean(), any(LocalizableMessage.class));
+    assertThat(connection.getPersistentSearches()).containsOnly(psearch);
+  }
+
+  @Test
+  public void testDisconnectPolicyCancelsPersistentSearch() throws Exception
+  {
+    TestCaseUtils.dsconfig("set-global-configuration-prop",
+        "--set", "psearch-notification-queue-overflow-policy:disconnect");
+
+    fillNotificationQueue();
+    psearch.processAdd(entry);
+
+    verify(connection).disconnect(eq(DisconnectReason.ADMIN_LIMIT_EXCEEDED), eq(false), any(LocalizableMessage.class));
+    assertThat(connection.getPersistentSearches()).isEmpty();
+  }
+
+  @Test
+  public void testSetNotifierThreads() throws Exception
+  {
+    try
+    {
+      PersistentSearchNotificationQueue.setNotifierThreads(1);
+      assertThat(PersistentSearchNotificationQueue.getNotifierThreads()).isEqualTo(1);
+      PersistentSearchNotificationQueue.setNotifierThreads(64);
+      assertThat(PersistentSearchNotificationQueue.getNotifierThreads()).isEqualTo(64);
+    }
+    finally
+    {
+      PersistentSearchNotificationQueue.setNotifierThreads(0);
+    }
+    assertThat(PersistentSearchNotificationQueue.getNotifierThreads()).isGreaterThanOrEqualTo(2);
+  }
+
+  /** Blocks the notifier thread on the first notification, and queues a second one behind it. */
+  private void fillNotificationQueue() throws Exception
+  {
+    psearch.processAdd(entry);
+    assertThat(firstNotificationStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    psearch.processAdd(entry);
+  }
+}
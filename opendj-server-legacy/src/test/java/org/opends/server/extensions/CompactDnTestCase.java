@@ -90,4 +90,14 @@ public class CompactDnTestCase extends DirectoryServerTestCase {
     public void testCompareTo(String dn, String otherDn) throws Exception {
         assertThat(new CompactDn(DN.valueOf(dn)).compareTo(new CompactDn(DN.valueOf(otherDn)))).isEqualTo(0);
     }
+
+    @Test(dataProvider = "equivalentDnRepresentations")
+    public void testHashCode(String dn, String otherDn) throws Exception {
+        assertThat(new CompactDn(DN.valueOf(dn)).hashCode()).isEqualTo(new CompactDn(DN.valueOf(otherDn)).hashCode());
+    }
+
+    @Test(dataProvider = "equivalentDnRepresentations")
+    public void testToString(String dn, String otherDn) throws Exception {
+        assertThat(new CompactDn(DN.valueOf(dn)).toString()).isEqualTo(DN.valueOf(dn).toString());
+    }
 }
\ No newline at end of file
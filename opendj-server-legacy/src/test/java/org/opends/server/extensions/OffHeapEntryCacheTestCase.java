@@ -0,0 +1,469 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.schema.AttributeType;
+import org.forgerock.opendj.server.config.meta.OffHeapEntryCacheCfgDefn;
+import org.forgerock.opendj.server.config.server.OffHeapEntryCacheCfg;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.api.MonitorData;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Entry;
+import org.opends.server.util.ServerConstants;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterGroups;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeGroups;
+import org.testng.annotations.Test;
+
+/**
+ * A set of test cases for the off heap entry cache implementation.
+ */
+@Test(groups = "entrycache", sequential=true)
+public class OffHeapEntryCacheTestCase
+       extends CommonEntryCacheTestCase<OffHeapEntryCacheCfg>
+{
+  /**
+   * Initialize the entry cache test.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @BeforeClass
+  public void entryCacheTestInit()
+         throws Exception
+  {
+    // Ensure that the server is running.
+    TestCaseUtils.startServer();
+
+    // Configure this entry cache.
+    Entry cacheConfigEntry = TestCaseUtils.makeEntry(
+      "dn: cn=Off Heap,cn=Entry Caches,cn=config",
+      "objectClass: ds-cfg-off-heap-entry-cache",
+      "objectClass: ds-cfg-entry-cache",
+      "objectClass: top",
+      "cn: Off Heap",
+      "ds-cfg-cache-level: 1",
+      "ds-cfg-java-class: org.opends.server.extensions.OffHeapEntryCache",
+      "ds-cfg-enabled: true",
+      "ds-cfg-max-memory-size: 1 megabytes");
+    super.configuration = InitializationUtils.getConfiguration(
+      OffHeapEntryCacheCfgDefn.getInstance(), cacheConfigEntry);
+
+    // Initialize the cache.
+    super.cache = new OffHeapEntryCache();
+    super.cache.initializeEntryCache(TestCaseUtils.getServerContext(), configuration);
+
+    // Make some dummy test entries.
+    super.testEntriesList = makeTestEntries("test", super.NUMTESTENTRIES);
+  }
+
+  private static List<Entry> makeTestEntries(String prefix, int nbEntries) throws Exception
+  {
+    List<Entry> entries = new ArrayList<>(nbEntries);
+    for (int i = 0; i < nbEntries; i++)
+    {
+      entries.add(TestCaseUtils.makeEntry(
+        "dn: uid=" + prefix + i + ".user" + i + ",ou=" + prefix + i + ",o=test",
+        "objectClass: person",
+        "objectClass: inetorgperson",
+        "objectClass: top",
+        "objectClass: organizationalperson",
+        "postalAddress: somewhere in Testville" + i,
+        "street: Under Construction Street" + i,
+        "l: Testcounty" + i,
+        "mail: " + prefix + i + ".user" + i + "@testdomain.net",
+        "userPassword: testpassword" + i,
+        "description: description for Test" + i + "User" + i,
+        "cn: Test" + i + "User" + i,
+        "sn: User" + i,
+        "givenName: Test" + i,
+        "uid: " + prefix + i + ".user" + i));
+    }
+    return entries;
+  }
+
+
+
+  /**
+   * Finalize the entry cache test.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @AfterClass
+  public void entryCacheTestFini()
+         throws Exception
+  {
+    super.cache.finalizeEntryCache();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testContainsEntry()
+         throws Exception
+  {
+    super.testContainsEntry();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testGetEntry1()
+         throws Exception
+  {
+    super.testGetEntry1();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testGetEntry2()
+         throws Exception
+  {
+    super.testGetEntry2();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testGetEntry3()
+         throws Exception
+  {
+    super.testGetEntry3();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testGetEntryID()
+         throws Exception
+  {
+    super.testGetEntryID();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testPutEntry()
+         throws Exception
+  {
+    super.testPutEntry();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testPutEntryIfAbsent()
+         throws Exception
+  {
+    super.testPutEntryIfAbsent();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testRemoveEntry()
+         throws Exception
+  {
+    super.testRemoveEntry();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testClear()
+         throws Exception
+  {
+    super.testClear();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testClearBackend()
+         throws Exception
+  {
+    super.testClearBackend();
+  }
+
+  /** {@inheritDoc} */
+  @Test
+  @Override
+  public void testHandleLowMemory()
+         throws Exception
+  {
+    assertNull(cache.toVerboseString(),
+      "Expected empty cache.  " + "Cache contents:" + ServerConstants.EOL +
+      cache.toVerboseString());
+
+    String b = TestCaseUtils.getServerContext().getBackendConfigManager()
+        .findLocalBackendForEntry(DN.valueOf("o=test")).getBackendID();
+
+    for(int i = 0; i < super.NUMTESTENTRIES; i++ ) {
+      super.cache.putEntry(super.testEntriesList.get(i), b, i);
+    }
+
+    super.cache.handleLowMemory();
+
+    // Make sure that the entries put previously on the
+    // cache are no longer there after handleLowMemory.
+    for(int i = 0; i < super.NUMTESTENTRIES; i++ ) {
+      assertFalse(super.cache.containsEntry(
+        super.testEntriesList.get(i).getName()), "Not expected to find " +
+        super.testEntriesList.get(i).getName() + " in the " +
+        "cache.  Cache contents:" + ServerConstants.EOL +
+        cache.toVerboseString());
+    }
+
+    // Clear the cache so that other tests can start from scratch.
+    super.cache.clear();
+  }
+
+
+
+  @BeforeGroups(groups = "testOffHeapCacheConcurrency")
+  public void cacheConcurrencySetup()
+         throws Exception
+  {
+    assertNull(cache.toVerboseString(),
+      "Expected empty cache.  " + "Cache contents:" + ServerConstants.EOL +
+      cache.toVerboseString());
+  }
+
+
+
+  @AfterGroups(groups = "testOffHeapCacheConcurrency")
+  public void cacheConcurrencyCleanup()
+         throws Exception
+  {
+    // Clear the cache so that other tests can start from scratch.
+    super.cache.clear();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Test(groups = { "slow", "testOffHeapCacheConcurrency" },
+        threadPoolSize = 10,
+        invocationCount = 10,
+        timeOut = 60000)
+  @Override
+  public void testCacheConcurrency()
+         throws Exception
+  {
+    super.testCacheConcurrency();
+  }
+
+
+
+  /**
+   * Tests that entries are decoded as they were put in the cache.
+   */
+  @Test
+  public void testDecodedEntry()
+         throws Exception
+  {
+    assertNull(cache.toVerboseString(),
+      "Expected empty cache.  " + "Cache contents:" + ServerConstants.EOL +
+      cache.toVerboseString());
+
+    String b = TestCaseUtils.getServerContext().getBackendConfigManager()
+        .findLocalBackendForEntry(DN.valueOf("o=test")).getBackendID();
+
+    Entry entry = super.testEntriesList.get(0);
+    super.cache.putEntry(entry, b, 1);
+
+    Entry cachedEntry = super.cache.getEntry(entry.getName());
+    assertNotSame(cachedEntry, entry);
+    assertEquals(cachedEntry, entry);
+    assertEquals(super.cache.getEntry(b, 1), entry);
+
+    // Clear the cache so that other tests can start from scratch.
+    super.cache.clear();
+  }
+
+
+
+  /**
+   * Tests that reclaiming memory evicts old entries but keeps the ones accessed since they were put.
+   */
+  @Test
+  public void testReclaimKeepsAccessedEntries()
+         throws Exception
+  {
+    assertNull(cache.toVerboseString(),
+      "Expected empty cache.  " + "Cache contents:" + ServerConstants.EOL +
+      cache.toVerboseString());
+
+    String b = TestCaseUtils.getServerContext().getBackendConfigManager()
+        .findLocalBackendForEntry(DN.valueOf("o=test")).getBackendID();
+
+    // Much more entries than what fits in the configured memory size.
+    List<Entry> scanEntries = makeTestEntries("scan", 10000);
+    Entry hotEntry = super.testEntriesList.get(0);
+    super.cache.putEntry(hotEntry, b, 0);
+    for (int i = 0; i < scanEntries.size(); i++)
+    {
+      super.cache.putEntry(scanEntries.get(i), b, i + 1);
+      if (i % 100 == 0)
+      {
+        assertEquals(super.cache.getEntry(hotEntry.getName()), hotEntry);
+      }
+    }
+
+    assertTrue(super.cache.getCacheCount() < scanEntries.size());
+    assertFalse(super.cache.containsEntry(scanEntries.get(0).getName()));
+    assertEquals(super.cache.getEntry(hotEntry.getName()), hotEntry);
+    Entry lastEntry = scanEntries.get(scanEntries.size() - 1);
+    assertEquals(super.cache.getEntry(b, scanEntries.size()), lastEntry);
+    assertTrue(getMonitorValue("entryCacheEvictions") > 0);
+
+    // Clear the cache so that other tests can start from scratch.
+    super.cache.clear();
+  }
+
+  /**
+   * Tests that readers only get consistent versions of an entry while it is rewritten and its segment reclaimed.
+   */
+  @Test(timeOut = 120000)
+  public void testConcurrentOverwrite()
+         throws Exception
+  {
+    assertNull(cache.toVerboseString(),
+      "Expected empty cache.  " + "Cache contents:" + ServerConstants.EOL +
+      cache.toVerboseString());
+
+    final String b = TestCaseUtils.getServerContext().getBackendConfigManager()
+        .findLocalBackendForEntry(DN.valueOf("o=test")).getBackendID();
+    final DN dn = DN.valueOf("uid=overwrite,o=test");
+    final List<Entry> scanEntries = makeTestEntries("overwrite", 1000);
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++)
+    {
+      Thread reader = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            while (!done.get())
+            {
+              Entry entry = cache.getEntry(dn);
+              if (entry != null)
+              {
+                // Both attributes are written with the same version
+                assertEquals(entry.getName(), dn);
+                assertEquals(getValue(entry, "description"), getValue(entry, "l"));
+              }
+            }
+          }
+          catch (Throwable t)
+          {
+            failure.compareAndSet(null, t);
+          }
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+
+    try
+    {
+      for (int version = 0; version < 20000 && failure.get() == null; version++)
+      {
+        cache.putEntry(TestCaseUtils.makeEntry(
+            "dn: " + dn,
+            "objectClass: top",
+            "objectClass: person",
+            "objectClass: organizationalperson",
+            "objectClass: inetorgperson",
+            "uid: overwrite",
+            "cn: overwrite",
+            "sn: overwrite",
+            "description: version" + version,
+            "l: version" + version), b, 0);
+        // Fill the cache so that the segments holding the previous versions get reclaimed and overwritten
+        cache.putEntry(scanEntries.get(version % scanEntries.size()), b, 1 + version % scanEntries.size());
+      }
+    }
+    finally
+    {
+      done.set(true);
+      for (Thread reader : readers)
+      {
+        reader.join();
+      }
+      // Clear the cache so that other tests can start from scratch.
+      cache.clear();
+    }
+    if (failure.get() != null)
+    {
+      throw new AssertionError(failure.get());
+    }
+  }
+
+  private static String getValue(Entry entry, String attributeName)
+  {
+    return entry.getAttribute(attributeName).get(0).iterator().next().toString();
+  }
+
+  private long getMonitorValue(String attributeName)
+  {
+    MonitorData monitorData = super.cache.getMonitorData();
+    for (Attribute attribute : monitorData)
+    {
+      AttributeType attributeType = attribute.getAttributeDescription().getAttributeType();
+      if (attributeType.hasName(attributeName))
+      {
+        return Long.parseLong(attribute.iterator().next().toString());
+      }
+    }
+    fail("Missing monitor attribute " + attributeName + " in " + monitorData);
+    return -1;
+  }
+}
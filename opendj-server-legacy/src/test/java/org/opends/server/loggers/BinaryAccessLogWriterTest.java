@@ -0,0 +1,187 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class BinaryAccessLogWriterTest extends DirectoryServerTestCase
+{
+  private static final long START_TIME = 1466000000000L;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @Test
+  public void testNumbersAreReadBack() throws Exception
+  {
+    final long[] values = { 0, 1, -1, 63, -64, 64, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+    final List<BinaryAccessLogRecord> records = new ArrayList<>();
+    final BinaryAccessLogRecord record = new BinaryAccessLogRecord(START_TIME, "SEARCH", "RES", 1, 2, 3);
+    for (int i = 0; i < values.length; i++)
+    {
+      record.addField("value" + i, values[i]);
+    }
+    records.add(record);
+
+    final List<BinaryAccessLogRecord> readRecords = readAll(writeAll(records, 64 * 1024), Long.MIN_VALUE,
+        Long.MAX_VALUE, null);
+    assertThat(readRecords).hasSize(1);
+    assertThat(readRecords.get(0).getFields()).isEqualTo(record.getFields());
+  }
+
+  @Test
+  public void testRecordsAreReadBackAcrossBlocks() throws Exception
+  {
+    final List<BinaryAccessLogRecord> records = newRecords(1000);
+    final File file = writeAll(records, 1024);
+
+    final List<BinaryAccessLogRecord> readRecords = readAll(file, Long.MIN_VALUE, Long.MAX_VALUE, null);
+    assertThat(readRecords).hasSize(records.size());
+    for (int i = 0; i < records.size(); i++)
+    {
+      assertThat(readRecords.get(i).toJson()).isEqualTo(records.get(i).toJson());
+    }
+  }
+
+  @Test
+  public void testBlocksOutsideOfTimeRangeAreSkipped() throws Exception
+  {
+    final List<BinaryAccessLogRecord> records = newRecords(1000);
+    final File file = writeAll(records, 1024);
+
+    final long fromTime = START_TIME + 400 * 1000;
+    final long toTime = START_TIME + 600 * 1000;
+    final long[] skippedBlocks = new long[1];
+    final List<BinaryAccessLogRecord> readRecords = readAll(file, fromTime, toTime, skippedBlocks);
+
+    assertThat(skippedBlocks[0]).isGreaterThan(0);
+    assertThat(readRecords.size()).isLessThan(records.size());
+    int inRange = 0;
+    for (BinaryAccessLogRecord record : readRecords)
+    {
+      if (record.getTime() >= fromTime && record.getTime() <= toTime)
+      {
+        inRange++;
+      }
+    }
+    assertThat(inRange).isEqualTo(201);
+  }
+
+  @Test
+  public void testRecordsLoggedOutOfTimeOrderAreFound() throws Exception
+  {
+    final List<BinaryAccessLogRecord> records = new ArrayList<>();
+    records.add(new BinaryAccessLogRecord(START_TIME + 1000, "SEARCH", "RES", 1, 2, 3));
+    records.add(new BinaryAccessLogRecord(START_TIME, "ADD", "RES", 1, 1, 2));
+    records.add(new BinaryAccessLogRecord(START_TIME + 2000, "MODIFY", "RES", 1, 3, 4));
+    final File file = writeAll(records, 64 * 1024);
+
+    final long[] skippedBlocks = new long[1];
+    final List<BinaryAccessLogRecord> readRecords = readAll(file, START_TIME, START_TIME, skippedBlocks);
+
+    assertThat(skippedBlocks[0]).isEqualTo(0);
+    assertThat(readRecords).hasSize(records.size());
+    for (int i = 0; i < records.size(); i++)
+    {
+      assertThat(readRecords.get(i).getTime()).isEqualTo(records.get(i).getTime());
+    }
+  }
+
+  private static List<BinaryAccessLogRecord> newRecords(int count)
+  {
+    final List<BinaryAccessLogRecord> records = new ArrayList<>();
+    for (int i = 0; i < count; i++)
+    {
+      final BinaryAccessLogRecord record =
+          new BinaryAccessLogRecord(START_TIME + i * 1000, "SEARCH", "RES", i / 10, i, i + 1);
+      record.addField("base", "ou=people,dc=example,dc=com");
+      record.addField("scope", "sub");
+      record.addField("filter", "(uid=user." + i + ")");
+      record.addField(BinaryAccessLogRecord.FIELD_RESULT, i % 7 == 0 ? 32 : 0);
+      record.addField("nentries", 1);
+      record.addField(BinaryAccessLogRecord.FIELD_ETIME, i % 13);
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static File writeAll(List<BinaryAccessLogRecord> records, int blockSize) throws Exception
+  {
+    final File file = File.createTempFile("binary-access", ".log");
+    file.deleteOnExit();
+    try (final OutputStream output = new FileOutputStream(file))
+    {
+      final MultifileTextWriter mfWriter = mock(MultifileTextWriter.class);
+      doAnswer(new Answer<Void>()
+      {
+        @Override
+        public Void answer(InvocationOnMock invocation) throws Throwable
+        {
+          output.write((byte[]) invocation.getArguments()[0], 0, (Integer) invocation.getArguments()[1]);
+          return null;
+        }
+      }).when(mfWriter).writeEncodedRecords(any(byte[].class), anyInt());
+
+      final BinaryAccessLogWriter writer = new BinaryAccessLogWriter("Test Binary Writer", mfWriter, blockSize, 6,
+          60000);
+      for (BinaryAccessLogRecord record : records)
+      {
+        writer.writeRecord(record);
+      }
+      writer.shutdown(false);
+    }
+    return file;
+  }
+
+  private static List<BinaryAccessLogRecord> readAll(File file, long fromTime, long toTime, long[] skippedBlocks)
+      throws Exception
+  {
+    final List<BinaryAccessLogRecord> records = new ArrayList<>();
+    try (BinaryAccessLogReader reader = new BinaryAccessLogReader(file, fromTime, toTime))
+    {
+      BinaryAccessLogRecord record;
+      while ((record = reader.readRecord()) != null)
+      {
+        records.add(record);
+      }
+      assertThat(reader.isTruncated()).isFalse();
+      if (skippedBlocks != null)
+      {
+        skippedBlocks[0] = reader.getSkippedBlockCount();
+      }
+    }
+    return records;
+  }
+}
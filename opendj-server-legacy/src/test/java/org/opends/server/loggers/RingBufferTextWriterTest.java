@@ -0,0 +1,164 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RingBufferTextWriterTest extends DirectoryServerTestCase
+{
+  private static final String EOL = System.lineSeparator();
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @DataProvider
+  public Object[][] records()
+  {
+    return new Object[][] {
+      { "" },
+      { "conn=1 op=2 msgID=3 SEARCH REQ base=\"dc=example,dc=com\"" },
+      { "filter=\"(cn=J\u00f6rg)\"" },
+      { "filter=\"(cn=\u6771\u4eac)\"" },
+      { "filter=\"(cn=\ud83d\ude00)\"" },
+      { "unpaired \ud83d surrogate" },
+    };
+  }
+
+  @Test(dataProvider = "records")
+  public void testEncode(String record)
+  {
+    final byte[] buffer = new byte[record.length() * 3 + EOL.length()];
+    final int length = RingBufferTextWriter.encode(new StringBuilder(record), buffer);
+
+    assertThat(Arrays.copyOf(buffer, length)).isEqualTo((record + EOL).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testAllRecordsAreWrittenInOrderPerThread() throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final MultifileTextWriter mfWriter = mock(MultifileTextWriter.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        output.write((byte[]) invocation.getArguments()[0], 0, (Integer) invocation.getArguments()[1]);
+        return null;
+      }
+    }).when(mfWriter).writeEncodedRecords(any(byte[].class), anyInt());
+
+    // A small ring buffer so that the logging threads have to wait for the writer thread
+    final RingBufferTextWriter writer =
+        new RingBufferTextWriter("Ring Buffer Test Writer", "Ring Buffer Test", 4, false, mfWriter);
+    final int nbThreads = 4;
+    final int nbRecords = 1000;
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < nbThreads; t++)
+    {
+      final int threadId = t;
+      threads.add(new Thread()
+      {
+        @Override
+        public void run()
+        {
+          final StringBuilder record = new StringBuilder();
+          for (int i = 0; i < nbRecords; i++)
+          {
+            record.setLength(0);
+            writer.writeRecord(record.append(threadId).append(' ').append(i));
+          }
+        }
+      });
+    }
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    writer.shutdown(false);
+    verify(mfWriter, never()).shutdown();
+
+    final String[] lines = output.toString("UTF-8").split(EOL);
+    assertThat(lines).hasSize(nbThreads * nbRecords);
+    final int[] nextRecords = new int[nbThreads];
+    final Set<String> distinctLines = new HashSet<>();
+    for (String line : lines)
+    {
+      final String[] fields = line.split(" ");
+      final int threadId = Integer.parseInt(fields[0]);
+      assertThat(Integer.parseInt(fields[1])).isEqualTo(nextRecords[threadId]++);
+      distinctLines.add(line);
+    }
+    assertThat(distinctLines).hasSize(nbThreads * nbRecords);
+  }
+
+  @Test
+  public void testRecordsLargerThanTheBatchSize() throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final MultifileTextWriter mfWriter = mock(MultifileTextWriter.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        output.write((byte[]) invocation.getArguments()[0], 0, (Integer) invocation.getArguments()[1]);
+        return null;
+      }
+    }).when(mfWriter).writeEncodedRecords(any(byte[].class), anyInt());
+
+    final char[] chars = new char[100 * 1024];
+    Arrays.fill(chars, 'a');
+    final String largeRecord = new String(chars);
+
+    final RingBufferTextWriter writer =
+        new RingBufferTextWriter("Ring Buffer Test Writer", "Ring Buffer Test", 16, true, mfWriter);
+    writer.writeRecord("first");
+    writer.writeRecord(largeRecord);
+    writer.writeRecord("last");
+    writer.shutdown(true);
+
+    assertThat(output.toString("UTF-8")).isEqualTo("first" + EOL + largeRecord + EOL + "last" + EOL);
+    verify(mfWriter, atLeastOnce()).flush();
+    verify(mfWriter).shutdown();
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.monitors;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/** This class defines a set of tests for the {@link LatencyHistogram} class. */
+@SuppressWarnings("javadoc")
+public class LatencyHistogramTestCase extends MonitorTestCase
+{
+  @Test
+  public void testEmptyHistogram()
+  {
+    final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+
+    assertThat(snapshot.getCount()).isEqualTo(0);
+    assertThat(snapshot.getMean()).isEqualTo(0);
+    assertThat(snapshot.getMax()).isEqualTo(0);
+    assertThat(snapshot.getValueAtPercentile(99)).isEqualTo(0);
+  }
+
+  @DataProvider
+  public Object[][] values()
+  {
+    return new Object[][] { { 0L }, { 1L }, { 31L }, { 32L }, { 1000L }, { 123456L }, { 3600000000L } };
+  }
+
+  @Test(dataProvider = "values")
+  public void testValuesAreRecordedWithBoundedRelativeError(long micros)
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(micros + 1, MICROSECONDS);
+    histogram.recordValue(micros, MICROSECONDS);
+
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertThat(snapshot.getCount()).isEqualTo(2);
+    assertThat(snapshot.getTotal()).isEqualTo(2 * micros + 1);
+    assertThat(snapshot.getMax()).isEqualTo(micros + 1);
+    final long p50 = snapshot.getValueAtPercentile(50);
+    assertThat(p50).isGreaterThanOrEqualTo(micros);
+    assertThat(p50 - micros).isLessThanOrEqualTo(micros / 16);
+  }
+
+  @Test
+  public void testPercentiles()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10000; i++)
+    {
+      histogram.recordValue(i, MILLISECONDS);
+    }
+
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertThat(snapshot.getCount()).isEqualTo(10000);
+    assertThat(snapshot.getMax()).isEqualTo(10000000);
+    assertThat(snapshot.getMean()).isEqualTo(5000500);
+    assertThat(snapshot.getValueAtPercentile(50)).isBetween(5000000L, 5000000L * 17 / 16);
+    assertThat(snapshot.getValueAtPercentile(99)).isBetween(9900000L, 9900000L * 17 / 16);
+    assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(10000000);
+  }
+
+  @Test
+  public void testNegativeAndOverflowingValues()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(-5, NANOSECONDS);
+    histogram.recordValue(1, DAYS);
+
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertThat(snapshot.getCount()).isEqualTo(2);
+    assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(0);
+    assertThat(snapshot.getMax()).isEqualTo((1L << 32) - 1);
+  }
+
+  @Test
+  public void testReset()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(10, MILLISECONDS);
+    histogram.reset();
+    assertThat(histogram.getSnapshot().getCount()).isEqualTo(0);
+
+    histogram.recordValue(20, MILLISECONDS);
+    assertThat(histogram.getSnapshot().getCount()).isEqualTo(1);
+    assertThat(histogram.getSnapshot().getMax()).isEqualTo(20000);
+  }
+
+  @Test
+  public void testConcurrentRecording() throws Exception
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final int nbThreads = 8;
+    final int nbValues = 10000;
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < nbThreads; i++)
+    {
+      final int offset = i;
+      threads.add(new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          for (int j = 0; j < nbValues; j++)
+          {
+            histogram.recordValue(offset + j, MICROSECONDS);
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertThat(snapshot.getCount()).isEqualTo(nbThreads * nbValues);
+    assertThat(snapshot.getMax()).isEqualTo(nbThreads - 1 + nbValues - 1);
+  }
+
+  @Test
+  public void testRecordingFromManyShortLivedThreads() throws Exception
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final int nbThreads = 500;
+    for (int i = 0; i < nbThreads; i++)
+    {
+      final int value = i;
+      final Thread thread = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          histogram.recordValue(value, MICROSECONDS);
+        }
+      });
+      thread.start();
+      thread.join();
+    }
+
+    // The threads share a bounded number of recorders, none of the values are lost
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertThat(snapshot.getCount()).isEqualTo(nbThreads);
+    assertThat(snapshot.getTotal()).isEqualTo(nbThreads * (nbThreads - 1) / 2);
+    assertThat(snapshot.getMax()).isEqualTo(nbThreads - 1);
+  }
+}
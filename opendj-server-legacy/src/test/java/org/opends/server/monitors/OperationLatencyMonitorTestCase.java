@@ -0,0 +1,60 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.monitors;
+
+import static org.testng.Assert.*;
+
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Attribute;
+import org.testng.annotations.Test;
+
+/** This class defines a set of tests for the {@link OperationLatencyMonitor} class. */
+@Test
+public class OperationLatencyMonitorTestCase extends GenericMonitorTestCase
+{
+  /**
+   * Creates a new instance of this test case class.
+   *
+   * @throws  Exception  If an unexpected problem occurred.
+   */
+  public OperationLatencyMonitorTestCase() throws Exception
+  {
+    super(null);
+  }
+
+  @Override
+  protected MonitorProvider<?> getMonitorInstance() throws Exception
+  {
+    return DirectoryServer.getMonitorProviders().get("operation latency");
+  }
+
+  /**
+   * Ensures that the latency attributes are defined in the schema, for the operation types as well
+   * as for the phases of the operations.
+   *
+   * @throws  Exception  If an unexpected problem occurred.
+   */
+  @Test
+  public void testMonitorAttributesAreDefinedInSchema() throws Exception
+  {
+    for (Attribute attr : getMonitorInstance().getMonitorData())
+    {
+      assertFalse(attr.getAttributeDescription().getAttributeType().isPlaceHolder(),
+          attr.getAttributeDescription() + " is not defined in the schema");
+    }
+  }
+}
@@ -281,6 +281,30 @@ public class DomainFakeCfg implements ReplicationDomainCfg
     return 100;
   }
 
+  @Override
+  public Integer getNumUpdateReplayLanes()
+  {
+    return null;
+  }
+
+  @Override
+  public long getConflictsHistoricalCompactionInterval()
+  {
+    return 0;
+  }
+
+  @Override
+  public int getConflictsHistoricalCompactionRate()
+  {
+    return 100;
+  }
+
+  @Override
+  public boolean isCompressionEnabled()
+  {
+    return false;
+  }
+
   /**
    * Gets the ECL Domain if it is present.
    *
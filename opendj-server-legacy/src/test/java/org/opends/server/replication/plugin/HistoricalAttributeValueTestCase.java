@@ -15,7 +15,12 @@
  */
 package org.opends.server.replication.plugin;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.assertj.core.api.Assertions;
+import org.forgerock.opendj.ldap.AttributeDescription;
+import org.forgerock.opendj.ldap.ByteString;
 import org.opends.server.replication.ReplicationTestCase;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -47,4 +52,40 @@ public class HistoricalAttributeValueTestCase extends ReplicationTestCase
     HistoricalAttributeValue val = new HistoricalAttributeValue(strVal);
     Assertions.assertThat(strVal).isEqualTo(val.toString());
   }
+
+  @Test(dataProvider = "values")
+  public void testCtorFromEncodedValue(String strVal)
+  {
+    ByteString encodedVal = ByteString.valueOfUtf8(strVal);
+    HistoricalAttributeValue val =
+        new HistoricalAttributeValue(encodedVal, new HashMap<String, AttributeDescription>());
+    Assertions.assertThat(val.toString()).isEqualTo(strVal);
+    Assertions.assertThat(val.getEncodedValue()).isSameAs(encodedVal);
+  }
+
+  @Test
+  public void testValueContainingColons()
+  {
+    HistoricalAttributeValue val =
+        new HistoricalAttributeValue("description:0000014f2d0c9f53000100000001:add:a:b:c");
+    Assertions.assertThat(val.getAttributeValue()).isEqualTo(ByteString.valueOfUtf8("a:b:c"));
+  }
+
+  @Test
+  public void testAttributeDescriptionsAreShared()
+  {
+    Map<String, AttributeDescription> attrDescs = new HashMap<>();
+    HistoricalAttributeValue val1 = new HistoricalAttributeValue(
+        ByteString.valueOfUtf8("description:0000014f2d0c9f53000100000001:add:value1"), attrDescs);
+    HistoricalAttributeValue val2 = new HistoricalAttributeValue(
+        ByteString.valueOfUtf8("description:0000014f2d0c9f53000100000002:del:value2"), attrDescs);
+    Assertions.assertThat(val2.getAttributeDescription()).isSameAs(val1.getAttributeDescription());
+    Assertions.assertThat(attrDescs).hasSize(1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidValue()
+  {
+    new HistoricalAttributeValue("description:0000014f2d0c9f53000100000001");
+  }
 }
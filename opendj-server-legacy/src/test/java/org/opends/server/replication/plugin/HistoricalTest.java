@@ -26,11 +26,15 @@ import static org.opends.server.types.NullOutputStream.nullPrintStream;
 import static org.opends.server.util.CollectionUtils.*;
 import static org.testng.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.assertj.core.api.Assertions;
 import org.forgerock.opendj.ldap.AttributeDescription;
+import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.DN;
 import org.forgerock.opendj.ldap.ModificationType;
 import org.forgerock.opendj.ldap.schema.AttributeType;
@@ -214,6 +218,79 @@ public class HistoricalTest extends ReplicationTestCase
     assertEquals(hist.getLastPurgedValuesCount(),11);
   }
 
+  /**
+   * Tests that compacting the historical of an entry gives the same result as
+   * encoding again each of the historical values kept, while reusing the
+   * stored form of the unchanged values.
+   */
+  @Test
+  public void testCompactionMatchesFreshEncoding() throws Exception
+  {
+    final long now = System.currentTimeMillis();
+    final CSN oldCSN = new CSN(now - DAYS.toMillis(2), 1, 1);
+    final CSN recentCSN1 = new CSN(now, 2, 1);
+    final CSN recentCSN2 = new CSN(now, 3, 1);
+    final String[] keptValues = {
+      "cn;lang-en:" + recentCSN1 + ":add:Aaccf Amar",
+      "cn;lang-en:" + recentCSN2 + ":del:Aaccf B Amar",
+      "description:" + recentCSN1 + ":repl:recent description",
+      "displayName:" + recentCSN2 + ":repl:2",
+    };
+    final String[] purgedValues = {
+      "cn;lang-en:" + oldCSN + ":add:Old Amar",
+      "sn:" + oldCSN + ":add:Amar",
+    };
+    final List<String> ldif = newArrayList(
+        "dn: uid=user.compact," + TEST_ROOT_DN_STRING,
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user.compact",
+        "cn: Aaccf Amar",
+        "sn: Amar");
+    for (String value : keptValues)
+    {
+      ldif.add("ds-sync-hist: " + value);
+    }
+    for (String value : purgedValues)
+    {
+      ldif.add("ds-sync-hist: " + value);
+    }
+    final Entry entry = TestCaseUtils.makeEntry(ldif.toArray(new String[0]));
+    final Map<String, ByteString> storedValues = new HashMap<>();
+    for (Attribute attr : EntryHistorical.getHistoricalAttr(entry))
+    {
+      for (ByteString value : attr)
+      {
+        storedValues.put(value.toString(), value);
+      }
+    }
+
+    final EntryHistorical hist = EntryHistorical.newInstanceFromEntry(entry);
+    hist.setPurgeDelay(DAYS.toMillis(1));
+    final Attribute compacted = hist.encodeAndPurge();
+    assertEquals(hist.getLastPurgedValuesCount(), purgedValues.length);
+
+    final List<String> compactedValues = new ArrayList<>();
+    for (ByteString value : compacted)
+    {
+      compactedValues.add(value.toString());
+      if (value.toString().startsWith("cn;lang-en:"))
+      {
+        // Unchanged values of multi-valued attributes are not encoded again
+        Assertions.assertThat(value).isSameAs(storedValues.get(value.toString()));
+      }
+    }
+    final List<String> freshlyEncodedValues = new ArrayList<>();
+    for (String value : keptValues)
+    {
+      freshlyEncodedValues.add(new HistoricalAttributeValue(value).toString());
+    }
+    Assertions.assertThat(compactedValues).containsOnly(freshlyEncodedValues.toArray(new String[0]));
+    Assertions.assertThat(compactedValues).hasSameSizeAs(freshlyEncodedValues);
+  }
+
   /**
    * The scenario for this test case is that two modify operations occur at
    * two different servers at nearly the same time, each operation adding a
@@ -363,7 +363,6 @@ public class NamingConflictTest extends ReplicationTestCase
   {
     domain.processUpdate(updateMsg);
     LDAPUpdateMsg ldapUpdate = queue.take().getUpdateMessage();
-    domain.markInProgress(ldapUpdate);
     domain.replay(ldapUpdate, SHUTDOWN);
   }
 }
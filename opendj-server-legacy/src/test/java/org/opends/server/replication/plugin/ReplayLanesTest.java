@@ -0,0 +1,135 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.plugin;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.protocol.LDAPUpdateMsg;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ReplayLanesTest extends DirectoryServerTestCase
+{
+  private static final int NB_LANES = 8;
+
+  private LDAPReplicationDomain newDomain(String baseDN, int nbLanes)
+  {
+    final LDAPReplicationDomain domain = mock(LDAPReplicationDomain.class);
+    when(domain.getBaseDN()).thenReturn(DN.valueOf(baseDN));
+    when(domain.getNumberOfReplayLanes()).thenReturn(nbLanes);
+    return domain;
+  }
+
+  private UpdateToReplay newUpdate(LDAPReplicationDomain domain, String entryUUID, String dn)
+  {
+    final LDAPUpdateMsg msg = mock(LDAPUpdateMsg.class);
+    when(msg.getEntryUUID()).thenReturn(entryUUID);
+    when(msg.getDN()).thenReturn(DN.valueOf(dn));
+    return new UpdateToReplay(msg, domain);
+  }
+
+  @Test
+  public void updatesOfAnEntryShareTheSameLane() throws Exception
+  {
+    final LDAPReplicationDomain domain = newDomain("dc=example,dc=com", Integer.MAX_VALUE);
+    final UpdateToReplay update1 = newUpdate(domain, "uuid-1", "cn=before,dc=example,dc=com");
+    final UpdateToReplay update2 = newUpdate(domain, "uuid-1", "cn=after,dc=example,dc=com");
+
+    assertThat(ReplayLanes.getLaneIndex(update1, NB_LANES)).isEqualTo(ReplayLanes.getLaneIndex(update2, NB_LANES));
+  }
+
+  @Test
+  public void updatesAreSpreadAcrossLanes() throws Exception
+  {
+    final LDAPReplicationDomain domain = newDomain("dc=example,dc=com", Integer.MAX_VALUE);
+    final List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < 100; i++)
+    {
+      final UpdateToReplay update = newUpdate(domain, "uuid-" + i, "cn=" + i + ",dc=example,dc=com");
+      final int index = ReplayLanes.getLaneIndex(update, NB_LANES);
+      assertThat(index).isBetween(0, NB_LANES - 1);
+      indexes.add(index);
+    }
+    assertThat(new HashSet<>(indexes).size()).isGreaterThan(1);
+  }
+
+  @Test
+  public void domainRestrictedToOneLane() throws Exception
+  {
+    final LDAPReplicationDomain domain = newDomain("dc=example,dc=com", 1);
+    final int expected = ReplayLanes.getLaneIndex(newUpdate(domain, "uuid-0", "cn=0,dc=example,dc=com"), NB_LANES);
+    for (int i = 1; i < 100; i++)
+    {
+      final UpdateToReplay update = newUpdate(domain, "uuid-" + i, "cn=" + i + ",dc=example,dc=com");
+      assertThat(ReplayLanes.getLaneIndex(update, NB_LANES)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void resizePreservesOrderOfEachEntry() throws Exception
+  {
+    final LDAPReplicationDomain domain = newDomain("dc=example,dc=com", Integer.MAX_VALUE);
+    final ReplayLanes lanes = new ReplayLanes(2);
+    final List<UpdateToReplay> updates = new ArrayList<>();
+    for (int i = 0; i < 20; i++)
+    {
+      final UpdateToReplay update = newUpdate(domain, "uuid-" + (i % 3), "cn=" + i + ",dc=example,dc=com");
+      updates.add(update);
+      assertThat(lanes.offer(update, 1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    lanes.resize(NB_LANES);
+
+    assertThat(lanes.size()).isEqualTo(NB_LANES);
+    final List<UpdateToReplay> replayed = new ArrayList<>();
+    for (int i = 0; i < NB_LANES; i++)
+    {
+      final BlockingQueue<UpdateToReplay> lane = lanes.getLane(i);
+      for (UpdateToReplay update : lane)
+      {
+        assertThat(ReplayLanes.getLaneIndex(update, NB_LANES)).isEqualTo(i);
+      }
+      lane.drainTo(replayed);
+    }
+    assertThat(replayed).containsOnlyElementsOf(updates).hasSize(updates.size());
+    for (int i = 0; i < 3; i++)
+    {
+      assertThat(updatesOf(replayed, "uuid-" + i)).isEqualTo(updatesOf(updates, "uuid-" + i));
+    }
+  }
+
+  private List<UpdateToReplay> updatesOf(List<UpdateToReplay> updates, String entryUUID)
+  {
+    final List<UpdateToReplay> results = new ArrayList<>();
+    for (UpdateToReplay update : updates)
+    {
+      if (entryUUID.equals(update.getUpdateMessage().getEntryUUID()))
+      {
+        results.add(update);
+      }
+    }
+    return results;
+  }
+}
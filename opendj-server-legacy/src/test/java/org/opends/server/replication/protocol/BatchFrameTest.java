@@ -0,0 +1,137 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.protocol;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.common.CSN;
+import org.testng.annotations.Test;
+
+/** Test for the {@link BatchFrame} class. */
+@SuppressWarnings("javadoc")
+public class BatchFrameTest extends DirectoryServerTestCase
+{
+  private List<byte[]> newMessages(int nbMessages)
+  {
+    final byte[][] msgs = new byte[nbMessages][];
+    for (int i = 0; i < nbMessages; i++)
+    {
+      msgs[i] = new WindowMsg(i).getBytes(ProtocolVersion.getCurrentVersion());
+    }
+    return Arrays.asList(msgs);
+  }
+
+  private void assertDecodedMessages(List<byte[]> decoded, List<byte[]> expected)
+  {
+    assertThat(decoded).hasSameSizeAs(expected);
+    for (int i = 0; i < expected.size(); i++)
+    {
+      assertThat(decoded.get(i)).isEqualTo(expected.get(i));
+    }
+  }
+
+  @Test
+  public void testUncompressed() throws Exception
+  {
+    final List<byte[]> msgs = newMessages(10);
+    final byte[] frame = BatchFrame.encode(msgs, null);
+
+    assertThat(BatchFrame.isBatchFrame(frame)).isTrue();
+    assertDecodedMessages(BatchFrame.decode(frame, new Inflater()), msgs);
+  }
+
+  @Test
+  public void testCompressed() throws Exception
+  {
+    final List<byte[]> msgs = newMessages(1000);
+    final byte[] uncompressedFrame = BatchFrame.encode(msgs, null);
+    final byte[] frame = BatchFrame.encode(msgs, new Deflater(Deflater.BEST_SPEED));
+
+    assertThat(frame.length).isLessThan(uncompressedFrame.length);
+    assertDecodedMessages(BatchFrame.decode(frame, new Inflater()), msgs);
+  }
+
+  @Test
+  public void testIncompressibleMessagesAreSentUncompressed() throws Exception
+  {
+    final byte[] randomMsg = new byte[4096];
+    new Random(0).nextBytes(randomMsg);
+    randomMsg[0] = ReplicationMsg.MSG_TYPE_GENERIC_UPDATE;
+    final List<byte[]> msgs = Arrays.asList(randomMsg);
+
+    final byte[] frame = BatchFrame.encode(msgs, new Deflater(Deflater.BEST_SPEED));
+
+    assertThat(frame).isEqualTo(BatchFrame.encode(msgs, null));
+    assertDecodedMessages(BatchFrame.decode(frame, new Inflater()), msgs);
+  }
+
+  @Test
+  public void testDeflaterAndInflaterAreReusable() throws Exception
+  {
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    final Inflater inflater = new Inflater();
+    for (int i = 1; i < 5; i++)
+    {
+      final List<byte[]> msgs = newMessages(i * 100);
+      assertDecodedMessages(BatchFrame.decode(BatchFrame.encode(msgs, deflater), inflater), msgs);
+    }
+  }
+
+  @Test
+  public void testNotABatchFrame()
+  {
+    final byte[] msg = new ReplicaOfflineMsg(new CSN(0, 0, 1)).getBytes(ProtocolVersion.getCurrentVersion());
+    assertThat(BatchFrame.isBatchFrame(msg)).isFalse();
+  }
+
+  @Test(expectedExceptions = DataFormatException.class)
+  public void testTruncatedCompressedFrame() throws Exception
+  {
+    final byte[] frame = BatchFrame.encode(newMessages(1000), new Deflater(Deflater.BEST_SPEED));
+    BatchFrame.decode(Arrays.copyOf(frame, frame.length / 2), new Inflater());
+  }
+
+  @Test(expectedExceptions = DataFormatException.class)
+  public void testOversizedUncompressedLengthIsRejected() throws Exception
+  {
+    final byte[] frame = BatchFrame.encode(newMessages(1000), new Deflater(Deflater.BEST_SPEED));
+    // Only change the uncompressed length, which must be rejected before allocating the payload
+    final byte[] compressed = Arrays.copyOfRange(frame, 2 + ByteArrayBuilder.ints(1), frame.length);
+    final byte[] oversizedFrame = new ByteArrayBuilder()
+        .appendByte(ReplicationMsg.MSG_TYPE_BATCH)
+        .appendByte(frame[1])
+        .appendInt(Integer.MAX_VALUE)
+        .appendByteArray(compressed)
+        .toByteArray();
+    BatchFrame.decode(oversizedFrame, new Inflater());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testOversizedBatchIsNotEncoded() throws Exception
+  {
+    final byte[] largeMsg = new byte[BatchFrame.MAX_PAYLOAD_LENGTH];
+    largeMsg[0] = ReplicationMsg.MSG_TYPE_GENERIC_UPDATE;
+    BatchFrame.encode(Arrays.asList(largeMsg), new Deflater(Deflater.BEST_SPEED));
+  }
+}
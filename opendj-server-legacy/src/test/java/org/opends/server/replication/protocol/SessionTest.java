@@ -0,0 +1,136 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.protocol;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import javax.net.ssl.SSLSocket;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.common.CSN;
+import org.opends.server.util.StaticUtils;
+import org.testng.annotations.Test;
+
+/** Test for the {@link Session} class. */
+@SuppressWarnings("javadoc")
+public class SessionTest extends DirectoryServerTestCase
+{
+  @Test
+  public void testCloseReleasesInflater() throws Exception
+  {
+    try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket peerSocket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort()))
+    {
+      final Socket socket = serverSocket.accept();
+      final Session session = new Session(socket, mockSecureSocket(socket));
+      try
+      {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final byte[] frame;
+        try
+        {
+          frame = BatchFrame.encode(
+              Arrays.asList(new WindowMsg(1).getBytes(session.getProtocolVersion())), deflater);
+        }
+        finally
+        {
+          deflater.end();
+        }
+        final OutputStream peerOutput = peerSocket.getOutputStream();
+        peerOutput.write(String.format("%08x", frame.length).getBytes());
+        peerOutput.write(frame);
+        peerOutput.flush();
+
+        final ReplicationMsg msg = session.receive();
+        assertThat(msg).isInstanceOf(WindowMsg.class);
+        assertThat(((WindowMsg) msg).getNumAck()).isEqualTo(1);
+        assertThat(session.isInflaterEnded()).isFalse();
+      }
+      finally
+      {
+        session.close();
+        StaticUtils.close(socket);
+      }
+      assertThat(session.isInflaterEnded()).isTrue();
+    }
+  }
+
+  @Test(timeOut = 60000)
+  public void testPublishWithoutBlockingDefersMessagesWhenSendQueueIsFull() throws Exception
+  {
+    try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket peerSocket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort()))
+    {
+      final Socket socket = serverSocket.accept();
+      final Session session = new Session(socket, mockSecureSocket(socket), 1);
+      final Session peerSession = new Session(peerSocket, mockSecureSocket(peerSocket));
+      session.start();
+      session.waitForStartup();
+      try
+      {
+        // The peer does not read yet: the updates fill the socket buffers, then the send queue
+        final int nbUpdates = 24;
+        final byte[] payload = new byte[1024 * 1024];
+        for (int i = 0; i < nbUpdates; i++)
+        {
+          session.publishWithoutBlocking(new UpdateMsg(new CSN(i + 1, 0, 1), payload));
+        }
+        session.publishWithoutBlocking(new AckMsg(new CSN(nbUpdates + 1, 0, 1)));
+
+        int nbReceivedUpdates = 0;
+        boolean isAckReceived = false;
+        for (int i = 0; i <= nbUpdates; i++)
+        {
+          final ReplicationMsg msg = peerSession.receive();
+          if (msg instanceof AckMsg)
+          {
+            isAckReceived = true;
+          }
+          else
+          {
+            assertThat(msg).isInstanceOf(UpdateMsg.class);
+            nbReceivedUpdates++;
+          }
+        }
+        assertThat(isAckReceived).isTrue();
+        assertThat(nbReceivedUpdates).isEqualTo(nbUpdates);
+      }
+      finally
+      {
+        session.close();
+        peerSession.close();
+        StaticUtils.close(socket);
+      }
+    }
+  }
+
+  /** Only the plain socket is used by these tests. */
+  private SSLSocket mockSecureSocket(Socket socket) throws Exception
+  {
+    final SSLSocket secureSocket = mock(SSLSocket.class);
+    when(secureSocket.getInputStream()).thenReturn(socket.getInputStream());
+    when(secureSocket.getOutputStream()).thenReturn(socket.getOutputStream());
+    return secureSocket;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.server;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.DN;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.common.CSN;
+import org.opends.server.replication.common.ServerState;
+import org.opends.server.replication.protocol.DeleteMsg;
+import org.opends.server.replication.protocol.UpdateMsg;
+import org.opends.server.replication.server.changelog.api.DBCursor;
+import org.testng.annotations.Test;
+
+/** Test for the {@link MessageHandler} class. */
+@SuppressWarnings("javadoc")
+public class MessageHandlerTest extends DirectoryServerTestCase
+{
+  private static final DN BASE_DN = DN.valueOf("dc=example,dc=com");
+  private static final int SERVER_ID = 1;
+
+  /** A cursor over the messages of the fake changelog following a CSN. */
+  private static final class ChangelogCursor implements DBCursor<UpdateMsg>
+  {
+    private final Iterator<UpdateMsg> iterator;
+    private UpdateMsg current;
+
+    private ChangelogCursor(Iterator<UpdateMsg> iterator)
+    {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public UpdateMsg getRecord()
+    {
+      return current;
+    }
+
+    @Override
+    public boolean next()
+    {
+      current = iterator.hasNext() ? iterator.next() : null;
+      return current != null;
+    }
+
+    @Override
+    public void close()
+    {
+      // nothing to do
+    }
+  }
+
+  /**
+   * The producer trims the queue while the consumer takes messages from it: every message must
+   * still be received once, in order, either from the queue or from the changelog.
+   */
+  @Test(timeOut = 120000)
+  public void testConcurrentTrimsDoNotSkipUpdates() throws Exception
+  {
+    final int nbMessages = 200000;
+    final ConcurrentNavigableMap<CSN, UpdateMsg> changelog = new ConcurrentSkipListMap<>();
+    final MessageHandler handler = newMessageHandler(changelog);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try
+    {
+      final Future<List<CSN>> consumer = executor.submit(new Callable<List<CSN>>()
+      {
+        @Override
+        public List<CSN> call() throws Exception
+        {
+          final List<CSN> received = new ArrayList<>(nbMessages);
+          while (received.size() < nbMessages)
+          {
+            final UpdateMsg msg = handler.getNextMessage();
+            if (msg == null)
+            {
+              break;
+            }
+            received.add(msg.getCSN());
+            if (received.size() % 64 == 0)
+            {
+              // fall behind from time to time so that the producer trims the queue
+              Thread.yield();
+            }
+          }
+          return received;
+        }
+      });
+      final Future<?> producer = executor.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          for (int i = 1; i <= nbMessages; i++)
+          {
+            final UpdateMsg msg = new DeleteMsg(BASE_DN, new CSN(i, 0, SERVER_ID), "uid");
+            changelog.put(msg.getCSN(), msg);
+            handler.add(msg);
+          }
+        }
+      });
+
+      producer.get(60, TimeUnit.SECONDS);
+      final List<CSN> received = consumer.get(60, TimeUnit.SECONDS);
+      assertThat(received).hasSize(nbMessages);
+      for (int i = 0; i < nbMessages; i++)
+      {
+        assertThat(received.get(i)).isEqualTo(new CSN(i + 1, 0, SERVER_ID));
+      }
+    }
+    finally
+    {
+      handler.setConsumerActive(false);
+      executor.shutdownNow();
+    }
+  }
+
+  private MessageHandler newMessageHandler(final ConcurrentNavigableMap<CSN, UpdateMsg> changelog)
+      throws Exception
+  {
+    final MessageHandler handler = new MessageHandler(10, mock(ReplicationServer.class));
+    handler.setInitialServerState(new ServerState());
+    handler.replicationServerDomain = mock(ReplicationServerDomain.class);
+    when(handler.replicationServerDomain.getCursorFrom(any(ServerState.class))).thenAnswer(
+        new Answer<DBCursor<UpdateMsg>>()
+        {
+          @Override
+          public DBCursor<UpdateMsg> answer(InvocationOnMock invocation) throws Throwable
+          {
+            final ServerState state = (ServerState) invocation.getArguments()[0];
+            final CSN lastCSN = state.getCSN(SERVER_ID);
+            final ConcurrentNavigableMap<CSN, UpdateMsg> next =
+                lastCSN != null ? changelog.tailMap(lastCSN, false) : changelog;
+            return new ChangelogCursor(next.values().iterator());
+          }
+        });
+    return handler;
+  }
+}
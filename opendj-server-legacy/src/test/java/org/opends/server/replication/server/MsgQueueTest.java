@@ -0,0 +1,157 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.server;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.common.CSN;
+import org.opends.server.replication.protocol.DeleteMsg;
+import org.opends.server.replication.protocol.UpdateMsg;
+import org.testng.annotations.Test;
+
+/** Test for the {@link MsgQueue} class. */
+@SuppressWarnings("javadoc")
+public class MsgQueueTest extends DirectoryServerTestCase
+{
+  private static final DN BASE_DN = DN.valueOf("dc=example,dc=com");
+
+  private UpdateMsg newMsg(long time, int serverId)
+  {
+    return new DeleteMsg(BASE_DN, new CSN(time, 0, serverId), "uid");
+  }
+
+  @Test
+  public void testOrderAndCounters() throws Exception
+  {
+    final MsgQueue queue = new MsgQueue();
+    final UpdateMsg msg1 = newMsg(1, 1);
+    final UpdateMsg msg2 = newMsg(2, 2);
+    final UpdateMsg msg3 = newMsg(3, 1);
+    queue.add(msg3);
+    queue.add(msg1);
+    queue.add(msg2);
+
+    assertThat(queue.count()).isEqualTo(3);
+    assertThat(queue.bytesCount()).isEqualTo(msg1.size() + msg2.size() + msg3.size());
+    assertThat(queue.first()).isSameAs(msg1);
+    assertThat(queue.removeFirst()).isSameAs(msg1);
+    assertThat(queue.removeFirst()).isSameAs(msg2);
+    assertThat(queue.removeFirst()).isSameAs(msg3);
+    assertThat(queue.removeFirst()).isNull();
+    assertThat(queue.first()).isNull();
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.count()).isZero();
+    assertThat(queue.bytesCount()).isZero();
+  }
+
+  @Test
+  public void testAddSameCSN() throws Exception
+  {
+    final MsgQueue queue = new MsgQueue();
+    final UpdateMsg msg = newMsg(1, 1);
+    queue.add(msg);
+    queue.add(newMsg(1, 1));
+
+    assertThat(queue.count()).isEqualTo(1);
+    assertThat(queue.bytesCount()).isEqualTo(msg.size());
+  }
+
+  @Test
+  public void testConsumeUpTo() throws Exception
+  {
+    final MsgQueue queue = new MsgQueue();
+    final List<UpdateMsg> msgs = new ArrayList<>();
+    for (int i = 1; i <= 5; i++)
+    {
+      final UpdateMsg msg = newMsg(i, 1);
+      msgs.add(msg);
+      queue.add(msg);
+    }
+
+    queue.consumeUpTo(msgs.get(2));
+    assertThat(queue.count()).isEqualTo(2);
+    assertThat(queue.bytesCount()).isEqualTo(msgs.get(3).size() + msgs.get(4).size());
+    assertThat(queue.contains(msgs.get(2))).isFalse();
+    assertThat(queue.first()).isSameAs(msgs.get(3));
+
+    queue.clear();
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.count()).isZero();
+    assertThat(queue.bytesCount()).isZero();
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumer() throws Exception
+  {
+    final MsgQueue queue = new MsgQueue();
+    final int nbProducers = 4;
+    final int nbMsgsPerProducer = 2000;
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> producers = new ArrayList<>();
+    for (int p = 1; p <= nbProducers; p++)
+    {
+      final int serverId = p;
+      final Thread producer = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+          }
+          catch (InterruptedException e)
+          {
+            return;
+          }
+          for (int i = 1; i <= nbMsgsPerProducer; i++)
+          {
+            queue.add(newMsg(i, serverId));
+          }
+        }
+      };
+      producer.start();
+      producers.add(producer);
+    }
+
+    start.countDown();
+    int consumed = 0;
+    final int expected = nbProducers * nbMsgsPerProducer;
+    final long deadline = System.currentTimeMillis() + 30000;
+    while (consumed < expected && System.currentTimeMillis() < deadline)
+    {
+      if (queue.removeFirst() != null)
+      {
+        consumed++;
+      }
+    }
+    for (Thread producer : producers)
+    {
+      producer.join();
+    }
+
+    assertThat(consumed).isEqualTo(expected);
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.count()).isZero();
+    assertThat(queue.bytesCount()).isZero();
+  }
+}
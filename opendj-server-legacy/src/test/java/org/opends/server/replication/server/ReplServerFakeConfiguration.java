@@ -276,4 +276,34 @@ public class ReplServerFakeConfiguration implements ReplicationServerCfg
   {
     this.confidentialityEnabled = confidentialityEnabled;
   }
+
+  @Override
+  public long getChangelogGroupCommitInterval()
+  {
+    return 10;
+  }
+
+  @Override
+  public long getChangelogGroupCommitSize()
+  {
+    return 1024 * 1024;
+  }
+
+  @Override
+  public boolean isCompressionEnabled()
+  {
+    return false;
+  }
+
+  @Override
+  public String getChangelogArchiveDirectory()
+  {
+    return null;
+  }
+
+  @Override
+  public long getChangelogArchiveDelay()
+  {
+    return 24 * 60 * 60;
+  }
 }
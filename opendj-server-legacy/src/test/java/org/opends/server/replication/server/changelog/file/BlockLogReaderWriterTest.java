@@ -25,10 +25,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.forgerock.opendj.util.OperatingSystem;
 import org.assertj.core.api.SoftAssertions;
 import org.forgerock.opendj.ldap.ByteSequenceReader;
 import org.forgerock.opendj.ldap.ByteString;
@@ -114,6 +118,57 @@ public class BlockLogReaderWriterTest extends DirectoryServerTestCase
     }
   }
 
+  /**
+   * Tests that records can be written then read correctly from a memory-mapped file for different block sizes.
+   */
+  @Test(dataProvider="recordsData")
+  public void testWriteThenReadMapped(int blockSize, int expectedSizeOfFile, List<Record<Integer, Integer>> records)
+      throws Exception
+  {
+    writeRecords(blockSize, records);
+
+    try (BlockLogReader<Integer, Integer> reader = newMappedReader(blockSize))
+    {
+      for (int i = 0; i < records.size(); i++)
+      {
+         Record<Integer, Integer> record = reader.readRecord();
+         assertThat(record).isEqualTo(records.get(i));
+      }
+      assertThat(reader.readRecord()).isNull();
+      assertThat(reader.getFilePosition()).isEqualTo(expectedSizeOfFile);
+    }
+  }
+
+  @Test
+  public void testMappingIsReleasedWhenLastReaderIsClosedAfterShutdown() throws Exception
+  {
+    if (OperatingSystem.isWindows())
+    {
+      // Read-only files are not mapped on Windows
+      return;
+    }
+    writeRecords(BLOCK_SIZE, records(1, 2, 3));
+    LogReaderPool<Integer, Integer> pool = new LogReaderPool<>(TEST_FILE, RECORD_PARSER, true);
+
+    BlockLogReader<Integer, Integer> reader1 = pool.get();
+    BlockLogReader<Integer, Integer> reader2 = pool.get();
+    assertThat(pool.isFileMapped()).isTrue();
+
+    pool.release(reader1);
+    pool.shutdown();
+    assertThat(pool.isFileMapped()).isTrue();
+    assertThat(reader2.readRecord()).isEqualTo(record(1));
+
+    pool.release(reader2);
+    assertThat(pool.isFileMapped()).isFalse();
+
+    try (BlockLogReader<Integer, Integer> reader = pool.get())
+    {
+      assertThat(pool.isFileMapped()).isFalse();
+      assertThat(reader.readRecord()).isEqualTo(record(1));
+    }
+  }
+
   @DataProvider(name = "recordsForSeek")
   Object[][] recordsForSeek()
   {
@@ -251,6 +306,24 @@ public class BlockLogReaderWriterTest extends DirectoryServerTestCase
     }
   }
 
+  @Test(dataProvider = "recordsForSeek")
+  public void testSeekToRecordMapped(int blockSize, List<Record<Integer, Integer>> records, int key,
+      KeyMatchingStrategy matchingStrategy, PositionStrategy positionStrategy, Record<Integer, Integer> expectedRecord,
+      boolean shouldBeFound) throws Exception
+  {
+    writeRecords(blockSize, records);
+
+    try (BlockLogReader<Integer, Integer> reader = newMappedReader(blockSize))
+    {
+      Pair<Boolean, Record<Integer, Integer>> result = reader.seekToRecord(key, matchingStrategy, positionStrategy);
+
+      final SoftAssertions softly = new SoftAssertions();
+      softly.assertThat(result.getFirst()).isEqualTo(shouldBeFound);
+      softly.assertThat(result.getSecond()).isEqualTo(expectedRecord);
+      softly.assertAll();
+    }
+  }
+
   @Test
   public void testGetClosestBlockStartBeforeOrAtPosition() throws Exception
   {
@@ -518,6 +591,16 @@ public class BlockLogReaderWriterTest extends DirectoryServerTestCase
         RECORD_PARSER, blockSize);
   }
 
+  private BlockLogReader<Integer, Integer> newMappedReader(int blockSize) throws IOException
+  {
+    try (RandomAccessFile file = new RandomAccessFile(TEST_FILE, "r");
+        FileChannel channel = file.getChannel())
+    {
+      final ByteBuffer mappedFile = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      return BlockLogReader.newMappedReaderForTests(TEST_FILE, mappedFile, RECORD_PARSER, blockSize);
+    }
+  }
+
   private BlockLogReader<Integer, Integer> newReaderWithNullFile(int blockSize) throws FileNotFoundException
   {
     return BlockLogReader.newReaderForTests(null, null, RECORD_PARSER, blockSize);
@@ -31,6 +31,7 @@ import org.opends.server.replication.ReplicationTestCase;
 import org.opends.server.replication.common.CSN;
 import org.opends.server.replication.common.CSNGenerator;
 import org.opends.server.replication.protocol.DeleteMsg;
+import org.opends.server.replication.protocol.ProtocolVersion;
 import org.opends.server.replication.protocol.UpdateMsg;
 import org.opends.server.replication.server.ReplServerFakeConfiguration;
 import org.opends.server.replication.server.ReplicationServer;
@@ -111,6 +112,20 @@ public class FileReplicaDBTest extends ReplicationTestCase
     assertFalse(data1.equals(data2));
   }
 
+  @Test(dataProvider="messages")
+  public void testDecodedRecordIsForwardedWithoutEncoding(UpdateMsg msg, boolean confidential) throws Exception
+  {
+    byte[] recordBytes = msg.getBytes();
+    UpdateMsg decoded = FileReplicaDB.decodeUpdateMsg(recordBytes);
+    assertThat(decoded.getBytes()).isSameAs(recordBytes);
+    assertThat(decoded.getBytes(ProtocolVersion.getCurrentVersion())).isSameAs(recordBytes);
+
+    RecordParser<CSN, UpdateMsg> parser = FileReplicaDB.newReplicaDBParser(createCryptoSuite(confidential));
+    UpdateMsg fromRecord = parser.decodeRecord(parser.encodeRecord(Record.from(msg.getCSN(), msg))).getValue();
+    assertThat(fromRecord.getBytes()).isSameAs(fromRecord.getBytes());
+    assertThat(fromRecord.getBytes()).isEqualTo(recordBytes);
+  }
+
   private CryptoSuite createCryptoSuite(boolean confidential)
   {
     return getServerContext().getCryptoManager().newCryptoSuite(cipherTransformation, keyLength, confidential);
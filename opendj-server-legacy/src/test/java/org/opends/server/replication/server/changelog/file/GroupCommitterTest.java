@@ -0,0 +1,174 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.replication.server.changelog.file.LogFileTest.*;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.replication.server.changelog.api.ChangelogException;
+import org.opends.server.replication.server.changelog.file.Log.LogRotationParameters;
+import org.opends.server.util.StaticUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(sequential=true)
+public class GroupCommitterTest extends DirectoryServerTestCase
+{
+  /** Use a directory dedicated to this test class. */
+  private static final File LOG_DIRECTORY = new File(TestCaseUtils.getUnitTestRootPath(), "changelog-group-commit");
+
+  private static final long LONG_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+  private static final long LARGE_SIZE = 1024 * 1024;
+
+  private Log<String, String> log;
+  private GroupCommitter committer;
+  private int recordNumber;
+
+  @BeforeMethod
+  public void initialize() throws Exception
+  {
+    if (LOG_DIRECTORY.exists())
+    {
+      StaticUtils.recursiveDelete(LOG_DIRECTORY);
+    }
+    final LogRotationParameters rotationParams = new LogRotationParameters(1024 * 1024, 0, 0);
+    log = Log.openLog(mock(ReplicationEnvironment.class), LOG_DIRECTORY, RECORD_PARSER, rotationParams);
+    recordNumber = 0;
+  }
+
+  @AfterMethod
+  public void shutdown() throws Exception
+  {
+    if (committer != null)
+    {
+      committer.initiateShutdown();
+      committer.join();
+      committer = null;
+    }
+    StaticUtils.close(log);
+  }
+
+  private void startCommitter(long intervalInMillis, long sizeInBytes)
+  {
+    committer = new GroupCommitter(null, intervalInMillis, sizeInBytes);
+    committer.start();
+  }
+
+  private void append(long nbBytes) throws ChangelogException
+  {
+    recordNumber++;
+    log.append(Record.from(String.format("key%03d", recordNumber), "value" + recordNumber));
+    committer.recordsAppended(log, nbBytes);
+  }
+
+  private CountDownLatch runWhenDurable()
+  {
+    final CountDownLatch latch = new CountDownLatch(1);
+    committer.runWhenDurable(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        latch.countDown();
+      }
+    });
+    return latch;
+  }
+
+  @Test
+  public void testTaskIsRunImmediatelyWhenNothingIsPending() throws Exception
+  {
+    startCommitter(LONG_INTERVAL, LARGE_SIZE);
+
+    assertThat(runWhenDurable().getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testTaskIsRunWhenBatchSizeIsReached() throws Exception
+  {
+    startCommitter(LONG_INTERVAL, 100);
+
+    append(10);
+    final CountDownLatch latch = runWhenDurable();
+    assertThat(latch.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+    append(90);
+    assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testTaskIsRunWhenIntervalElapses() throws Exception
+  {
+    startCommitter(50, LARGE_SIZE);
+
+    append(10);
+    append(10);
+    final CountDownLatch latch = runWhenDurable();
+    assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testChangingCommitWindowAppliesToPendingBatch() throws Exception
+  {
+    startCommitter(LONG_INTERVAL, LARGE_SIZE);
+
+    append(10);
+    final CountDownLatch latch = runWhenDurable();
+    assertThat(latch.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+    committer.setCommitWindow(0, LARGE_SIZE);
+    assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testPendingTasksAreRunOnShutdown() throws Exception
+  {
+    startCommitter(LONG_INTERVAL, LARGE_SIZE);
+
+    append(10);
+    final CountDownLatch latch = runWhenDurable();
+    committer.initiateShutdown();
+    committer.join(TimeUnit.SECONDS.toMillis(10));
+
+    assertThat(latch.getCount()).isEqualTo(0);
+    // the committer has stopped: tasks are run by the caller
+    append(10);
+    assertThat(runWhenDurable().getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testClosedLogsAreIgnored() throws Exception
+  {
+    startCommitter(LONG_INTERVAL, 100);
+
+    append(10);
+    final CountDownLatch latch = runWhenDurable();
+    final Log<String, String> closedLog = log;
+    log = null;
+    closedLog.close();
+    committer.recordsAppended(closedLog, 100);
+    assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+}
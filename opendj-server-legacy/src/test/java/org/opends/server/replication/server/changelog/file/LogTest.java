@@ -44,6 +44,7 @@ public class LogTest extends DirectoryServerTestCase
 {
   /** Use a directory dedicated to this test class. */
   private static final File LOG_DIRECTORY = new File(TestCaseUtils.getUnitTestRootPath(), "changelog-unit");
+  private static final File ARCHIVE_DIRECTORY = new File(TestCaseUtils.getUnitTestRootPath(), "changelog-unit-archive");
 
   private static final long NO_TIME_BASED_LOG_ROTATION = 0;
 
@@ -55,6 +56,10 @@ public class LogTest extends DirectoryServerTestCase
     {
       StaticUtils.recursiveDelete(LOG_DIRECTORY);
     }
+    if (ARCHIVE_DIRECTORY.exists())
+    {
+      StaticUtils.recursiveDelete(ARCHIVE_DIRECTORY);
+    }
 
     // Build a log with 10 records with String keys and String values
     // Keys are using the format keyNNN where N is a figure
@@ -68,6 +73,12 @@ public class LogTest extends DirectoryServerTestCase
   }
 
   private Log<String, String> openLog(RecordParser<String, String> parser) throws ChangelogException
+  {
+    return openLog(parser, null);
+  }
+
+  private Log<String, String> openLog(RecordParser<String, String> parser, File archivePath)
+      throws ChangelogException
   {
     // Each string record has a length of approximately 18 bytes
     // This size is set in order to have 2 records per log file before the rotation happens
@@ -79,7 +90,7 @@ public class LogTest extends DirectoryServerTestCase
         NO_TIME_BASED_LOG_ROTATION, NO_TIME_BASED_LOG_ROTATION);
     final ReplicationEnvironment replicationEnv = mock(ReplicationEnvironment.class);
 
-    return Log.openLog(replicationEnv, LOG_DIRECTORY, parser, rotationParams);
+    return Log.openLog(replicationEnv, LOG_DIRECTORY, archivePath, parser, rotationParams);
   }
 
   @Test
@@ -361,6 +372,47 @@ public class LogTest extends DirectoryServerTestCase
     }
   }
 
+  @Test
+  public void testArchive() throws Exception
+  {
+    try (Log<String, String> log = openLog(LogFileTest.RECORD_PARSER, ARCHIVE_DIRECTORY);
+        DBCursor<Record<String, String>> cursor = log.getCursor())
+    {
+      // cursor is pointing to "key003_key004.log"
+      advanceCursorUpTo(cursor, 1, 3);
+
+      assertThat(log.archiveUpTo("key005")).isEqualTo(2);
+      assertThat(new File(ARCHIVE_DIRECTORY, "key001_key002.log")).exists();
+      assertThat(new File(ARCHIVE_DIRECTORY, "key003_key004.log")).exists();
+      assertThat(new File(LOG_DIRECTORY, "key001_key002.log")).doesNotExist();
+      assertThat(new File(LOG_DIRECTORY, "key003_key004.log")).doesNotExist();
+      assertThat(new File(LOG_DIRECTORY, "key005_key006.log")).exists();
+      // log files are archived only once
+      assertThat(log.archiveUpTo("key005")).isZero();
+
+      // the cursor has been moved to the archived log file
+      assertThatCursorCanBeFullyRead(cursor, 4, 10);
+    }
+
+    // archived log files are opened with the log
+    try (Log<String, String> log = openLog(LogFileTest.RECORD_PARSER, ARCHIVE_DIRECTORY))
+    {
+      try (DBCursor<Record<String, String>> cursor = log.getCursor("key002"))
+      {
+        assertThatCursorCanBeFullyReadFromStart(cursor, 2, 10);
+      }
+      assertThat(log.getOldestRecord()).isEqualTo(Record.from("key001", "value1"));
+
+      // archived log files are purged like the others
+      log.purgeUpTo("key004");
+      assertThat(new File(ARCHIVE_DIRECTORY, "key001_key002.log")).doesNotExist();
+      try (DBCursor<Record<String, String>> cursor = log.getCursor())
+      {
+        assertThatCursorCanBeFullyReadFromStart(cursor, 3, 10);
+      }
+    }
+  }
+
   @DataProvider(name = "purgeKeys")
   Object[][] purgeKeys()
   {
@@ -45,6 +45,8 @@ public class FakeReplicationDomain extends ReplicationDomain
   /** A StringBuilder that will be used to build a new String should the import be called. */
   private StringBuilder importString;
   private int exportedEntryCount;
+  /** Whether exportBackend fails after closing its output, like a backend failing to release its lock. */
+  private boolean failExportAfterClose;
 
   private FakeReplicationDomain(DN baseDN, int serverID,
       SortedSet<String> replicationServers, int window, long heartbeatInterval,
@@ -97,6 +99,11 @@ public class FakeReplicationDomain extends ReplicationDomain
     this.exportedEntryCount = exportedEntryCount;
   }
 
+  void failExportAfterClose()
+  {
+    this.failExportAfterClose = true;
+  }
+
   @Override
   public long countEntries() throws DirectoryException
   {
@@ -116,6 +123,10 @@ public class FakeReplicationDomain extends ReplicationDomain
     {
       throw new DirectoryException(OPERATIONS_ERROR, raw("IOException during exportBackend"), e);
     }
+    if (failExportAfterClose)
+    {
+      throw new DirectoryException(OPERATIONS_ERROR, raw("Export failed after closing the output"));
+    }
   }
 
   @Override
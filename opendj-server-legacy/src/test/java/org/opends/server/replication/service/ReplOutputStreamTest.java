@@ -0,0 +1,156 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.testng.annotations.Test;
+
+/** Test for the {@link ReplOutputStream} class. */
+@SuppressWarnings("javadoc")
+public class ReplOutputStreamTest extends DirectoryServerTestCase
+{
+  @Test
+  public void testChunksArePublishedInOrder() throws Exception
+  {
+    final ReplicationDomain domain = mock(ReplicationDomain.class);
+    final ByteArrayOutputStream published = new ByteArrayOutputStream();
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        final Object[] args = invocation.getArguments();
+        assertThat((int) args[2]).isLessThanOrEqualTo(ReplOutputStream.CHUNK_SIZE);
+        published.write((byte[]) args[0], (int) args[1], (int) args[2]);
+        return null;
+      }
+    }).when(domain).exportLDIFEntry(any(byte[].class), anyInt(), anyInt());
+
+    final byte[] expected = new byte[3 * ReplOutputStream.CHUNK_SIZE + 123];
+    for (int i = 0; i < expected.length; i++)
+    {
+      expected[i] = (byte) i;
+    }
+    try (ReplOutputStream output = new ReplOutputStream(domain))
+    {
+      for (int i = 0; i < expected.length; i += 1000)
+      {
+        output.write(expected, i, Math.min(1000, expected.length - i));
+      }
+    }
+
+    assertThat(published.toByteArray()).isEqualTo(expected);
+    verify(domain, times(4)).exportLDIFEntry(any(byte[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testPublishFailureAbortsExport() throws Exception
+  {
+    final ReplicationDomain domain = mock(ReplicationDomain.class);
+    doThrow(new IOException("publish failed"))
+        .when(domain).exportLDIFEntry(any(byte[].class), anyInt(), anyInt());
+
+    final ReplOutputStream output = new ReplOutputStream(domain);
+    final byte[] chunk = new byte[ReplOutputStream.CHUNK_SIZE];
+    try
+    {
+      // the failure must surface once the sender thread gave up
+      for (int i = 0; i < 1000; i++)
+      {
+        output.write(chunk);
+      }
+      failBecauseExceptionWasNotThrown(IOException.class);
+    }
+    catch (IOException expected)
+    {
+      assertThat(expected).hasMessage("publish failed");
+    }
+    finally
+    {
+      try
+      {
+        output.close();
+        failBecauseExceptionWasNotThrown(IOException.class);
+      }
+      catch (IOException expected)
+      {
+        assertThat(expected).hasMessage("publish failed");
+      }
+    }
+    verify(domain, times(1)).exportLDIFEntry(any(byte[].class), anyInt(), anyInt());
+  }
+
+  @Test(timeOut = 10000)
+  public void testUnexpectedPublishFailureAbortsExport() throws Exception
+  {
+    final ReplicationDomain domain = mock(ReplicationDomain.class);
+    doThrow(new IllegalStateException("publish failed"))
+        .when(domain).exportLDIFEntry(any(byte[].class), anyInt(), anyInt());
+
+    final ReplOutputStream output = new ReplOutputStream(domain);
+    final byte[] chunk = new byte[ReplOutputStream.CHUNK_SIZE];
+    try
+    {
+      // the exporting thread must not wait forever for the dead sender thread
+      for (int i = 0; i < 1000; i++)
+      {
+        output.write(chunk);
+      }
+      failBecauseExceptionWasNotThrown(IOException.class);
+    }
+    catch (IOException expected)
+    {
+      assertThat(expected.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    finally
+    {
+      try
+      {
+        output.close();
+        failBecauseExceptionWasNotThrown(IOException.class);
+      }
+      catch (IOException expected)
+      {
+        assertThat(expected.getCause()).isInstanceOf(IllegalStateException.class);
+      }
+    }
+    verify(domain, times(1)).exportLDIFEntry(any(byte[].class), anyInt(), anyInt());
+    verify(domain).exportFailed(any(IOException.class));
+  }
+
+  @Test
+  public void testAbortedExportDoesNotPublishLastChunk() throws Exception
+  {
+    final ReplicationDomain domain = mock(ReplicationDomain.class);
+
+    final ReplOutputStream output = new ReplOutputStream(domain);
+    output.write(new byte[ReplOutputStream.CHUNK_SIZE + 123]);
+    output.abort();
+    output.close();
+
+    verify(domain, atMost(1)).exportLDIFEntry(any(byte[].class), anyInt(), eq(ReplOutputStream.CHUNK_SIZE));
+    verify(domain, never()).exportLDIFEntry(any(byte[].class), anyInt(), eq(123));
+  }
+}
@@ -366,6 +366,58 @@ public class ReplicationDomainTest extends ReplicationTestCase
     }
   }
 
+  /**
+   * Test that the entries written by an export which then fails are not
+   * published, as the export is reported as failed to the importer.
+   */
+  @Test
+  public void failedExportDoesNotPublishLastEntries() throws Exception
+  {
+    final int ENTRYCOUNT = 10;
+    DN testService = DN.valueOf("o=test");
+    ReplicationServer replServer = null;
+    FakeReplicationDomain domain1 = null;
+    FakeReplicationDomain domain2 = null;
+
+    try
+    {
+      int replServerPort = TestCaseUtils.findFreePort();
+      replServer = createReplicationServer(11, replServerPort, "failedExportDoesNotPublishLastEntries", 100);
+      SortedSet<String> servers = newTreeSet("localhost:" + replServerPort);
+
+      // Small enough to fit in the last chunk of the export
+      String exportedData = buildExportedData(ENTRYCOUNT);
+      domain1 = new FakeReplicationDomain(testService, 1, servers, 0, exportedData, null, ENTRYCOUNT);
+      domain1.failExportAfterClose();
+
+      StringBuilder importedData = new StringBuilder();
+      domain2 = new FakeReplicationDomain(testService, 2, servers, 0, null, importedData, 0);
+
+      assertTrue(initializeFromRemote(domain2));
+      waitEndImportExport(domain1, domain2);
+      assertEquals(importedData.length(), 0, "Entries of the failed export were published");
+    }
+    finally
+    {
+      disable(domain1, domain2);
+      remove(replServer);
+    }
+  }
+
+  private void waitEndImportExport(ReplicationDomain... domains) throws Exception
+  {
+    for (ReplicationDomain domain : domains)
+    {
+      int count = 0;
+      while (domain.getImportExportContext() != null && count < 200)
+      {
+        count++;
+        Thread.sleep(100);
+      }
+      assertNull(domain.getImportExportContext(), "Import/export did not end on " + domain);
+    }
+  }
+
   private boolean initializeFromRemote(ReplicationDomain domain) throws DirectoryException
   {
     for (DSInfo remoteDS : domain.getReplicaInfos().values())
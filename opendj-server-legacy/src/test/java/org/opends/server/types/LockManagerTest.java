@@ -95,6 +95,25 @@ public class LockManagerTest extends TypesTestCase
     unlockUsingThread(thread1, lock1);
   }
 
+  @Test
+  public void testLockWaitTimeMetrics() throws Exception
+  {
+    final LockManager lockManager = new LockManager(100, TimeUnit.MILLISECONDS);
+    unlockUsingThread(thread1, lockUsingThread(thread1, lockManager, LockType.WRITE_ENTRY, dnABC).get());
+    assertThat(lockManager.getContendedLockAttempts()).isEqualTo(0);
+    assertThat(lockManager.getLockTimeouts()).isEqualTo(0);
+
+    final DNLock lock1 = lockUsingThread(thread1, lockManager, LockType.WRITE_ENTRY, dnABC).get();
+    assertThat(lockUsingThread(thread2, lockManager, LockType.WRITE_ENTRY, dnABC).get()).isNull();
+    unlockUsingThread(thread1, lock1);
+
+    assertThat(lockManager.getContendedLockAttempts()).isEqualTo(1);
+    assertThat(lockManager.getLockTimeouts()).isEqualTo(1);
+    assertThat(lockManager.getTotalLockWaitTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(100);
+    assertThat(lockManager.getMaxLockWaitTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(100);
+    assertThat(lockManager.getLockTableSize()).isGreaterThan(0);
+  }
+
   @DataProvider
   private Object[][] multiThreadedLockCombinationsWhichShouldBlock()
   {
@@ -0,0 +1,136 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.types;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.opends.server.types.OperationPhaseTimer.Phase;
+import org.testng.annotations.Test;
+
+/** Tests for {@link OperationPhaseTimer}. */
+@SuppressWarnings("javadoc")
+public class OperationPhaseTimerTest extends TypesTestCase
+{
+  @Test
+  public void testOperationWithoutTimer()
+  {
+    final Operation operation = mock(Operation.class);
+    final long token = OperationPhaseTimer.start(operation);
+    assertThat(token).isEqualTo(0);
+    OperationPhaseTimer.stop(operation, Phase.BACKEND_READ, token);
+    OperationPhaseTimer.stop(null, Phase.BACKEND_READ, OperationPhaseTimer.start(null));
+  }
+
+  @Test
+  public void testNestedPhasesAreExclusive() throws Exception
+  {
+    final OperationPhaseTimer timer = new OperationPhaseTimer(0);
+    final Operation operation = mockOperation(timer);
+
+    final long begin = System.nanoTime();
+    final long aciToken = OperationPhaseTimer.start(operation);
+    Thread.sleep(20);
+    final long readToken = OperationPhaseTimer.start(operation);
+    Thread.sleep(20);
+    OperationPhaseTimer.stop(operation, Phase.BACKEND_READ, readToken);
+    OperationPhaseTimer.stop(operation, Phase.ACCESS_CONTROL, aciToken);
+    final long elapsed = System.nanoTime() - begin;
+
+    final long read = timer.getDuration(Phase.BACKEND_READ, NANOSECONDS);
+    final long aci = timer.getDuration(Phase.ACCESS_CONTROL, NANOSECONDS);
+    assertThat(read).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(20));
+    assertThat(aci).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(20));
+    assertThat(read + aci).isLessThanOrEqualTo(elapsed);
+    assertThat(timer.getDuration(Phase.BACKEND_WRITE, NANOSECONDS)).isEqualTo(0);
+  }
+
+  @Test
+  public void testPhasesFromOtherThreadsAreIgnored() throws Exception
+  {
+    final OperationPhaseTimer timer = new OperationPhaseTimer(0);
+    final Operation operation = mockOperation(timer);
+    final Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        final long token = OperationPhaseTimer.start(operation);
+        OperationPhaseTimer.stop(operation, Phase.SOCKET_WRITE, token);
+      }
+    });
+    thread.start();
+    thread.join();
+    assertThat(timer.getDuration(Phase.SOCKET_WRITE, NANOSECONDS)).isEqualTo(0);
+  }
+
+  @Test
+  public void testEntryCacheLookups()
+  {
+    final OperationPhaseTimer timer = new OperationPhaseTimer(0);
+    final boolean wasEnabled = OperationPhaseTimer.isEnabled();
+    OperationPhaseTimer.setCurrent(timer);
+    try
+    {
+      OperationPhaseTimer.setEnabled(true);
+      OperationPhaseTimer.recordEntryCacheLookups(2, 0);
+      OperationPhaseTimer.recordEntryCacheLookups(0, 1);
+      // Lookups are ignored once the phase timing is disabled
+      OperationPhaseTimer.setEnabled(false);
+      OperationPhaseTimer.recordEntryCacheLookups(3, 3);
+    }
+    finally
+    {
+      OperationPhaseTimer.setCurrent(null);
+      OperationPhaseTimer.setEnabled(wasEnabled);
+    }
+    OperationPhaseTimer.recordEntryCacheLookups(5, 5);
+    assertThat(timer.getEntryCacheHits()).isEqualTo(2);
+    assertThat(timer.getEntryCacheMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void testToString()
+  {
+    final OperationPhaseTimer timer = new OperationPhaseTimer(MICROSECONDS.toNanos(12));
+    assertThat(timer.toString()).isEqualTo("queue=12");
+
+    final boolean wasEnabled = OperationPhaseTimer.isEnabled();
+    OperationPhaseTimer.setCurrent(timer);
+    try
+    {
+      OperationPhaseTimer.setEnabled(true);
+      OperationPhaseTimer.recordEntryCacheLookups(2, 1);
+    }
+    finally
+    {
+      OperationPhaseTimer.setCurrent(null);
+      OperationPhaseTimer.setEnabled(wasEnabled);
+    }
+    final StringBuilder buffer = new StringBuilder("etime=3 phases=\"");
+    timer.toString(buffer);
+    assertThat(buffer.append('"').toString()).isEqualTo("etime=3 phases=\"queue=12 cacheHits=2 cacheMisses=1\"");
+  }
+
+  private static Operation mockOperation(OperationPhaseTimer timer)
+  {
+    final Operation operation = mock(Operation.class);
+    when(operation.getPhaseTimer()).thenReturn(timer);
+    return operation;
+  }
+}